@@ -64,6 +64,8 @@ public class DirectoryManager {
     private static File GENOME_CACHE_DIRECTORY;
     private static File GENE_LIST_DIRECTORY;
     private static File BAM_CACHE_DIRECTORY;
+    private static File REMOTE_CACHE_DIRECTORY;
+    private static File ZOOM_CACHE_DIRECTORY;
     final public static String IGV_DIR_USERPREF = "igvDir";
 
 
@@ -254,6 +256,32 @@ public class DirectoryManager {
         return GENE_LIST_DIRECTORY;
     }
 
+    /**
+     * Directory for cached copies of remote index files and headers
+     */
+    public static synchronized File getRemoteCacheDirectory() {
+        if (REMOTE_CACHE_DIRECTORY == null) {
+            REMOTE_CACHE_DIRECTORY = new File(getIgvDirectory(), "remote_cache");
+            if (!REMOTE_CACHE_DIRECTORY.exists()) {
+                REMOTE_CACHE_DIRECTORY.mkdir();
+            }
+        }
+        return REMOTE_CACHE_DIRECTORY;
+    }
+
+    /**
+     * Directory for zoom level summaries computed for files without precomputed zoom levels
+     */
+    public static synchronized File getZoomCacheDirectory() {
+        if (ZOOM_CACHE_DIRECTORY == null) {
+            ZOOM_CACHE_DIRECTORY = new File(getIgvDirectory(), "zoom_cache");
+            if (!ZOOM_CACHE_DIRECTORY.exists()) {
+                ZOOM_CACHE_DIRECTORY.mkdir();
+            }
+        }
+        return ZOOM_CACHE_DIRECTORY;
+    }
+
     public static synchronized File getCacheDirectory() {
         if (BAM_CACHE_DIRECTORY == null) {
             File defaultDir = getIgvDirectory();
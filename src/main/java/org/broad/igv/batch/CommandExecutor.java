@@ -38,16 +38,21 @@ import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.ga4gh.Ga4ghAPIHelper;
 import org.broad.igv.ga4gh.OAuthUtils;
 import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.renderer.DataRange;
 import org.broad.igv.sam.AlignmentTrack;
 import org.broad.igv.track.RegionScoreType;
 import org.broad.igv.track.Track;
+import org.broad.igv.track.TrackGroup;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.event.DataLoadedEvent;
 import org.broad.igv.event.IGVEventBus;
 import org.broad.igv.event.IGVEventObserver;
 import org.broad.igv.ui.panel.FrameManager;
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.ui.panel.RegionSnapshotRenderer;
+import org.broad.igv.ui.panel.TrackPanel;
 import org.broad.igv.ui.util.MessageUtils;
 import org.broad.igv.ui.util.SnapshotUtilities;
 import org.broad.igv.ui.util.UIUtilities;
@@ -60,16 +65,36 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
+/**
+ * Executes batch commands.  Each port connection has its own executor,  which carries a session context:  the
+ * snapshot directory,  sleep interval,  max panel height,  preference overrides,  and current locus.  Commands that
+ * touch state shared by all executors (tracks, frames, preferences) run one at a time while holding a shared lock,
+ * with the context of the executor that issued them in effect.
+ */
 public class CommandExecutor {
 
     private static Logger log = Logger.getLogger(CommandExecutor.class);
 
+    // Commands that only read or change the executor's own context,  these do not wait for the shared lock
+    private static final Set<String> SESSION_COMMANDS =
+            new HashSet<>(Arrays.asList("echo", "version", "snapshotdirectory", "setsleepinterval", "stats"));
+
+    private static final Object sharedStateLock = new Object();
+
+    // The executor whose context is in effect,  and the preference values its overrides replaced
+    private static CommandExecutor activeExecutor;
+    private static final Map<String, String> basePreferences = new HashMap<>();
+
     private File snapshotDirectory;
     private IGV igv;
-    private int sleepInterval = 2000;
+    private volatile int sleepInterval = 2000;
+    private Integer maxPanelHeight;
+    private final Map<String, String> preferenceOverrides = new LinkedHashMap<>();
+    private String locus;
 
 
     public CommandExecutor() {
@@ -90,6 +115,39 @@ public class CommandExecutor {
     public String execute(String command) {
 
         List<String> args = getArgs(StringUtils.breakQuotedString(command, ' ').toArray(new String[]{}));
+        String cmd = args.size() > 0 ? args.get(0).toLowerCase() : "";
+
+        // Whether this command asked for a sleep.  Kept per call,  the http executor serves several connections at once.
+        final boolean[] sleep = {false};
+        String result;
+        if (SESSION_COMMANDS.contains(cmd)) {
+            result = executeCommand(command, args, sleep);
+        } else {
+            try {
+                result = runInSession(() -> executeCommand(command, args, sleep));
+            } catch (Exception e) {
+                log.error("Error executing: " + command, e);
+                result = "Error: " + e.getMessage();
+            }
+        }
+
+        // Sleep outside the shared lock,  commands from other sessions can run in the meantime
+        if (sleep[0]) {
+            try {
+                Thread.sleep(sleepInterval);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            log.debug("Finished sleeping");
+        }
+
+        return result;
+    }
+
+    /**
+     * @param sleep set to true if the caller should sleep for the sleep interval once the command has finished
+     */
+    private String executeCommand(String command, List<String> args, boolean[] sleep) {
 
         String result = "OK";
 
@@ -123,6 +181,8 @@ public class CommandExecutor {
             } else if (cmd.equalsIgnoreCase("snapshot")) {
                 String filename = param1;
                 result = createSnapshot(filename, param2);
+            } else if (cmd.equalsIgnoreCase("snapshots")) {
+                result = createSnapshots(param1, args.subList(Math.min(2, args.size()), args.size()));
             } else if ((cmd.equalsIgnoreCase("loadfile") || cmd.equalsIgnoreCase("load")) && param1 != null) {
                 result = load(param1, param2, param3, param4);
             } else if (cmd.equalsIgnoreCase("genome") && args.size() > 1) {
@@ -171,6 +231,8 @@ public class CommandExecutor {
                 return this.overridePreference(param1, param2);
             } else if (cmd.equalsIgnoreCase("version")) {
                 return Globals.VERSION;
+            } else if (cmd.equalsIgnoreCase("stats")) {
+                return CommandMetrics.getInstance().toString();
             } else if (cmd.equals("exit")) {
                 System.exit(0);
             } else if (cmd.equals("zoomin")) {
@@ -197,12 +259,7 @@ public class CommandExecutor {
                 System.gc();
             }
             log.debug("Finished execution: " + command + "  sleeping ....");
-            if (sleepInterval > 0) try {
-                Thread.sleep(sleepInterval);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-            log.debug("Finished sleeping");
+            sleep[0] = sleepInterval > 0;
 
         } catch (
                 IOException e
@@ -234,10 +291,108 @@ public class CommandExecutor {
     }
 
     private String overridePreference(String prefKey, String prefVal) {
-        PreferencesManager.getPreferences().override(prefKey, prefVal);
+        overrideSessionPreference(prefKey, prefVal);
         return "OK";
     }
 
+    /**
+     * Override a preference for this executor's session.  Called with the shared lock held and this executor active.
+     */
+    private void overrideSessionPreference(String key, String value) {
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        if (!preferenceOverrides.containsKey(key)) {
+            basePreferences.put(key, prefs.get(key, null));
+        }
+        preferenceOverrides.put(key, value);
+        prefs.override(key, value);
+    }
+
+    /**
+     * Run an action that reads or changes shared state.  Actions from all executors are serialized,  and this
+     * executor's context is put in effect first.
+     */
+    <T> T runInSession(Callable<T> action) throws Exception {
+        CommandMetrics metrics = CommandMetrics.getInstance();
+        long t0 = System.nanoTime();
+        metrics.commandQueued();
+        synchronized (sharedStateLock) {
+            long t1 = System.nanoTime();
+            metrics.commandStarted(t1 - t0);
+            try {
+                activate();
+                return action.call();
+            } finally {
+                locus = getCurrentLocus();
+                metrics.commandFinished(System.nanoTime() - t1);
+            }
+        }
+    }
+
+    /**
+     * Put this executor's context in effect,  undoing the preference overrides of the previously active executor.
+     */
+    private void activate() {
+
+        CommandExecutor previous = activeExecutor;
+        if (previous == this) {
+            return;
+        }
+
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        if (previous != null) {
+            for (String key : previous.preferenceOverrides.keySet()) {
+                String base = basePreferences.get(key);
+                if (base == null) {
+                    prefs.removeOverride(key);
+                } else {
+                    prefs.override(key, base);
+                }
+            }
+        }
+        basePreferences.clear();
+        for (Map.Entry<String, String> entry : preferenceOverrides.entrySet()) {
+            basePreferences.put(entry.getKey(), prefs.get(entry.getKey(), null));
+            prefs.override(entry.getKey(), entry.getValue());
+        }
+
+        if (maxPanelHeight != null) {
+            SnapshotUtilities.setMaxPanelHeight(maxPanelHeight);
+        }
+
+        // Restore the view only if another session has been using it
+        if (previous != null && locus != null && !locus.equals(getCurrentLocus())) {
+            igv.goToLocus(locus);
+        }
+
+        activeExecutor = this;
+    }
+
+    /**
+     * End this executor's session.  If its context is in effect it is left in place,  as it would be for a single
+     * client,  and becomes the base for the next session.
+     */
+    void close() {
+        synchronized (sharedStateLock) {
+            if (activeExecutor == this) {
+                activeExecutor = null;
+                basePreferences.clear();
+            }
+        }
+    }
+
+    private static String getCurrentLocus() {
+        if (FrameManager.isGeneListMode()) {
+            StringBuilder buf = new StringBuilder();
+            for (ReferenceFrame frame : FrameManager.getFrames()) {
+                if (buf.length() > 0) buf.append(" ");
+                buf.append(frame.getFormattedLocusString());
+            }
+            return buf.toString();
+        } else {
+            return FrameManager.getDefaultFrame().getFormattedLocusString();
+        }
+    }
+
     private String setDataRange(String dataRangeString, String trackName) {
         List<Track> tracks = igv.getAllTracks();
         String[] tokens = dataRangeString.split(",");
@@ -283,7 +438,7 @@ public class CommandExecutor {
     private String setSamplingWindowSize(String windowSize) {
         try {
             Integer.parseInt(windowSize);
-            PreferencesManager.getPreferences().override(Constants.SAM_SAMPLING_WINDOW, String.valueOf(windowSize));
+            overrideSessionPreference(Constants.SAM_SAMPLING_WINDOW, String.valueOf(windowSize));
             return "OK";
         } catch (NumberFormatException e) {
             return "ERROR: SAMPLING WINDOW IS NOT A NUMBER: " + windowSize;
@@ -294,7 +449,7 @@ public class CommandExecutor {
     private String setSamplingReadCount(String samplingReadCount) {
         try {
             Integer.parseInt(samplingReadCount);
-            PreferencesManager.getPreferences().override(Constants.SAM_SAMPLING_COUNT, String.valueOf(samplingReadCount));
+            overrideSessionPreference(Constants.SAM_SAMPLING_COUNT, String.valueOf(samplingReadCount));
             return "OK";
         } catch (NumberFormatException e) {
             return "ERROR: SAMPLING READ COUNT IS NOT A NUMBER: " + samplingReadCount;
@@ -309,6 +464,7 @@ public class CommandExecutor {
     private String setMaxPanelHeight(String param1) {
         try {
             Integer h = Integer.parseInt(param1.trim());
+            maxPanelHeight = h;
             SnapshotUtilities.setMaxPanelHeight(h);
             return "OK";
         } catch (NumberFormatException e) {
@@ -865,6 +1021,62 @@ public class CommandExecutor {
     }
 
 
+    /**
+     * Create a snapshot of each region listed in {@code regionFile},  rendering several at once without changing the
+     * current view.  Options may follow in any order:  the number of regions to render concurrently,  and the image
+     * format (png or svg).
+     */
+    private String createSnapshots(String regionFile, List<String> options) throws IOException {
+
+        if (regionFile == null) {
+            return "ERROR: region file is required";
+        }
+
+        int nWorkers = Runtime.getRuntime().availableProcessors();
+        RegionSnapshotRenderer.Format format = RegionSnapshotRenderer.Format.PNG;
+        for (String option : options) {
+            if (option.equalsIgnoreCase("png")) {
+                format = RegionSnapshotRenderer.Format.PNG;
+            } else if (option.equalsIgnoreCase("svg")) {
+                format = RegionSnapshotRenderer.Format.SVG;
+            } else {
+                try {
+                    nWorkers = Integer.parseInt(option);
+                } catch (NumberFormatException e) {
+                    return "ERROR: unrecognized option " + option;
+                }
+            }
+        }
+
+        List<RegionSnapshotRenderer.Region> regions = RegionSnapshotRenderer.parseRegions(StringUtils.stripQuotes(regionFile));
+        if (regions.isEmpty()) {
+            return "ERROR: no regions in " + regionFile;
+        }
+
+        File directory = snapshotDirectory != null ? snapshotDirectory : new File(System.getProperty("user.dir"));
+
+        List<TrackGroup> groups = new ArrayList<>();
+        for (TrackPanel trackPanel : igv.getTrackPanels()) {
+            groups.addAll(trackPanel.getGroups());
+        }
+        RegionSnapshotRenderer renderer = new RegionSnapshotRenderer(groups,
+                igv.getMainPanel().getNamePanelWidth(),
+                igv.getMainPanel().getDataPanelWidth(),
+                SnapshotUtilities.getMaxPanelHeight());
+
+        try {
+            List<String> errors = renderer.render(regions, directory, format, nWorkers);
+            if (errors.isEmpty()) {
+                return "OK";
+            } else {
+                return "ERROR: " + errors.size() + " of " + regions.size() + " regions failed. " + errors.get(0);
+            }
+        } catch (InterruptedException e) {
+            return "ERROR: interrupted";
+        }
+    }
+
+
     private static void createParents(File outputFile) {
         File parent = outputFile.getParentFile();
         if (!parent.exists()) {
@@ -30,6 +30,8 @@ import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.ga4gh.OAuthUtils;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.util.StringUtils;
 
@@ -41,6 +43,8 @@ import java.net.URLDecoder;
 import java.nio.channels.ClosedByInterruptException;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CommandListener implements Runnable {
 
@@ -57,11 +61,21 @@ public class CommandListener implements Runnable {
     private static CommandListener listener;
     private static final String CRLF = "\r\n";
 
+    // Connections accepted while all handlers are busy wait in a queue of this size,  beyond that they are refused
+    private static final int MAX_QUEUED_CONNECTIONS = 64;
+
     private int port = -1;
     private ServerSocket serverSocket = null;
-    private Socket clientSocket = null;
+    private final Set<Socket> clientSockets = Collections.synchronizedSet(new HashSet<>());
     private Thread listenerThread;
-    boolean halt = false;
+    private ThreadPoolExecutor connectionExecutor;
+    volatile boolean halt = false;
+
+    // Executor shared by http requests,  which use one connection per request
+    private CommandExecutor httpExecutor;
+
+    // Number of open port sessions,  batch mode is on while there are any
+    private static final AtomicInteger portSessions = new AtomicInteger();
 
 
     /**
@@ -108,31 +122,56 @@ public class CommandListener implements Runnable {
     }
 
     /**
-     * Loop forever, processing client requests synchronously.  The server is single threaded.
+     * Loop forever, accepting client connections.  Each connection is served on a bounded pool of handler threads,
+     * the size of which is set by the PORT_MAX_CONNECTIONS preference.
      * dwm08 - set isListening appropriately
      */
     public void run() {
 
-        CommandExecutor cmdExe = new CommandExecutor();
+        int maxConnections = Math.max(1, PreferencesManager.getPreferences().getAsInt(Constants.PORT_MAX_CONNECTIONS));
+        final AtomicInteger threadCount = new AtomicInteger();
+        connectionExecutor = new ThreadPoolExecutor(maxConnections, maxConnections, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_CONNECTIONS),
+                r -> {
+                    Thread t = new Thread(r, "Batch connection-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        httpExecutor = new CommandExecutor();
+        CommandMetrics metrics = CommandMetrics.getInstance();
 
         try {
             serverSocket = new ServerSocket(port);
-            log.info("Listening on port " + port);
+            log.info("Listening on port " + port + ", max connections " + maxConnections);
             currentListenerPort = port;
             isListening = true;
             while (!halt) {
-            	
-                clientSocket = serverSocket.accept();
-                processClientSession(cmdExe);
-                if (clientSocket != null) {
+
+                final Socket clientSocket = serverSocket.accept();
+                clientSockets.add(clientSocket);
+                metrics.connectionQueued();
+                try {
+                    connectionExecutor.execute(() -> {
+                        metrics.connectionStarted();
+                        try {
+                            processClientSession(clientSocket);
+                        } catch (IOException e) {
+                            log.error("Error in client socket loop", e);
+                        } finally {
+                            closeClientSocket(clientSocket);
+                            metrics.connectionFinished();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    metrics.connectionRejected();
+                    log.error("Too many batch connections, refusing connection from " + clientSocket.getRemoteSocketAddress());
                     try {
-                        clientSocket.close();
-                        clientSocket = null;
-                        isListening = false;
-                    } catch (IOException e) {
-                        log.error("Error in client socket loop", e);
-                        isListening = false;
+                        PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
+                        out.println("ERROR: server busy");
+                    } catch (IOException e1) {
+                        // Ignore, the connection is closed below
                     }
+                    closeClientSocket(clientSocket);
                 }
             }
 
@@ -150,18 +189,32 @@ public class CommandListener implements Runnable {
             if (!halt) {
                 log.error("IO Error on port socket ", e);
             }
+        } finally {
+            connectionExecutor.shutdownNow();
+        }
+    }
+
+    private void closeClientSocket(Socket clientSocket) {
+        clientSockets.remove(clientSocket);
+        try {
+            clientSocket.close();
+        } catch (IOException e) {
+            log.error("Error closing client socket", e);
         }
     }
 
     /**
      * Process a client session.  Loop continuously until client sends the "halt" message, or closes the connection.
+     * Port sessions get their own CommandExecutor,  http requests share one.
      *
-     * @param cmdExe
+     * @param clientSocket
      * @throws IOException
      */
-    private void processClientSession(CommandExecutor cmdExe) throws IOException {
+    private void processClientSession(Socket clientSocket) throws IOException {
         PrintWriter out = null;
         BufferedReader in = null;
+        CommandExecutor cmdExe = null;
+        boolean portSession = false;
         try {
             out = new PrintWriter(clientSocket.getOutputStream(), true);
             in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
@@ -218,7 +271,22 @@ public class CommandListener implements Runnable {
                         // Process the request.
 
 
-                        String result = processGet(command, params, cmdExe);
+                        final String getCommand = command;
+                        final Map<String, String> getParams = params;
+                        String result;
+                        try {
+                            if (command.equals("/stats")) {
+                                // Statistics are read without waiting for the shared lock
+                                result = CommandMetrics.getInstance().toString();
+                            } else {
+                                result = processGet(getCommand, getParams, httpExecutor);
+                            }
+                        } catch (IOException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            log.error("Error processing " + command, e);
+                            result = "ERROR " + e.getMessage();
+                        }
 
                         // If no callback was specified write back response now
                         if (callback == null) {
@@ -234,8 +302,14 @@ public class CommandListener implements Runnable {
 
                 } else {
                     // Port command
-                    Globals.setBatch(true);
-                    Globals.setSuppressMessages(true);
+                    if (!portSession) {
+                        portSession = true;
+                        cmdExe = new CommandExecutor();
+                        if (portSessions.incrementAndGet() == 1) {
+                            Globals.setBatch(true);
+                            Globals.setSuppressMessages(true);
+                        }
+                    }
                     final String response = cmdExe.execute(inputLine);
                     out.println(response);
                     out.flush();
@@ -244,8 +318,13 @@ public class CommandListener implements Runnable {
         } catch (IOException e) {
             log.error("Error processing client session", e);
         } finally {
-            Globals.setSuppressMessages(false);
-            Globals.setBatch(false);
+            if (portSession) {
+                cmdExe.close();
+                if (portSessions.decrementAndGet() == 0) {
+                    Globals.setSuppressMessages(false);
+                    Globals.setBatch(false);
+                }
+            }
             if (out != null) out.close();
             if (in != null) in.close();
         }
@@ -253,14 +332,18 @@ public class CommandListener implements Runnable {
 
 
     private void closeSockets() {
-        if (clientSocket != null) {
+        Socket[] sockets;
+        synchronized (clientSockets) {
+            sockets = clientSockets.toArray(new Socket[0]);
+        }
+        for (Socket clientSocket : sockets) {
             try {
                 clientSocket.close();
-                clientSocket = null;
             } catch (IOException e) {
                 log.error("Error closing clientSocket", e);
             }
         }
+        clientSockets.clear();
 
         if (serverSocket != null) {
             try {
@@ -311,10 +394,11 @@ public class CommandListener implements Runnable {
     }
 
     /**
-     * Process an http get request.
+     * Process an http get request.  Calls that touch shared state run in the executor's session,  /execute
+     * commands take the shared lock themselves so their post-command sleep does not hold it.
      */
 
-    private String processGet(String command, Map<String, String> params, CommandExecutor cmdExe) throws IOException {
+    private String processGet(String command, Map<String, String> params, CommandExecutor cmdExe) throws Exception {
 
         String result = OK;
         final Frame mainFrame = IGV.getMainFrame();
@@ -338,7 +422,11 @@ public class CommandListener implements Runnable {
             }
 
             if (genome != null) {
-                GenomeManager.getInstance().loadGenomeById(genome);
+                final String genomeId = genome;
+                cmdExe.runInSession(() -> {
+                    GenomeManager.getInstance().loadGenomeById(genomeId);
+                    return null;
+                });
             }
 
             if (file != null) {
@@ -367,13 +455,19 @@ public class CommandListener implements Runnable {
                 String coverage = params.get("coverage");
                 String sort = params.get("sort");
                 String sortTag = params.get("sortTag");
-                result = cmdExe.loadFiles(file, index, coverage, name, format, locus, merge, params, sort, sortTag);
+                final String f = file;
+                final boolean m = merge;
+                result = cmdExe.runInSession(() ->
+                        cmdExe.loadFiles(f, index, coverage, name, format, locus, m, params, sort, sortTag));
             } else {
                 result = "OK";  // No files, perhaps genome only
             }
         } else if (command.equals("/reload") || command.equals("/goto")) {
             String locus = params.get("locus");
-            IGV.getInstance().goToLocus(locus);
+            cmdExe.runInSession(() -> {
+                IGV.getInstance().goToLocus(locus);
+                return null;
+            });
         } else if (command.equals("/execute")) {
             String param = StringUtils.decodeURL(params.get("command"));
             return cmdExe.execute(param);
@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.batch;
+
+/**
+ * Queue depth and latency statistics for batch commands,  shared by all port connections.
+ * <p/>
+ * A connection is queued from the time it is accepted until a handler thread picks it up.  A command waits from the
+ * time it is received until it holds the shared-state lock,  and executes while holding it.
+ */
+public class CommandMetrics {
+
+    private static CommandMetrics instance;
+
+    public static synchronized CommandMetrics getInstance() {
+        if (instance == null) {
+            instance = new CommandMetrics();
+        }
+        return instance;
+    }
+
+    private int queuedConnections;
+    private int activeConnections;
+    private long totalConnections;
+    private long rejectedConnections;
+
+    private int waitingCommands;
+    private long totalCommands;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long totalExecNanos;
+    private long maxExecNanos;
+
+    CommandMetrics() {
+    }
+
+    synchronized void connectionQueued() {
+        queuedConnections++;
+        totalConnections++;
+    }
+
+    synchronized void connectionRejected() {
+        queuedConnections--;
+        rejectedConnections++;
+    }
+
+    synchronized void connectionStarted() {
+        queuedConnections--;
+        activeConnections++;
+    }
+
+    synchronized void connectionFinished() {
+        activeConnections--;
+    }
+
+    synchronized void commandQueued() {
+        waitingCommands++;
+    }
+
+    synchronized void commandStarted(long waitNanos) {
+        waitingCommands--;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+    }
+
+    synchronized void commandFinished(long execNanos) {
+        totalCommands++;
+        totalExecNanos += execNanos;
+        maxExecNanos = Math.max(maxExecNanos, execNanos);
+    }
+
+    public synchronized int getQueuedConnections() {
+        return queuedConnections;
+    }
+
+    public synchronized int getActiveConnections() {
+        return activeConnections;
+    }
+
+    public synchronized int getWaitingCommands() {
+        return waitingCommands;
+    }
+
+    public synchronized long getTotalCommands() {
+        return totalCommands;
+    }
+
+    /**
+     * Mean time,  in milliseconds,  commands waited for the shared-state lock.
+     */
+    public synchronized double getMeanWaitMillis() {
+        return totalCommands == 0 ? 0 : totalWaitNanos / 1.0e6 / totalCommands;
+    }
+
+    /**
+     * Mean time,  in milliseconds,  commands executed while holding the shared-state lock.
+     */
+    public synchronized double getMeanExecMillis() {
+        return totalCommands == 0 ? 0 : totalExecNanos / 1.0e6 / totalCommands;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("connections: active=%d queued=%d total=%d rejected=%d  " +
+                        "commands: waiting=%d total=%d wait_ms(mean=%.1f max=%.1f) exec_ms(mean=%.1f max=%.1f)",
+                activeConnections, queuedConnections, totalConnections, rejectedConnections,
+                waitingCommands, totalCommands, getMeanWaitMillis(), maxWaitNanos / 1.0e6,
+                getMeanExecMillis(), maxExecNanos / 1.0e6);
+    }
+}
@@ -27,13 +27,17 @@ package org.broad.igv.bbfile;
 
 import htsjdk.samtools.seekablestream.SeekableStream;
 import org.apache.log4j.Logger;
-import org.broad.igv.util.stream.IGVSeekableBufferedStream;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+import org.broad.igv.util.stream.PooledSeekableStream;
+import org.broad.igv.util.stream.RemoteFileCache;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Map;
 
 /*
 *   Broad Institute Interactive Genome Viewer Big Binary File (BBFile) Reader
@@ -93,7 +97,11 @@ public class BBFileReader {
 
     private static Logger log = Logger.getLogger(BBFileReader.class);
 
-    private SeekableStream fis;      // BBFile input stream handle
+    // Maximum number of data stream handles,  i.e. the number of queries that can read data blocks concurrently
+    private static final int MAX_STREAMS = 4;
+
+    private SeekableStream fis;      // BBFile input stream handle,  shared by concurrent queries
+    private SeekableStream headerFis;  // Header and index stream,  lazily loaded R+ tree nodes are read from this
     private long fileOffset;           // file offset for next item to be read
 
     private BBFileHeader fileHeader; // Big Binary file header
@@ -126,11 +134,17 @@ public class BBFileReader {
 
         log.debug("Opening BBFile source  " + path);
 
-        fis = new IGVSeekableBufferedStream(IGVSeekableStreamFactory.getInstance().getStreamFor(path), 128000);
+        // Data blocks are read through a pool of streams so queries on different threads do not share a position
+        fis = new PooledSeekableStream(() -> IGVSeekableStreamFactory.getInstance().getStreamFor(path), MAX_STREAMS, 128000);
+
+        // The header, zoom headers, and B+ and R+ trees are read through the remote file cache
+        SeekableStream stream = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
+        SeekableStream indexStream = RemoteFileCache.getInstance().getIndexStream(path, stream);
+        headerFis = IGVSeekableStreamFactory.getInstance().getBufferedStream(indexStream, 128000);
 
         // read in file header
         fileOffset = BBFILE_HEADER_OFFSET;
-        fileHeader = new BBFileHeader(path, fis, fileOffset);
+        fileHeader = new BBFileHeader(path, headerFis, fileOffset);
         //fileHeader.print();
 
         if (!fileHeader.isHeaderOK()) {
@@ -152,7 +166,7 @@ public class BBFileReader {
         // Note: zoom headers Table D immediately follow the BBFile Header
         if (zoomLevelCount > 0) {
             zoomLevelOffset = fileOffset;
-            zoomLevels = new BBZoomLevels(fis, zoomLevelOffset, zoomLevelCount, isLowToHigh, uncompressBufSize);
+            zoomLevels = new BBZoomLevels(headerFis, zoomLevelOffset, zoomLevelCount, isLowToHigh, uncompressBufSize);
 
             // end of zoom level headers - compare with next BBFile item location
             fileOffset += zoomLevelCount * BBZoomLevelHeader.ZOOM_LEVEL_HEADER_SIZE;
@@ -161,14 +175,14 @@ public class BBFileReader {
         // get the AutoSQL custom BigBed fields
         long autoSqlOffset = fileHeader.getAutoSqlOffset();
         if (autoSqlOffset != 0) {
-            fis.seek(autoSqlOffset);
-            autoSql = readNullTerminatedString(fis);
+            headerFis.seek(autoSqlOffset);
+            autoSql = readNullTerminatedString(headerFis);
         }
 
         // get the Total Summary Block (Table DD)
         fileOffset = fileHeader.getTotalSummaryOffset();
         if (fileHeader.getVersion() >= 2 && fileOffset > 0) {
-            totalSummaryBlock = new BBTotalSummaryBlock(fis, fileOffset, isLowToHigh);
+            totalSummaryBlock = new BBTotalSummaryBlock(headerFis, fileOffset, isLowToHigh);
             fileOffset += BBTotalSummaryBlock.TOTAL_SUMMARY_BLOCK_SIZE;
         }
 
@@ -176,7 +190,7 @@ public class BBFileReader {
         chromIDTreeOffset = fileHeader.getChromosomeTreeOffset();
         if (chromIDTreeOffset != 0) {
             fileOffset = chromIDTreeOffset;
-            chromosomeIDTree = new BPTree(fis, fileOffset, isLowToHigh);
+            chromosomeIDTree = new BPTree(headerFis, fileOffset, isLowToHigh);
         }
 
         // get R+ chromosome data location tree (Tables K, L, M, N)
@@ -184,7 +198,7 @@ public class BBFileReader {
         if (chromDataTreeOffset != 0) {
             fileOffset = chromDataTreeOffset;
             boolean forceDescend = false;
-            chromosomeDataTree = new RPTree(fis, fileOffset, isLowToHigh, uncompressBufSize, forceDescend);
+            chromosomeDataTree = new RPTree(headerFis, fileOffset, isLowToHigh, uncompressBufSize, forceDescend);
         }
 
 
@@ -197,6 +211,7 @@ public class BBFileReader {
     public void close() {
         try {
             fis.close();
+            headerFis.close();
         } catch (IOException e) {
             log.error("Error closing bigwig stream", e);
         }
@@ -314,8 +329,8 @@ public class BBFileReader {
      * 1) An empty iterator is returned if region has no data available
      * 2) A null object is returned if the file is not BigBed.(see isBigBedFile method)
      */
-    synchronized public BigBedIterator getBigBedIterator(String startChromosome, int startBase,
-                                                         String endChromosome, int endBase, boolean contained) {
+    public BigBedIterator getBigBedIterator(String startChromosome, int startBase,
+                                            String endChromosome, int endBase, boolean contained) {
 
         if (!isBigBedFile())
             return null;
@@ -356,8 +371,8 @@ public class BBFileReader {
      * 1) An empty iterator is returned if region has no data available
      * 2) A null object is returned if the file is not BigWig.(see isBigWigFile method)
      */
-    synchronized public BigWigIterator getBigWigIterator(String startChromosome, int startBase,
-                                                         String endChromosome, int endBase, boolean contained) {
+    public BigWigIterator getBigWigIterator(String startChromosome, int startBase,
+                                            String endChromosome, int endBase, boolean contained) {
 
 
         if (!isBigWigFile())
@@ -379,6 +394,44 @@ public class BBFileReader {
     }
 
 
+    /**
+     * Reads BigWig values which occupy the specified chromosome region directly into primitive arrays.  Equivalent
+     * to collecting the items of {@link #getBigWigIterator},  but without creating a WigItem object per value.
+     * <p/>
+     * Parameters:
+     * chromosome - chromosome name
+     * startBase  - starting base position for values
+     * endBase    - ending base position for values
+     * contained  - flag specifies values must be contained in the specified
+     * base region if true; else can intersect the region if false
+     * starts, ends, values - start bases, end bases and values of the selected items are appended
+     * <p/>
+     * Returns:
+     * false if the file is not BigWig,  else true
+     */
+    public boolean getBigWigData(String chromosome, int startBase, int endBase, boolean contained,
+                                 IntArrayList starts, IntArrayList ends, FloatArrayList values) {
+
+        if (!isBigWigFile())
+            return false;
+
+        RPChromosomeRegion selectionRegion = getChromosomeBounds(chromosome, startBase, chromosome, endBase);
+        if (selectionRegion == null)
+            return true;   // no data for this chromosome
+
+        boolean isLowToHigh = chromosomeDataTree.isIsLowToHigh();
+        int uncompressBufSize = chromosomeDataTree.getUncompressBuffSize();
+        for (RPTreeLeafNodeItem leafHitItem : chromosomeDataTree.getChromosomeDataHits(selectionRegion, contained)) {
+            RPChromosomeRegion bounds = leafHitItem.getChromosomeBounds();
+            Map<Integer, String> chromosomeMap =
+                    chromosomeIDTree.getChromosomeIDMap(bounds.getStartChromID(), bounds.getEndChromID());
+            BigWigDataBlock wigDataBlock = new BigWigDataBlock(fis, leafHitItem, chromosomeMap, isLowToHigh, uncompressBufSize);
+            wigDataBlock.getWigData(selectionRegion, contained, starts, ends, values);
+        }
+        return true;
+    }
+
+
     /**
      * Returns an iterator for zoom level records for the chromosome selection region.
      * <p/>
@@ -398,8 +451,8 @@ public class BBFileReader {
      * Error conditions:
      * 1) An empty iterator is returned if region has no data available
      */
-    synchronized public ZoomLevelIterator getZoomLevelIterator(int zoomLevel, String startChromosome, int startBase,
-                                                               String endChromosome, int endBase, boolean contained) {
+    public ZoomLevelIterator getZoomLevelIterator(int zoomLevel, String startChromosome, int startBase,
+                                                  String endChromosome, int endBase, boolean contained) {
         // check for valid zoom level
         if (zoomLevel < 1 || zoomLevel > zoomLevelCount)
             throw new RuntimeException("Error: ZoomLevelIterator zoom level is out of range\n");
@@ -436,7 +489,7 @@ public class BBFileReader {
      * Error conditions:
      * 1) An empty iterator is returned if region has no data available
      */
-    synchronized public ZoomLevelIterator getZoomLevelIterator(int zoomLevel) {
+    public ZoomLevelIterator getZoomLevelIterator(int zoomLevel) {
 
         // check for valid zoom level
         if (zoomLevel < 1 || zoomLevel > zoomLevelCount)
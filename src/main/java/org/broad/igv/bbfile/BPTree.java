@@ -35,6 +35,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by IntelliJ IDEA.
@@ -161,7 +162,7 @@ public class BPTree {
     }
 
 
-    Map<String, String> chromosomeKeyCache = new HashMap();
+    Map<String, String> chromosomeKeyCache = new ConcurrentHashMap<>();
 
     /*
     *   Returns a search key for the mChromosome region  which  can
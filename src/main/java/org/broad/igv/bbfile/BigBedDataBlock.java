@@ -35,6 +35,8 @@ import java.util.ArrayList;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.DataInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -102,10 +104,13 @@ public class BigBedDataBlock {
 
             // decompress if necessary - the buffer size is 0 for uncompressed data
             // Note:  BBFile Table C specifies a decompression buffer size
-            if (uncompressBufSize > 0)
-                bedBuffer = (new CompressionUtils()).decompress(buffer, uncompressBufSize);
-            else
+            if (uncompressBufSize > 0) {
+                ByteBuffer inflated = CompressionUtils.inflate(buffer, 0, buffer.length, uncompressBufSize);
+                // The inflated buffer is reused by this thread,  keep a copy
+                bedBuffer = Arrays.copyOf(inflated.array(), inflated.limit());
+            } else {
                 bedBuffer = buffer;    // use uncompressed read buffer directly
+            }
 
         } catch (IOException ex) {
             String error = String.format("Error reading Bed data for leaf item %d \n");
@@ -28,9 +28,14 @@ package org.broad.igv.bbfile;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import org.apache.log4j.Logger;
 import org.broad.igv.util.CompressionUtils;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
 
 import java.util.ArrayList;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -62,6 +67,7 @@ public class BigWigDataBlock {
     // uncompressed byte stream buffer and readers
     private byte[] wigBuffer;      // buffer containing leaf block data uncompressed
     private int remDataSize;       // number of uncompressed data bytes not extracted
+    private int dataSize;          // number of uncompressed data bytes
 
     // Wig data extraction members
     private ArrayList<WigItem> wigItemList;  // array of Wig section items
@@ -94,18 +100,23 @@ public class BigWigDataBlock {
 
             // decompress if necessary - the buffer size is 0 for uncompressed data
             // Note:  BBFile Table C specifies a decompression buffer size
-            if(uncompressBufSize > 0)
-                wigBuffer = (new CompressionUtils()).decompress(buffer, uncompressBufSize);
-            else
+            if(uncompressBufSize > 0) {
+                ByteBuffer inflated = CompressionUtils.inflate(buffer, 0, buffer.length, uncompressBufSize);
+                // The inflated buffer is reused by this thread,  keep a copy
+                wigBuffer = Arrays.copyOf(inflated.array(), inflated.limit());
+                remDataSize = wigBuffer.length;
+            }
+            else {
                 wigBuffer = buffer;    // use uncompressed read buffer directly
+                remDataSize = buffer.length;
+            }
         }catch(IOException ex) {
             log.error("Error reading Wig section for leaf item ", ex);
             String error = String.format("Error reading Wig section for leaf item %d\n");
             throw new RuntimeException(error, ex);
         }
 
-        // initialize unread data size
-        remDataSize = wigBuffer.length;
+        dataSize = remDataSize;
 
         // use getWigData to extract data block items
     }
@@ -144,6 +155,29 @@ public class BigWigDataBlock {
         return wigItemList;
     }
 
+    /*
+    *   Method reads all Wig data sections within the decompressed block buffer directly into
+    *   primitive arrays,  without creating WigItem objects.  Handles bedGraph, variableStep
+    *   and fixedStep sections.
+    *
+    *   Parameters:
+    *       selectionRegion - chromosome region for selecting Wig values
+    *       contained - indicates selected data must be contained in selection region
+    *           if true, else may intersect selection region
+    *       starts, ends, values - selected item start bases, end bases and values are appended
+    * */
+    public void getWigData(RPChromosomeRegion selectionRegion, boolean contained,
+                           IntArrayList starts, IntArrayList ends, FloatArrayList values) {
+
+        ByteBuffer buffer = ByteBuffer.wrap(wigBuffer, 0, dataSize);
+        buffer.order(isLowToHigh ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+
+        while (buffer.remaining() >= BigWigSectionHeader.SECTION_HEADER_SIZE) {
+            BigWigSection wigSection = new BigWigSection(buffer, chromosomeMap, leafHitItem);
+            wigSection.getSectionData(selectionRegion, contained, starts, ends, values);
+        }
+    }
+
     public void print() {
 
         log.debug("Wig section data referenced by leaf item ");
@@ -27,10 +27,14 @@ package org.broad.igv.bbfile;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.util.LittleEndianInputStream;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -54,6 +58,7 @@ public class BigWigSection {
     private int sectionDataSize;       // byte size of decompressed data for this section
     private Map<Integer, String> chromosomeMap; // map of chromosome ID's and corresponding names
     private BigWigSectionHeader wigSectionHeader;  // wig section header
+    private ByteBuffer buffer;         // section buffer for bulk extraction, positioned past the header
 
     /*
     *   Constructor for a BigWig data section which includes the section header
@@ -92,11 +97,36 @@ public class BigWigSection {
         }
 
         // include header in data segment size accounting
-        sectionDataSize = wigSectionHeader.SECTION_HEADER_SIZE;
+        sectionDataSize = BigWigSectionHeader.SECTION_HEADER_SIZE;
 
         // use method getSectionData to extract section data
     }
 
+    /*
+    *   Constructor for a Wig section read directly from a byte buffer,  for bulk extraction with
+    *   getSectionData into primitive arrays.
+    *
+    *   Parameters:
+    *       buffer - decompressed block buffer positioned at the section header, with byte order set.
+    *           The buffer is advanced past the section as its data is extracted.
+    *       chromosomeMap - map of chromosome ID's and corresponding names
+    *       leafHitItem - contains leaf node information for testing against selection region
+    * */
+    public BigWigSection(ByteBuffer buffer, Map<Integer, String> chromosomeMap, RPTreeLeafNodeItem leafHitItem) {
+
+        this.chromosomeMap = chromosomeMap;
+        this.isLowToHigh = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+        this.leafHitItem = leafHitItem;
+        this.buffer = buffer;
+
+        wigSectionHeader = new BigWigSectionHeader(buffer);
+        if (wigSectionHeader.getItemType() == BigWigSectionHeader.WigItemType.Unknown) {
+            throw new RuntimeException("Read error on wig section leaf index ");
+        }
+
+        sectionDataSize = BigWigSectionHeader.SECTION_HEADER_SIZE;
+    }
+
     /*
     *   Method returns the if the Wig items defined in this section are valid.
     *
@@ -256,6 +286,81 @@ public class BigWigSection {
         return sectionDataSize;
     }
 
+    /*
+    *   Method reads Wig data items for the selection region directly into primitive arrays,  without
+    *   creating WigItem objects.  The section must have been constructed from a ByteBuffer.
+    *
+    *   Parameters:
+    *       selectionRegion - chromosome selection region for item extraction
+    *       contained - indicates select region must be contained in value region
+    *           if true, else may intersect selection region for extraction
+    *       starts, ends, values - selected item start bases, end bases and values are appended
+    *
+    *   Returns:
+    *     Size in bytes for the wig data section.
+    * */
+    public int getSectionData(RPChromosomeRegion selectionRegion, boolean contained,
+                              IntArrayList starts, IntArrayList ends, FloatArrayList values) {
+
+        if (buffer == null) {
+            throw new IllegalStateException("Wig section was not read from a byte buffer");
+        }
+
+        int chromID = wigSectionHeader.getChromID();
+        int itemCount = wigSectionHeader.getItemCount();
+        int chromStart = wigSectionHeader.getChromosomeStart();
+        int chromEnd = wigSectionHeader.getChromosomeEnd();
+        int itemStep = wigSectionHeader.getItemStep();
+        int itemSpan = wigSectionHeader.getItemSpan();
+        BigWigSectionHeader.WigItemType itemType = wigSectionHeader.getItemType();
+
+        // check if all leaf items are selection hits.  If so no per item test is needed
+        RPChromosomeRegion sectionRegion = new RPChromosomeRegion(chromID, chromStart, chromID, chromEnd);
+        boolean allHits = sectionRegion.compareRegions(selectionRegion) == 0;
+
+        int startBase;
+        int endBase;
+        float value;
+        for (int index = 0; index < itemCount; ++index) {
+            if (itemType == BigWigSectionHeader.WigItemType.FixedStep) {
+                startBase = chromStart + index * itemStep;
+                endBase = startBase + itemSpan;
+                value = buffer.getFloat();
+            } else if (itemType == BigWigSectionHeader.WigItemType.VarStep) {
+                startBase = buffer.getInt();
+                endBase = startBase + itemSpan;
+                value = buffer.getFloat();
+            } else {
+                startBase = buffer.getInt();
+                endBase = buffer.getInt();
+                value = buffer.getFloat();
+            }
+
+            if (!allHits) {
+                int itemHitValue = new RPChromosomeRegion(chromID, startBase, chromID, endBase).compareRegions(selectionRegion);
+                // hitValue < 2 needed for intersection; hitValue < 1 needed for contained = true
+                if (!(itemHitValue == 0 || !contained && Math.abs(itemHitValue) < 2)) {
+                    continue;
+                }
+            }
+            starts.add(startBase);
+            ends.add(endBase);
+            values.add(value);
+        }
+
+        switch (itemType) {
+            case FixedStep:
+                sectionDataSize += itemCount * BigWigSectionHeader.FIXEDSTEP_ITEM_SIZE;
+                break;
+            case VarStep:
+                sectionDataSize += itemCount * BigWigSectionHeader.VARSTEP_ITEM_SIZE;
+                break;
+            default:
+                sectionDataSize += itemCount * BigWigSectionHeader.BEDGRAPH_ITEM_SIZE;
+        }
+        return sectionDataSize;
+    }
+
     /*
     *   Method prints out the data items for this Wig section.
     * */
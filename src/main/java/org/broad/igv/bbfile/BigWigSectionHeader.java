@@ -30,6 +30,7 @@ import org.broad.igv.util.LittleEndianInputStream;
 
 import java.io.IOException;
 import java.io.DataInputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Created by IntelliJ IDEA.
@@ -130,6 +131,27 @@ public class BigWigSectionHeader {
         isValidType = getItemType(type);
     }
 
+    /*
+    *   Constructor creates a Wig Section Header (Table J) from uncompressed buffer.
+    *
+    *   Parameters:
+    *       buffer - buffer positioned at the section header,  with byte order set
+    * */
+    public BigWigSectionHeader(ByteBuffer buffer) {
+
+        chromID = buffer.getInt();
+        chromStart = buffer.getInt();
+        chromEnd = buffer.getInt();
+        itemStep = buffer.getInt();
+        itemSpan = buffer.getInt();
+        byte type = buffer.get();
+        reserved = buffer.get();
+        itemCount = buffer.getShort() & 0xffff;
+
+        // tag as valid
+        isValidType = getItemType(type);
+    }
+
     /*
     *   Method returns the chromosome ID
     *
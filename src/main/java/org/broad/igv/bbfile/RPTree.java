@@ -54,7 +54,10 @@ import java.util.ArrayList;
 *   3) If the node is a leaf node, all leaf items are read in to the node's leaf array.
 *
 *   4) If node is a child node, readRPTreeNode will be called recursively,
-*   until a leaf node is encountered, where step 3 is performed.
+*   until a leaf node is encountered, where step 3 is performed.  Only the upper
+*   PREFETCH_LEVELS levels, and nodes spanning more than one chromosome, are read
+*   up front.  Deeper nodes are represented by proxies, read on first access and
+*   kept, so repeated queries over the same region do no further I/O.
 *
 *   5) The child nodes will be populated with their child node items in reverse order
 *   of recursion from step 4, until the tree is completely populated
@@ -73,6 +76,9 @@ public class RPTree {
     public static final int RPTREE_NODE_LEAF_ITEM_SIZE = 32;   // leaf item size
     public static final int RPTREE_NODE_CHILD_ITEM_SIZE = 24;  // child item size
 
+    // Number of tree levels, counting the root, read when the tree is opened.  Deeper nodes are loaded on demand.
+    static final int PREFETCH_LEVELS = 2;
+
     // R+ tree access variables   - for reading in R+ tree nodes from a file
     private int uncompressBuffSize;    // decompression buffer size; or 0 for uncompressed data
     private boolean isLowToHigh;       // binary data low to high if true; else high to low
@@ -133,7 +139,7 @@ public class RPTree {
         RPTreeNode parentNode = null;      // parent node of the root is itself, or null
 
         // start constructing the R+ tree - get the root node
-        rootNode = readRPTreeNode(fis, nodeOffset, isLowToHigh, forceDescend);
+        rootNode = readRPTreeNode(fis, nodeOffset, isLowToHigh, forceDescend, 0);
     }
 
     /*
@@ -548,6 +554,16 @@ public class RPTree {
     * */
 
     static RPTreeNode readRPTreeNode(SeekableStream fis, long fileOffset, boolean isLowToHigh, boolean forceDescend) {
+        return readRPTreeNode(fis, fileOffset, isLowToHigh, forceDescend, PREFETCH_LEVELS);
+    }
+
+    /*
+    *   As above,  depth is the level of this node, 0 for the root.  Child nodes in the
+    *   upper PREFETCH_LEVELS levels are read recursively,  others are read on demand
+    *   unless forceDescend is true.
+    * */
+    private static RPTreeNode readRPTreeNode(SeekableStream fis, long fileOffset, boolean isLowToHigh,
+                                             boolean forceDescend, int depth) {
 
         LittleEndianInputStream lbdis = null; // low o high byte stream reader
         DataInputStream bdis = null;    // high to low byte stream reader
@@ -647,11 +663,11 @@ public class RPTree {
 
                     // Recursive call to read next child node
                     // The test on chromIds is designed to stop the descent when the tree reaches the level of an
-                    // individual chromosome.  These are loaded later on demand.
+                    // individual chromosome,  below the prefetched levels.  These are loaded later on demand.
 
                     RPTreeChildNodeItem childNodeItem;
-                    if (startChromID != endChromID || forceDescend) {
-                        RPTreeNode childNode = readRPTreeNode(fis, nodeOffset, isLowToHigh, forceDescend);
+                    if (startChromID != endChromID || forceDescend || depth + 1 < PREFETCH_LEVELS) {
+                        RPTreeNode childNode = readRPTreeNode(fis, nodeOffset, isLowToHigh, forceDescend, depth + 1);
                         childNodeItem = new RPTreeChildNodeItem(startChromID, startBase, endChromID,
                                 endBase, childNode);
                     } else {
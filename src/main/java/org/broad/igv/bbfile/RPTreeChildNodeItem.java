@@ -42,7 +42,7 @@ public class RPTreeChildNodeItem extends RPTreeNodeItem {
 
     private static Logger log = Logger.getLogger(RPTreeChildNodeItem.class);
 
-    private RPTreeNode childNode;  // child node assigned to node item
+    private volatile RPTreeNode childNode;  // child node assigned to node item
     private RPTreeNodeProxy childNodeProxy;
 
     /*  Constructor for child node items.
@@ -73,12 +73,21 @@ public class RPTreeChildNodeItem extends RPTreeNodeItem {
 
     public RPTreeNode getChildNode() {
 
-        if (childNode == null) {
+        RPTreeNode node = childNode;
+        if (node == null) {
+            // Nodes are loaded on demand from the shared index stream,  possibly by concurrent queries
             RPTreeNodeProxy proxy = childNodeProxy;
-            childNode = RPTree.readRPTreeNode(proxy.fis, proxy.fileOffset, proxy.isLowToHigh, true);
+            synchronized (proxy.fis) {
+                node = childNode;
+                if (node == null) {
+                    // Read this node only,  its children are again proxies expanded as queries reach them
+                    node = RPTree.readRPTreeNode(proxy.fis, proxy.fileOffset, proxy.isLowToHigh, false);
+                    childNode = node;
+                }
+            }
         }
 
-        return childNode;
+        return node;
     }
 
     public void print() {
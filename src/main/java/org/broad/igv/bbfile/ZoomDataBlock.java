@@ -33,6 +33,8 @@ import org.broad.igv.util.LittleEndianInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -63,6 +65,7 @@ public class ZoomDataBlock {
 
     // Provides uncompressed byte stream data reader
     private byte[] zoomBuffer;  // buffer containing leaf block data uncompressed
+    private int zoomBufferSize; // number of data bytes in zoomBuffer, which may be larger
     private int remDataSize;   // number of unread decompressed data bytes
 
     // byte stream readers
@@ -103,10 +106,15 @@ public class ZoomDataBlock {
 
             // decompress if necessary - the buffer size is 0 for uncomressed data
             // Note:  BBFile Table C specifies a decompression buffer size
-            if (uncompressBufSize > 0)
-                zoomBuffer = (new CompressionUtils()).decompress(buffer, uncompressBufSize);
-            else
+            if (uncompressBufSize > 0) {
+                ByteBuffer inflated = CompressionUtils.inflate(buffer, 0, buffer.length, uncompressBufSize);
+                // The inflated buffer is reused by this thread,  keep a copy
+                zoomBuffer = Arrays.copyOf(inflated.array(), inflated.limit());
+                zoomBufferSize = zoomBuffer.length;
+            } else {
                 zoomBuffer = buffer;    // use uncompressed read buffer directly
+                zoomBufferSize = buffer.length;
+            }
 
         } catch (IOException ex) {
             log.error("Error reading Zoom level " + this.zoomLevel + " data for leaf item ",  ex);
@@ -116,12 +124,12 @@ public class ZoomDataBlock {
 
         // wrap the bed buffer as an input stream
         if (this.isLowToHigh)
-            lbdis = new LittleEndianInputStream(new ByteArrayInputStream(zoomBuffer));
+            lbdis = new LittleEndianInputStream(new ByteArrayInputStream(zoomBuffer, 0, zoomBufferSize));
         else
-            dis = new DataInputStream(new ByteArrayInputStream(zoomBuffer));
+            dis = new DataInputStream(new ByteArrayInputStream(zoomBuffer, 0, zoomBufferSize));
 
         // initialize unread data size
-        remDataSize = zoomBuffer.length;
+        remDataSize = zoomBufferSize;
 
         // use method getZoomData to extract block data
     }
@@ -29,20 +29,27 @@ import org.apache.commons.math.stat.StatUtils;
 import org.broad.igv.Globals;
 import org.broad.igv.bbfile.*;
 import org.broad.igv.data.AbstractDataSource;
-import org.broad.igv.data.BasicScore;
 import org.broad.igv.data.DataTile;
+import org.broad.igv.data.ScoreArray;
 import org.broad.igv.feature.*;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.tribble.IGVBEDCodec;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.tdf.TDFDataSource;
+import org.broad.igv.track.DataSourceTrack;
 import org.broad.igv.track.FeatureSource;
+import org.broad.igv.track.Track;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
+import org.broad.igv.ui.IGV;
 import org.broad.igv.util.collections.FloatArrayList;
 import org.broad.igv.util.collections.IntArrayList;
 import htsjdk.tribble.Feature;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A hybrid source, implements both DataSource and FeatureSource.   Way of the future?
@@ -69,11 +76,19 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
     // Lookup table to support chromosome aliasing.
     private Map<String, String> chrNameMap = new HashMap();
 
-    private RawDataInterval currentInterval = null;
+    // Most recently used raw data intervals,  most recent first.  Several are kept so that multiple frames
+    // (e.g. gene list mode) do not evict each other's data
+    private static final int MAX_RAW_INTERVALS = 8;
+    private final LinkedList<RawDataInterval> rawIntervals = new LinkedList<>();
 
     private double dataMin = 0;
     private double dataMax = 100;
 
+    // Summaries computed on the fly when the file has no suitable zoom level.  Only used for views coarser than
+    // MIN_PYRAMID_SCALE bp/pixel,  finer views are summarized from raw data as usual.
+    static final int MIN_PYRAMID_SCALE = 1000;
+    private ZoomPyramid zoomPyramid;
+
     IGVBEDCodec bedCodec;
 
     public BigWigDataSource(BBFileReader reader, Genome genome) throws IOException {
@@ -81,7 +96,7 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
 
         this.reader = reader;
         this.levels = reader.getZoomLevels();
-        this.wholeGenomeScores = new HashMap<>();
+        this.wholeGenomeScores = new ConcurrentHashMap<>();
 
         if (reader.isBigWigFile()) initMinMax();
 
@@ -102,9 +117,28 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
             }
         }
 
+        if (reader.isBigWigFile() && PreferencesManager.getPreferences().getAsBoolean(Constants.BIGWIG_ZOOM_PYRAMID)) {
+            zoomPyramid = new ZoomPyramid(reader, genome, chrNameMap, this::zoomPyramidReady);
+        }
+
         bedCodec = new IGVBEDCodec(genome);
     }
 
+    /**
+     * Called when zoom summaries computed in the background are available.  Tracks showing this data have cached
+     * scores summarized from raw data,  clear them so the view is refreshed from the summaries.
+     */
+    private void zoomPyramidReady() {
+        if (IGV.hasInstance()) {
+            for (Track track : IGV.getInstance().getAllTracks()) {
+                if (track instanceof DataSourceTrack && ((DataSourceTrack) track).getDataSource() == this) {
+                    ((DataSourceTrack) track).clearCaches();
+                }
+            }
+            IGV.getInstance().repaint();
+        }
+    }
+
 
     /**
      * Set the "min" and "max" from 1MB resolutiond data.  Read a maximum of 10,000 points for this
@@ -230,7 +264,7 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
         double scale = c.getLength() / (nBins * 700);
 
         BBZoomLevelHeader zlHeader = getZoomLevelForScale(scale);
-        if (zlHeader == null) return null;
+        if (zlHeader == null) return getZoomPyramidScores(chr, start, end, zoom, scale);
 
         int bbLevel = zlHeader.getZoomLevel();
         int reductionLevel = zlHeader.getReductionLevel();
@@ -242,21 +276,37 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
         String querySeq = tmp == null ? chr : tmp;
 
         if (reader.isBigBedFile() || bbLevel > 1 || (bbLevel == 1 && (reductionLevel / scale) < 2)) {
-            ArrayList<LocusScore> scores = new ArrayList(1000);
+            ScoreArray scores = new ScoreArray(1000);
             ZoomLevelIterator zlIter = reader.getZoomLevelIterator(bbLevel, querySeq, start, querySeq, end, false);
             while (zlIter.hasNext()) {
                 ZoomDataRecord rec = zlIter.next();
 
                 float v = getValue(rec);
-                BasicScore bs = new BasicScore(rec.getChromStart(), rec.getChromEnd(), v);
-                scores.add(bs);
+                scores.add(rec.getChromStart(), rec.getChromEnd(), v);
             }
             return scores;
 
         } else {
             // No precomputed scores for this resolution level
+            return getZoomPyramidScores(chr, start, end, zoom, scale);
+        }
+    }
+
+    /**
+     * Return scores from the on-the-fly zoom summaries,  or null if they are not applicable or not yet available.
+     */
+    private List<LocusScore> getZoomPyramidScores(String chr, int start, int end, int zoom, double scale) {
+
+        if (zoomPyramid == null || scale < MIN_PYRAMID_SCALE || zoom > ZoomPyramid.N_ZOOM ||
+                !ZoomPyramid.WINDOW_FUNCTIONS.contains(windowFunction)) {
+            return null;
+        }
+
+        TDFDataSource source = zoomPyramid.getSource();
+        if (source == null || zoom > source.getMaxPrecomputedZoom()) {
             return null;
         }
+        return source.getSummaryScoresForRange(chr, start, end, zoom, windowFunction);
     }
 
     private float getValue(ZoomDataRecord rec) {
@@ -281,39 +331,53 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
 
 
     @Override
-    protected synchronized DataTile getRawData(String chr, int start, int end) {
+    protected DataTile getRawData(String chr, int start, int end) {
 
         if (chr.equals(Globals.CHR_ALL)) {
             return null;
         }
 
-
-        if (currentInterval != null && currentInterval.contains(chr, start, end)) {
-            return currentInterval.tile;
+        DataTile cachedTile = getCachedRawData(chr, start, end);
+        if (cachedTile != null) {
+            return cachedTile;
         }
 
-        // TODO -- fetch data directly in arrays to avoid creation of multiple "WigItem" objects?
         IntArrayList startsList = new IntArrayList(100000);
         IntArrayList endsList = new IntArrayList(100000);
         FloatArrayList valuesList = new FloatArrayList(100000);
 
         String chrAlias = chrNameMap.containsKey(chr) ? chrNameMap.get(chr) : chr;
-        Iterator<WigItem> iter = reader.getBigWigIterator(chrAlias, start, chrAlias, end, false);
-
-        while (iter.hasNext()) {
-            WigItem wi = iter.next();
-            startsList.add(wi.getStartBase());
-            endsList.add(wi.getEndBase());
-            valuesList.add(wi.getWigValue());
-        }
+        reader.getBigWigData(chrAlias, start, end, false, startsList, endsList, valuesList);
 
         DataTile tile = new DataTile(startsList.toArray(), endsList.toArray(), valuesList.toArray(), null);
-        currentInterval = new RawDataInterval(chr, start, end, tile);
+        synchronized (rawIntervals) {
+            rawIntervals.addFirst(new RawDataInterval(chr, start, end, tile));
+            if (rawIntervals.size() > MAX_RAW_INTERVALS) {
+                rawIntervals.removeLast();
+            }
+        }
 
         return tile;
 
     }
 
+    private DataTile getCachedRawData(String chr, int start, int end) {
+        synchronized (rawIntervals) {
+            Iterator<RawDataInterval> iter = rawIntervals.iterator();
+            while (iter.hasNext()) {
+                RawDataInterval interval = iter.next();
+                if (interval.contains(chr, start, end)) {
+                    if (interval != rawIntervals.getFirst()) {
+                        iter.remove();
+                        rawIntervals.addFirst(interval);
+                    }
+                    return interval.tile;
+                }
+            }
+        }
+        return null;
+    }
+
 
     private List<LocusScore> getWholeGenomeScores() {
 
@@ -327,7 +391,7 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
                 String firstChr = reader.getChromsomeFromId(0);
                 String lastChr = reader.getChromsomeFromId(maxChromId);
 
-                ArrayList<LocusScore> scores = new ArrayList<LocusScore>();
+                ScoreArray scores = new ScoreArray(10000);
                 wholeGenomeScores.put(windowFunction, scores);
 
                 BBZoomLevelHeader lowestResHeader = this.getZoomLevelForScale(scale);
@@ -356,11 +420,12 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
 
                         int genomeStart = genome.getGenomeCoordinate(chr, rec.getChromStart());
                         int genomeEnd = genome.getGenomeCoordinate(chr, rec.getChromEnd());
-                        scores.add(new BasicScore(genomeStart, genomeEnd, value));
+                        scores.add(genomeStart, genomeEnd, value);
                     }
                 }
 
-                scores.sort((o1, o2) -> o1.getStart() - o2.getStart());
+                scores.sortByStart();
+                scores.trim();
 
             }
             return wholeGenomeScores.get(windowFunction);
@@ -0,0 +1,267 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.bigwig;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.bbfile.BBFileReader;
+import org.broad.igv.feature.Chromosome;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.tdf.TDFDataSource;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.tools.Preprocessor;
+import org.broad.igv.tools.StatusMonitor;
+import org.broad.igv.track.TrackType;
+import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.FileUtils;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Zoom level summaries for a bigwig file that lacks precomputed zoom levels at the resolution requested.  The
+ * summaries are computed from the raw data in the background the first time they are needed,  and stored as a
+ * tdf file in the zoom cache directory where later sessions find them.
+ * <p/>
+ * Only local files are summarized,  summarizing a remote file would require reading all of it.
+ *
+ * @see DirectoryManager#getZoomCacheDirectory()
+ */
+class ZoomPyramid {
+
+    private static Logger log = Logger.getLogger(ZoomPyramid.class);
+
+    static final int N_ZOOM = 7;
+
+    // Raw data is read in windows of this size (bp) while summarizing
+    static final int READ_WINDOW = 10000000;
+
+    static final List<WindowFunction> WINDOW_FUNCTIONS =
+            Arrays.asList(WindowFunction.mean, WindowFunction.min, WindowFunction.max);
+
+    // Summary files being computed in this session
+    private static final Set<File> building = ConcurrentHashMap.newKeySet();
+
+    private static ExecutorService buildExecutor;
+
+    private final BBFileReader reader;
+    private final Genome genome;
+    private final Map<String, String> chrNameMap;
+    private final File file;
+    private final Runnable onReady;
+    private volatile TDFDataSource source;
+    private volatile boolean failed = false;
+
+    /**
+     * @param chrNameMap genome to file chromosome name aliases
+     * @param onReady    called when summaries computed in the background become available
+     */
+    ZoomPyramid(BBFileReader reader, Genome genome, Map<String, String> chrNameMap, Runnable onReady) {
+        this.reader = reader;
+        this.genome = genome;
+        this.chrNameMap = chrNameMap;
+        this.onReady = onReady;
+        this.file = getFile(reader.getBBFileHeader().getPath(), genome);
+    }
+
+    /**
+     * Return the summary file for the bigwig at path,  or null if the file cannot be summarized.  The name depends on
+     * the size and modification time of the bigwig,  so a changed file is summarized again.
+     */
+    static File getFile(String path, Genome genome) {
+        if (genome == null || FileUtils.isRemote(path)) {
+            return null;
+        }
+        File bwFile = new File(path);
+        if (!bwFile.exists()) {
+            return null;
+        }
+        String key = bwFile.getAbsolutePath() + "_" + bwFile.length() + "_" + bwFile.lastModified() + "_" + genome.getId();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+            }
+            return new File(DirectoryManager.getZoomCacheDirectory(), bwFile.getName() + "_" + hex + ".tdf");
+        } catch (Exception e) {
+            log.error("Error creating zoom summary file name for " + path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Return a data source for the summaries if they are available,  otherwise null.  If the summaries are not
+     * available they are computed in the background,  in every mode,  and the caller should serve raw or native zoom
+     * data until {@code onReady} is called.
+     */
+    TDFDataSource getSource() {
+        if (source != null || failed || file == null) {
+            return source;
+        }
+        boolean startBuild = false;
+        synchronized (this) {
+            if (source == null && !failed) {
+                if (file.exists()) {
+                    open();
+                } else {
+                    startBuild = building.add(file);
+                }
+            }
+        }
+        if (startBuild) {
+            getBuildExecutor().execute(() -> {
+                try {
+                    if (build()) {
+                        open();
+                        if (source != null && onReady != null) {
+                            onReady.run();
+                        }
+                    } else {
+                        failed = true;
+                    }
+                } catch (Exception e) {
+                    log.error("Error computing zoom summaries for " + reader.getBBFileHeader().getPath(), e);
+                    failed = true;
+                } finally {
+                    building.remove(file);
+                }
+            });
+        }
+        return source;
+    }
+
+    /**
+     * Builds read and summarize a whole file,  run them one at a time on a low priority thread of their own so they
+     * do not hold up track loads.
+     */
+    private static synchronized ExecutorService getBuildExecutor() {
+        if (buildExecutor == null) {
+            buildExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "ZoomPyramid build");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+        }
+        return buildExecutor;
+    }
+
+    private synchronized void open() {
+        if (source != null) {
+            return;
+        }
+        try {
+            TDFReader tdfReader = TDFReader.getReader(file.getAbsolutePath());
+            source = new TDFDataSource(tdfReader, 0, file.getName(), genome);
+        } catch (Exception e) {
+            log.error("Error opening zoom summary file " + file.getAbsolutePath() + ", removing", e);
+            file.delete();
+            failed = true;
+        }
+    }
+
+    /**
+     * Compute the summaries from the raw data.  Returns false if there is no data for any chromosome of the genome.
+     */
+    boolean build() throws Exception {
+
+        log.info("Computing zoom summaries for " + reader.getBBFileHeader().getPath());
+
+        // TDFWriter requires the .tdf extension
+        File tmpFile = new File(file.getParentFile(), file.getName().replace(".tdf", ".tmp.tdf"));
+        Preprocessor preprocessor = new Preprocessor(tmpFile, genome, WINDOW_FUNCTIONS, -1, new SilentMonitor());
+        preprocessor.setSkipRawData(true);
+        preprocessor.setNZoom(N_ZOOM);
+
+        boolean hasData = false;
+        float[] data = new float[1];
+        try {
+            for (String chr : genome.getAllChromosomeNames()) {
+                Chromosome c = genome.getChromosome(chr);
+                if (c == null) {
+                    continue;
+                }
+                String querySeq = chrNameMap.containsKey(chr) ? chrNameMap.get(chr) : chr;
+                for (int start = 0; start < c.getLength(); start += READ_WINDOW) {
+                    int end = Math.min(c.getLength(), start + READ_WINDOW);
+                    IntArrayList starts = new IntArrayList();
+                    IntArrayList ends = new IntArrayList();
+                    FloatArrayList values = new FloatArrayList();
+                    reader.getBigWigData(querySeq, start, end, false, starts, ends, values);
+
+                    for (int i = 0; i < starts.size(); i++) {
+                        int s = starts.get(i);
+                        float v = values.get(i);
+                        if (s < start || s >= end || Float.isNaN(v)) {
+                            // Windows are half open,  items overlapping a window boundary belong to the window
+                            // containing their start
+                            continue;
+                        }
+                        if (!hasData) {
+                            // The writer is created with the track parameters,  wait until there is something to write
+                            preprocessor.setTrackParameters(TrackType.OTHER, null, new String[]{file.getName()});
+                            hasData = true;
+                        }
+                        data[0] = v;
+                        preprocessor.addData(chr, s, ends.get(i), data, null);
+                    }
+                }
+            }
+            if (hasData) {
+                preprocessor.finish();
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tmpFile.delete();
+        }
+        return hasData;
+    }
+
+    private static class SilentMonitor implements StatusMonitor {
+
+        public void setPercentComplete(double percentComplete) {
+        }
+
+        public void incrementPercentComplete(double increment) {
+        }
+
+        public boolean isInterrupted() {
+            return false;
+        }
+    }
+}
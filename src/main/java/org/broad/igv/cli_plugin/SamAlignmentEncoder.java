@@ -28,6 +28,7 @@ package org.broad.igv.cli_plugin;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileWriterImpl;
 import htsjdk.samtools.SAMTextWriter;
+import org.broad.igv.sam.CompactAlignmentStore;
 import org.broad.igv.sam.PicardAlignment;
 
 import java.io.OutputStream;
@@ -46,8 +47,10 @@ public class SamAlignmentEncoder implements FeatureEncoder<PicardAlignment> {
 
     public Map<String, Object> encodeAll(OutputStream stream, Iterator<? extends PicardAlignment> alignments) {
         SAMFileWriterImpl writer = new SAMTextWriter(stream);
-        while (alignments.hasNext()) {
-            PicardAlignment samAl = alignments.next();
+        // Loaded intervals may hand us compact flyweights despite the declared element type
+        Iterator<?> iter = alignments;
+        while (iter.hasNext()) {
+            PicardAlignment samAl = toPicardAlignment(iter.next());
             if (!headerSet) {
                 writer.setSortOrder(SAMFileHeader.SortOrder.unsorted, true);
                 writer.setHeader(samAl.getRecord().getHeader());
@@ -59,6 +62,13 @@ public class SamAlignmentEncoder implements FeatureEncoder<PicardAlignment> {
         return null;
     }
 
+    private static PicardAlignment toPicardAlignment(Object alignment) {
+        if (alignment instanceof CompactAlignmentStore.CompactAlignment) {
+            return ((CompactAlignmentStore.CompactAlignment) alignment).toPicardAlignment();
+        }
+        return (PicardAlignment) alignment;
+    }
+
 
 
     @Override
@@ -137,18 +137,16 @@ public abstract class AbstractDataSource implements DataSource {
     public List<LocusScore> getSummaryScoresForRange(String chr, int startLocation, int endLocation, int zoom) {
 
 
-        List<LocusScore> scores = null;
-
         if (windowFunction != WindowFunction.none) {
-            scores = getPrecomputedSummaryScores(chr, startLocation, endLocation, zoom);
-            if (scores != null) {
-                return scores;
+            List<LocusScore> precomputed = getPrecomputedSummaryScores(chr, startLocation, endLocation, zoom);
+            if (precomputed != null) {
+                return ScoreArray.of(precomputed);
             }
         }
 
         List<SummaryTile> tiles = getSummaryTilesForRange(chr, startLocation, endLocation, zoom);
 
-        scores = new ArrayList(tiles.size() * 700);
+        ScoreArray scores = new ScoreArray(tiles.size() * 700, true);
 
         for (SummaryTile tile : tiles) {
             scores.addAll(tile.getScores());
@@ -254,15 +252,14 @@ public abstract class AbstractDataSource implements DataSource {
                     String probeName = features == null ? null : features[i];
                     float v = values[i];
 
-                    BasicScore score = new NamedScore(s, e, v, probeName);
-                    tile.addScore(score);
+                    tile.addScore(s, e, v, probeName);
 
                 }
 
 
             } else {
                 float normalizationFactor = 1.0f;
-                List<LocusScore> scores = new ArrayList(nBins);
+                ScoreArray scores = new ScoreArray(nBins, true);
                 double scale = (double) (endLocation - startLocation) / nBins;
 
                 Accumulator accumulator = new Accumulator(windowFunction, 5);
@@ -304,7 +301,7 @@ public abstract class AbstractDataSource implements DataSource {
                     }
 
                     if (endBin > startBin) {
-                        scores.add(new NamedScore(s, e, v, probeName));
+                        scores.add(s, e, v, probeName);
                     } else {
                         if (!accumulator.hasData()) accumulatedStart = s;
                         accumulatedEnd = e;
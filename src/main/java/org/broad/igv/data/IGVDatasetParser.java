@@ -36,6 +36,8 @@ import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.util.MessageUtils;
+import org.broad.igv.util.FieldTokenizer;
+import org.broad.igv.util.ParallelLineParser;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.collections.FloatArrayList;
@@ -50,6 +52,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 
 /**
@@ -76,6 +79,9 @@ public class IGVDatasetParser {
 
     private int startBase = 0;
 
+    private static final String UNSORTED_MESSAGE = "File is not sorted, .igv and .cn files must be sorted by start position." +
+            " Use igvtools (File > Run igvtools..) to sort the file.";
+
     public IGVDatasetParser(ResourceLocator copyNoFile, Genome genome) {
         this.dataResourceLocator = copyNoFile;
         this.genome = genome;
@@ -164,31 +170,21 @@ public class IGVDatasetParser {
     public List<ChromosomeSummary> scan(IGVDataset dataset) {
 
         int estLineCount = ParsingUtils.estimateLineCount(dataResourceLocator.getPath());
-        Map<String, Integer> longestFeatureMap = new HashMap();
-
-        float dataMin = 0;
-        float dataMax = 0;
 
         InputStream is = null;
-        AsciiLineReader reader = null;
+        FieldTokenizer reader = null;
         String nextLine = null;
-        ChromosomeSummary chrSummary = null;
-        List<ChromosomeSummary> chrSummaries = new ArrayList();
-        String[] headings = null;
-        WholeGenomeData wgData = null;
-        int nRows = 0;
+        ScanMerger merger = null;
 
         int headerRows = 0;
-        int count = 0;
 
-        boolean logNormalized;
         try {
 
             int skipColumns = hasCalls ? 2 : 1;
 
             // BufferedReader reader = ParsingUtils.openBufferedReader(dataResourceLocator);
             is = ParsingUtils.openInputStreamGZ(dataResourceLocator);
-            reader = new AsciiLineReader(is);
+            reader = new FieldTokenizer(is);
 
             // Infer datatype from extension.  This can be overriden in the
             // comment section
@@ -226,79 +222,129 @@ public class IGVDatasetParser {
                 lastDataColumn = data.length - 1;
             }
 
-            headings = getHeadings(data, skipColumns);
+            String[] headings = getHeadings(data, skipColumns);
 
             dataset.setDataHeadings(headings);
 
-            // Infer if the data is logNormalized by looking for negative data values.
-            // Assume it is not until proven otherwise
-            logNormalized = false;
+            // Scan data rows.  Large local files are split into chunks which are scanned in parallel,  the header
+            // has already been read.
+            merger = new ScanMerger(dataset, headings, headerRows, estLineCount);
+            if (ParallelLineParser.isSplittable(dataResourceLocator.getPath())) {
+                long dataStart = reader.getPosition();
+                is.close();
+                is = null;
+                ParallelLineParser.parse(dataResourceLocator.getPath(), dataStart,
+                        (lines, chunk) -> {
+                            ScanChunk scanChunk = new ScanChunk();
+                            scanRows(lines, chunk.start, headings, scanChunk, scanChunk.runs::add, 0);
+                            return scanChunk;
+                        },
+                        merger::addChunk);
+            } else {
+                ScanChunk scanChunk = new ScanChunk();
+                scanRows(reader, 0, headings, scanChunk, merger::addRun, estLineCount);
+                merger.addStats(scanChunk);
+            }
 
-            wgData = new WholeGenomeData(headings);
+        } catch (ParserException pe) {
+            if (merger != null) {
+                // Row line numbers are counted from the start of the scanned chunk
+                pe.setLineNumber(pe.getLineNumber() + merger.nLines);
+            }
+            throw pe;
+        } catch (FileNotFoundException e) {
+            // DialogUtils.showError("SNP file not found: " + dataSource.getCopyNoFile());
+            log.error("File not found: " + dataResourceLocator);
+            throw new RuntimeException(e);
+        } catch (Exception e) {
+            log.error("Exception when loading: " + dataResourceLocator.getPath(), e);
+            if (reader != null && headerRows != 0) {
+                throw new ParserException(e.getMessage(), e, headerRows, reader.getLine());
+            } else {
+                throw new RuntimeException(e);
+            }
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    log.error("Error closing IGVDataset stream", e);
+                }
+            }
+        }
 
-            int chrRowCount = 0;
+        merger.finish();
 
-            // Update
-            int updateCount = 5000;
-            long lastPosition = 0;
-            while ((nextLine = reader.readLine()) != null) {
+        return merger.chrSummaries;
+    }
 
-                if (igv != null && ++count % updateCount == 0) {
-                    igv.setStatusBarMessage("Loaded: " + count + " / " + estLineCount + " (est)");
-                }
-                // Distance since last sample
+    /**
+     * Scan data rows to the end of the reader,  passing each run of consecutive rows on the same chromosome to
+     * {@code runConsumer}.  Line numbers, including those of parser exceptions,  are counted from the first row read.
+     *
+     * @param reader       tokenizer positioned at the first data row
+     * @param offset       file offset of the reader's first byte
+     * @param headings
+     * @param scanChunk    receives the row count and data statistics
+     * @param runConsumer
+     * @param estLineCount estimated total line count,  for progress messages.  Zero to disable them.
+     */
+    private void scanRows(FieldTokenizer reader, long offset, String[] headings, ScanChunk scanChunk,
+                          Consumer<ChromosomeRun> runConsumer, int estLineCount) throws IOException {
 
-                String[] tokens = Globals.tabPattern.split(nextLine, -1);
-                int nTokens = tokens.length;
-                if (nTokens > 0) {
-                    String thisChr = genome.getCanonicalChrName(tokens[chrColumn]);
-                    if (chrSummary == null || !thisChr.equals(chrSummary.getName())) {
-                        // Update whole genome and previous chromosome summary, unless this is
-                        // the first chromosome
-                        if (chrSummary != null) {
-                            updateWholeGenome(chrSummary.getName(), dataset, headings, wgData);
-                            chrSummary.setNDataPoints(nRows);
-                        }
+        int skipColumns = hasCalls ? 2 : 1;
+        int updateCount = 5000;
+        int count = 0;
+        ChromosomeRun run = null;
+        long lastPosition = offset + reader.getPosition();
+
+        while (reader.nextLine()) {
 
-                        // Shart the next chromosome
-                        chrSummary = new ChromosomeSummary(thisChr, lastPosition);
-                        chrSummaries.add(chrSummary);
-                        nRows = 0;
-                        wgData = new WholeGenomeData(headings);
-                        chrRowCount = 0;
+            count++;
+            if (estLineCount > 0 && igv != null && count % updateCount == 0) {
+                igv.setStatusBarMessage("Loaded: " + count + " / " + estLineCount + " (est)");
+            }
 
+            try {
+                int nTokens = reader.splitTabs();
+                if (nTokens > 0) {
+                    String thisChr = genome.getCanonicalChrName(reader.getInternedString(chrColumn));
+                    if (run == null || !thisChr.equals(run.chr)) {
+                        if (run != null) {
+                            runConsumer.accept(run);
+                        }
+                        run = new ChromosomeRun(thisChr, lastPosition, count, headings);
                     }
-                    lastPosition = reader.getPosition();
 
                     int location = -1;
                     try {
-                        location = ParsingUtils.parseInt(tokens[startColumn]) - startBase;
+                        location = reader.getLenientInt(startColumn) - startBase;
 
                     } catch (NumberFormatException numberFormatException) {
-                        log.error("Column " + tokens[startColumn] + " is not a number");
+                        log.error("Column " + reader.getString(startColumn) + " is not a number");
                         throw new ParserException("Column " + (startColumn + 1) +
-                                " must contain an integer value." + " Found: " + tokens[startColumn],
-                                count + headerRows, nextLine);
+                                " must contain an integer value." + " Found: " + reader.getString(startColumn),
+                                count, reader.getLine());
                     }
 
                     int length = 1;
                     if (hasEndLocations) {
                         try {
-                            length = ParsingUtils.parseInt(tokens[endColumn].trim()) - location + 1;
+                            length = reader.getLenientInt(endColumn) - location + 1;
 
                         } catch (NumberFormatException numberFormatException) {
-                            log.error("Column " + tokens[endColumn] + " is not a number");
+                            log.error("Column " + reader.getString(endColumn) + " is not a number");
                             throw new ParserException("Column " + (endColumn + 1) +
-                                    " must contain an integer value." + " Found: " + tokens[endColumn],
-                                    count + headerRows, nextLine);
+                                    " must contain an integer value." + " Found: " + reader.getString(endColumn),
+                                    count, reader.getLine());
                         }
                     }
 
-                    updateLongestFeature(longestFeatureMap, thisChr, length);
+                    updateLongestFeature(scanChunk.longestFeatureMap, thisChr, length);
 
+                    WholeGenomeData wgData = run.wgData;
                     if (wgData.locations.size() > 0 && wgData.locations.get(wgData.locations.size() - 1) > location) {
-                        throw new ParserException("File is not sorted, .igv and .cn files must be sorted by start position." +
-                                " Use igvtools (File > Run igvtools..) to sort the file.", count + headerRows);
+                        throw new ParserException(UNSORTED_MESSAGE, count);
                     }
 
                     wgData.locations.add(location);
@@ -306,61 +352,33 @@ public class IGVDatasetParser {
                     for (int idx = 0; idx < headings.length; idx++) {
                         int i = firstDataColumn + idx * skipColumns;
 
-                        float copyNo = i < tokens.length ? readFloat(tokens[i]) : Float.NaN;
+                        float copyNo = i < nTokens ? reader.getFloat(i, Float.NaN) : Float.NaN;
 
                         if (!Float.isNaN(copyNo)) {
-                            dataMin = Math.min(dataMin, copyNo);
-                            dataMax = Math.max(dataMax, copyNo);
+                            scanChunk.dataMin = Math.min(scanChunk.dataMin, copyNo);
+                            scanChunk.dataMax = Math.max(scanChunk.dataMax, copyNo);
                         }
                         if (copyNo < 0) {
-                            logNormalized = true;
+                            scanChunk.logNormalized = true;
                         }
                         String heading = headings[idx];
                         wgData.data.get(heading).add(copyNo);
                     }
 
-                    nRows++;
-
-                }
-                chrRowCount++;
-            }
-
-            dataset.setLongestFeatureMap(longestFeatureMap);
-
-        } catch (ParserException pe) {
-            throw pe;
-        } catch (FileNotFoundException e) {
-            // DialogUtils.showError("SNP file not found: " + dataSource.getCopyNoFile());
-            log.error("File not found: " + dataResourceLocator);
-            throw new RuntimeException(e);
-        } catch (Exception e) {
-            log.error("Exception when loading: " + dataResourceLocator.getPath(), e);
-            if (nextLine != null && (count + headerRows != 0)) {
-                throw new ParserException(e.getMessage(), e, count + headerRows, nextLine);
-            } else {
-                throw new RuntimeException(e);
-            }
-        } finally {
-            if (is != null) {
-                try {
-                    is.close();
-                } catch (IOException e) {
-                    log.error("Error closing IGVDataset stream", e);
+                    run.nRows++;
                 }
+            } catch (ParserException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw new ParserException(e.getMessage(), e, count, reader.getLine());
             }
+            lastPosition = offset + reader.getPosition();
         }
 
-        // Update last chromosome
-        if (chrSummary != null) {
-            updateWholeGenome(chrSummary.getName(), dataset, headings, wgData);
-            chrSummary.setNDataPoints(nRows);
+        if (run != null) {
+            runConsumer.accept(run);
         }
-
-        dataset.setLogNormalized(logNormalized);
-        dataset.setDataMin(dataMin);
-        dataset.setDataMax(dataMax);
-
-        return chrSummaries;
+        scanChunk.nLines = count;
     }
 
     private void updateLongestFeature(Map<String, Integer> longestFeatureMap, String thisChr, int length) {
@@ -371,20 +389,6 @@ public class IGVDatasetParser {
         }
     }
 
-    private float readFloat(String token) {
-        float copyNo = Float.NaN;
-        try {
-            if (token != null) {
-                copyNo = Float.parseFloat(token);
-            }
-
-        } catch (NumberFormatException e) {
-            // This is an expected condition.
-        }
-        return copyNo;
-
-    }
-
     /**
      * Load data for a single chromosome.
      *
@@ -403,7 +407,7 @@ public class IGVDatasetParser {
 
             SeekableStream is = IGVSeekableStreamFactory.getInstance().getStreamFor(dataResourceLocator.getPath());
             is.seek(chrSummary.getStartPosition());
-            AsciiLineReader reader = new AsciiLineReader(is);
+            FieldTokenizer reader = new FieldTokenizer(is);
 
 
             // Create containers to hold data
@@ -419,40 +423,37 @@ public class IGVDatasetParser {
             // Begin loop through rows
             String chromosome = chrSummary.getName();
             boolean chromosomeStarted = false;
-            String nextLine = reader.readLine();
+            while (reader.nextLine() && !reader.isBlank()) {
 
-            while ((nextLine != null) && (nextLine.trim().length() > 0)) {
-
-                if (!nextLine.startsWith("#")) {
+                if (!reader.startsWith("#")) {
                     try {
-                        String[] tokens = Globals.tabPattern.split(nextLine, -1);
+                        int nTokens = reader.splitTabs();
 
-                        String thisChromosome = genome.getCanonicalChrName(tokens[chrColumn].trim());
+                        String thisChromosome = genome.getCanonicalChrName(reader.getInternedString(chrColumn));
                         if (thisChromosome.equals(chromosome)) {
                             chromosomeStarted = true;
 
                             // chromosomeData.setMarkerId(nRows, tokens[0]);
 
-                            // The probe.  A new string is created to prevent holding on to the entire row through a substring reference
-                            String probe = new String(tokens[probeColumn]);
+                            String probe = reader.getString(probeColumn);
                             probes.add(probe);
 
-                            int start = ParsingUtils.parseInt(tokens[startColumn].trim()) - startBase;
+                            int start = reader.getLenientInt(startColumn) - startBase;
                             if (hasEndLocations) {
-                                endLocations.add(ParsingUtils.parseInt(tokens[endColumn].trim()));
+                                endLocations.add(reader.getLenientInt(endColumn));
                             }
 
                             startLocations.add(start);
 
-                            if(tokens.length <= firstDataColumn + (dataHeaders.length - 1)*skipColumns){
-                                String msg = "Line has too few data columns: " + nextLine;
+                            if(nTokens <= firstDataColumn + (dataHeaders.length - 1)*skipColumns){
+                                String msg = "Line has too few data columns: " + reader.getLine();
                                 log.error(msg);
                                 throw new RuntimeException(msg);
                             }
 
                             for (int idx = 0; idx < dataHeaders.length; idx++) {
                                 int i = firstDataColumn + idx * skipColumns;
-                                float copyNo = i <= lastDataColumn ? readFloat(tokens[i]) : Float.NaN;
+                                float copyNo = i <= lastDataColumn ? reader.getFloat(i, Float.NaN) : Float.NaN;
                                 String heading = dataHeaders[idx];
                                 dataMap.get(heading).add(copyNo);
                             }
@@ -465,11 +466,9 @@ public class IGVDatasetParser {
                     } catch (NumberFormatException numberFormatException) {
 
                         // Skip line
-                        log.info("Skipping line (NumberFormatException) " + nextLine);
+                        log.info("Skipping line (NumberFormatException) " + reader.getLine());
                     }
                 }
-
-                nextLine = reader.readLine();
             }
 
             // Loop complete
@@ -681,19 +680,142 @@ public class IGVDatasetParser {
     class WholeGenomeData {
 
         String[] headings;
-        IntArrayList locations = new IntArrayList(50000);
+        IntArrayList locations = new IntArrayList(10000);
         Map<String, FloatArrayList> data = new HashMap();
 
         WholeGenomeData(String[] headings) {
             this.headings = headings;
             for (String h : headings) {
-                data.put(h, new FloatArrayList(50000));
+                data.put(h, new FloatArrayList(10000));
             }
         }
 
         int size() {
             return locations.size();
         }
+
+        void addAll(WholeGenomeData other) {
+            locations.addAll(other.locations);
+            for (String h : headings) {
+                data.get(h).addAll(other.data.get(h));
+            }
+        }
+    }
+
+    /**
+     * Consecutive data rows on one chromosome
+     */
+    class ChromosomeRun {
+
+        String chr;
+        long startPosition;
+        int firstLine;
+        int nRows = 0;
+        WholeGenomeData wgData;
+
+        ChromosomeRun(String chr, long startPosition, int firstLine, String[] headings) {
+            this.chr = chr;
+            this.startPosition = startPosition;
+            this.firstLine = firstLine;
+            this.wgData = new WholeGenomeData(headings);
+        }
+    }
+
+    /**
+     * Result of scanning a chunk of data rows
+     */
+    static class ScanChunk {
+
+        List<ChromosomeRun> runs = new ArrayList();
+        Map<String, Integer> longestFeatureMap = new HashMap();
+        float dataMin = 0;
+        float dataMax = 0;
+        boolean logNormalized = false;
+        int nLines = 0;
+    }
+
+    /**
+     * Joins chromosome runs, in file order,  into chromosome summaries and the whole genome view.  A chromosome
+     * split across chunks arrives as consecutive runs with the same name.
+     */
+    class ScanMerger {
+
+        IGVDataset dataset;
+        String[] headings;
+        int estLineCount;
+
+        List<ChromosomeSummary> chrSummaries = new ArrayList();
+        Map<String, Integer> longestFeatureMap = new HashMap();
+        float dataMin = 0;
+        float dataMax = 0;
+        boolean logNormalized = false;
+
+        // Lines preceding the chunk being merged,  including header rows
+        long nLines;
+
+        ChromosomeSummary chrSummary;
+        WholeGenomeData wgData;
+        int nRows;
+
+        ScanMerger(IGVDataset dataset, String[] headings, int headerRows, int estLineCount) {
+            this.dataset = dataset;
+            this.headings = headings;
+            this.nLines = headerRows;
+            this.estLineCount = estLineCount;
+        }
+
+        void addChunk(ScanChunk chunk) {
+            for (ChromosomeRun run : chunk.runs) {
+                addRun(run);
+            }
+            addStats(chunk);
+            if (igv != null) {
+                igv.setStatusBarMessage("Loaded: " + nLines + " / " + estLineCount + " (est)");
+            }
+        }
+
+        void addRun(ChromosomeRun run) {
+            if (chrSummary != null && run.chr.equals(chrSummary.getName())) {
+                if (wgData.size() > 0 && run.wgData.size() > 0 &&
+                        wgData.locations.get(wgData.size() - 1) > run.wgData.locations.get(0)) {
+                    throw new ParserException(UNSORTED_MESSAGE, run.firstLine);
+                }
+                wgData.addAll(run.wgData);
+                nRows += run.nRows;
+            } else {
+                finishChromosome();
+                chrSummary = new ChromosomeSummary(run.chr, run.startPosition);
+                chrSummaries.add(chrSummary);
+                wgData = run.wgData;
+                nRows = run.nRows;
+            }
+        }
+
+        void addStats(ScanChunk chunk) {
+            for (Map.Entry<String, Integer> entry : chunk.longestFeatureMap.entrySet()) {
+                updateLongestFeature(longestFeatureMap, entry.getKey(), entry.getValue());
+            }
+            dataMin = Math.min(dataMin, chunk.dataMin);
+            dataMax = Math.max(dataMax, chunk.dataMax);
+            logNormalized |= chunk.logNormalized;
+            nLines += chunk.nLines;
+        }
+
+        void finishChromosome() {
+            if (chrSummary != null) {
+                updateWholeGenome(chrSummary.getName(), dataset, headings, wgData);
+                chrSummary.setNDataPoints(nRows);
+                wgData = null;
+            }
+        }
+
+        void finish() {
+            finishChromosome();
+            dataset.setLongestFeatureMap(longestFeatureMap);
+            dataset.setLogNormalized(logNormalized);
+            dataset.setDataMin(dataMin);
+            dataset.setDataMax(dataMax);
+        }
     }
 
 }
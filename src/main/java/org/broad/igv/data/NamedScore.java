@@ -40,6 +40,10 @@ public class NamedScore extends BasicScore {
         this.probe = probe;
     }
 
+    public String getProbe() {
+        return probe;
+    }
+
     public String getValueString(double position, int mouseX, WindowFunction windowFunction) {
         StringBuffer buf = new StringBuffer();
         buf.append("Value: " + score);
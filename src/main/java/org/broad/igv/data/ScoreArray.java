@@ -0,0 +1,377 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.feature.LocusScore;
+
+import java.util.*;
+
+/**
+ * A list of scores stored as parallel primitive columns (starts, ends, values) rather than as individual
+ * {@link LocusScore} objects.  Data sources fill it with {@link #add(int, int, float)} and renderers read it with
+ * {@link #getStart(int)}, {@link #getEnd(int)} and {@link #getValue(int)}, so the common path allocates no
+ * per-bin objects.
+ * <p/>
+ * The class also implements {@code List<LocusScore>} for legacy callers.  {@link #get(int)} materializes a
+ * {@link BasicScore} (or {@link NamedScore} for "named" arrays) on demand.  Scores of any other type, for example
+ * {@link CompositeScore}, are retained as objects alongside their primitive columns so that nothing is lost.
+ * <p/>
+ * Views returned by {@link #subList(int, int)} share the columns of the parent and are read-only.
+ *
+ * @author jrobinso
+ */
+public class ScoreArray extends AbstractList<LocusScore> implements RandomAccess {
+
+    private int[] starts;
+    private int[] ends;
+    private float[] values;
+
+    // Optional columns, allocated on first use
+    private String[] names;
+    private LocusScore[] objects;
+
+    private int offset;
+    private int size;
+
+    private final boolean named;
+    private final boolean view;
+
+    public ScoreArray() {
+        this(16);
+    }
+
+    public ScoreArray(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * @param capacity initial capacity
+     * @param named    if true primitive entries are presented to legacy callers as {@link NamedScore}s, otherwise
+     *                 as {@link BasicScore}s.
+     */
+    public ScoreArray(int capacity, boolean named) {
+        capacity = Math.max(1, capacity);
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.values = new float[capacity];
+        this.named = named;
+        this.view = false;
+    }
+
+    private ScoreArray(ScoreArray parent, int fromIndex, int toIndex) {
+        this.starts = parent.starts;
+        this.ends = parent.ends;
+        this.values = parent.values;
+        this.names = parent.names;
+        this.objects = parent.objects;
+        this.offset = parent.offset + fromIndex;
+        this.size = toIndex - fromIndex;
+        this.named = parent.named;
+        this.view = true;
+    }
+
+    /**
+     * Return the argument if it is already a ScoreArray, otherwise copy the scores into a new one.
+     */
+    public static ScoreArray of(List<? extends LocusScore> scores) {
+        if (scores == null) {
+            return null;
+        }
+        if (scores instanceof ScoreArray) {
+            return (ScoreArray) scores;
+        }
+        ScoreArray array = new ScoreArray(scores.size());
+        for (LocusScore score : scores) {
+            array.add(score);
+        }
+        return array;
+    }
+
+    public int getStart(int index) {
+        checkIndex(index);
+        return starts[offset + index];
+    }
+
+    public int getEnd(int index) {
+        checkIndex(index);
+        return ends[offset + index];
+    }
+
+    public float getValue(int index) {
+        checkIndex(index);
+        return values[offset + index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public void add(int start, int end, float value) {
+        add(start, end, value, null);
+    }
+
+    public void add(int start, int end, float value, String name) {
+        checkMutable();
+        ensureCapacity(size + 1);
+        int idx = size++;
+        starts[idx] = start;
+        ends[idx] = end;
+        values[idx] = value;
+        if (name != null) {
+            setName(idx, name);
+        }
+    }
+
+    @Override
+    public boolean add(LocusScore score) {
+        checkMutable();
+        ensureCapacity(size + 1);
+        store(size++, score);
+        return true;
+    }
+
+    /**
+     * Append element {@code index} of {@code source}, copying columns directly when possible.
+     */
+    public void add(ScoreArray source, int index) {
+        if (source.named != named) {
+            add(source.get(index));
+            return;
+        }
+        source.checkIndex(index);
+        int srcIdx = source.offset + index;
+        checkMutable();
+        ensureCapacity(size + 1);
+        int idx = size++;
+        starts[idx] = source.starts[srcIdx];
+        ends[idx] = source.ends[srcIdx];
+        values[idx] = source.values[srcIdx];
+        if (source.names != null && source.names[srcIdx] != null) {
+            setName(idx, source.names[srcIdx]);
+        }
+        if (source.objects != null && source.objects[srcIdx] != null) {
+            setObject(idx, source.objects[srcIdx]);
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends LocusScore> scores) {
+        if (scores instanceof ScoreArray) {
+            ScoreArray source = (ScoreArray) scores;
+            ensureCapacity(size + source.size);
+            for (int i = 0; i < source.size; i++) {
+                add(source, i);
+            }
+            return source.size > 0;
+        } else {
+            checkMutable();
+            ensureCapacity(size + scores.size());
+            for (LocusScore score : scores) {
+                store(size++, score);
+            }
+            return scores.size() > 0;
+        }
+    }
+
+    @Override
+    public LocusScore get(int index) {
+        checkIndex(index);
+        int idx = offset + index;
+        if (objects != null && objects[idx] != null) {
+            return objects[idx];
+        }
+        if (named) {
+            return new NamedScore(starts[idx], ends[idx], values[idx], names == null ? null : names[idx]);
+        } else {
+            return new BasicScore(starts[idx], ends[idx], values[idx]);
+        }
+    }
+
+    @Override
+    public LocusScore set(int index, LocusScore score) {
+        checkMutable();
+        LocusScore previous = get(index);
+        store(index, score);
+        return previous;
+    }
+
+    @Override
+    public List<LocusScore> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + size);
+        }
+        return new ScoreArray(this, fromIndex, toIndex);
+    }
+
+    /**
+     * Return the index of the last score starting before {@code position}, or -1 if there is none.  Scores are
+     * assumed to be sorted by start.  Mirrors {@link org.broad.igv.feature.FeatureUtils#getIndexBefore(double, List)}.
+     */
+    public int getIndexBefore(double position) {
+        if (size == 0) {
+            return -1;
+        }
+        if (starts[offset + size - 1] <= position) {
+            return size - 1;
+        }
+        if (starts[offset] >= position) {
+            return -1;
+        }
+        int low = 0;
+        int high = size - 1;
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (starts[offset + mid] < position) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Stable sort by start position, without materializing score objects.
+     */
+    public void sortByStart() {
+        checkMutable();
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) starts[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] sortedStarts = new int[starts.length];
+        int[] sortedEnds = new int[starts.length];
+        float[] sortedValues = new float[starts.length];
+        String[] sortedNames = names == null ? null : new String[starts.length];
+        LocusScore[] sortedObjects = objects == null ? null : new LocusScore[starts.length];
+        for (int i = 0; i < size; i++) {
+            int idx = (int) keys[i];
+            sortedStarts[i] = starts[idx];
+            sortedEnds[i] = ends[idx];
+            sortedValues[i] = values[idx];
+            if (sortedNames != null) sortedNames[i] = names[idx];
+            if (sortedObjects != null) sortedObjects[i] = objects[idx];
+        }
+        starts = sortedStarts;
+        ends = sortedEnds;
+        values = sortedValues;
+        names = sortedNames;
+        objects = sortedObjects;
+    }
+
+    /**
+     * Approximate memory footprint in bytes, for weighing cache entries.  Retained score objects are counted at
+     * a nominal size, names are assumed to be shared with the data source.
+     */
+    public long getSizeInBytes() {
+        long capacity = starts.length;
+        long bytes = 64 + capacity * 12;
+        if (names != null) {
+            bytes += capacity * 8;
+        }
+        if (objects != null) {
+            bytes += capacity * 8;
+            for (int i = offset; i < offset + size; i++) {
+                if (objects[i] != null) bytes += 64;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Release unused capacity.  Call when the array is complete and about to be cached.
+     */
+    public ScoreArray trim() {
+        if (!view && starts.length > size) {
+            int n = Math.max(1, size);
+            starts = Arrays.copyOf(starts, n);
+            ends = Arrays.copyOf(ends, n);
+            values = Arrays.copyOf(values, n);
+            if (names != null) names = Arrays.copyOf(names, n);
+            if (objects != null) objects = Arrays.copyOf(objects, n);
+        }
+        return this;
+    }
+
+    private void store(int idx, LocusScore score) {
+        starts[idx] = score.getStart();
+        ends[idx] = score.getEnd();
+        values[idx] = score.getScore();
+
+        Class c = score.getClass();
+        if (named && c == NamedScore.class) {
+            String probe = ((NamedScore) score).getProbe();
+            if (probe != null || names != null) {
+                setName(idx, probe);
+            }
+            if (objects != null) objects[idx] = null;
+        } else if (!named && c == BasicScore.class) {
+            if (objects != null) objects[idx] = null;
+        } else {
+            setObject(idx, score);
+        }
+    }
+
+    private void setName(int idx, String name) {
+        if (names == null) {
+            names = new String[starts.length];
+        }
+        names[idx] = name;
+    }
+
+    private void setObject(int idx, LocusScore score) {
+        if (objects == null) {
+            objects = new LocusScore[starts.length];
+        }
+        objects[idx] = score;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > starts.length) {
+            int n = Math.max(capacity, starts.length + (starts.length >> 1) + 1);
+            starts = Arrays.copyOf(starts, n);
+            ends = Arrays.copyOf(ends, n);
+            values = Arrays.copyOf(values, n);
+            if (names != null) names = Arrays.copyOf(names, n);
+            if (objects != null) objects = Arrays.copyOf(objects, n);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private void checkMutable() {
+        if (view) {
+            throw new UnsupportedOperationException("ScoreArray views are read-only");
+        }
+    }
+}
@@ -30,7 +30,6 @@ package org.broad.igv.data;
 
 import org.broad.igv.feature.LocusScore;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -48,7 +47,7 @@ public class SummaryTile {
 
 
     public SummaryTile() {
-        summaryScores = new ArrayList(1000);
+        summaryScores = new ScoreArray(1000, true);
     }
 
     public SummaryTile(List<LocusScore> summaryScores) {
@@ -60,6 +59,15 @@ public class SummaryTile {
     }
 
 
+    public void addScore(int start, int end, float value, String name) {
+        if (summaryScores instanceof ScoreArray) {
+            ((ScoreArray) summaryScores).add(start, end, value, name);
+        } else {
+            summaryScores.add(new NamedScore(start, end, value, name));
+        }
+    }
+
+
     public void addAllScores(Collection<? extends LocusScore> scores) {
         summaryScores.addAll(scores);
     }
@@ -46,15 +46,19 @@ import org.broad.igv.tools.StatusMonitor;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.util.MagetabSignalDialog;
+import org.broad.igv.util.FieldTokenizer;
+import org.broad.igv.util.ParallelLineParser;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import htsjdk.tribble.readers.AsciiLineReader;
+import htsjdk.tribble.readers.LineReader;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 /**
  * TODO -- handle case with probe file
@@ -201,24 +205,21 @@ public class ExpressionFileParser {
      */
     public void parse(ExpressionDataset dataset) {
 
-        // Create a buffer for the string split utility.  We use  a custom utility as opposed
-        // to String.split() for performance.
+        // Data rows are split with a FieldTokenizer,  which parses values without creating a String per cell
 
         dataset.setType(TrackType.GENE_EXPRESSION);
 
-        BufferedReader reader = null;
-        String nextLine = null;
+        FieldTokenizer reader = null;
         int lineCount = 0;
         //String[] columnHeadings = null;
         try {
 
-            reader = ParsingUtils.openBufferedReader(dataFileLocator);
+            reader = new FieldTokenizer(ParsingUtils.openInputStreamGZ(dataFileLocator));
 
             // Parse the header(s) to determine the precise format.
             FormatDescriptor formatDescriptor = parseHeader(reader, type, dataset);
             final int probeColumn = formatDescriptor.probeColumn;
             final int descriptionColumn = formatDescriptor.descriptionColumn;
-            int nDataColumns = formatDescriptor.dataColumns.length;
 
             dataset.setColumnHeadings(formatDescriptor.dataHeaders);
 
@@ -227,54 +228,70 @@ public class ExpressionFileParser {
                 dataColumnIndexMap.put(formatDescriptor.dataHeaders[i], i);
             }
 
-            // Loop through the data rows
+            // Loop through the data rows.  Large local files are split into chunks which are parsed in parallel,
+            // the rows of each chunk are then added in file order.
 
-            while ((nextLine = reader.readLine()) != null) {
+            if (ParallelLineParser.isSplittable(dataFileLocator.getPath())) {
+                long dataStart = reader.getPosition();
+                reader.close();
+                reader = null;
+                ParallelLineParser.parse(dataFileLocator.getPath(), dataStart,
+                        (lines, chunk) -> {
+                            RowChunk rowChunk = new RowChunk();
+                            while (lines.nextLine()) {
+                                int nTokens = lines.splitTabs();
+                                String probeId = lines.getString(probeColumn);
+                                rowChunk.probeIds.add(probeId);
+                                rowChunk.descriptions.add(
+                                        (descriptionColumn >= 0) ? lines.getString(descriptionColumn) : null);
+                                rowChunk.values.add(parseValues(lines, nTokens, formatDescriptor));
+                                if (type == FileType.MAGE_TAB && probeId.startsWith("cg")) {
+                                    rowChunk.methylation = true;
+                                }
+                            }
+                            return rowChunk;
+                        },
+                        rowChunk -> {
+                            if (Thread.currentThread().isInterrupted()) {
+                                throw new CancellationException();
+                            }
+                            if (rowChunk.methylation) {
+                                dataset.setType(TrackType.DNA_METHYLATION);
+                            }
+                            for (int i = 0; i < rowChunk.probeIds.size(); i++) {
+                                addRow(rowChunk.probeIds.get(i), rowChunk.descriptions.get(i), rowChunk.values.get(i));
+                            }
+                            if (statusMonitor != null) {
+                                statusMonitor.incrementPercentComplete(rowChunk.probeIds.size() / 1000);
+                            }
+                        });
+            } else {
+                while (reader.nextLine()) {
 
-                String[] tokens = Globals.tabPattern.split(nextLine, -1);
-                int nTokens = tokens.length;
-                String probeId = new String(tokens[probeColumn]);
-                float[] values = new float[nDataColumns];
+                    int nTokens = reader.splitTabs();
+                    String probeId = reader.getString(probeColumn);
 
-                String description = (descriptionColumn >= 0) ? tokens[descriptionColumn] : null;
+                    String description = (descriptionColumn >= 0) ? reader.getString(descriptionColumn) : null;
 
-                if (type == FileType.MAGE_TAB && probeId.startsWith("cg")) {
-                    // TODO -- this is a very ugly and fragile method to determine data type! Change this!
-                    dataset.setType(TrackType.DNA_METHYLATION);
-                }
+                    if (type == FileType.MAGE_TAB && probeId.startsWith("cg")) {
+                        // TODO -- this is a very ugly and fragile method to determine data type! Change this!
+                        dataset.setType(TrackType.DNA_METHYLATION);
+                    }
 
-                for (int i = 0; i < nDataColumns; i++) {
-                    try {
-                        int dataIndex = formatDescriptor.dataColumns[i];
+                    addRow(probeId, description, parseValues(reader, nTokens, formatDescriptor));
+                    lineCount++;
 
-                        // If we are out of value tokens, or the cell is blank, assign NAN to the cell.
-                        if ((dataIndex >= nTokens) || (tokens[dataIndex].length() == 0)) {
-                            values[i] = Float.NaN;
-                        } else {
-                            values[i] = Float.parseFloat(tokens[dataIndex]);
+                    // This method is designed to be interruptable (canceled by
+                    // user.  Check every 1000 lines for an interrupt.
+                    if (lineCount == 1000) {
+                        checkForInterrupt();
+                        lineCount = 0;
+                        if (statusMonitor != null) {
+                            statusMonitor.incrementPercentComplete(1);
                         }
-
-                    } catch (NumberFormatException numberFormatException) {
-
-                        // This s an expected condition.  IGV uses NaN to
-                        // indicate non numbers (missing data values)
-                        values[i] = Float.NaN;
                     }
-
-                }
-                addRow(probeId, description, values);
-                lineCount++;
-
-                // This method is designed to be interruptable (canceled by
-                // user.  Check every 1000 lines for an interrupt.
-                if (lineCount == 1000) {
-                    checkForInterrupt();
-                    lineCount = 0;
-                    if (statusMonitor != null) {
-                        statusMonitor.incrementPercentComplete(1);
-                    }
-                }
-            }    // End loop through lines
+                }    // End loop through lines
+            }
 
 
             // Sort row for each chromosome by start location
@@ -296,28 +313,38 @@ public class ExpressionFileParser {
 
         } catch (FileNotFoundException ex) {
             throw new RuntimeException(ex);
-        } catch (InterruptedException e) {
+        } catch (InterruptedException | CancellationException e) {
             throw new RuntimeException("Operation cancelled");
         } catch (Exception e) {
             e.printStackTrace();
-            if (nextLine != null && lineCount != 0) {
-                throw new ParserException(e.getMessage(), e, lineCount, nextLine);
+            if (reader != null && lineCount != 0) {
+                throw new ParserException(e.getMessage(), e, lineCount, reader.getLine());
             } else {
                 throw new RuntimeException(e);
             }
         } finally {
             if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-
-                }
+                reader.close();
             }
         }
 
     }
 
 
+    /**
+     * Return the values of the data columns of the current row.  If we are out of value tokens, or the cell is blank
+     * or not a number, NaN is assigned to the cell.  IGV uses NaN to indicate non numbers (missing data values)
+     */
+    private static float[] parseValues(FieldTokenizer reader, int nTokens, FormatDescriptor formatDescriptor) {
+        int[] dataColumns = formatDescriptor.dataColumns;
+        float[] values = new float[dataColumns.length];
+        for (int i = 0; i < dataColumns.length; i++) {
+            int dataIndex = dataColumns[i];
+            values[i] = dataIndex < nTokens ? reader.getFloat(dataIndex, Float.NaN) : Float.NaN;
+        }
+        return values;
+    }
+
     public void addRow(String probeId, String description, float[] values) {
         List<Locus> loci = locusHelper.getLoci(probeId, description, genome.getId());
         if (loci != null) {
@@ -455,7 +482,7 @@ public class ExpressionFileParser {
         Thread.sleep(1);    // <- check for interrupted thread
     }
 
-    public static FormatDescriptor parseHeader(BufferedReader reader, FileType type, ExpressionDataset dataset) throws IOException {
+    public static FormatDescriptor parseHeader(LineReader reader, FileType type, ExpressionDataset dataset) throws IOException {
 
 
         int descriptionColumn = -1;    // Default - no description column
@@ -549,7 +576,7 @@ public class ExpressionFileParser {
         return new FormatDescriptor(probeColumn, descriptionColumn, dataColumns, dataHeaders, firstHeaderRowTokens.length);
     }
 
-    private static String findHeaderLine(BufferedReader reader, FileType type, ExpressionDataset dataset) throws IOException {
+    private static String findHeaderLine(LineReader reader, FileType type, ExpressionDataset dataset) throws IOException {
         String nextLine;
         String headerLine;
         if (type == FileType.GCT) {
@@ -613,6 +640,17 @@ public class ExpressionFileParser {
         return qCol;
     }
 
+    /**
+     * Data rows parsed from a chunk of the file,  in file order
+     */
+    static class RowChunk {
+
+        List<String> probeIds = new ArrayList<>();
+        List<String> descriptions = new ArrayList<>();
+        List<float[]> values = new ArrayList<>();
+        boolean methylation = false;
+    }
+
     class Row {
 
         String feature;
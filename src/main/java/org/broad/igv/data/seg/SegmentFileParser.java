@@ -28,14 +28,20 @@ package org.broad.igv.data.seg;
 //~--- non-JDK imports --------------------------------------------------------
 
 import org.apache.log4j.Logger;
-import org.broad.igv.Globals;
 import org.broad.igv.exceptions.DataLoadException;
 import org.broad.igv.exceptions.ParserException;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackType;
+import org.broad.igv.util.FieldTokenizer;
+import org.broad.igv.util.ParallelLineParser;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
-import htsjdk.tribble.readers.AsciiLineReader;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Example
@@ -91,11 +97,11 @@ public class SegmentFileParser implements SegFileParser {
             dataset.setTrackType(TrackType.CNV);
         }
 
-        AsciiLineReader reader = null;
+        FieldTokenizer reader = null;
         String nextLine = null;
         int lineNumber = 0;
         try {
-            reader = ParsingUtils.openAsciiReader(locator);
+            reader = new FieldTokenizer(ParsingUtils.openInputStreamGZ(locator));
 
             // Parse comments, if any
             nextLine = reader.readLine();
@@ -127,34 +133,101 @@ public class SegmentFileParser implements SegFileParser {
                 dataColumn = headings.length - 1;
             }
 
-            while ((nextLine = reader.readLine()) != null && (nextLine.trim().length() > 0)) {
+            // Large local files are split into chunks which are parsed in parallel,  the segments of each chunk are
+            // then added to the dataset in file order.
+            if (ParallelLineParser.isSplittable(locator.getPath())) {
+                long dataStart = reader.getPosition();
+                reader.close();
+                reader = null;
+                SegmentMerger merger = new SegmentMerger(dataset, lineNumber);
+                ParallelLineParser.parse(locator.getPath(), dataStart,
+                        (lines, chunk) -> {
+                            SegmentChunk segmentChunk = new SegmentChunk();
+                            try {
+                                segmentChunk.endOfData = parseRows(lines, headings, genome, segmentChunk);
+                            } catch (ParserException e) {
+                                segmentChunk.error = e;
+                            }
+                            return segmentChunk;
+                        },
+                        merger::addChunk);
+            } else {
+                try {
+                    parseRows(reader, headings, genome, new SegmentChunk() {
+                        @Override
+                        void add(String trackId, String chr, int start, int end, float value, String description) {
+                            dataset.addSegment(trackId, chr, start, end, value, description);
+                        }
+                    });
+                } catch (ParserException e) {
+                    e.setLineNumber(e.getLineNumber() + lineNumber);
+                    throw e;
+                }
+            }
+
+        } catch (DataLoadException pe) {
+            throw pe;
+        } catch (ParserException pe) {
+            throw pe;
+        } catch (Exception e) {
+            if (reader != null && lineNumber != 0) {
+                throw new ParserException(e.getMessage(), e, lineNumber, reader.getLine());
+            } else {
+                throw new RuntimeException(e);
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+
+        dataset.sortLists();
+        return dataset;
+    }
+
+
+    /**
+     * Parse segment rows to the end of the reader,  or to the first blank line.  Line numbers,  including those of
+     * parser exceptions,  are counted from the first row read.
+     *
+     * @param segments receives the segments,  and the number of lines read
+     * @return true if parsing stopped at a blank line,  which ends the data
+     */
+    private boolean parseRows(FieldTokenizer reader, String[] headings, Genome genome, SegmentChunk segments)
+            throws IOException {
+
+        int lineNumber = 0;
+        try {
+            while (reader.nextLine()) {
+                if (reader.isBlank()) {
+                    return true;
+                }
                 lineNumber++;
 
-                String[] tokens = Globals.tabPattern.split(nextLine, -1);
-                int nTokens = tokens.length;
+                int nTokens = reader.splitTabs();
                 if (nTokens > 4) {
                     int start;
                     int end;
                     try {
-                        start = ParsingUtils.parseInt(tokens[startColumn].trim());
+                        start = reader.getLenientInt(startColumn);
                     } catch (NumberFormatException numberFormatException) {
                         throw new ParserException("Column " + (startColumn + 1) + " must contain a numeric value.",
-                                lineNumber, nextLine);
+                                lineNumber, reader.getLine());
                     }
                     try {
-                        end = ParsingUtils.parseInt(tokens[endColumn].trim());
+                        end = reader.getLenientInt(endColumn);
                     } catch (NumberFormatException numberFormatException) {
                         throw new ParserException("Column " + (endColumn + 1) + " must contain a numeric value.",
-                                lineNumber, nextLine);
+                                lineNumber, reader.getLine());
                     }
 
-                    String chr = tokens[chrColumn].trim();
+                    String chr = reader.getInternedString(chrColumn);
                     if (genome != null) {
                         chr = genome.getCanonicalChrName(chr);
                     }
 
 
-                    String trackId = new String(tokens[sampleColumn].trim());
+                    String trackId = reader.getInternedString(sampleColumn);
 
                     StringBuffer desc = null;
                     if (birdsuite) {
@@ -162,48 +235,95 @@ public class SegmentFileParser implements SegFileParser {
                         desc.append("<br>");
                         desc.append(headings[6]);
                         desc.append("=");
-                        desc.append(tokens[6]);
+                        desc.append(reader.getString(6));
                     } else {
-                        if (tokens.length > 4) {
+                        if (nTokens > 4) {
                             desc = new StringBuffer();
                             for (int i = 4; i < headings.length - 1; i++) {
                                 desc.append("<br>");
                                 desc.append(headings[i]);
                                 desc.append(": ");
-                                desc.append(tokens[i]);
+                                desc.append(reader.getString(i));
                             }
                         }
                     }
 
 
                     try {
-                        float value = Float.parseFloat(tokens[dataColumn]);
+                        float value = reader.getFloat(dataColumn);
                         String description = desc == null ? null : desc.toString();
-                        dataset.addSegment(trackId, chr, start, end, value, description);
+                        segments.add(trackId, chr, start, end, value, description);
                     } catch (NumberFormatException numberFormatException) {
                         // log.info("Skipping line: " + nextLine);
                     }
                 }
             }
+        } catch (ParserException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ParserException(e.getMessage(), e, lineNumber, reader.getLine());
+        } finally {
+            segments.nLines = lineNumber;
+        }
+        return false;
+    }
 
-        } catch (DataLoadException pe) {
-            throw pe;
-        } catch (ParserException pe) {
-            throw pe;
-        } catch (Exception e) {
-            if (nextLine != null && lineNumber != 0) {
-                throw new ParserException(e.getMessage(), e, lineNumber, nextLine);
-            } else {
-                throw new RuntimeException(e);
+    /**
+     * Segments parsed from a chunk of the file,  in file order
+     */
+    static class SegmentChunk {
+
+        List<String> trackIds = new ArrayList<>();
+        List<String> chrs = new ArrayList<>();
+        IntArrayList starts = new IntArrayList();
+        IntArrayList ends = new IntArrayList();
+        FloatArrayList values = new FloatArrayList();
+        List<String> descriptions = new ArrayList<>();
+        int nLines = 0;
+        boolean endOfData = false;
+        ParserException error;
+
+        void add(String trackId, String chr, int start, int end, float value, String description) {
+            trackIds.add(trackId);
+            chrs.add(chr);
+            starts.add(start);
+            ends.add(end);
+            values.add(value);
+            descriptions.add(description);
+        }
+    }
+
+    /**
+     * Adds the segments of each chunk to the dataset,  in file order,  up to the first blank line.
+     */
+    static class SegmentMerger {
+
+        SegmentedAsciiDataSet dataset;
+        boolean endOfData = false;
+
+        // Lines preceding the chunk being merged,  including header rows
+        int nLines;
+
+        SegmentMerger(SegmentedAsciiDataSet dataset, int headerLines) {
+            this.dataset = dataset;
+            this.nLines = headerLines;
+        }
+
+        void addChunk(SegmentChunk chunk) {
+            if (endOfData) {
+                return;
             }
-        } finally {
-            if (reader != null) {
-                reader.close();
+            if (chunk.error != null) {
+                chunk.error.setLineNumber(chunk.error.getLineNumber() + nLines);
+                throw chunk.error;
             }
+            for (int i = 0; i < chunk.trackIds.size(); i++) {
+                dataset.addSegment(chunk.trackIds.get(i), chunk.chrs.get(i), chunk.starts.get(i), chunk.ends.get(i),
+                        chunk.values.get(i), chunk.descriptions.get(i));
+            }
+            nLines += chunk.nLines;
+            endOfData = chunk.endOfData;
         }
-
-        dataset.sortLists();
-        return dataset;
     }
 
 
@@ -67,6 +67,10 @@ public class ParserException extends RuntimeException {
         this.lineNumber = lineNumber;
     }
 
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
 
     public void setLine(String line) {
         if (line != null) {
@@ -51,9 +51,13 @@ import java.io.BufferedReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author jrobinso
@@ -61,6 +65,9 @@ import java.util.Set;
 public abstract class AbstractFeatureParser implements FeatureParser {
 
     private static Logger log = Logger.getLogger(IGV.class);
+
+    static final int BATCH_SIZE = 5000;
+    static final int MAX_PENDING_BATCHES = 64;
     protected int startBase = 0;
     boolean gffTags = false;
 
@@ -110,6 +117,15 @@ public abstract class AbstractFeatureParser implements FeatureParser {
         int maxLogErrors = 10;
         int nErrors = 0;
         int nLines = 0;
+
+        // Feature lines are decoded in batches on the fork-join pool if the parser allows it.  Directives are
+        // still handled here, in order, and batches are joined in order.
+        boolean concurrent = canParseConcurrently() && ForkJoinPool.getCommonPoolParallelism() > 1;
+        ArrayDeque<ForkJoinTask<List<Feature>>> pendingBatches = new ArrayDeque<>();
+        AtomicInteger batchErrors = new AtomicInteger();
+        List<String> batch = null;
+        int batchFirstLine = 0;
+
         try {
             while ((nextLine = reader.readLine()) != null) {
                 nextLine = nextLine.trim();
@@ -149,6 +165,19 @@ public abstract class AbstractFeatureParser implements FeatureParser {
                         } else if (nextLine.startsWith("#gffTags")) {
                             gffTags = true;
                         }
+                    } else if (concurrent) {
+                        if (batch == null) {
+                            batch = new ArrayList<String>(BATCH_SIZE);
+                            batchFirstLine = nLines;
+                        }
+                        batch.add(nextLine);
+                        if (batch.size() == BATCH_SIZE) {
+                            pendingBatches.add(submitBatch(batch, batchFirstLine, batchErrors, maxLogErrors));
+                            batch = null;
+                            if (pendingBatches.size() > MAX_PENDING_BATCHES) {
+                                features.addAll(pendingBatches.poll().join());
+                            }
+                        }
                     } else {
                         Feature feature = parseLine(nextLine);
                         if (feature != null) {
@@ -163,14 +192,26 @@ public abstract class AbstractFeatureParser implements FeatureParser {
                     nErrors++;
                 }
             }
+            if (batch != null) {
+                pendingBatches.add(submitBatch(batch, batchFirstLine, batchErrors, maxLogErrors));
+            }
+            joinBatches(pendingBatches, features);
         } catch (java.io.EOFException e) {
 
             // This exception is due to a known bug with java zip library.  Not
             // in general a real error, and nothing we can do about it in any
             // event.
+            if (batch != null) {
+                pendingBatches.add(submitBatch(batch, batchFirstLine, batchErrors, maxLogErrors));
+            }
+            joinBatches(pendingBatches, features);
             return features;
         } catch (Exception e) {
-            if (nextLine != null && nLines != 0) {
+            cancelBatches(pendingBatches);
+            if (concurrent && e instanceof ParserException) {
+                // Thrown by a batch, and already identifies the line
+                throw (ParserException) e;
+            } else if (nextLine != null && nLines != 0) {
                 throw new ParserException(e.getMessage(), e, nLines, nextLine);
             } else {
                 throw new RuntimeException(e);
@@ -186,6 +227,48 @@ public abstract class AbstractFeatureParser implements FeatureParser {
 
     abstract protected Feature parseLine(String nextLine);
 
+    /**
+     * Return true if {@link #parseLine(String)} can safely be called from several threads at once.
+     */
+    protected boolean canParseConcurrently() {
+        return false;
+    }
+
+    private ForkJoinTask<List<Feature>> submitBatch(List<String> lines, int firstLine, AtomicInteger nErrors, int maxLogErrors) {
+        return ForkJoinPool.commonPool().submit(() -> {
+            List<Feature> batchFeatures = new ArrayList<Feature>(lines.size());
+            int lineNumber = firstLine;
+            for (String line : lines) {
+                try {
+                    Feature feature = parseLine(line);
+                    if (feature != null) {
+                        batchFeatures.add(feature);
+                    }
+                } catch (NumberFormatException e) {
+                    if (nErrors.getAndIncrement() < maxLogErrors) {
+                        log.error("Number format error parsing line: " + line, e);
+                    }
+                } catch (Exception e) {
+                    throw new ParserException(e.getMessage(), e, lineNumber, line);
+                }
+                lineNumber++;
+            }
+            return batchFeatures;
+        });
+    }
+
+    private static void joinBatches(ArrayDeque<ForkJoinTask<List<Feature>>> pendingBatches, List<Feature> features) {
+        while (!pendingBatches.isEmpty()) {
+            features.addAll(pendingBatches.poll().join());
+        }
+    }
+
+    private static void cancelBatches(ArrayDeque<ForkJoinTask<List<Feature>>> pendingBatches) {
+        for (ForkJoinTask<List<Feature>> task : pendingBatches) {
+            task.cancel(false);
+        }
+    }
+
     /**
      * Convenience method.  Write a list of features out as a BED file
      *
@@ -26,6 +26,7 @@
 package org.broad.igv.feature;
 
 import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.feature.tribble.CodecFactory;
 import htsjdk.tribble.AsciiFeatureCodec;
 import htsjdk.tribble.Feature;
 import htsjdk.tribble.FeatureCodec;
@@ -52,4 +53,9 @@ public class FeatureCodecParser extends AbstractFeatureParser {
     protected Feature parseLine(String nextLine) {
         return codec.decode(nextLine);
     }
+
+    @Override
+    protected boolean canParseConcurrently() {
+        return CodecFactory.canDecodeConcurrently(codec);
+    }
 }
@@ -114,6 +114,26 @@ public class FeatureUtils {
         Collections.sort(features, FEATURE_START_COMPARATOR);
     }
 
+    /**
+     * Sort the feature list by ascending start value,  using a parallel sort for large lists.  Like
+     * {@link #sortFeatureList(List)} the sort is stable.
+     */
+    public static <T extends Feature> void parallelSortFeatureList(List<T> features) {
+        if (features.size() < PARALLEL_SORT_THRESHOLD) {
+            sortFeatureList(features);
+        } else {
+            Feature[] array = features.toArray(new Feature[features.size()]);
+            Arrays.parallelSort(array, FEATURE_START_COMPARATOR);
+            ListIterator<T> iter = features.listIterator();
+            for (Feature f : array) {
+                iter.next();
+                iter.set((T) f);
+            }
+        }
+    }
+
+    private static final int PARALLEL_SORT_THRESHOLD = 100000;
+
 
     /**
      * Null safe version of {@linkplain #combineSortedFeatureListsNoDups(java.util.Iterator, java.util.Iterator, int, int)}
@@ -458,6 +458,15 @@ public class Genome {
         return sequence.isFasta();
     }
 
+    /**
+     * Release files held open by the sequence.  Called when this genome is replaced.
+     */
+    public void close() {
+        if (sequence != null) {
+            sequence.close();
+        }
+    }
+
     public String getDisplayName() {
         return displayName;
     }
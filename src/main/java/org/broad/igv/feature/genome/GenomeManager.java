@@ -134,7 +134,11 @@ public class GenomeManager {
         if (genome != null) {
             PreferencesManager.getPreferences().setLastGenome(genome.getId());
         }
+        Genome previousGenome = this.currentGenome;
         this.currentGenome = genome;
+        if (previousGenome != null && previousGenome != genome) {
+            previousGenome.close();
+        }
         if (genome != null) {
             if (IGV.hasInstance()) {
                 IGV.getInstance().getSession().clearHistory();
@@ -52,4 +52,9 @@ public interface Sequence {
     boolean isRemote();
 
     default boolean isFasta() {return false;}
+
+    /**
+     * Release any open files.  Called when the genome is replaced.
+     */
+    default void close() {}
 }
@@ -30,8 +30,10 @@
 package org.broad.igv.feature.genome;
 
 import org.apache.log4j.Logger;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.ui.panel.ReferenceFrame;
-import org.broad.igv.util.ObjectCache;
+import org.broad.igv.util.collections.WeightedLRUCache;
 
 import java.util.Hashtable;
 import java.util.List;
@@ -48,10 +50,13 @@ public class SequenceWrapper implements Sequence  {
     private static int tileSize = 1000000;
 
     private Sequence sequence;
-    private ObjectCache<String, SequenceTile> sequenceCache = new ObjectCache<String, SequenceTile>(50);
+    private WeightedLRUCache<String, SequenceTile> sequenceCache;
 
     public SequenceWrapper(Sequence sequence) {
         this.sequence = sequence;
+        // Tiles are aligned to multiples of tileSize and weighed by their sequence length
+        long cacheBytes = PreferencesManager.getPreferences().getAsInt(Constants.SEQUENCE_CACHE_SIZE) * 1024L * 1024L;
+        this.sequenceCache = new WeightedLRUCache<>(cacheBytes, tile -> tile.getSize());
     }
 
 
@@ -112,6 +117,11 @@ public class SequenceWrapper implements Sequence  {
         return sequence.isFasta();
     }
 
+    @Override
+    public void close() {
+        sequence.close();
+    }
+
     /**
      * Return the reference dna sequence for the exact interval specified.
      *
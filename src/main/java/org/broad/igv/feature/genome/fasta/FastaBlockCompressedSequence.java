@@ -1,11 +1,8 @@
 package org.broad.igv.feature.genome.fasta;
 
-import htsjdk.samtools.seekablestream.SeekableBufferedStream;
-import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.util.BlockCompressedInputStream;
 import org.broad.igv.util.LittleEndianInputStream;
 import org.broad.igv.util.ParsingUtils;
-import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 
 import java.io.BufferedInputStream;
 import java.io.EOFException;
@@ -46,27 +43,17 @@ public class FastaBlockCompressedSequence extends FastaIndexedSequence {
         int d1 = (int) (posStart - m1.uncompressedOffset);
         long vp1 = m1.compressedOffset << 16 | d1;
 
-        SeekableStream ss = null;
-        try {
-            int nBytes = (int) (posEnd - posStart);
+        int nBytes = (int) (posEnd - posStart);
 
-            int bufferSize = Math.max(512000, nBytes / 8);
+        // The shared stream keeps a position per thread,  so each call gets an independent view of the file
+        BlockCompressedInputStream bis = new BlockCompressedInputStream(getStream());
 
-            ss = new SeekableBufferedStream(IGVSeekableStreamFactory.getInstance().getStreamFor(path), bufferSize);
+        byte[] bytes = new byte[nBytes];
 
-            BlockCompressedInputStream bis = new BlockCompressedInputStream(ss);
+        bis.seek(vp1);
+        readFully(bytes, bis);
 
-            byte[] bytes = new byte[nBytes];
-
-            bis.seek(vp1);
-            readFully(bytes, bis);
-
-            return bytes;
-        } finally {
-            if (ss != null) {
-                ss.close();
-            }
-        }
+        return bytes;
     }
 
     protected Mapping findBlockContaining(long uoffset) {
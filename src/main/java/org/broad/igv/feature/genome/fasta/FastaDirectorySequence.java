@@ -111,5 +111,12 @@ public class FastaDirectorySequence implements Sequence {
         return false;
     }
 
+    @Override
+    public void close() {
+        for (FastaIndexedSequence seq : sequenceMap.values()) {
+            seq.close();
+        }
+    }
+
 
 }
@@ -31,8 +31,9 @@ import org.broad.igv.feature.genome.Sequence;
 import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+import org.broad.igv.util.stream.PooledSeekableStream;
+import org.broad.igv.util.stream.RemoteFileCache;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -47,10 +48,16 @@ public class FastaIndexedSequence implements Sequence {
 
     static Logger log = Logger.getLogger(FastaIndexedSequence.class);
 
+    // Concurrent readers include the sequence track, alignment mismatch rendering, and translation
+    private static final int MAX_STREAMS = 4;
+    private static final int STREAM_BUFFER_SIZE = 512000;
+
     final FastaIndex index;
     final String path;
     final long contentLength;
 
+    private SeekableStream stream;
+
     private final ArrayList<String> chromoNamesList;
 
     public FastaIndexedSequence(String path) throws IOException {
@@ -64,7 +71,7 @@ public class FastaIndexedSequence implements Sequence {
 
         if (indexPath == null) indexPath = path + ".fai";
 
-        index = new FastaIndex(indexPath);
+        index = new FastaIndex(RemoteFileCache.getInstance().getLocalPath(indexPath));
         chromoNamesList = new ArrayList<>(index.getSequenceNames());
     }
 
@@ -130,26 +137,34 @@ public class FastaIndexedSequence implements Sequence {
             // Read all the bytes in the range.  This will include endline characters
             byte[] allBytes = readBytes(startByte, endByte);
 
-            // Create the array for the sequence -- this will be "allBytes" without the endline characters.
-            ByteArrayOutputStream bos = new ByteArrayOutputStream(end - start);
-
+            // Strip the endline characters,  copying one line at a time into the sequence array
+            final int allBytesLength = allBytes.length;
+            byte[] seqBytes = new byte[end - start];
             int srcPos = 0;
+            int destPos = 0;
 
-            // Copy first line
-            final int allBytesLength = allBytes.length;
+            // First line,  possibly partial
             if (offset > 0) {
                 int nBases = Math.min(end - start, basesPerLine - offset);
-                bos.write(allBytes, srcPos, nBases);
+                System.arraycopy(allBytes, srcPos, seqBytes, destPos, nBases);
                 srcPos += (nBases + nEndBytes);
+                destPos += nBases;
             }
 
-            while (srcPos < allBytesLength) {
-                int nBases = Math.min(basesPerLine, allBytesLength - srcPos);
-                bos.write(allBytes, srcPos, nBases);
+            while (srcPos < allBytesLength && destPos < seqBytes.length) {
+                int nBases = Math.min(Math.min(basesPerLine, allBytesLength - srcPos), seqBytes.length - destPos);
+                System.arraycopy(allBytes, srcPos, seqBytes, destPos, nBases);
                 srcPos += (nBases + nEndBytes);
+                destPos += nBases;
             }
 
-            return bos.toByteArray();
+            if (destPos < seqBytes.length) {
+                // Malformed index or truncated file
+                byte[] tmp = new byte[destPos];
+                System.arraycopy(seqBytes, 0, tmp, 0, destPos);
+                seqBytes = tmp;
+            }
+            return seqBytes;
 
         } catch (IOException e) {
             log.error("Error loading sequence " + chr + ":" + qstart + "-" + qend, e);
@@ -170,19 +185,41 @@ public class FastaIndexedSequence implements Sequence {
      * @throws IOException
      */
     protected byte[] readBytes(long posStart, long posEnd) throws IOException {
+        int nBytes = (int) (posEnd - posStart);
+        byte[] bytes = new byte[nBytes];
+        SeekableStream ss = getStream();
+        ss.seek(posStart);
+        ss.readFully(bytes);
+        return bytes;
+    }
 
-        SeekableStream ss = null;
-        try {
-            ss = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
-            int nBytes = (int) (posEnd - posStart);
-            byte[] bytes = new byte[nBytes];
-            ss.seek(posStart);
-            ss.readFully(bytes);
-            return bytes;
-        } finally {
-            if (ss != null) {
-                ss.close();
+    /**
+     * Return the stream for the fasta file.  The stream is opened on first use and kept until {@link #close()}.
+     * Positions are per thread,  so it can be shared by concurrent readers.
+     * <p/>
+     * The underlying streams are not registered with the global close registries,  which are cleared on every
+     * session reset while the genome lives on.
+     */
+    protected synchronized SeekableStream getStream() throws IOException {
+        if (stream == null) {
+            stream = new PooledSeekableStream(() -> IGVSeekableStreamFactory.getInstance().getUnregisteredStreamFor(path),
+                    MAX_STREAMS, STREAM_BUFFER_SIZE);
+        }
+        return stream;
+    }
+
+    /**
+     * Close the streams for the fasta file.  They are reopened if the sequence is used again.
+     */
+    @Override
+    public synchronized void close() {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                log.error("Error closing " + path, e);
             }
+            stream = null;
         }
     }
 
@@ -148,6 +148,19 @@ public class CodecFactory {
     }
 
 
+    /**
+     * Return true if, once the header has been read, {@code codec} can decode lines from several threads at once.
+     * Comment ("#") lines must still be handled by the caller,  as some codecs update header state from them.
+     *
+     * @param codec
+     * @return
+     */
+    public static boolean canDecodeConcurrently(FeatureCodec codec) {
+        Class codecClass = codec.getClass();
+        return codecClass == IGVBEDCodec.class || codecClass == GFFCodec.class ||
+                codecClass == UCSCGeneTableCodec.class;
+    }
+
     /**
      * Return the appropriate VCFCodec based on the version tag.
      * <p/>
@@ -36,6 +36,7 @@ import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackProperties;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.color.ColorUtilities;
+import org.broad.igv.util.FieldTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.StringUtils;
 import org.broad.igv.util.collections.CI;
@@ -79,6 +80,9 @@ public class GFFCodec extends AsciiFeatureCodec<Feature> {
     private Genome genome;
     private boolean fastaSection = false;
     private Version version;
+
+    // One tokenizer per thread,  a codec can be shared by readers on several threads
+    private final ThreadLocal<FieldTokenizer> tokenizer = ThreadLocal.withInitial(FieldTokenizer::new);
     boolean gencode = false;
 
     public enum Version {
@@ -196,8 +200,9 @@ public class GFFCodec extends AsciiFeatureCodec<Feature> {
             return null;
         }
 
-        String[] tokens = Globals.tabPattern.split(line, -1);
-        int nTokens = tokens.length;
+        FieldTokenizer tokens = tokenizer.get();
+        tokens.setLine(line);
+        int nTokens = tokens.splitTabs();
 
         // GFF3 files have 9 tokens,
         // TODO -- the attribute column is optional for GFF 2 and earlier (8 tokens required)
@@ -205,14 +210,14 @@ public class GFFCodec extends AsciiFeatureCodec<Feature> {
             return null;
         }
 
-        String chrToken = tokens[0].trim();
-        String featureType = StringUtils.intern(tokens[2].trim());
+        String chrToken = tokens.getInternedString(0);
+        String featureType = tokens.getInternedString(2);
 
         if (ignoredTypes.contains(featureType)) {
             return null;
         }
 
-        String chromosome = genome == null ? StringUtils.intern(chrToken) : genome.getCanonicalChrName(chrToken);
+        String chromosome = genome == null ? chrToken : genome.getCanonicalChrName(chrToken);
 
         // GFF coordinates are 1-based inclusive (length = end - start + 1)
         // IGV (UCSC) coordinates are 0-based exclusive.  Adjust start and end accordingly
@@ -220,17 +225,20 @@ public class GFFCodec extends AsciiFeatureCodec<Feature> {
         int end;
         int col = 3;
         try {
-            start = Integer.parseInt(tokens[col]) - 1;
+            start = tokens.getInt(col) - 1;
             if (start < 0) throw new ParserException("Start index must be 1 or larger; GFF is 1-based", -1, line);
             col++;
-            end = Integer.parseInt(tokens[col]);
+            end = tokens.getInt(col);
         } catch (NumberFormatException ne) {
             String msg = String.format("Column %d must contain a numeric value. %s", col + 1, ne.getMessage());
             throw new ParserException(msg, -1, line);
         }
-        Strand strand = convertStrand(tokens[6]);
+        Strand strand = Strand.NONE;
+        if (tokens.getFieldLength(6) == 1) {
+            strand = convertStrand(tokens.getFirstChar(6));
+        }
 
-        String attributeString = tokens[8];
+        String attributeString = tokens.getString(8);
 
         MultiMap<String, String> attributes = new MultiMap<String, String>();
 
@@ -254,9 +262,8 @@ public class GFFCodec extends AsciiFeatureCodec<Feature> {
         }
 
         // Column 8 is phase for gff3,  frame for gff2.
-        String phaseString = tokens[7].trim();
-        if (!phaseString.equals(".")) {
-            int phaseOrFrame = Integer.parseInt(phaseString);
+        if (!tokens.fieldEquals(7, ".")) {
+            int phaseOrFrame = tokens.getInt(7);
             int frame;
 
             if (version == Version.GFF3) {
@@ -304,11 +311,11 @@ public class GFFCodec extends AsciiFeatureCodec<Feature> {
         return header;
     }
 
-    private Strand convertStrand(String strandString) {
+    private Strand convertStrand(char strandChar) {
         Strand strand = Strand.NONE;
-        if (strandString.equals("-")) {
+        if (strandChar == '-') {
             strand = Strand.NEGATIVE;
-        } else if (strandString.equals("+")) {
+        } else if (strandChar == '+') {
             strand = Strand.POSITIVE;
         }
 
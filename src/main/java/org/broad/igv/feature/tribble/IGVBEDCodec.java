@@ -26,13 +26,13 @@
 package org.broad.igv.feature.tribble;
 
 import org.apache.log4j.Logger;
-import org.broad.igv.Globals;
 import org.broad.igv.cli_plugin.Argument;
 import org.broad.igv.cli_plugin.LineFeatureDecoder;
 import org.broad.igv.cli_plugin.LineFeatureEncoder;
 import org.broad.igv.feature.*;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.ui.color.ColorUtilities;
+import org.broad.igv.util.FieldTokenizer;
 import org.broad.igv.util.StringUtils;
 import org.broad.igv.util.collections.MultiMap;
 import htsjdk.tribble.Feature;
@@ -74,24 +74,30 @@ public class IGVBEDCodec extends UCSCCodec<BasicFeature> implements LineFeatureE
 
     //@Override
     public BasicFeature decode(String[] tokens) {
+        FieldTokenizer tokenizer = this.tokenizer.get();
+        tokenizer.setFields(tokens);
+        return decode(tokenizer);
+    }
+
+    private BasicFeature decode(FieldTokenizer tokens) {
 
         // The first 3 columns are non optional for BED.  We will relax this
         // and only require 2.
-        int tokenCount = tokens.length;
+        int tokenCount = tokens.getFieldCount();
 
         if (tokenCount < 2) {
             return null;
         }
 
-        String c = tokens[0];
+        String c = tokens.getInternedString(0);
         String chr = genome == null ? c : genome.getCanonicalChrName(c);
 
         //BED format, and IGV, use starting element as 0.
-        int start = Integer.parseInt(tokens[1]);
+        int start = tokens.getInt(1);
 
         int end = start + 1;
         if (tokenCount > 2) {
-            end = Integer.parseInt(tokens[2]);
+            end = tokens.getInt(2);
         }
 
         BasicFeature feature = featureType == FeatureType.SPLICE_JUNCTION ?
@@ -105,7 +111,7 @@ public class IGVBEDCodec extends UCSCCodec<BasicFeature> implements LineFeatureE
         if (tokenCount > 3) {
             if (isGffTags()) {
                 MultiMap<String, String> atts = new MultiMap<String, String>();
-                tagHelper.parseAttributes(tokens[3], atts);
+                tagHelper.parseAttributes(tokens.getString(3), atts);
                 String name = tagHelper.getName(atts);
                 feature.setName(name);
 
@@ -132,7 +138,7 @@ public class IGVBEDCodec extends UCSCCodec<BasicFeature> implements LineFeatureE
 
 
             } else {
-                String name = tokens[3].replaceAll("\"", "");
+                String name = tokens.getString(3).replaceAll("\"", "");
                 if (name.equals(".")) name = "";   // Convention
                 feature.setName(name);
                 feature.setIdentifier(name);
@@ -144,7 +150,7 @@ public class IGVBEDCodec extends UCSCCodec<BasicFeature> implements LineFeatureE
 
         if (tokenCount > 4) {
             try {
-                float score = tokens[4].equals(".") ? 1000 : Float.parseFloat(tokens[4]);
+                float score = tokens.fieldEquals(4, ".") ? 1000 : tokens.getFloat(4);
                 feature.setScore(score);
                 if (featureType == FeatureType.SPLICE_JUNCTION) {
                     ((SpliceJunctionFeature) feature).setJunctionDepth((int) score);
@@ -157,9 +163,7 @@ public class IGVBEDCodec extends UCSCCodec<BasicFeature> implements LineFeatureE
 
         // Strand
         if (tokenCount > 5) {
-            String strandString = tokens[5].trim();
-            char strand = (strandString.length() == 0)
-                    ? ' ' : strandString.charAt(0);
+            char strand = tokens.getFirstChar(5);
 
             if (strand == '-') {
                 feature.setStrand(Strand.NEGATIVE);
@@ -173,11 +177,11 @@ public class IGVBEDCodec extends UCSCCodec<BasicFeature> implements LineFeatureE
         // Thick ends
         if (tokenCount > 7) {
             try {
-                int thickStart = Integer.parseInt(tokens[6]);
-                int thickEnd = Integer.parseInt(tokens[7]);
+                int thickStart = tokens.getInt(6);
+                int thickEnd = tokens.getInt(7);
                 if (thickStart >= start && thickEnd <= end) {
-                    feature.setThickStart(Integer.parseInt(tokens[6]));
-                    feature.setThickEnd(Integer.parseInt(tokens[7]));
+                    feature.setThickStart(thickStart);
+                    feature.setThickEnd(thickEnd);
                 }
             } catch (NumberFormatException e) {
                 return feature;
@@ -187,7 +191,7 @@ public class IGVBEDCodec extends UCSCCodec<BasicFeature> implements LineFeatureE
 
         // Color
         if (tokenCount > 8 && featureType != FeatureType.GAPPED_PEAK) {
-            String colorString = tokens[8];
+            String colorString = tokens.getString(8);
             if (colorString.trim().length() > 0 && !colorString.equals(".")) {
                 feature.setColor(ColorUtilities.stringToColor(colorString));
             }
@@ -210,22 +214,14 @@ public class IGVBEDCodec extends UCSCCodec<BasicFeature> implements LineFeatureE
 
         if (tokenCount > 14 && featureType == FeatureType.GAPPED_PEAK) {
             MultiMap<String, String> attributes = new MultiMap<String, String>();
-            attributes.put("Signal Value", tokens[12]);
-            attributes.put("pValue (-log10)", tokens[13]);
-            attributes.put("qValue (-log10)", tokens[14]);
+            attributes.put("Signal Value", tokens.getString(12));
+            attributes.put("pValue (-log10)", tokens.getString(13));
+            attributes.put("qValue (-log10)", tokens.getString(14));
             feature.setAttributes(attributes);
         } else if (tokenCount > 13 && featureType == FeatureType.SPLICE_JUNCTION) {
             try {
-                String[] startFlanking = tokens[12].split(",");
-                int[] startFlankingDeptyArray = new int[startFlanking.length];
-                for (int i = 0; i < startFlanking.length; i++) {
-                    startFlankingDeptyArray[i] = Integer.parseInt(startFlanking[i]);
-                }
-                String[] endFlanking = tokens[13].split(",");
-                int[] endFlankingDeptyArray = new int[endFlanking.length];
-                for (int i = 0; i < endFlanking.length; i++) {
-                    endFlankingDeptyArray[i] = Integer.parseInt(endFlanking[i]);
-                }
+                int[] startFlankingDeptyArray = tokens.getIntList(12, ',');
+                int[] endFlankingDeptyArray = tokens.getIntList(13, ',');
                 ((SpliceJunctionFeature) feature).setStartFlankingRegionDepthArray(startFlankingDeptyArray);
                 ((SpliceJunctionFeature) feature).setEndFlankingRegionDepthArray(endFlankingDeptyArray);
             } catch (NumberFormatException e) {
@@ -256,7 +252,8 @@ public class IGVBEDCodec extends UCSCCodec<BasicFeature> implements LineFeatureE
                 && feature.getStrand() != Strand.NONE;
     }
 
-    private String[] tokens = new String[50];
+    // Lines are split into a tokenizer,  one per thread as a codec can be shared by readers on several threads
+    private final ThreadLocal<FieldTokenizer> tokenizer = ThreadLocal.withInitial(FieldTokenizer::new);
 
     @Override
     public BasicFeature decode(String nextLine) {
@@ -270,7 +267,9 @@ public class IGVBEDCodec extends UCSCCodec<BasicFeature> implements LineFeatureE
             return null;
         }
 
-        tokens = Globals.whitespacePattern.split(trimLine);
+        FieldTokenizer tokens = tokenizer.get();
+        tokens.setLine(trimLine);
+        tokens.splitWhitespace();
         BasicFeature feature = decode(tokens);
         feature.setRepresentation(nextLine);
         return feature;
@@ -296,22 +295,22 @@ public class IGVBEDCodec extends UCSCCodec<BasicFeature> implements LineFeatureE
     }
 
 
-    private void createExons(int start, String[] tokens, BasicFeature gene, String chr,
+    private void createExons(int start, FieldTokenizer tokens, BasicFeature gene, String chr,
                              Strand strand) throws NumberFormatException {
 
-        int cdStart = Integer.parseInt(tokens[6]);
-        int cdEnd = Integer.parseInt(tokens[7]);
+        int cdStart = tokens.getInt(6);
+        int cdEnd = tokens.getInt(7);
 
-        int exonCount = Integer.parseInt(tokens[9]);
-        String[] exonSizes = Globals.commaPattern.split(tokens[10]);
-        String[] startsBuffer = Globals.commaPattern.split(tokens[11]);
+        int exonCount = tokens.getInt(9);
+        int[] exonSizes = tokens.getIntList(10, ',');
+        int[] startsBuffer = tokens.getIntList(11, ',');
 
         int exonNumber = (strand == Strand.NEGATIVE ? exonCount : 1);
 
         if (startsBuffer.length == exonSizes.length) {
             for (int i = 0; i < startsBuffer.length; i++) {
-                int exonStart = start + Integer.parseInt(startsBuffer[i]);
-                int exonEnd = exonStart + Integer.parseInt(exonSizes[i]);
+                int exonStart = start + startsBuffer[i];
+                int exonEnd = exonStart + exonSizes[i];
                 Exon exon = new Exon(chr, exonStart, exonEnd, strand);
                 exon.setCodingStart(cdStart);
                 exon.setCodingEnd(cdEnd);
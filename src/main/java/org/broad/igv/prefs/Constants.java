@@ -78,6 +78,10 @@ final public class Constants {
 
     // Chart (bar, heatmap, plots) options
     public static final String NORMALIZE_COVERAGE = "NORMALIZE_COVERAGE";
+    public static final String TDF_CACHE_SIZE = "TDF.CACHE_SIZE_MB";
+    public static final String PERCENTILE_SKETCH_SIZE = "TDF.PERCENTILE_SKETCH_SIZE";
+    public static final String BIGWIG_ZOOM_PYRAMID = "BIGWIG.ZOOM_PYRAMID";
+    public static final String SEQUENCE_CACHE_SIZE = "SEQUENCE.CACHE_SIZE_MB";
     public static final String CHART_DRAW_TOP_BORDER = "CHART.DRAW_TOP_BORDER";
     public static final String CHART_DRAW_BOTTOM_BORDER = "CHART.DRAW_BOTTOM_BORDER";
     public static final String CHART_COLOR_BORDERS = "CHART.COLOR_BORDERS";
@@ -145,6 +149,9 @@ final public class Constants {
     public static final String SAM_SHOW_GROUP_SEPARATOR = "SAM.SHOW_GROUP_SEPARATOR";
     public static final String SAM_COMPLETE_READS_ONLY = "SAM.COMPLETE_READS_ONLY";
     public static final String SAM_REDUCED_MEMORY_MODE = "SAM.REDUCED_MEMORY_MODE";
+    public static final String SAM_COMPACT_MEMORY_MODE = "SAM.COMPACT_MEMORY_MODE";
+    public static final String SAM_PREFETCH = "SAM.PREFETCH";
+    public static final String SAM_INCREMENTAL_LOADING = "SAM.INCREMENTAL_LOADING";
     public static final String SAM_HIDE_SMALL_INDEL = "SAM.HIDE_SMALL_INDEL";
     public static final String SAM_SMALL_INDEL_BP_THRESHOLD = "SAM.SMALL_INDEL_BP_THRESHOLD";
     public static final String SAM_LINK_READS = "SAM.LINK_READS";
@@ -239,6 +246,7 @@ final public class Constants {
     // Port settings
     public static final String PORT_ENABLED = "PORT_ENABLED";
     public static final String PORT_NUMBER = "PORT_NUMBER";
+    public static final String PORT_MAX_CONNECTIONS = "PORT_MAX_CONNECTIONS";
 
     // Database support -- never deployed
     public static final String DB_ENABLED = "DB_ENABLED";
@@ -549,6 +549,21 @@ public class IGVPreferences {
         clearCaches();
     }
 
+    /**
+     * Remove a temporary override that had no user value to replace,  reverting to the default.  Unlike
+     * {@link #remove(String)} alignment tracks are reloaded or refreshed if the preference affects them.
+     *
+     * @param key
+     */
+    public void removeOverride(String key) {
+        overrideKeys.remove(key);
+        userPreferences.remove(key);
+        Map<String, String> updatedPrefs = new HashMap<String, String>();
+        updatedPrefs.put(key, null);
+        checkForAlignmentChanges(updatedPrefs);
+        clearCaches();
+    }
+
     public void setShowAttributeView(boolean isShowable) {
         put(SHOW_ATTRIBUTE_VIEWS_KEY, Boolean.toString(isShowable));
     }
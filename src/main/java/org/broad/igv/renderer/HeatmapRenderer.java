@@ -25,6 +25,7 @@
 
 package org.broad.igv.renderer;
 
+import org.broad.igv.data.ScoreArray;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.track.RenderContext;
@@ -78,15 +79,16 @@ public class HeatmapRenderer extends DataRenderer {
         int lastPStart = 0;
         int lastW = 0;
 
-        for (LocusScore score : scores) {
+        ScoreArray scoreArray = ScoreArray.of(scores);
+        for (int i = 0; i < scoreArray.size(); i++) {
             if (lastPStart > maxX) {
                 break;
             }
 
             // Note -- don't cast these to an int until the range is checked,
             // otherwise could get an overflow.
-            float fStart = (float) ((score.getStart() - origin) / locScale);
-            float fEnd = (float) ((score.getEnd() - origin) / locScale);
+            float fStart = (float) ((scoreArray.getStart(i) - origin) / locScale);
+            float fEnd = (float) ((scoreArray.getEnd(i) - origin) / locScale);
             // float fw = fEnd - fStart;
             int pStart = (int) fStart;
             int pEnd = (int) fEnd;
@@ -100,7 +102,7 @@ public class HeatmapRenderer extends DataRenderer {
 
             int w = Math.max(min, pEnd - pStart);
 
-            float dataY = track.logScaleData(score.getScore());
+            float dataY = track.logScaleData(scoreArray.getValue(i));
             Color graphColor = colorScale.getColor(dataY);
 
             if ((pStart + w) >= 0 && (lastPStart <= maxX)) {
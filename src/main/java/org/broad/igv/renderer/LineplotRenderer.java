@@ -33,6 +33,7 @@
  */
 package org.broad.igv.renderer;
 
+import org.broad.igv.data.ScoreArray;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.track.RenderContext;
@@ -90,13 +91,14 @@ public class LineplotRenderer extends XYPlotRenderer {
 
         int lastPx = 0;
         int lastPy = Integer.MIN_VALUE;
-        for (LocusScore score : locusScores) {
+        ScoreArray scores = ScoreArray.of(locusScores);
+        for (int i = 0; i < scores.size(); i++) {
             // Note -- don't cast these to an int until the range is checked.
             // could get an overflow.
-            double x = ((score.getStart() - origin) / locScale);
-            double dx = (score.getEnd() - score.getStart()) / locScale;
+            double x = ((scores.getStart(i) - origin) / locScale);
+            double dx = (scores.getEnd(i) - scores.getStart(i)) / locScale;
 
-            float dataY = score.getScore();
+            float dataY = scores.getValue(i);
 
             // Compute the pixel y location.  
             double y = adjustedRect.getY() + (maxValue - dataY) * yScaleFactor;
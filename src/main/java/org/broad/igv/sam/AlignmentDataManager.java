@@ -28,6 +28,7 @@ package org.broad.igv.sam;
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.event.RefreshEvent;
+import org.broad.igv.event.ViewChange;
 import org.broad.igv.feature.Chromosome;
 import org.broad.igv.feature.Range;
 import org.broad.igv.feature.genome.Genome;
@@ -46,6 +47,12 @@ import org.broad.igv.util.collections.IntArrayList;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import static org.broad.igv.prefs.Constants.*;
 
@@ -58,6 +65,13 @@ public class AlignmentDataManager implements IGVEventObserver {
 
     private static Logger log = Logger.getLogger(AlignmentDataManager.class);
 
+    /**
+     * Prefetch when the view is expected to reach the edge of the loaded interval within this time
+     */
+    private static final long PREFETCH_HORIZON_MS = 3000;
+
+    private static ExecutorService prefetchExecutor;
+
 
     private List<AlignmentInterval> intervalCache;
     private ResourceLocator locator;
@@ -71,17 +85,23 @@ public class AlignmentDataManager implements IGVEventObserver {
     AlignmentTrack.ExperimentType inferredExperimentType;
     private Set<Track> subscribedTracks;
 
+    private final Object prefetchLock = new Object();
+    private volatile Prefetch prefetch;
+    private FrameMotion lastMotion;
+    private AlignmentTrack.RenderOptions renderOptions;   // From the most recent load, used for prefetches
+
     public AlignmentDataManager(ResourceLocator locator, Genome genome) throws IOException {
         this.locator = locator;
         reader = new AlignmentTileLoader(AlignmentReaderFactory.getReader(locator));
         peStats = new HashMap();
         initLoadOptions();
         initChrMap(genome);
-        intervalCache = Collections.synchronizedList(new ArrayList<>());
+        intervalCache = new CopyOnWriteArrayList<>();
         subscribedTracks = Collections.synchronizedSet(new HashSet<>());
 
         IGVEventBus.getInstance().subscribe(FrameManager.ChangeEvent.class, this);
         IGVEventBus.getInstance().subscribe(RefreshEvent.class, this);
+        IGVEventBus.getInstance().subscribe(ViewChange.class, this);
     }
 
     public void receiveEvent(Object event) {
@@ -90,6 +110,10 @@ public class AlignmentDataManager implements IGVEventObserver {
             trimCache();
         } else if (event instanceof RefreshEvent) {
             clear();
+        } else if (event instanceof ViewChange) {
+            if (!FrameManager.isGeneListMode()) {
+                updatePrefetch(FrameManager.getDefaultFrame());
+            }
         } else {
             log.info("Unknown event type: " + event.getClass());
         }
@@ -321,7 +345,16 @@ public class AlignmentDataManager implements IGVEventObserver {
 
         if (isLoading(referenceFrame)) return;   // Already oading
 
+        // A prefetch holds the load lock while running.  Wait for it only if it covers this frame.
+        Prefetch p = prefetch;
+        if (p != null && !p.range.contains(referenceFrame.getCurrentRange())) {
+            cancelPrefetch();
+        }
+        this.renderOptions = renderOptions;
+
         synchronized (loadLock) {
+            if (isLoaded(referenceFrame)) return;  // Loaded by a prefetch while waiting
+
             Range range = referenceFrame.getCurrentRange();
 
             isLoading.add(range);
@@ -347,13 +380,22 @@ public class AlignmentDataManager implements IGVEventObserver {
             log.debug("Loading alignments: " + chr + ":" + adjustedStart + "-" + adjustedEnd + " for " + AlignmentDataManager.this);
 
 
-            AlignmentInterval loadedInterval = loadInterval(chr, adjustedStart, adjustedEnd, renderOptions);
+            AlignmentInterval extendedInterval = expandEnds ?
+                    extendInterval(chr, adjustedStart, adjustedEnd, renderOptions) : null;
 
-            trimCache();
+            if (extendedInterval == null) {
+
+                AlignmentInterval loadedInterval = loadInterval(chr, adjustedStart, adjustedEnd, renderOptions);
+
+                trimCache();
 
-            intervalCache.add(loadedInterval);
+                intervalCache.add(loadedInterval);
 
-            packAlignments(renderOptions);
+                packAlignments(renderOptions);
+
+            } else {
+                trimCache();
+            }
             isLoading.remove(range);
 
             //  IGVEventBus.getInstance().post(new DataLoadedEvent(referenceFrame));
@@ -362,21 +404,256 @@ public class AlignmentDataManager implements IGVEventObserver {
     }
 
 
+    /**
+     * Extend a loaded interval adjacent to or overlapping start - end by loading only the missing flank.  The
+     * alignments, counts, splice junctions, and downsampled intervals of the flank are merged with those of the
+     * loaded interval, which is trimmed if it extends well beyond start - end on the other side.  The extended
+     * interval replaces the loaded one in the cache.
+     *
+     * @return the extended interval, or null if there is no interval that can be extended
+     */
+    private AlignmentInterval extendInterval(String chr, int start, int end, AlignmentTrack.RenderOptions renderOptions) {
+
+        // In gene list mode the interval might also be in view of another frame
+        if (!PreferencesManager.getPreferences().getAsBoolean(SAM_INCREMENTAL_LOADING) ||
+                FrameManager.isGeneListMode()) {
+            return null;
+        }
+
+        // Find an interval missing alignments on one side of start - end only
+        AlignmentInterval base = null;
+        for (AlignmentInterval interval : intervalCache) {
+            if (interval.getChr().equals(chr) && interval.getStart() <= end && interval.getEnd() >= start &&
+                    (interval.getStart() <= start) != (interval.getEnd() >= end) &&
+                    interval.getCounts() instanceof DenseAlignmentCounts) {
+                base = interval;
+                break;
+            }
+        }
+        if (base == null) {
+            return null;
+        }
+
+        boolean right = base.getEnd() < end;
+        int flankStart = right ? base.getEnd() : start;
+        int flankEnd = right ? end : base.getStart();
+        int slack = (end - start) / 2;
+        int newStart = right ? (base.getStart() < start - slack ? start : base.getStart()) : start;
+        int newEnd = right ? end : (base.getEnd() > end + slack ? end : base.getEnd());
+
+        log.debug("Extending alignments: " + chr + ":" + base.getStart() + "-" + base.getEnd() + " to " +
+                newStart + "-" + newEnd);
+
+        String sequence = chrMappings.containsKey(chr) ? chrMappings.get(chr) : chr;
+        SpliceJunctionHelper flankJunctionHelper = new SpliceJunctionHelper(this.loadOptions);
+        final AlignmentTrack.BisulfiteContext bisulfiteContext =
+                renderOptions != null ? renderOptions.bisulfiteContext : null;
+        AlignmentTileLoader.AlignmentTile t = reader.loadTile(sequence, flankStart, flankEnd, flankJunctionHelper,
+                new DownsampleOptions(), null, peStats, bisulfiteContext, () -> false, base);
+        if (!(t.getCounts() instanceof DenseAlignmentCounts) ||
+                getBisulfiteContext(base.getCounts()) != getBisulfiteContext(t.getCounts())) {
+            return null;
+        }
+
+        List<Alignment> flankAlignments = t.getAlignments();
+        List<Alignment> baseAlignments = base.getAlignments();
+        List<Alignment> alignments = new ArrayList<>(baseAlignments.size() + flankAlignments.size());
+        if (!right) alignments.addAll(flankAlignments);
+        for (Alignment alignment : baseAlignments) {
+            if (alignment.getEnd() > newStart && alignment.getStart() < newEnd) {
+                alignments.add(alignment);
+            }
+        }
+        if (right) alignments.addAll(flankAlignments);
+
+        List<DownsampledInterval> downsampledIntervals = new ArrayList<>();
+        if (!right) downsampledIntervals.addAll(t.getDownsampledIntervals());
+        for (DownsampledInterval interval : base.getDownsampledIntervals()) {
+            if (interval.getEnd() > newStart && interval.getStart() < newEnd) {
+                downsampledIntervals.add(interval);
+            }
+        }
+        if (right) downsampledIntervals.addAll(t.getDownsampledIntervals());
+
+        AlignmentCounts counts = DenseAlignmentCounts.merge(newStart, newEnd,
+                (DenseAlignmentCounts) base.getCounts(), (DenseAlignmentCounts) t.getCounts());
+        SpliceJunctionHelper spliceJunctionHelper =
+                SpliceJunctionHelper.merge(base.getSpliceJunctionHelper(), flankJunctionHelper);
+
+        AlignmentInterval extended = new AlignmentInterval(chr, newStart, newEnd, alignments, counts,
+                spliceJunctionHelper, downsampledIntervals);
+        extended.packAlignments(base, flankAlignments, right, renderOptions);
+
+        intervalCache.add(extended);
+        intervalCache.remove(base);
+        return extended;
+    }
+
+    private static AlignmentTrack.BisulfiteContext getBisulfiteContext(AlignmentCounts counts) {
+        BisulfiteCounts bisulfiteCounts = ((DenseAlignmentCounts) counts).getBisulfiteCounts();
+        return bisulfiteCounts == null ? null : bisulfiteCounts.bisulfiteContext;
+    }
+
     /**
      * Remove out-of-view intervals from the cache.  This is O(N) where N = #frames X #intervals.   It is assumed
      * that N is small
      */
     private synchronized void trimCache() {
 
-        Iterator<AlignmentInterval> iter = intervalCache.iterator();
-        while (iter.hasNext()) {
-            AlignmentInterval interval = iter.next();
-            if (!intervalInView(interval)) {
-                iter.remove();
+        Prefetch p = prefetch;
+        intervalCache.removeIf(interval -> !intervalInView(interval) && (p == null || interval != p.interval));
+    }
+
+
+    /**
+     * Speculatively load the interval ahead of the view when the frame is being panned.  The direction and speed
+     * of panning are estimated from successive view changes.  Zooming, jumping, or panning elsewhere cancels an
+     * outstanding prefetch.
+     */
+    void updatePrefetch(ReferenceFrame frame) {
+
+        synchronized (prefetchLock) {
+
+            Range range = frame.getCurrentRange();
+            long now = System.currentTimeMillis();
+            FrameMotion last = lastMotion;
+            lastMotion = new FrameMotion(range, now);
+
+            if (last == null || renderOptions == null ||
+                    !PreferencesManager.getPreferences().getAsBoolean(SAM_PREFETCH)) {
+                return;
+            }
+
+            int width = range.getLength();
+            double delta = (range.getStart() + range.getEnd()) / 2.0 - (last.range.getStart() + last.range.getEnd()) / 2.0;
+            if (width <= 0 || !range.getChr().equals(last.range.getChr()) ||
+                    Math.abs(width - last.range.getLength()) > width / 100 || Math.abs(delta) > 2 * width) {
+                // Not a pan.  Whatever was prefetched for the old view is probably not needed.
+                cancelPrefetch();
+                return;
+            }
+            if (delta == 0) {
+                return;
+            }
+
+            AlignmentInterval current = getLoadedInterval(frame);
+            if (current == null) {
+                return;    // The view itself is not loaded,  this is left to load()
+            }
+
+            int direction = delta > 0 ? 1 : -1;
+            double velocity = Math.abs(delta) / Math.max(1, now - last.time);   // bp per ms
+            int intervalWidth = current.getEnd() - current.getStart();
+            int distanceToEdge = direction > 0 ?
+                    current.getEnd() - range.getEnd() :
+                    range.getStart() - current.getStart();
+            if (distanceToEdge > intervalWidth / 2 && distanceToEdge / velocity > PREFETCH_HORIZON_MS) {
+                return;
+            }
+
+            // The next interval overlaps the current one by a screen, so a view straddling the boundary is
+            // contained in one of them.
+            int start, end;
+            if (direction > 0) {
+                start = current.getEnd() - width;
+                end = start + intervalWidth;
+            } else {
+                if (current.getStart() == 0) {
+                    return;
+                }
+                end = current.getStart() + width;
+                start = Math.max(0, end - intervalWidth);
+            }
+            Range next = new Range(range.getChr(), start, end);
+
+            Prefetch p = prefetch;
+            if (p != null && p.range.contains(next)) {
+                return;
+            }
+            for (AlignmentInterval interval : intervalCache) {
+                if (interval.contains(next)) {
+                    return;
+                }
+            }
+
+            cancelPrefetch();
+            trimCache();
+            prefetch = submitPrefetch(next, renderOptions);
+        }
+    }
+
+    private Prefetch submitPrefetch(Range range, AlignmentTrack.RenderOptions renderOptions) {
+
+        final Prefetch p = new Prefetch(range);
+
+        log.debug("Prefetching alignments: " + range.getChr() + ":" + range.getStart() + "-" + range.getEnd());
+
+        p.future = getPrefetchExecutor().submit(() -> {
+            synchronized (loadLock) {
+                if (p.cancelled) {
+                    return;
+                }
+                for (AlignmentInterval interval : intervalCache) {
+                    if (interval.contains(p.range)) {
+                        return;
+                    }
+                }
+                try {
+                    AlignmentInterval interval = loadInterval(p.range.getChr(), p.range.getStart(), p.range.getEnd(),
+                            renderOptions, () -> p.cancelled);
+                    if (!p.cancelled) {
+                        interval.packAlignments(renderOptions);
+                        p.interval = interval;
+                        intervalCache.add(interval);
+                    }
+                } catch (Exception e) {
+                    log.error("Error prefetching alignments", e);
+                }
+            }
+        });
+        return p;
+    }
+
+    private void cancelPrefetch() {
+        synchronized (prefetchLock) {
+            Prefetch p = prefetch;
+            if (p != null) {
+                p.cancelled = true;
+                p.future.cancel(false);
+                prefetch = null;
             }
         }
     }
 
+    /**
+     * Wait for an outstanding prefetch to complete.  Used for testing.
+     *
+     * @return false if the wait timed out
+     */
+    boolean waitForPrefetch(long timeoutMillis) {
+        Prefetch p = prefetch;
+        if (p == null) {
+            return true;
+        }
+        try {
+            p.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (Exception e) {
+            return p.future.isDone();
+        }
+    }
+
+    private static synchronized ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newFixedThreadPool(2, r -> {
+                Thread t = new Thread(r, "Alignment prefetch");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return prefetchExecutor;
+    }
+
 
     private boolean intervalInView(AlignmentInterval interval) {
 
@@ -385,11 +662,21 @@ public class AlignmentDataManager implements IGVEventObserver {
                 return true;
             }
         }
+        for (ReferenceFrame frame : FrameManager.getOffscreenFrames()) {
+            if (interval.contains(frame.getCurrentRange())) {
+                return true;
+            }
+        }
         return false;
     }
 
 
     AlignmentInterval loadInterval(String chr, int start, int end, AlignmentTrack.RenderOptions renderOptions) {
+        return loadInterval(chr, start, end, renderOptions, () -> false);
+    }
+
+    private AlignmentInterval loadInterval(String chr, int start, int end, AlignmentTrack.RenderOptions renderOptions,
+                                           BooleanSupplier isCancelled) {
 
         String sequence = chrMappings.containsKey(chr) ? chrMappings.get(chr) : chr;
 
@@ -403,7 +690,7 @@ public class AlignmentDataManager implements IGVEventObserver {
         ReadStats readStats = new ReadStats();
 
         AlignmentTileLoader.AlignmentTile t = reader.loadTile(sequence, start, end, spliceJunctionHelper,
-                downsampleOptions, readStats, peStats, bisulfiteContext);
+                downsampleOptions, readStats, peStats, bisulfiteContext, isCancelled);
 //
         if (inferredExperimentType == null) {
             readStats.compute();
@@ -445,6 +732,7 @@ public class AlignmentDataManager implements IGVEventObserver {
     }
 
     public void clear() {
+        cancelPrefetch();
         intervalCache.clear();
     }
 
@@ -564,6 +852,30 @@ public class AlignmentDataManager implements IGVEventObserver {
     }
 
 
+    /**
+     * A speculative load of {@code range}
+     */
+    private static class Prefetch {
+        final Range range;
+        Future<?> future;
+        volatile boolean cancelled = false;
+        volatile AlignmentInterval interval;
+
+        Prefetch(Range range) {
+            this.range = range;
+        }
+    }
+
+    private static class FrameMotion {
+        final Range range;
+        final long time;
+
+        FrameMotion(Range range, long time) {
+            this.range = range;
+            this.time = time;
+        }
+    }
+
     public static class DownsampleOptions {
         private boolean downsample;
         private int sampleWindowSize;
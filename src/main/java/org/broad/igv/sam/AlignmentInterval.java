@@ -170,6 +170,23 @@ public class AlignmentInterval extends Locus {
         this.packedAlignments = alignmentPacker.packAlignments(this, renderOptions);
     }
 
+    /**
+     * Pack the alignments of this interval, which extends {@code base} by a flank holding {@code added}.  The
+     * packing of base is extended if possible, otherwise all alignments are packed.
+     */
+    void packAlignments(AlignmentInterval base, List<Alignment> added, boolean right,
+                        AlignmentTrack.RenderOptions renderOptions) {
+
+        final AlignmentPacker alignmentPacker = new AlignmentPacker();
+        PackedAlignments extended = alignmentPacker.extendPackedAlignments(this, base.getPackedAlignments(),
+                added, right, renderOptions);
+        if (extended == null) {
+            packAlignments(renderOptions);
+        } else {
+            this.packedAlignments = extended;
+        }
+    }
+
     public PackedAlignments getPackedAlignments() {
         return packedAlignments;
     }
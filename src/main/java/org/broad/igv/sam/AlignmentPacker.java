@@ -118,6 +118,135 @@ public class AlignmentPacker {
     }
 
 
+    /**
+     * Extend the packing of an interval with the alignments of an adjacent flank, rather than repacking all
+     * alignments.  Existing rows keep their order and content, less alignments that no longer overlap
+     * {@code interval}.  Flank alignments go to the first row with room for them, or to new rows at the bottom.
+     *
+     * @param packed packing of the interval being extended
+     * @param added  alignments of the flank
+     * @param right  true if the flank is to the right of the packed alignments
+     * @return the extended packing, or null if the alignments must be repacked
+     */
+    public PackedAlignments extendPackedAlignments(AlignmentInterval interval,
+                                                   PackedAlignments packed,
+                                                   List<Alignment> added,
+                                                   boolean right,
+                                                   AlignmentTrack.RenderOptions renderOptions) {
+
+        // Pairs and linked reads can span the flank boundary
+        if (packed == null || renderOptions.isViewPairs() || renderOptions.isLinkedReads()) {
+            return null;
+        }
+
+        Map<String, List<Alignment>> groupedAlignments = new HashMap<>();
+        for (Alignment alignment : added) {
+            if (!alignment.isMapped()) continue;
+            String groupKey = NULL_GROUP_VALUE;
+            if (renderOptions.getGroupByOption() != GroupOption.NONE) {
+                Object value = getGroupValue(alignment, renderOptions);
+                if (value != null) groupKey = value.toString();
+            }
+            if (!packed.containsKey(groupKey)) {
+                return null;    // A new group, the groups need to be sorted again
+            }
+            groupedAlignments.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(alignment);
+        }
+
+        LinkedHashMap<String, List<Row>> packedAlignments = new LinkedHashMap<String, List<Row>>();
+        for (Map.Entry<String, List<Row>> entry : packed.entrySet()) {
+
+            // Copy the rows, they might be in use for rendering.  Emptied rows are kept to avoid shifting rows below.
+            List<Row> alignmentRows = new ArrayList<>(entry.getValue().size());
+            for (Row row : entry.getValue()) {
+                Row copy = new Row();
+                for (Alignment alignment : row.alignments) {
+                    if (alignment.getEnd() > interval.getStart() && alignment.getStart() < interval.getEnd()) {
+                        copy.addAlignment(alignment);
+                    }
+                }
+                alignmentRows.add(copy);
+            }
+
+            List<Alignment> group = groupedAlignments.get(entry.getKey());
+            if (group != null) {
+                if (right) {
+                    appendToRows(group, alignmentRows);
+                } else {
+                    prependToRows(group, alignmentRows);
+                }
+            }
+
+            while (alignmentRows.size() > 0 && alignmentRows.get(alignmentRows.size() - 1).alignments.isEmpty()) {
+                alignmentRows.remove(alignmentRows.size() - 1);
+            }
+            packedAlignments.put(entry.getKey(), alignmentRows);
+        }
+
+        List<AlignmentInterval> tmp = new ArrayList<AlignmentInterval>();
+        tmp.add(interval);
+        return new PackedAlignments(tmp, packedAlignments);
+    }
+
+    private void appendToRows(List<Alignment> alList, List<Row> alignmentRows) {
+
+        alList.sort(Comparator.comparingInt(Alignment::getStart));
+
+        for (Alignment alignment : alList) {
+            Row row = null;
+            for (Row r : alignmentRows) {
+                List<Alignment> rowAlignments = r.alignments;
+                if (rowAlignments.isEmpty() ||
+                        rowAlignments.get(rowAlignments.size() - 1).getEnd() + MIN_ALIGNMENT_SPACING <= alignment.getStart()) {
+                    row = r;
+                    break;
+                }
+            }
+            if (row == null) {
+                row = new Row();
+                alignmentRows.add(row);
+            }
+            row.addAlignment(alignment);
+        }
+    }
+
+    private void prependToRows(List<Alignment> alList, List<Row> alignmentRows) {
+
+        alList.sort(Comparator.comparingInt(Alignment::getEnd).reversed());
+
+        // Alignments are collected right to left, and inserted at the start of the rows when done
+        List<List<Alignment>> prefixes = new ArrayList<>(alignmentRows.size());
+        for (int i = 0; i < alignmentRows.size(); i++) {
+            prefixes.add(new ArrayList<>());
+        }
+
+        for (Alignment alignment : alList) {
+            int rowIdx = 0;
+            for (; rowIdx < alignmentRows.size(); rowIdx++) {
+                List<Alignment> prefix = prefixes.get(rowIdx);
+                List<Alignment> rowAlignments = alignmentRows.get(rowIdx).alignments;
+                Alignment first = prefix.size() > 0 ? prefix.get(prefix.size() - 1) :
+                        (rowAlignments.isEmpty() ? null : rowAlignments.get(0));
+                if (first == null || alignment.getEnd() + MIN_ALIGNMENT_SPACING <= first.getStart()) {
+                    break;
+                }
+            }
+            if (rowIdx == alignmentRows.size()) {
+                alignmentRows.add(new Row());
+                prefixes.add(new ArrayList<>());
+            }
+            prefixes.get(rowIdx).add(alignment);
+        }
+
+        for (int i = 0; i < alignmentRows.size(); i++) {
+            List<Alignment> prefix = prefixes.get(i);
+            if (prefix.size() > 0) {
+                Collections.reverse(prefix);
+                alignmentRows.get(i).alignments.addAll(0, prefix);
+            }
+        }
+    }
+
     private void pack(List<Alignment> alList, AlignmentTrack.RenderOptions renderOptions, List<Row> alignmentRows) {
 
         Map<String, PairedAlignment> pairs = null;
@@ -29,6 +29,7 @@ import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.util.CloseableIterator;
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
+import org.broad.igv.feature.Range;
 import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.sam.reader.AlignmentReader;
@@ -45,6 +46,8 @@ import javax.swing.*;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.UnaryOperator;
 
 import static org.broad.igv.prefs.Constants.*;
 
@@ -122,6 +125,39 @@ public class AlignmentTileLoader implements IGVEventObserver {
                            AlignmentDataManager.DownsampleOptions downsampleOptions,
                            ReadStats readStats, Map<String, PEStats> peStats,
                            AlignmentTrack.BisulfiteContext bisulfiteContext) {
+        return loadTile(chr, start, end, spliceJunctionHelper, downsampleOptions, readStats, peStats,
+                bisulfiteContext, () -> false);
+    }
+
+    /**
+     * @param isCancelled polled between records, loading stops early when it returns true.  Unlike the stop
+     *                    button this cancels only this load.
+     */
+    AlignmentTile loadTile(String chr,
+                           int start,
+                           int end,
+                           SpliceJunctionHelper spliceJunctionHelper,
+                           AlignmentDataManager.DownsampleOptions downsampleOptions,
+                           ReadStats readStats, Map<String, PEStats> peStats,
+                           AlignmentTrack.BisulfiteContext bisulfiteContext,
+                           BooleanSupplier isCancelled) {
+        return loadTile(chr, start, end, spliceJunctionHelper, downsampleOptions, readStats, peStats,
+                bisulfiteContext, isCancelled, null);
+    }
+
+    /**
+     * @param loaded range of an adjacent interval that is already loaded, or null.  Alignments overlapping it are
+     *               held by that interval,  they are included in the counts of this tile but are otherwise skipped.
+     */
+    AlignmentTile loadTile(String chr,
+                           int start,
+                           int end,
+                           SpliceJunctionHelper spliceJunctionHelper,
+                           AlignmentDataManager.DownsampleOptions downsampleOptions,
+                           ReadStats readStats, Map<String, PEStats> peStats,
+                           AlignmentTrack.BisulfiteContext bisulfiteContext,
+                           BooleanSupplier isCancelled,
+                           Range loaded) {
 
         final IGVPreferences prefMgr = PreferencesManager.getPreferences();
         boolean filterFailedReads = prefMgr.getAsBoolean(SAM_FILTER_FAILED_READS);
@@ -163,7 +199,7 @@ public class AlignmentTileLoader implements IGVEventObserver {
 
             while (iter != null && iter.hasNext()) {
 
-                if (cancel) {
+                if (cancel || isCancelled.getAsBoolean()) {
                     break;
                 }
 
@@ -241,6 +277,12 @@ public class AlignmentTileLoader implements IGVEventObserver {
 
                 }
 
+                if (loaded != null && record.getAlignmentStart() < loaded.getEnd() &&
+                        record.getAlignmentEnd() > loaded.getStart()) {
+                    t.addCounts(record, reducedMemory);
+                    continue;
+                }
+
                 t.addRecord(record, reducedMemory);
 
                 alignmentCount++;
@@ -430,6 +472,11 @@ public class AlignmentTileLoader implements IGVEventObserver {
         private int offset = 0;
         private int indelLimit;
 
+        /**
+         * Columnar storage for retained alignments, null unless compact memory mode is enabled
+         */
+        private CompactAlignmentStore compactStore;
+
         AlignmentTile(int start,
                       int end,
                       SpliceJunctionHelper spliceJunctionHelper,
@@ -442,6 +489,10 @@ public class AlignmentTileLoader implements IGVEventObserver {
 
             this.indelLimit = PreferencesManager.getPreferences().getAsInt(SAM_SMALL_INDEL_BP_THRESHOLD);
 
+            if (!reducedMemory && PreferencesManager.getPreferences().getAsBoolean(SAM_COMPACT_MEMORY_MODE)) {
+                this.compactStore = new CompactAlignmentStore();
+            }
+
             long seed = System.currentTimeMillis();
             //System.out.println("seed: " + seed);
             RAND.setSeed(seed);
@@ -511,12 +562,37 @@ public class AlignmentTileLoader implements IGVEventObserver {
                 attemptAddRecordDownsampled(alignment);
 
             } else {
-                alignments.add(alignment);
+                alignments.add(compact(alignment, true));
             }
 
             alignment.finish();
         }
 
+        /**
+         * Count an alignment without adding it to this tile.
+         */
+        public void addCounts(Alignment alignment, boolean reducedMemory) {
+            if (reducedMemory) {
+                alignment = new ReducedMemoryAlignment(alignment, this.indelLimit);
+            }
+            counts.incCounts(alignment);
+        }
+
+        /**
+         * Move an alignment to the compact store, if enabled, and return the alignment to retain in its place.
+         * While loading, paired alignments with an unmapped mate are left as is as the loader might still set
+         * their mate sequence.
+         */
+        private Alignment compact(Alignment alignment, boolean loading) {
+            if (compactStore == null || !(alignment instanceof PicardAlignment)) {
+                return alignment;
+            }
+            if (loading && alignment.isPaired() && !alignment.getMate().isMapped()) {
+                return alignment;
+            }
+            return compactStore.add((PicardAlignment) alignment);
+        }
+
         /**
          * Attempt to add this alignment. The alignment is definitely added if there is another
          * read with the same name. Typically this other read is a mate pair, but it could also be a secondary alignment
@@ -567,6 +643,11 @@ public class AlignmentTileLoader implements IGVEventObserver {
         }
 
         private void setCurrentSamplingBucket(int alignmentStart) {
+            // Records of the closing bucket can no longer be replaced
+            if (compactStore != null) {
+                imAlignments.replaceValues(offset, imAlignments.size(), al -> compact(al, true));
+            }
+
             curEffSamplingWindowDepth = 0;
             downsampledCount = 0;
             currentSamplingWindowStart = alignmentStart;
@@ -662,6 +743,10 @@ public class AlignmentTileLoader implements IGVEventObserver {
             if (downsample) {
                 sortFilterDownsampled();
             }
+            if (compactStore != null && alignments != null) {
+                alignments.replaceAll(al -> compact(al, false));
+                compactStore.trim();
+            }
             finalizeSpliceJunctions();
             counts.finish();
         }
@@ -769,6 +854,19 @@ public class AlignmentTileLoader implements IGVEventObserver {
                 }
             }
 
+            /**
+             * Replace each value stored for the keys at indices {@code from} (inclusive) to {@code to} (exclusive)
+             * with the result of {@code function}
+             */
+            public void replaceValues(int from, int to, UnaryOperator<V> function) {
+                for (int i = from; i < to; i++) {
+                    List<V> values = map.get(list.get(i));
+                    if (values != null) {
+                        values.replaceAll(function);
+                    }
+                }
+            }
+
             public List<V> getAllValues() {
                 List<V> allValues = new ArrayList<V>(2 * size());
                 for (K k : list) {
@@ -143,6 +143,18 @@ public class BisulfiteCounts {
         }
     }
 
+    /**
+     * Add the counts of {@code other} at positions start - end, replacing any counts at those positions.
+     */
+    void putCounts(BisulfiteCounts other, int start, int end) {
+        for (Map.Entry<Integer, Count> entry : other.counts.entrySet()) {
+            int position = entry.getKey();
+            if (position >= start && position < end) {
+                counts.put(position, entry.getValue());
+            }
+        }
+    }
+
     public Count getCount(int position) {
         Count c = counts.get(position);
         if (c == null) {
@@ -0,0 +1,1110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.TextTagCodec;
+import org.apache.log4j.Logger;
+import org.broad.igv.feature.Strand;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.feature.genome.GenomeManager;
+import org.broad.igv.track.WindowFunction;
+
+import java.awt.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Column oriented storage for the alignments of a single tile.  Per-read fields are held in primitive arrays,
+ * read bases are packed 2 per byte using the BAM nucleotide code, and alignment blocks and insertions are stored
+ * as offsets into the read rather than as copies of it.  Alignments are exposed as {@link CompactAlignment}
+ * flyweights, which hold nothing but a row index into the store.
+ * <p/>
+ * Only {@link PicardAlignment}s are stored; {@link #add(PicardAlignment)} returns its argument unchanged for
+ * records it cannot represent exactly.  Popup text and export are rare, for those a flyweight is expanded back
+ * into a PicardAlignment.
+ * <p/>
+ * Objects the renderer asks for on every repaint (block and gap views, the mate, name, cigar and tags) are built
+ * the first time a row is painted and kept in a {@link RowViews}.  Views live in a small direct mapped cache
+ * indexed by row, which holds the rows of a typical render, so repainting does not allocate while memory stays
+ * bounded no matter how many rows have been in view.
+ * <p/>
+ * Rows are appended while a tile is loaded and never removed.  Appending is not thread safe.
+ */
+public class CompactAlignmentStore {
+
+    private static Logger log = Logger.getLogger(CompactAlignmentStore.class);
+
+    private static final byte[] CODE_TO_BASE = "=ACMGRSVTWYHKDBN".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BASE_TO_CODE = new byte[256];
+
+    static {
+        Arrays.fill(BASE_TO_CODE, (byte) -1);
+        for (int i = 0; i < CODE_TO_BASE.length; i++) {
+            BASE_TO_CODE[CODE_TO_BASE[i]] = (byte) i;
+        }
+    }
+
+    private static final ThreadLocal<TextTagCodec> TAG_CODEC = ThreadLocal.withInitial(TextTagCodec::new);
+
+    private static final int SAM_FLAGS = 0xFFFF;
+    private static final int HAS_QUALITIES = 0x10000;
+
+    private static final int READ_PAIRED_FLAG = 0x1;
+    private static final int PROPER_PAIR_FLAG = 0x2;
+    private static final int READ_UNMAPPED_FLAG = 0x4;
+    private static final int MATE_UNMAPPED_FLAG = 0x8;
+    private static final int READ_STRAND_FLAG = 0x10;
+    private static final int MATE_STRAND_FLAG = 0x20;
+    private static final int FIRST_OF_PAIR_FLAG = 0x40;
+    private static final int SECOND_OF_PAIR_FLAG = 0x80;
+    private static final int NOT_PRIMARY_ALIGNMENT_FLAG = 0x100;
+    private static final int READ_FAILS_VENDOR_QUALITY_CHECK_FLAG = 0x200;
+    private static final int DUPLICATE_READ_FLAG = 0x400;
+    private static final int SUPPLEMENTARY_ALIGNMENT_FLAG = 0x800;
+
+    private static final byte MISSING_QUALITY = 126;
+
+    private static final int DEFAULT_VIEW_CACHE_SIZE = 8192;
+
+    private SAMFileHeader header;
+    private boolean headerSet = false;
+
+    // Per alignment columns.  Offset columns have a trailing entry marking the end of the last row.
+    private int size = 0;
+    private int[] start;
+    private int[] end;
+    private int[] alignmentStart;
+    private int[] alignmentEnd;
+    private int[] flags;
+    private byte[] mappingQuality;
+    private int[] insertSize;
+    private int[] mateStart;
+    private int[] refIndex;
+    private int[] mateRefIndex;
+    private int[] readGroupIndex;
+    private int[] orientationIndex;
+    private int[] nameOffset;         // name, cigar and tags are consecutive in the text pool
+    private int[] cigarOffset;
+    private int[] tagOffset;
+    private int[] sequenceOffset;     // into the base and quality pools, in bases
+    private int[] blockOffset;        // blocks, then insertions
+    private int[] insertionOffset;
+    private int[] gapOffset;
+
+    // Pools
+    private byte[] text = new byte[0];
+    private int textSize = 0;
+    private byte[] packedBases = new byte[0];
+    private byte[] qualities = new byte[0];
+    private int sequenceSize = 0;
+
+    // Block columns
+    private int blockCount = 0;
+    private int[] blockStart = new int[0];
+    private int[] blockLength = new int[0];
+    private int[] blockReadOffset = new int[0];
+    private int[] blockPadding = new int[0];
+    private int[] blockPixelStart = new int[0];
+    private int[] blockPixelEnd = new int[0];
+    private boolean[] blockSoftClipped = new boolean[0];
+
+    // Gap columns
+    private int gapCount = 0;
+    private int[] gapStart = new int[0];
+    private int[] gapLength = new int[0];
+    private int[] gapFlankingLeft = new int[0];
+    private int[] gapFlankingRight = new int[0];
+    private char[] gapType = new char[0];
+
+    // Lookup tables
+    private List<String> refNames = new ArrayList<>();
+    private List<String> chrNames = new ArrayList<>();
+    private Map<String, Integer> refNameIndex = new HashMap<>();
+    private List<String> orientations = new ArrayList<>();
+    private Map<String, Integer> orientationIndices = new HashMap<>();
+    private List<SAMReadGroupRecord> readGroups = new ArrayList<>();
+    private Map<SAMReadGroupRecord, Integer> readGroupIndices = new IdentityHashMap<>();
+
+    // Sparse fields, absent for most alignments
+    private Map<Integer, Color> ycColors = new HashMap<>();
+    private Map<Integer, String> mateSequences = new HashMap<>();
+    private Map<Integer, String> haplotypeNames = new HashMap<>();
+    private Map<Integer, Integer> hapDistances = new HashMap<>();
+
+    // Per row objects handed to the renderer, slot row & viewMask
+    private final RowViews[] viewCache;
+    private final int viewMask;
+
+    public CompactAlignmentStore() {
+        this(1024);
+    }
+
+    public CompactAlignmentStore(int initialCapacity) {
+        this(initialCapacity, DEFAULT_VIEW_CACHE_SIZE);
+    }
+
+    /**
+     * @param viewCacheSize number of rows whose views are kept, rounded up to a power of 2
+     */
+    CompactAlignmentStore(int initialCapacity, int viewCacheSize) {
+        int slots = Integer.highestOneBit(Math.max(1, viewCacheSize - 1)) << 1;
+        viewCache = new RowViews[slots];
+        viewMask = slots - 1;
+        allocateRows(Math.max(16, initialCapacity));
+        nameOffset[0] = 0;
+        sequenceOffset[0] = 0;
+        blockOffset[0] = 0;
+        gapOffset[0] = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Copy an alignment into the store.
+     *
+     * @return a flyweight view of the stored alignment, or {@code alignment} itself if it cannot be stored
+     */
+    public Alignment add(PicardAlignment alignment) {
+
+        SAMRecord record = alignment.getRecord();
+        if (headerSet && record.getHeader() != header) {
+            return alignment;
+        }
+
+        String cigarString = record.getCigarString();
+        byte[] bases = record.getReadBases();
+        byte[] quals = record.getBaseQualities();
+        if (cigarString.equals("*") ||
+                (quals.length > 0 && quals.length != bases.length) ||
+                !isEncodable(bases)) {
+            return alignment;
+        }
+
+        AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
+        AlignmentBlock[] insertions = alignment.getInsertions();
+        int nBlocks = blocks == null ? 0 : blocks.length;
+        int nInsertions = insertions == null ? 0 : insertions.length;
+        int[] readOffsets = new int[nBlocks + nInsertions];
+        if (!computeReadOffsets(cigarString, bases.length, blocks, insertions, readOffsets)) {
+            return alignment;
+        }
+
+        if (!headerSet) {
+            header = record.getHeader();
+            headerSet = true;
+        }
+
+        ensureRowCapacity(size + 1);
+        final int row = size;
+
+        start[row] = alignment.getStart();
+        end[row] = alignment.getEnd();
+        alignmentStart[row] = alignment.getAlignmentStart();
+        alignmentEnd[row] = alignment.getAlignmentEnd();
+        flags[row] = (record.getFlags() & SAM_FLAGS) | (quals.length > 0 ? HAS_QUALITIES : 0);
+        mappingQuality[row] = (byte) record.getMappingQuality();
+        insertSize[row] = record.getInferredInsertSize();
+        mateStart[row] = record.getMateAlignmentStart() - 1;
+        refIndex[row] = refNameIndex(record.getReferenceName());
+        mateRefIndex[row] = refNameIndex(record.getMateReferenceName());
+        orientationIndex[row] = orientationIndex(alignment.getPairOrientation());
+
+        SAMReadGroupRecord readGroup = record.getReadGroup();
+        readGroupIndex[row] = readGroup == null ? -1 : readGroupIndex(readGroup);
+
+        // Text fields
+        nameOffset[row] = textSize;
+        appendText(record.getReadName());
+        cigarOffset[row] = textSize;
+        appendText(cigarString);
+        tagOffset[row] = textSize;
+        TextTagCodec codec = TAG_CODEC.get();
+        boolean first = true;
+        for (SAMRecord.SAMTagAndValue tag : record.getAttributes()) {
+            if (!first) appendText("\t");
+            appendText(codec.encode(tag.tag, tag.value));
+            first = false;
+        }
+        nameOffset[row + 1] = textSize;
+
+        // Sequence.  Space for qualities is reserved even when absent so both pools share one offset.
+        int seqStart = sequenceSize;
+        ensureSequenceCapacity(sequenceSize + bases.length);
+        for (int i = 0; i < bases.length; i++) {
+            int idx = seqStart + i;
+            int code = BASE_TO_CODE[bases[i] & 0xFF];
+            packedBases[idx >> 1] |= (idx & 1) == 0 ? code << 4 : code;
+        }
+        if (quals.length > 0) {
+            System.arraycopy(quals, 0, qualities, seqStart, quals.length);
+        }
+        sequenceSize += bases.length;
+        sequenceOffset[row] = seqStart;
+        sequenceOffset[row + 1] = sequenceSize;
+
+        // Blocks, then insertions
+        blockOffset[row] = blockCount;
+        ensureBlockCapacity(blockCount + nBlocks + nInsertions);
+        for (int i = 0; i < nBlocks; i++) {
+            appendBlock(blocks[i], readOffsets[i]);
+        }
+        insertionOffset[row] = blockCount;
+        for (int i = 0; i < nInsertions; i++) {
+            appendBlock(insertions[i], readOffsets[nBlocks + i]);
+        }
+        blockOffset[row + 1] = blockCount;
+
+        // Gaps
+        List<Gap> gaps = alignment.getGaps();
+        gapOffset[row] = gapCount;
+        if (gaps != null) {
+            ensureGapCapacity(gapCount + gaps.size());
+            for (Gap gap : gaps) {
+                gapStart[gapCount] = gap.getStart();
+                gapLength[gapCount] = gap.getnBases();
+                gapType[gapCount] = gap.getType();
+                if (gap instanceof SpliceGap) {
+                    gapFlankingLeft[gapCount] = ((SpliceGap) gap).getFlankingLeft();
+                    gapFlankingRight[gapCount] = ((SpliceGap) gap).getFlankingRight();
+                }
+                gapCount++;
+            }
+        }
+        gapOffset[row + 1] = gapCount;
+
+        if (alignment.getYcColor() != null) {
+            ycColors.put(row, alignment.getYcColor());
+        }
+        if (alignment.mateSequence != null) {
+            mateSequences.put(row, alignment.mateSequence);
+        }
+        if (alignment.getHaplotypeName() != null) {
+            haplotypeNames.put(row, alignment.getHaplotypeName());
+        }
+        if (alignment.getHapDistance() != 0) {
+            hapDistances.put(row, alignment.getHapDistance());
+        }
+
+        size++;
+        return new CompactAlignment(row);
+    }
+
+    /**
+     * Release unused capacity.  Rows can still be added afterwards.
+     */
+    public void trim() {
+        allocateRows(size + 1);
+        text = Arrays.copyOf(text, textSize);
+        packedBases = Arrays.copyOf(packedBases, (sequenceSize + 1) / 2);
+        qualities = Arrays.copyOf(qualities, sequenceSize);
+        allocateBlocks(blockCount);
+        allocateGaps(gapCount);
+    }
+
+
+    private static boolean isEncodable(byte[] bases) {
+        for (byte b : bases) {
+            if (BASE_TO_CODE[b & 0xFF] < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Recover the offset into the read of each block and insertion by replaying the CIGAR walk of
+     * {@link SAMAlignment#createAlignmentBlocks(String, byte[], byte[])}.  Returns false if the walk does not
+     * reproduce the alignment's blocks, in which case the alignment is not stored.
+     */
+    private static boolean computeReadOffsets(String cigarString, int readLength,
+                                              AlignmentBlock[] blocks, AlignmentBlock[] insertions,
+                                              int[] readOffsets) {
+
+        int nBlocks = blocks == null ? 0 : blocks.length;
+        int nInsertions = insertions == null ? 0 : insertions.length;
+
+        // Soft clips were shown if any block is soft clipped.  This can't be taken from preferences as they
+        // might have changed since the blocks were created.
+        boolean showSoftClipped = false;
+        for (int i = 0; i < nBlocks; i++) {
+            if (blocks[i] == null) return false;
+            showSoftClipped |= blocks[i].isSoftClipped();
+        }
+
+        List<SAMAlignment.CigarOperator> operators = SAMAlignment.buildOperators(cigarString);
+
+        int fromIdx = 0;
+        if (!showSoftClipped) {
+            for (SAMAlignment.CigarOperator op : operators) {
+                if (op.operator == SAMAlignment.HARD_CLIP) continue;
+                if (op.operator != SAMAlignment.SOFT_CLIP) break;
+                fromIdx += op.nBases;
+            }
+        }
+
+        int blockIdx = 0;
+        int insertionIdx = 0;
+        for (SAMAlignment.CigarOperator op : operators) {
+            char c = op.operator;
+            if (c == SAMAlignment.MATCH || c == SAMAlignment.PERFECT_MATCH || c == SAMAlignment.MISMATCH ||
+                    (showSoftClipped && c == SAMAlignment.SOFT_CLIP)) {
+                if (blockIdx >= nBlocks || blocks[blockIdx].getBases().length != op.nBases) return false;
+                readOffsets[blockIdx++] = fromIdx;
+                fromIdx += op.nBases;
+            } else if (c == SAMAlignment.INSERTION) {
+                if (insertionIdx >= nInsertions || insertions[insertionIdx] == null ||
+                        insertions[insertionIdx].getBases().length != op.nBases ||
+                        (readLength > 0 && fromIdx + op.nBases > readLength)) {
+                    return false;
+                }
+                readOffsets[nBlocks + insertionIdx++] = fromIdx;
+                fromIdx += op.nBases;
+            }
+        }
+        return blockIdx == nBlocks && insertionIdx == nInsertions;
+    }
+
+    private void appendBlock(AlignmentBlock block, int readOffset) {
+        blockStart[blockCount] = block.getStart();
+        blockLength[blockCount] = block.getBases().length;
+        blockReadOffset[blockCount] = readOffset;
+        blockPadding[blockCount] = block.getPadding();
+        blockSoftClipped[blockCount] = block.isSoftClipped();
+        blockCount++;
+    }
+
+    private void appendText(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (textSize + bytes.length > text.length) {
+            text = Arrays.copyOf(text, Math.max(textSize + bytes.length, text.length * 2));
+        }
+        System.arraycopy(bytes, 0, text, textSize, bytes.length);
+        textSize += bytes.length;
+    }
+
+    private String text(int from, int to) {
+        return new String(text, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    private int refNameIndex(String refName) {
+        Integer idx = refNameIndex.get(refName);
+        if (idx == null) {
+            Genome genome = GenomeManager.getInstance().getCurrentGenome();
+            idx = refNames.size();
+            refNames.add(refName);
+            chrNames.add(genome == null ? refName : genome.getCanonicalChrName(refName));
+            refNameIndex.put(refName, idx);
+        }
+        return idx;
+    }
+
+    private int orientationIndex(String orientation) {
+        Integer idx = orientationIndices.get(orientation);
+        if (idx == null) {
+            idx = orientations.size();
+            orientations.add(orientation);
+            orientationIndices.put(orientation, idx);
+        }
+        return idx;
+    }
+
+    private int readGroupIndex(SAMReadGroupRecord readGroup) {
+        Integer idx = readGroupIndices.get(readGroup);
+        if (idx == null) {
+            idx = readGroups.size();
+            readGroups.add(readGroup);
+            readGroupIndices.put(readGroup, idx);
+        }
+        return idx;
+    }
+
+    private void ensureRowCapacity(int n) {
+        if (n + 1 > start.length) {
+            allocateRows(Math.max(n + 1, start.length * 2));
+        }
+    }
+
+    private void allocateRows(int capacity) {
+        if (start == null) {
+            start = new int[capacity];
+            end = new int[capacity];
+            alignmentStart = new int[capacity];
+            alignmentEnd = new int[capacity];
+            flags = new int[capacity];
+            mappingQuality = new byte[capacity];
+            insertSize = new int[capacity];
+            mateStart = new int[capacity];
+            refIndex = new int[capacity];
+            mateRefIndex = new int[capacity];
+            readGroupIndex = new int[capacity];
+            orientationIndex = new int[capacity];
+            nameOffset = new int[capacity];
+            cigarOffset = new int[capacity];
+            tagOffset = new int[capacity];
+            sequenceOffset = new int[capacity];
+            blockOffset = new int[capacity];
+            insertionOffset = new int[capacity];
+            gapOffset = new int[capacity];
+        } else {
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+            alignmentStart = Arrays.copyOf(alignmentStart, capacity);
+            alignmentEnd = Arrays.copyOf(alignmentEnd, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            mappingQuality = Arrays.copyOf(mappingQuality, capacity);
+            insertSize = Arrays.copyOf(insertSize, capacity);
+            mateStart = Arrays.copyOf(mateStart, capacity);
+            refIndex = Arrays.copyOf(refIndex, capacity);
+            mateRefIndex = Arrays.copyOf(mateRefIndex, capacity);
+            readGroupIndex = Arrays.copyOf(readGroupIndex, capacity);
+            orientationIndex = Arrays.copyOf(orientationIndex, capacity);
+            nameOffset = Arrays.copyOf(nameOffset, capacity);
+            cigarOffset = Arrays.copyOf(cigarOffset, capacity);
+            tagOffset = Arrays.copyOf(tagOffset, capacity);
+            sequenceOffset = Arrays.copyOf(sequenceOffset, capacity);
+            blockOffset = Arrays.copyOf(blockOffset, capacity);
+            insertionOffset = Arrays.copyOf(insertionOffset, capacity);
+            gapOffset = Arrays.copyOf(gapOffset, capacity);
+        }
+    }
+
+    private void ensureSequenceCapacity(int n) {
+        if (n > qualities.length) {
+            int capacity = Math.max(n, qualities.length * 2);
+            qualities = Arrays.copyOf(qualities, capacity);
+            packedBases = Arrays.copyOf(packedBases, (capacity + 1) / 2);
+        }
+    }
+
+    private void ensureBlockCapacity(int n) {
+        if (n > blockStart.length) {
+            allocateBlocks(Math.max(n, blockStart.length * 2));
+        }
+    }
+
+    private void allocateBlocks(int capacity) {
+        blockStart = Arrays.copyOf(blockStart, capacity);
+        blockLength = Arrays.copyOf(blockLength, capacity);
+        blockReadOffset = Arrays.copyOf(blockReadOffset, capacity);
+        blockPadding = Arrays.copyOf(blockPadding, capacity);
+        blockPixelStart = Arrays.copyOf(blockPixelStart, capacity);
+        blockPixelEnd = Arrays.copyOf(blockPixelEnd, capacity);
+        blockSoftClipped = Arrays.copyOf(blockSoftClipped, capacity);
+    }
+
+    private void ensureGapCapacity(int n) {
+        if (n > gapStart.length) {
+            allocateGaps(Math.max(n, gapStart.length * 2));
+        }
+    }
+
+    private void allocateGaps(int capacity) {
+        gapStart = Arrays.copyOf(gapStart, capacity);
+        gapLength = Arrays.copyOf(gapLength, capacity);
+        gapFlankingLeft = Arrays.copyOf(gapFlankingLeft, capacity);
+        gapFlankingRight = Arrays.copyOf(gapFlankingRight, capacity);
+        gapType = Arrays.copyOf(gapType, capacity);
+    }
+
+    /**
+     * Views of the row, replacing those of any other row sharing its slot.  Callers hold on to the returned
+     * object rather than looking it up again, so a concurrent eviction only costs a rebuild.
+     */
+    private RowViews rowViews(int row) {
+        int slot = row & viewMask;
+        RowViews views = viewCache[slot];
+        if (views == null || views.row != row) {
+            views = new RowViews(row);
+            viewCache[slot] = views;
+        }
+        return views;
+    }
+
+    /**
+     * Objects built for one row when it is painted.  Each field is created on first use.
+     */
+    private static class RowViews {
+        final int row;
+        AlignmentBlock[] blocks;
+        AlignmentBlock[] insertions;
+        List<Gap> gaps;
+        ReadMate mate;
+        String readName;
+        String cigarString;
+        Map<String, Object> attributes;
+        String readSequence;
+
+        RowViews(int row) {
+            this.row = row;
+        }
+    }
+
+    private byte baseAt(int idx) {
+        int b = packedBases[idx >> 1];
+        return CODE_TO_BASE[(idx & 1) == 0 ? (b >> 4) & 0xF : b & 0xF];
+    }
+
+
+    /**
+     * Alignment backed by a row of the store.
+     */
+    public class CompactAlignment implements Alignment {
+
+        private final int row;
+
+        CompactAlignment(int row) {
+            this.row = row;
+        }
+
+        public String getReadName() {
+            RowViews views = rowViews(row);
+            if (views.readName == null) {
+                views.readName = text(nameOffset[row], cigarOffset[row]);
+            }
+            return views.readName;
+        }
+
+        public String getReadSequence() {
+            RowViews views = rowViews(row);
+            if (views.readSequence == null) {
+                byte[] bases = getReadBases();
+                views.readSequence = bases.length == 0 ?
+                        SAMRecord.NULL_SEQUENCE_STRING : new String(bases, StandardCharsets.US_ASCII);
+            }
+            return views.readSequence;
+        }
+
+        private byte[] getReadBases() {
+            int from = sequenceOffset[row];
+            byte[] bases = new byte[sequenceOffset[row + 1] - from];
+            for (int i = 0; i < bases.length; i++) {
+                bases[i] = baseAt(from + i);
+            }
+            return bases;
+        }
+
+        private byte[] getBaseQualities() {
+            if ((flags[row] & HAS_QUALITIES) == 0) {
+                return SAMRecord.NULL_QUALS;
+            }
+            return Arrays.copyOfRange(qualities, sequenceOffset[row], sequenceOffset[row + 1]);
+        }
+
+        public int getReadLength() {
+            return sequenceOffset[row + 1] - sequenceOffset[row];
+        }
+
+        public String getChr() {
+            return chrNames.get(refIndex[row]);
+        }
+
+        @Override
+        public String getContig() {
+            return getChr();
+        }
+
+        public int getAlignmentStart() {
+            return alignmentStart[row];
+        }
+
+        public int getAlignmentEnd() {
+            return alignmentEnd[row];
+        }
+
+        public int getStart() {
+            return start[row];
+        }
+
+        public void setStart(int start) {
+            CompactAlignmentStore.this.start[row] = start;
+        }
+
+        public int getEnd() {
+            return end[row];
+        }
+
+        public void setEnd(int end) {
+            CompactAlignmentStore.this.end[row] = end;
+        }
+
+        public boolean contains(double location) {
+            return location >= getStart() && location < getEnd();
+        }
+
+        public AlignmentBlock[] getAlignmentBlocks() {
+            RowViews views = rowViews(row);
+            if (views.blocks == null) {
+                views.blocks = blockViews(blockOffset[row], insertionOffset[row]);
+            }
+            return views.blocks;
+        }
+
+        public AlignmentBlock[] getInsertions() {
+            RowViews views = rowViews(row);
+            if (views.insertions == null) {
+                views.insertions = blockViews(insertionOffset[row], blockOffset[row + 1]);
+            }
+            return views.insertions;
+        }
+
+        private AlignmentBlock[] blockViews(int from, int to) {
+            AlignmentBlock[] views = new AlignmentBlock[to - from];
+            for (int i = 0; i < views.length; i++) {
+                views[i] = new BlockView(row, from + i);
+            }
+            return views;
+        }
+
+        @Override
+        public AlignmentBlock getInsertionAt(int position) {
+            int from = insertionOffset[row];
+            for (int b = from; b < blockOffset[row + 1]; b++) {
+                if (blockStart[b] == position) return getInsertions()[b - from];
+                if (blockStart[b] > position) return null;  // Blocks increase linearly
+            }
+            return null;
+        }
+
+        public String getCigarString() {
+            RowViews views = rowViews(row);
+            if (views.cigarString == null) {
+                views.cigarString = text(cigarOffset[row], tagOffset[row]);
+            }
+            return views.cigarString;
+        }
+
+        public List<Gap> getGaps() {
+            int from = gapOffset[row];
+            int to = gapOffset[row + 1];
+            if (from == to) {
+                return null;
+            }
+            RowViews views = rowViews(row);
+            if (views.gaps == null) {
+                List<Gap> gaps = new ArrayList<>(to - from);
+                for (int g = from; g < to; g++) {
+                    gaps.add(gapType[g] == SAMAlignment.SKIPPED_REGION ?
+                            new SpliceGap(gapStart[g], gapLength[g], gapType[g], gapFlankingLeft[g], gapFlankingRight[g]) :
+                            new Gap(gapStart[g], gapLength[g], gapType[g]));
+                }
+                views.gaps = gaps;
+            }
+            return views.gaps;
+        }
+
+        public int getInferredInsertSize() {
+            return insertSize[row];
+        }
+
+        public int getMappingQuality() {
+            return mappingQuality[row] & 0xFF;
+        }
+
+        public float getScore() {
+            return getMappingQuality();
+        }
+
+        public ReadMate getMate() {
+            if (!isPaired()) {
+                return null;
+            }
+            RowViews views = rowViews(row);
+            if (views.mate == null) {
+                int f = flags[row];
+                views.mate = new ReadMate(chrNames.get(mateRefIndex[row]), mateStart[row],
+                        (f & MATE_STRAND_FLAG) != 0, (f & MATE_UNMAPPED_FLAG) != 0);
+            }
+            return views.mate;
+        }
+
+        public Strand getReadStrand() {
+            return isNegativeStrand() ? Strand.NEGATIVE : Strand.POSITIVE;
+        }
+
+        public boolean isProperPair() {
+            return isPaired() && (flags[row] & PROPER_PAIR_FLAG) != 0;
+        }
+
+        public boolean isMapped() {
+            return (flags[row] & READ_UNMAPPED_FLAG) == 0;
+        }
+
+        public boolean isPaired() {
+            return (flags[row] & READ_PAIRED_FLAG) != 0;
+        }
+
+        public boolean isFirstOfPair() {
+            return isPaired() && (flags[row] & FIRST_OF_PAIR_FLAG) != 0;
+        }
+
+        public boolean isSecondOfPair() {
+            return isPaired() && (flags[row] & SECOND_OF_PAIR_FLAG) != 0;
+        }
+
+        public boolean isNegativeStrand() {
+            return (flags[row] & READ_STRAND_FLAG) != 0;
+        }
+
+        public boolean isDuplicate() {
+            return (flags[row] & DUPLICATE_READ_FLAG) != 0;
+        }
+
+        public boolean isPrimary() {
+            return (flags[row] & NOT_PRIMARY_ALIGNMENT_FLAG) == 0;
+        }
+
+        public boolean isSupplementary() {
+            return (flags[row] & SUPPLEMENTARY_ALIGNMENT_FLAG) != 0;
+        }
+
+        public boolean isVendorFailedRead() {
+            return (flags[row] & READ_FAILS_VENDOR_QUALITY_CHECK_FLAG) != 0;
+        }
+
+        public byte getBase(double position) {
+            int basePosition = (int) position;
+            for (int b = blockOffset[row]; b < insertionOffset[row]; b++) {
+                int offset = basePosition - blockStart[b];
+                if (offset >= 0 && offset < blockLength[b] + blockPadding[b]) {
+                    return offset < blockLength[b] ? blockBase(row, b, offset) : 0;
+                }
+            }
+            return 0;
+        }
+
+        public byte getPhred(double position) {
+            int basePosition = (int) position;
+            for (int b = blockOffset[row]; b < insertionOffset[row]; b++) {
+                int offset = basePosition - blockStart[b];
+                if (offset >= 0 && offset < blockLength[b] + blockPadding[b]) {
+                    return offset < blockLength[b] ? blockQuality(row, b, offset) : MISSING_QUALITY;
+                }
+            }
+            return 0;
+        }
+
+        public Object getAttribute(String key) {
+            // SAM alignment tag keys must be of length 2
+            if (key.length() != 2) {
+                return key.equals("TEMPLATE_ORIENTATION") ? getPairOrientation() : null;
+            }
+            RowViews views = rowViews(row);
+            if (views.attributes == null) {
+                views.attributes = decodeAttributes();
+            }
+            return views.attributes.get(key);
+        }
+
+        private Map<String, Object> decodeAttributes() {
+            int from = tagOffset[row];
+            int to = nameOffset[row + 1];
+            if (from == to) {
+                return Collections.emptyMap();
+            }
+            Map<String, Object> attributes = new HashMap<>();
+            TextTagCodec codec = TAG_CODEC.get();
+            int tokenStart = from;
+            for (int i = from; i <= to; i++) {
+                if (i == to || text[i] == '\t') {
+                    if (i - tokenStart > 3) {
+                        String token = text(tokenStart, i);
+                        try {
+                            Map.Entry<String, Object> tag = codec.decode(token);
+                            attributes.put(tag.getKey(), tag.getValue());
+                        } catch (Exception e) {
+                            log.error("Error decoding tag " + token, e);
+                        }
+                    }
+                    tokenStart = i + 1;
+                }
+            }
+            return attributes;
+        }
+
+        public void setMateSequence(String sequence) {
+            mateSequences.put(row, sequence);
+        }
+
+        public String getPairOrientation() {
+            return orientations.get(orientationIndex[row]);
+        }
+
+        /**
+         * See {@link SAMAlignment#setPairStrands()}
+         */
+        public Strand getFirstOfPairStrand() {
+            if (!isPaired() || isFirstOfPair()) {
+                return getReadStrand();
+            }
+            ReadMate mate = getMate();
+            return mate != null && mate.isMapped() ? mate.getStrand() : Strand.NONE;
+        }
+
+        public Strand getSecondOfPairStrand() {
+            if (!isPaired()) {
+                return Strand.NONE;
+            }
+            if (isSecondOfPair()) {
+                return getReadStrand();
+            }
+            ReadMate mate = getMate();
+            return mate != null && mate.isMapped() && isProperPair() ? mate.getStrand() : Strand.NONE;
+        }
+
+        public Color getYcColor() {
+            return ycColors.get(row);
+        }
+
+        public String getSample() {
+            int idx = readGroupIndex[row];
+            return idx < 0 ? null : readGroups.get(idx).getSample();
+        }
+
+        public String getReadGroup() {
+            int idx = readGroupIndex[row];
+            return idx < 0 ? null : readGroups.get(idx).getId();
+        }
+
+        public String getLibrary() {
+            int idx = readGroupIndex[row];
+            return idx < 0 ? null : readGroups.get(idx).getLibrary();
+        }
+
+        public String getClipboardString(double location, int mouseX) {
+            return toPicardAlignment().getClipboardString(location, mouseX);
+        }
+
+        public String getValueString(double position, int mouseX, WindowFunction windowFunction) {
+            return toPicardAlignment().getValueString(position, mouseX, windowFunction);
+        }
+
+        public void finish() {
+        }
+
+        @Override
+        public void setHaplotypeName(String hap) {
+            haplotypeNames.put(row, hap);
+        }
+
+        @Override
+        public String getHaplotypeName() {
+            return haplotypeNames.get(row);
+        }
+
+        @Override
+        public void setHapDistance(int dist) {
+            hapDistances.put(row, dist);
+        }
+
+        @Override
+        public int getHapDistance() {
+            Integer dist = hapDistances.get(row);
+            return dist == null ? 0 : dist;
+        }
+
+        /**
+         * Rebuild the full PicardAlignment for this row, including its SAMRecord.  Tag values are restored from
+         * their SAM text form.
+         */
+        public PicardAlignment toPicardAlignment() {
+
+            SAMRecord record = new SAMRecord(header);
+            record.setReadName(getReadName());
+            record.setFlags(flags[row] & SAM_FLAGS);
+            record.setReferenceName(refNames.get(refIndex[row]));
+            record.setAlignmentStart(alignmentStart[row] + 1);
+            record.setMappingQuality(getMappingQuality());
+            record.setCigarString(getCigarString());
+            record.setMateReferenceName(refNames.get(mateRefIndex[row]));
+            record.setMateAlignmentStart(mateStart[row] + 1);
+            record.setInferredInsertSize(insertSize[row]);
+            record.setReadBases(getReadBases());
+            record.setBaseQualities(getBaseQualities());
+
+            int from = tagOffset[row];
+            int to = nameOffset[row + 1];
+            if (to > from) {
+                TextTagCodec codec = TAG_CODEC.get();
+                for (String token : text(from, to).split("\t")) {
+                    try {
+                        Map.Entry<String, Object> tag = codec.decode(token);
+                        record.setAttribute(tag.getKey(), tag.getValue());
+                    } catch (Exception e) {
+                        log.error("Error restoring tag " + token, e);
+                    }
+                }
+            }
+
+            PicardAlignment alignment = new PicardAlignment(record);
+            alignment.setMateSequence(mateSequences.get(row));
+            alignment.setHaplotypeName(getHaplotypeName());
+            alignment.setHapDistance(getHapDistance());
+
+            // Carry over the rendered pixel ranges, used to resolve popup text over insertions
+            AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
+            int b = blockOffset[row];
+            for (int i = 0; blocks != null && i < blocks.length && b < insertionOffset[row]; i++, b++) {
+                blocks[i].setPixelRange(blockPixelStart[b], blockPixelEnd[b]);
+            }
+            AlignmentBlock[] insertions = alignment.getInsertions();
+            b = insertionOffset[row];
+            for (int i = 0; insertions != null && i < insertions.length && b < blockOffset[row + 1]; i++, b++) {
+                insertions[i].setPixelRange(blockPixelStart[b], blockPixelEnd[b]);
+            }
+            return alignment;
+        }
+
+        @Override
+        public String toString() {
+            return toPicardAlignment().toString();
+        }
+    }
+
+    /**
+     * Read bases of a block, with the substitutions made by SAMAlignment when the read sequence is missing
+     * or too short.
+     */
+    private byte blockBase(int row, int b, int offset) {
+        int readLength = sequenceOffset[row + 1] - sequenceOffset[row];
+        if (readLength == 0) {
+            return '=';
+        } else if (blockReadOffset[b] + blockLength[b] > readLength) {
+            return '?';
+        }
+        return baseAt(sequenceOffset[row] + blockReadOffset[b] + offset);
+    }
+
+    private byte blockQuality(int row, int b, int offset) {
+        int readLength = sequenceOffset[row + 1] - sequenceOffset[row];
+        if ((flags[row] & HAS_QUALITIES) == 0 || blockReadOffset[b] + blockLength[b] > readLength) {
+            return MISSING_QUALITY;
+        }
+        return qualities[sequenceOffset[row] + blockReadOffset[b] + offset];
+    }
+
+
+    /**
+     * View of one block or insertion, kept with its row's views.  Bases and qualities are unpacked on first use,
+     * pixel ranges are written through to the store.
+     */
+    private class BlockView implements AlignmentBlock {
+
+        private final int row;
+        private final int b;
+        private byte[] unpackedBases;
+        private byte[] unpackedQualities;
+
+        BlockView(int row, int b) {
+            this.row = row;
+            this.b = b;
+        }
+
+        @Override
+        public boolean contains(int position) {
+            int offset = position - blockStart[b];
+            return offset >= 0 && offset < getLength();
+        }
+
+        @Override
+        public int getLength() {
+            return blockLength[b] + blockPadding[b];
+        }
+
+        @Override
+        public int getPadding() {
+            return blockPadding[b];
+        }
+
+        @Override
+        public byte getBase(int offset) {
+            return offset < blockLength[b] ? blockBase(row, b, offset) : 0;
+        }
+
+        @Override
+        public byte[] getBases() {
+            if (unpackedBases == null) {
+                byte[] blockBases = new byte[blockLength[b]];
+                for (int i = 0; i < blockBases.length; i++) {
+                    blockBases[i] = blockBase(row, b, i);
+                }
+                unpackedBases = blockBases;
+            }
+            return unpackedBases;
+        }
+
+        @Override
+        public int getStart() {
+            return blockStart[b];
+        }
+
+        @Override
+        public byte getQuality(int offset) {
+            return offset < blockLength[b] ? blockQuality(row, b, offset) : MISSING_QUALITY;
+        }
+
+        @Override
+        public byte[] getQualities() {
+            if (unpackedQualities == null) {
+                byte[] blockQualities = new byte[blockLength[b]];
+                for (int i = 0; i < blockQualities.length; i++) {
+                    blockQualities[i] = blockQuality(row, b, i);
+                }
+                unpackedQualities = blockQualities;
+            }
+            return unpackedQualities;
+        }
+
+        @Override
+        public int getEnd() {
+            return blockStart[b] + getLength();
+        }
+
+        @Override
+        public boolean isSoftClipped() {
+            return blockSoftClipped[b];
+        }
+
+        @Override
+        public boolean hasBases() {
+            return true;
+        }
+
+        @Override
+        public void setPixelRange(int s, int e) {
+            blockPixelStart[b] = s;
+            blockPixelEnd[b] = e;
+        }
+
+        @Override
+        public boolean containsPixel(int x) {
+            return x >= blockPixelStart[b] && x <= blockPixelEnd[b];
+        }
+    }
+}
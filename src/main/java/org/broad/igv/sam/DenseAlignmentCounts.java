@@ -125,6 +125,46 @@ public class DenseAlignmentCounts extends BaseAlignmentCounts {
         // Noop
     }
 
+    /**
+     * Create counts over start - end by copying the overlapping portions of {@code parts}.  The parts are assumed
+     * not to overlap each other, and to have been counted with the same bisulfite context.  Used to extend or trim
+     * the counts of a loaded interval without recounting.
+     */
+    static DenseAlignmentCounts merge(int start, int end, DenseAlignmentCounts... parts) {
+
+        BisulfiteCounts bisulfiteCounts = parts[0].getBisulfiteCounts();
+        DenseAlignmentCounts merged = new DenseAlignmentCounts(start, end,
+                bisulfiteCounts == null ? null : bisulfiteCounts.bisulfiteContext);
+        int[][] to = merged.columns();
+
+        for (DenseAlignmentCounts part : parts) {
+            int s = Math.max(start, part.start);
+            int e = Math.min(end, part.end);
+            if (s >= e) continue;
+            int[][] from = part.columns();
+            for (int i = 0; i < from.length; i++) {
+                System.arraycopy(from[i], s - part.start, to[i], s - start, e - s);
+            }
+            if (merged.getBisulfiteCounts() != null && part.getBisulfiteCounts() != null) {
+                merged.getBisulfiteCounts().putCounts(part.getBisulfiteCounts(), s, e);
+            }
+        }
+
+        for (int offset = 0; offset < end - start; offset++) {
+            int total = merged.posTotal[offset] + merged.negTotal[offset];
+            int maxCountInt = offset / MAX_COUNT_INTERVAL;
+            if (total > merged.maxCounts[maxCountInt]) {
+                merged.maxCounts[maxCountInt] = total;
+            }
+        }
+        return merged;
+    }
+
+    private int[][] columns() {
+        return new int[][]{posA, posT, posC, posG, posN, negA, negT, negC, negG, negN,
+                qA, qT, qC, qG, qN, posTotal, negTotal, del, ins, totalQ};
+    }
+
     public int getTotalCount(int pos) {
         int offset = pos - start;
         if (offset < 0 || offset >= posA.length) {
@@ -182,6 +182,9 @@ public class LinkedAlignment implements Alignment {
                     if (a instanceof SAMAlignment) {
                         buffer.append("<br>");
                         buffer.append(((SAMAlignment) a).getSynopsisString());
+                    } else if (a instanceof CompactAlignmentStore.CompactAlignment) {
+                        buffer.append("<br>");
+                        buffer.append(((CompactAlignmentStore.CompactAlignment) a).toPicardAlignment().getSynopsisString());
                     }
                 }
             }
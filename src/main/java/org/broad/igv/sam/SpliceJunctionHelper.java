@@ -206,6 +206,66 @@ public class SpliceJunctionHelper {
     }
 
 
+    /**
+     * Return a helper holding the junctions of both helpers, as if the alignments of both had been added to one.
+     * The alignments are assumed to be distinct.  Junctions found by both are combined into new features, the
+     * others are shared with the source helpers.
+     */
+    static SpliceJunctionHelper merge(SpliceJunctionHelper h1, SpliceJunctionHelper h2) {
+
+        SpliceJunctionHelper merged = new SpliceJunctionHelper(h1.loadOptions);
+        mergeTables(h1.posStartEndJunctionsMap, h2.posStartEndJunctionsMap, merged.posStartEndJunctionsMap);
+        mergeTables(h1.negStartEndJunctionsMap, h2.negStartEndJunctionsMap, merged.negStartEndJunctionsMap);
+        merged.allSpliceJunctionFeatures.addAll(merged.posStartEndJunctionsMap.values());
+        merged.allSpliceJunctionFeatures.addAll(merged.negStartEndJunctionsMap.values());
+        return merged;
+    }
+
+    private static void mergeTables(Table<Integer, Integer, SpliceJunctionFeature> t1,
+                                    Table<Integer, Integer, SpliceJunctionFeature> t2,
+                                    Table<Integer, Integer, SpliceJunctionFeature> merged) {
+        merged.putAll(t1);
+        for (Table.Cell<Integer, Integer, SpliceJunctionFeature> cell : t2.cellSet()) {
+            SpliceJunctionFeature f1 = merged.get(cell.getRowKey(), cell.getColumnKey());
+            SpliceJunctionFeature f2 = cell.getValue();
+            merged.put(cell.getRowKey(), cell.getColumnKey(), f1 == null ? f2 : combine(f1, f2));
+        }
+    }
+
+    /**
+     * Combine the depth and flanking depth arrays of two features for the same junction.
+     */
+    private static SpliceJunctionFeature combine(SpliceJunctionFeature f1, SpliceJunctionFeature f2) {
+
+        SpliceJunctionFeature junction = new SpliceJunctionFeature(f1.getChr(), f1.getJunctionStart(),
+                f1.getJunctionEnd(), f1.getStrand());
+        junction.setJunctionDepth(f1.getJunctionDepth() + f2.getJunctionDepth());
+        junction.setStart(Math.min(f1.getStart(), f2.getStart()));
+        junction.setEnd(Math.max(f1.getEnd(), f2.getEnd()));
+
+        // Start flanking arrays end at the junction start,  end flanking arrays begin at the junction end
+        int[] startDepth = new int[junction.getStartFlankingRegionLength()];
+        int[] endDepth = new int[junction.getEndFlankingRegionLength()];
+        for (SpliceJunctionFeature f : new SpliceJunctionFeature[]{f1, f2}) {
+            int[] depth = f.getStartFlankingRegionDepthArray();
+            if (depth != null) {
+                int offset = startDepth.length - depth.length;
+                for (int i = 0; i < depth.length; i++) {
+                    startDepth[offset + i] += depth[i];
+                }
+            }
+            depth = f.getEndFlankingRegionDepthArray();
+            if (depth != null) {
+                for (int i = 0; i < depth.length; i++) {
+                    endDepth[i] += depth[i];
+                }
+            }
+        }
+        junction.setStartFlankingRegionDepthArray(startDepth);
+        junction.setEndFlankingRegionDepthArray(endDepth);
+        return junction;
+    }
+
     void setLoadOptions(LoadOptions loadOptions) {
         int oldMinJunctionCoverage = this.loadOptions.minJunctionCoverage;
         //Can't change this, need to reload everything
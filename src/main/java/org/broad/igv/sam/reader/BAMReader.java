@@ -40,6 +40,7 @@ import org.broad.igv.util.HttpUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.stream.IGVSeekableBufferedStream;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+import org.broad.igv.util.stream.RemoteFileCache;
 
 import java.io.*;
 import java.net.MalformedURLException;
@@ -111,8 +112,13 @@ public class BAMReader implements AlignmentReader<PicardAlignment> {
                 File indexFile = new File(indexPath);
                 resource = resource.index(indexFile);
             } else {
-                SeekableStream indexStream = IGVSeekableStreamFactory.getInstance().getStreamFor(HttpUtils.createURL(indexPath));
-                resource = resource.index(indexStream);
+                String localIndexPath = RemoteFileCache.getInstance().getLocalPath(indexPath);
+                if (!localIndexPath.equals(indexPath)) {
+                    resource = resource.index(new File(localIndexPath));
+                } else {
+                    SeekableStream indexStream = IGVSeekableStreamFactory.getInstance().getStreamFor(HttpUtils.createURL(indexPath));
+                    resource = resource.index(indexStream);
+                }
             }
         }
 
@@ -26,7 +26,6 @@
 package org.broad.igv.session;
 
 import org.apache.log4j.Logger;
-import org.broad.igv.Globals;
 import org.broad.igv.feature.Locus;
 import org.broad.igv.feature.RegionOfInterest;
 import org.broad.igv.feature.genome.Genome;
@@ -68,6 +67,8 @@ import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Class to parse an IGV session file
@@ -120,7 +121,6 @@ public class IGVSessionReader implements SessionReader {
 
     private Track geneTrack = null;
     private Track seqTrack = null;
-    private boolean hasTrackElments;
 
     //Temporary holder for generating tracks
     protected static AbstractTrack nextTrack;
@@ -313,9 +313,6 @@ public class IGVSessionReader implements SessionReader {
             throw new RuntimeException(e);
         }
 
-        NodeList tracks = document.getElementsByTagName("Track");
-        hasTrackElments = tracks.getLength() > 0;
-
         HashMap additionalInformation = new HashMap();
         additionalInformation.put(INPUT_FILE_KEY, sessionPath);
 
@@ -610,85 +607,65 @@ public class IGVSessionReader implements SessionReader {
 
             final List<String> errors = new ArrayList<String>();
 
-            // Load files concurrently -- TODO, put a limit on # of threads?
-            List<Thread> threads = new ArrayList(dataFiles.size());
+            final List<ResourceLocator> locators = new ArrayList<>(dataFiles);
             long t0 = System.currentTimeMillis();
-            int i = 0;
-            List<Runnable> synchronousLoads = new ArrayList<Runnable>();
-            for (final ResourceLocator locator : dataFiles) {
+            SessionLoadScheduler scheduler = new SessionLoadScheduler(SessionLoadScheduler.DEFAULT_THREADS,
+                    SessionLoadScheduler.DEFAULT_THREADS_PER_HOST);
+            try {
+                // Answer any authentication challenges once per host,  before loads run in parallel
+                scheduler.resolveCredentials(locators);
 
-                final String suppliedPath = locator.getPath();
-                final String relPath = fullToRelPathMap.get(suppliedPath);
+                for (ResourceLocator locator : locators) {
+                    scheduler.prefetchIndex(locator);
+                }
 
-                Runnable runnable = new Runnable() {
-                    public void run() {
-                        List<Track> tracks = null;
-                        try {
-                            tracks = igv.load(locator);
-                            for (Track track : tracks) {
-                                if (track == null) {
-                                    log.info("Null track for resource " + locator.getPath());
-                                    continue;
-                                }
-
-                                String id = track.getId();
-                                if (id == null) {
-                                    log.info("Null track id for resource " + locator.getPath());
-                                    continue;
-                                }
-
-                                // if (relPath != null) {
-                                //     id = id.replace(suppliedPath, relPath);
-                                // }
-
-                                List<Track> trackList = leftoverTrackDictionary.get(id);
-                                if (trackList == null) {
-                                    trackList = new ArrayList();
-                                    leftoverTrackDictionary.put(id, trackList);
-                                    allTracks.put(id, trackList);
-                                }
-                                trackList.add(track);
-                            }
-                        } catch (Exception e) {
-                            log.error("Error loading resource " + locator.getPath(), e);
-                            String ms = "<b>" + locator.getPath() + "</b><br>&nbsp;&nbsp;" + e.toString() + "<br>";
-                            errors.add(ms);
-                        }
-                    }
-                };
+                List<Future<List<Track>>> loads = new ArrayList<>(locators.size());
+                for (final ResourceLocator locator : locators) {
+                    loads.add(scheduler.submit(locator, () -> igv.load(locator)));
+                }
 
-                boolean isAlignment = locator.getPath().endsWith(".bam") || locator.getPath().endsWith(".entries") ||
-                        locator.getPath().endsWith(".sam");
+                // Collect the tracks in the order of the resources,  not the order in which loads complete
+                for (int i = 0; i < locators.size(); i++) {
+                    ResourceLocator locator = locators.get(i);
+                    try {
+                        List<Track> tracks = loads.get(i).get();
+                        for (Track track : tracks) {
+                            if (track == null) {
+                                log.info("Null track for resource " + locator.getPath());
+                                continue;
+                            }
 
+                            String id = track.getId();
+                            if (id == null) {
+                                log.info("Null track id for resource " + locator.getPath());
+                                continue;
+                            }
 
-                // Run synchronously if in batch mode or if there are no "track" elments, or if this is an alignment file
-                // EVERYTHING IS RUN SYNCHRONOUSLY FOR NOW UNTIL WE CAN FIGURE OUT WHAT TO DO TO PREVENT MULTIPLE
-                // AUTHENTICATION DIALOGS
-                if (isAlignment || Globals.isBatch() || !hasTrackElments) {
-                    synchronousLoads.add(runnable);
-                } else {
-                    Thread t = new Thread(runnable);
-                    threads.add(t);
-                    t.start();
-                }
-                i++;
-            }
-            // Wait for all threads to complete
-            for (Thread t : threads) {
-                try {
-                    t.join();
-                } catch (InterruptedException ignore) {
+                            List<Track> trackList = leftoverTrackDictionary.get(id);
+                            if (trackList == null) {
+                                trackList = new ArrayList();
+                                leftoverTrackDictionary.put(id, trackList);
+                                allTracks.put(id, trackList);
+                            }
+                            trackList.add(track);
+                        }
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause() == null ? e : e.getCause();
+                        log.error("Error loading resource " + locator.getPath(), cause);
+                        String ms = "<b>" + locator.getPath() + "</b><br>&nbsp;&nbsp;" + cause.toString() + "<br>";
+                        errors.add(ms);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
                 }
-            }
-
-
-            // Now load data that must be loaded synchronously
-            for (Runnable runnable : synchronousLoads) {
-                runnable.run();
+            } finally {
+                scheduler.shutdown();
             }
 
             long dt = System.currentTimeMillis() - t0;
             log.debug("Total load time = " + dt);
+            log.info(scheduler.getTimelineReport());
 
             if (errors.size() > 0) {
                 StringBuffer buf = new StringBuffer();
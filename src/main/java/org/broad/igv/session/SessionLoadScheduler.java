@@ -0,0 +1,309 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.session;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.feature.tribble.CodecFactory;
+import org.broad.igv.util.FileUtils;
+import org.broad.igv.util.HttpUtils;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.stream.RemoteFileCache;
+
+import java.net.MalformedURLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules the loading of a session's data files on a bounded pool of threads.
+ * <p/>
+ * Loads are ordered by priority:  index files of remote resources are fetched into the {@link RemoteFileCache}
+ * first,  then resources that are opened by reading only a header and index (alignments, tdf, bigwig, tabix
+ * indexed files),  then resources that must be read in full.  At most {@code maxPerHost} loads run against a single
+ * remote host at a time,  the remaining loads for that host wait without holding a thread.
+ * <p/>
+ * Credentials are resolved before loading starts,  one request per host,  so that authentication dialogs appear
+ * once rather than once per parallel load.
+ * <p/>
+ * The start,  wait,  and duration of each load are recorded for a timeline report.
+ */
+class SessionLoadScheduler {
+
+    private static Logger log = Logger.getLogger(SessionLoadScheduler.class);
+
+    static final int DEFAULT_THREADS = 8;
+    static final int DEFAULT_THREADS_PER_HOST = 4;
+
+    /**
+     * Task priorities,  in the order tasks are run.
+     */
+    enum Priority {
+        INDEX,   // fetch of an index file
+        HEADER,  // load that reads only a header and index
+        DATA     // load that reads the whole resource
+    }
+
+    private static final String[] HEADER_ONLY_FORMATS = {".bam", ".cram", ".tdf", ".bw", ".bigwig", ".bb",
+            ".bigbed"};
+
+    private final ThreadPoolExecutor executor;
+    private final int maxPerHost;
+    private final Map<String, HostQueue> hostQueues = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<Task<?>> tasks = Collections.synchronizedList(new ArrayList<>());
+    private final long startTime = System.currentTimeMillis();
+    private long credentialTime;
+
+    SessionLoadScheduler(int nThreads, int maxPerHost) {
+        this.maxPerHost = Math.max(1, maxPerHost);
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(nThreads, nThreads, 60, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(),
+                r -> {
+                    Thread t = new Thread(r, "Session loader-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Make one request to each remote host of the resources,  one at a time,  so that any authentication challenge
+     * is answered before loads for that host run in parallel.  Credentials are cached by the authenticator.
+     */
+    void resolveCredentials(Collection<ResourceLocator> locators) {
+        long t0 = System.currentTimeMillis();
+        Set<String> hosts = new HashSet<>();
+        for (ResourceLocator locator : locators) {
+            String path = locator.getPath();
+            String host = getHost(path);
+            if (host != null && hosts.add(host)) {
+                HttpUtils.getInstance().resourceAvailable(path);
+            }
+        }
+        credentialTime = System.currentTimeMillis() - t0;
+    }
+
+    /**
+     * Fetch the index file of a remote resource into the remote file cache,  ahead of any load.  Does nothing
+     * for local resources or if the index path cannot be determined without a server request.
+     */
+    void prefetchIndex(ResourceLocator locator) {
+        final String indexPath = getIndexPath(locator);
+        if (indexPath != null && getHost(indexPath) != null) {
+            submit(indexPath, Priority.INDEX, () -> RemoteFileCache.getInstance().getLocalPath(indexPath));
+        }
+    }
+
+    /**
+     * Submit the load of a resource.  The priority is determined by the type of the resource.
+     */
+    <T> Future<T> submit(ResourceLocator locator, Callable<T> callable) {
+        return submit(locator.getPath(), getPriority(locator), callable);
+    }
+
+    <T> Future<T> submit(String path, Priority priority, Callable<T> callable) {
+        Task<T> task = new Task<>(callable, path, getHost(path), priority, sequence.getAndIncrement());
+        tasks.add(task);
+        dispatch(task);
+        return task;
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Return a report of the loads,  in the order they started,  with their wait and run times in milliseconds.
+     */
+    String getTimelineReport() {
+
+        List<Task<?>> sorted;
+        synchronized (tasks) {
+            sorted = new ArrayList<>(tasks);
+        }
+        sorted.sort(Comparator.comparingLong(t -> t.started == 0 ? Long.MAX_VALUE : t.started));
+
+        StringBuilder buf = new StringBuilder();
+        buf.append("Session load timeline: ").append(System.currentTimeMillis() - startTime).append(" ms total, ")
+                .append(credentialTime).append(" ms resolving credentials, ").append(sorted.size()).append(" tasks\n");
+        buf.append(String.format("%8s %8s %8s  %-6s  %-18s %s%n", "start", "wait", "run", "type", "thread", "resource"));
+        for (Task<?> t : sorted) {
+            if (t.started == 0) {
+                buf.append(String.format("%8s %8s %8s  %-6s  %-18s %s%n", "-", "-", "-", t.priority, "", t.path));
+            } else {
+                long finished = t.finished == 0 ? System.currentTimeMillis() : t.finished;
+                buf.append(String.format("%8d %8d %8d  %-6s  %-18s %s%n", t.started - startTime,
+                        t.started - t.submitted, finished - t.started, t.priority, t.threadName, t.path));
+            }
+        }
+        return buf.toString();
+    }
+
+    private void dispatch(Task<?> task) {
+        if (task.host != null) {
+            synchronized (hostQueues) {
+                HostQueue queue = hostQueues.computeIfAbsent(task.host, h -> new HostQueue());
+                if (queue.running >= maxPerHost) {
+                    queue.pending.add(task);
+                    return;
+                }
+                queue.running++;
+            }
+        }
+        executor.execute(task);
+    }
+
+    /**
+     * Called when a task completes.  Starts the next waiting task for the same host,  if any.
+     */
+    private void taskDone(Task<?> task) {
+        if (task.host == null) {
+            return;
+        }
+        Task<?> next;
+        synchronized (hostQueues) {
+            HostQueue queue = hostQueues.get(task.host);
+            next = queue.pending.poll();
+            if (next == null) {
+                queue.running--;
+                return;
+            }
+        }
+        executor.execute(next);
+    }
+
+    static Priority getPriority(ResourceLocator locator) {
+        if (locator.getIndexPath() != null || isTabixFeatureFile(locator)) {
+            return Priority.HEADER;
+        }
+        String format = locator.getTypeString().toLowerCase();
+        for (String ext : HEADER_ONLY_FORMATS) {
+            if (format.endsWith(ext)) {
+                return Priority.HEADER;
+            }
+        }
+        return Priority.DATA;
+    }
+
+    /**
+     * Return the index path of a resource if it is explicit,  or follows from its format alone.  Urls with query
+     * strings (e.g. signed urls) are skipped,  their index urls cannot be guessed.
+     */
+    static String getIndexPath(ResourceLocator locator) {
+        if (locator.getIndexPath() != null) {
+            return locator.getIndexPath();
+        }
+        String path = locator.getPath();
+        if (path.contains("?")) {
+            return null;
+        }
+        String format = locator.getTypeString().toLowerCase();
+        if (format.endsWith(".bam")) {
+            return path + ".bai";
+        } else if (format.endsWith(".cram")) {
+            return path + ".crai";
+        } else if (isTabixFeatureFile(locator)) {
+            return path + ".tbi";
+        }
+        return null;
+    }
+
+    /**
+     * Return true if the resource is a compressed feature file,  in a format that is loaded through a tribble codec
+     * and so may be tabix indexed.  Other compressed files (e.g. .seg.gz, .wig.gz) are read in full and have no
+     * index,  guessing one would cost a failed request.
+     */
+    static boolean isTabixFeatureFile(ResourceLocator locator) {
+        String urlPath = locator.getURLPath().toLowerCase();
+        if (!(urlPath.endsWith(".gz") || urlPath.endsWith(".bgz"))) {
+            return false;
+        }
+        // The type string has the compression extension removed
+        String format = locator.getTypeString().toLowerCase();
+        String ext = format.substring(format.lastIndexOf('.') + 1);
+        return CodecFactory.validExtensions.contains(ext);
+    }
+
+    /**
+     * Return the host of a remote http(s) or ftp path,  or null for local paths.
+     */
+    static String getHost(String path) {
+        if (path == null || !FileUtils.isRemote(path)) {
+            return null;
+        }
+        try {
+            String host = HttpUtils.createURL(path).getHost();
+            return host == null || host.isEmpty() ? null : host.toLowerCase();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private static class HostQueue {
+        int running;
+        final PriorityQueue<Task<?>> pending = new PriorityQueue<>();
+    }
+
+    private class Task<T> extends FutureTask<T> implements Comparable<Task<?>> {
+
+        final String path;
+        final String host;
+        final Priority priority;
+        final long seq;
+        final long submitted = System.currentTimeMillis();
+        volatile long started;
+        volatile long finished;
+        volatile String threadName;
+
+        Task(Callable<T> callable, String path, String host, Priority priority, long seq) {
+            super(callable);
+            this.path = path;
+            this.host = host;
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+        @Override
+        public void run() {
+            started = System.currentTimeMillis();
+            threadName = Thread.currentThread().getName();
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+            finished = System.currentTimeMillis();
+            taskDone(this);
+        }
+
+        @Override
+        public int compareTo(Task<?> o) {
+            int c = priority.compareTo(o.priority);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+}
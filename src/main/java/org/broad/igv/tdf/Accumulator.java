@@ -33,6 +33,7 @@ import org.apache.commons.math.stat.StatUtils;
 import org.apache.log4j.Logger;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.util.collections.DownsampledDoubleArrayList;
+import org.broad.igv.util.stats.QuantileSketch;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -57,7 +58,8 @@ public class Accumulator {
     int nPts = 0;
     float value = Float.NaN;
 
-    DownsampledDoubleArrayList valueList;  // List used to accumulate values for percentile calculations
+    DownsampledDoubleArrayList valueList;  // List used to accumulate values for exact percentile calculations
+    QuantileSketch sketch;                 // Sketch used to estimate percentiles, if a sketch size is set
 
 
     // Optional -- keep some representative data and probe names for popup text
@@ -78,7 +80,12 @@ public class Accumulator {
     public Accumulator(WindowFunction windowFunction) {
         this.windowFunction = windowFunction;
         if (PERCENTILE_WINDOW_FUNCTIONS.contains(windowFunction)) {
-            valueList = new DownsampledDoubleArrayList(100, MAX_VALUE_COUNT);
+            int k = QuantileSketch.getAccumulatorK();
+            if (k > 0) {
+                sketch = new QuantileSketch(k);
+            } else {
+                valueList = new DownsampledDoubleArrayList(100, MAX_VALUE_COUNT);
+            }
         }
     }
 
@@ -113,7 +120,9 @@ public class Accumulator {
                     sum += nBases * v;
                     break;
                 default:
-                    if (valueList != null) {
+                    if (sketch != null) {
+                        sketch.add(v);
+                    } else if (valueList != null) {
                         valueList.add(v);
                     }
             }
@@ -131,6 +140,9 @@ public class Accumulator {
 
         if (windowFunction == WindowFunction.mean) {
             value = Float.isNaN(sum) ? Float.NaN : sum / basesCovered;
+        } else if (sketch != null) {
+            double p = this.getPercentile(windowFunction);
+            value = (sketch.size() == 0 || p <= 0) ? Float.NaN : (float) sketch.getPercentile(p);
         } else if (valueList != null) {
             if (valueList.size() == 0) {
                 value = Float.NaN;
@@ -149,6 +161,7 @@ public class Accumulator {
         }
 
         valueList = null;
+        sketch = null;
         isFinished = true;
 
     }
@@ -31,10 +31,10 @@ package org.broad.igv.tdf;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
-import org.broad.igv.data.BasicScore;
 import org.broad.igv.data.CompositeScore;
 import org.broad.igv.data.CoverageDataSource;
 import org.broad.igv.data.NamedScore;
+import org.broad.igv.data.ScoreArray;
 import org.broad.igv.feature.Chromosome;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
@@ -56,7 +56,6 @@ public class TDFDataSource implements CoverageDataSource {
     int maxPrecomputedZoom = 6;
     private int trackNumber = 0;
     String trackName;
-    Map<String, List<LocusScore>> summaryScoreCache = Collections.synchronizedMap(new HashMap<>());
     Genome genome;
     WindowFunction windowFunction = WindowFunction.mean;
     List<WindowFunction> availableFunctions;
@@ -163,32 +162,41 @@ public class TDFDataSource implements CoverageDataSource {
         return reader.getLowerLimit() * normalizationFactor;
     }
 
-    private List<LocusScore> getCachedSummaryScores(String querySeq, int zoom, int tileNumber, double tileWidth) {
+    private ScoreArray getCachedSummaryScores(String querySeq, int zoom, int tileNumber, double tileWidth,
+                                              WindowFunction windowFunction) {
 
-        String key = querySeq + "_" + zoom + "_" + tileNumber + "_" + windowFunction;
+        // Scores are cached by the reader, shared with other tracks of the same file, so the key includes the
+        // track index and normalization
+        String key = "scores_" + trackNumber + "_" + normalizationFactor + "_" + querySeq + "_" + zoom + "_" +
+                tileNumber + "_" + windowFunction;
 
-        List<LocusScore> scores = summaryScoreCache.get(key);
+        ScoreArray scores = (ScoreArray) reader.getCache().get(key);
         if (scores == null) {
 
             int startLocation = (int) (tileNumber * tileWidth);
             int endLocation = (int) ((tileNumber + 1) * tileWidth);
 
-            scores = getSummaryScores(querySeq, startLocation, endLocation, zoom);
+            scores = getSummaryScores(querySeq, startLocation, endLocation, zoom, windowFunction).trim();
 
-            summaryScoreCache.put(key, scores);
+            reader.getCache().put(key, scores);
         }
 
         return scores;
 
     }
 
-    public List<LocusScore> getSummaryScores(String querySeq, int startLocation, int endLocation, int zoom) {
+    public ScoreArray getSummaryScores(String querySeq, int startLocation, int endLocation, int zoom) {
+        return getSummaryScores(querySeq, startLocation, endLocation, zoom, windowFunction);
+    }
+
+    private ScoreArray getSummaryScores(String querySeq, int startLocation, int endLocation, int zoom,
+                                        WindowFunction windowFunction) {
 
         if (this.availableFunctions == null) {
             init();
         }
 
-        List<LocusScore> scores;
+        ScoreArray scores;
 
         if (zoom <= this.maxPrecomputedZoom && windowFunction != WindowFunction.none) {
             // Window function == none => no windowing, so its not clear what to do.  For now use mean
@@ -205,7 +213,7 @@ public class TDFDataSource implements CoverageDataSource {
                 }
             }
 
-            scores = new ArrayList(1000);
+            scores = new ScoreArray(1000);
             if (tiles != null && tiles.size() > 0) {
                 for (TDFTile tile : tiles) {
 
@@ -214,7 +222,7 @@ public class TDFDataSource implements CoverageDataSource {
                             float v = tile.getValue(trackNumber, i);
                             if (!Float.isNaN(v)) {
                                 v *= normalizationFactor;
-                                scores.add(new BasicScore(tile.getStartPosition(i), tile.getEndPosition(i), v));
+                                scores.add(tile.getStartPosition(i), tile.getEndPosition(i), v);
                             }
                         }
                     }
@@ -226,17 +234,18 @@ public class TDFDataSource implements CoverageDataSource {
             if (querySeq.equals(Globals.CHR_ALL)) {
                 scores = getWGRawScores();
             } else {
-                scores = getLocusScoresForChr(querySeq, startLocation, endLocation, zoom);
+                scores = getLocusScoresForChr(querySeq, startLocation, endLocation, zoom, windowFunction);
             }
         }
         return scores;
     }
 
-    private List<LocusScore> getLocusScoresForChr(String chr, int startLocation, int endLocation, int zoom) {
-        List<LocusScore> scores;
+    private ScoreArray getLocusScoresForChr(String chr, int startLocation, int endLocation, int zoom,
+                                            WindowFunction windowFunction) {
+        ScoreArray scores;
         int chrLength = getChrLength(chr);
         if (chrLength == 0) {
-            scores = Collections.emptyList();
+            scores = new ScoreArray(1);
         } else {
             endLocation = Math.min(endLocation, chrLength);
             // By definition there are 2^z tiles per chromosome, and 700 bins per tile, where z is the zoom level.
@@ -245,7 +254,7 @@ public class TDFDataSource implements CoverageDataSource {
             //int z = Math.min(zReq, maxZoom);
             int nTiles = (int) Math.pow(2, zoom);
             double binSize = Math.max(1, (((double) chrLength) / nTiles) / 700);
-            scores = computeSummaryScores(chr, startLocation, endLocation, binSize);
+            scores = computeSummaryScores(chr, startLocation, endLocation, binSize, windowFunction);
         }
         return scores;
     }
@@ -260,9 +269,9 @@ public class TDFDataSource implements CoverageDataSource {
         }
     }
 
-    private List<LocusScore> getWGRawScores() {
+    private ScoreArray getWGRawScores() {
 
-        List<LocusScore> scores = new ArrayList(10000);
+        ScoreArray scores = new ScoreArray(10000);
 
         for (String chr : genome.getAllChromosomeNames()) {
             Chromosome c = genome.getChromosome(chr);
@@ -283,7 +292,7 @@ public class TDFDataSource implements CoverageDataSource {
                                 if (!Float.isNaN(v)) {
                                     v *= normalizationFactor;
                                 }
-                                scores.add(new BasicScore(s, e, v));
+                                scores.add(s, e, v);
                             }
                         }
                     }
@@ -294,9 +303,10 @@ public class TDFDataSource implements CoverageDataSource {
         return scores;
     }
 
-    private List<LocusScore> computeSummaryScores(String chr, int startLocation, int endLocation, double scale) {
+    private ScoreArray computeSummaryScores(String chr, int startLocation, int endLocation, double scale,
+                                            WindowFunction windowFunction) {
 
-        List<LocusScore> scores = new ArrayList(1000);
+        ScoreArray scores = new ScoreArray(1000);
 
         String dsName = "/" + chr + "/raw";
 
@@ -323,7 +333,7 @@ public class TDFDataSource implements CoverageDataSource {
                                 if (!Float.isNaN(v)) {
                                     v *= normalizationFactor;
                                 }
-                                scores.add(new BasicScore(s, e, v));
+                                scores.add(s, e, v);
                             }
                         }
                     }
@@ -371,7 +381,7 @@ public class TDFDataSource implements CoverageDataSource {
                                 // If this feature spans multiple bins, or extends beyond last end bin, record
                                 if (endBin > lastEndBin || endBin > startBin) {
                                     if (accumulator.hasData()) {
-                                        scores.add(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd));
+                                        scores.add(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd, windowFunction));
                                         accumulator = new Accumulator(windowFunction, 5);
                                     }
                                 }
@@ -392,7 +402,7 @@ public class TDFDataSource implements CoverageDataSource {
 
                             // End of loop cleanup
                             if (accumulator.hasData()) {
-                                scores.add(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd));
+                                scores.add(getCompositeScore(accumulator, accumulatedStart, accumulatedEnd, windowFunction));
                             }
                         }
                     }
@@ -403,7 +413,8 @@ public class TDFDataSource implements CoverageDataSource {
     }
 
 
-    private LocusScore getCompositeScore(Accumulator accumulator, int accumulatedStart, int accumulatedEnd) {
+    private LocusScore getCompositeScore(Accumulator accumulator, int accumulatedStart, int accumulatedEnd,
+                                         WindowFunction windowFunction) {
         LocusScore ls;
         if (accumulator.getNpts() == 1) {
             ls = new NamedScore(accumulatedStart, accumulatedEnd, accumulator.getRepData()[0], accumulator.getRepProbes()[0]);
@@ -419,6 +430,15 @@ public class TDFDataSource implements CoverageDataSource {
 
 
     public List<LocusScore> getSummaryScoresForRange(String chr, int startLocation, int endLocation, int zoom) {
+        return getSummaryScoresForRange(chr, startLocation, endLocation, zoom, windowFunction);
+    }
+
+    /**
+     * Return summary scores computed with the given window function,  rather than the source's current one.  Lets a
+     * source shared by several users be queried without changing its state.
+     */
+    public List<LocusScore> getSummaryScoresForRange(String chr, int startLocation, int endLocation, int zoom,
+                                                     WindowFunction windowFunction) {
 
         Chromosome chromosome = genome.getChromosome(chr);
         if (chromosome != null) {
@@ -428,7 +448,7 @@ public class TDFDataSource implements CoverageDataSource {
         String tmp = chrNameMap.get(chr);
         String querySeq = tmp == null ? chr : tmp;
 
-        ArrayList scores = new ArrayList();
+        ScoreArray scores = new ScoreArray(1000);
 
         // TODO -- this whole section could be computed once and stored,  it is only a function of the genome, chr, and zoom level.
         int tileWidth = 0;
@@ -447,12 +467,12 @@ public class TDFDataSource implements CoverageDataSource {
         int endTile = ((endLocation - 1) / tileWidth);
 
         for (int t = startTile; t <= endTile; t++) {
-            List<LocusScore> cachedScores = getCachedSummaryScores(querySeq, zoom, t, tileWidth);
+            ScoreArray cachedScores = getCachedSummaryScores(querySeq, zoom, t, tileWidth, windowFunction);
             if (cachedScores != null) {
-                for (LocusScore s : cachedScores) {
-                    if (s.getEnd() >= startLocation) {
-                        scores.add(s);
-                    } else if (s.getStart() > endLocation) {
+                for (int i = 0; i < cachedScores.size(); i++) {
+                    if (cachedScores.getEnd(i) >= startLocation) {
+                        scores.add(cachedScores, i);
+                    } else if (cachedScores.getStart(i) > endLocation) {
                         break;
                     }
                 }
@@ -484,6 +504,10 @@ public class TDFDataSource implements CoverageDataSource {
         return windowFunction;
     }
 
+    public int getMaxPrecomputedZoom() {
+        return maxPrecomputedZoom;
+    }
+
     public Collection<WindowFunction> getAvailableWindowFunctions() {
         return availableFunctions;
     }
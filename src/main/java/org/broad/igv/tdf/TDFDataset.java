@@ -30,7 +30,6 @@
 package org.broad.igv.tdf;
 
 import org.broad.igv.util.StringUtils;
-import org.broad.igv.util.collections.LRUCache;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -55,7 +54,6 @@ public class TDFDataset extends TDFEntity {
     long[] tilePositions;  // File position in TDF file
     int[] tileSizes;       // Tile size in bytes
     int nTiles;
-    LRUCache<String, TDFTile> cache = new LRUCache(20);
     // TODO -- refactor this dependency out
     TDFReader reader;
 
@@ -118,15 +116,44 @@ public class TDFDataset extends TDFEntity {
 
     // TODO -- this uses an implied linear index.  Abstract index or replace
     // with general interval index
-    // TODO -- gather all non-cached tiles and read in one chunk.  See BAM
-    // alignment reader class
-    public List<TDFTile> getTiles(int startLocation, int endLocation) {
+    public synchronized List<TDFTile> getTiles(int startLocation, int endLocation) {
 
-        List<TDFTile> tiles = new ArrayList();
-        int startTile = (int) (startLocation / tileWidth);
-        int endTile = (int) (endLocation / tileWidth);
+        int startTile = Math.max(0, (int) (startLocation / tileWidth));
+        int endTile = Math.min((int) (endLocation / tileWidth), nTiles - 1);
+        if (endTile < startTile) {
+            return new ArrayList();
+        }
+
+        // Gather the non-cached, non-empty tiles and read them together.  See TDFReader.readTiles
+        TDFTile[] tileArray = new TDFTile[endTile - startTile + 1];
+        int[] missing = new int[tileArray.length];
+        int nMissing = 0;
         for (int t = startTile; t <= endTile; t++) {
-            TDFTile tile = getTile(t);
+            if (tilePositions[t] < 0) {
+                continue;   // Empty tile
+            }
+            TDFTile tile = (TDFTile) reader.getCache().get(getTileKeyPrefix() + t);
+            if (tile == null) {
+                missing[nMissing++] = t;
+            } else {
+                tileArray[t - startTile] = tile;
+            }
+        }
+
+        if (nMissing > 0) {
+            int[] tileNumbers = Arrays.copyOf(missing, nMissing);
+            TDFTile[] loaded = reader.readTiles(this, tileNumbers);
+            for (int i = 0; i < nMissing; i++) {
+                int t = tileNumbers[i];
+                tileArray[t - startTile] = loaded[i];
+                if (loaded[i] != null) {
+                    reader.getCache().put(getTileKeyPrefix() + t, loaded[i]);
+                }
+            }
+        }
+
+        List<TDFTile> tiles = new ArrayList(tileArray.length);
+        for (TDFTile tile : tileArray) {
             if (tile != null && tile.getSize() > 0) {
                 tiles.add(tile);
             }
@@ -148,20 +175,27 @@ public class TDFDataset extends TDFEntity {
 
     // TDFTile computeTile(TDFDataset ds, int t, List<LocusScore> scores, String chr)
     synchronized TDFTile getTile(int t) {
-        String key = getName() + "_" + t;
+        String key = getTileKeyPrefix() + t;
 
-        TDFTile tile = null;
-        if (!cache.containsKey(key)) {
+        TDFTile tile = (TDFTile) reader.getCache().get(key);
+        if (tile == null) {
+            // Empty tiles are null and are not cached,  they are resolved without reading the file
             tile = reader.readTile(this, t);
-            cache.put(key, tile);
-        } else {
-            tile = cache.get(key);
+            reader.getCache().put(key, tile);
         }
         return tile;
     }
 
+    /**
+     * Remove this dataset's tiles from the reader's cache
+     */
     public void clearCache() {
-        cache.clear();
+        final String prefix = getTileKeyPrefix();
+        reader.getCache().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private String getTileKeyPrefix() {
+        return "tile_" + getName() + "_";
     }
 
 
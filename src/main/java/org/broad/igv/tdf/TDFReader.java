@@ -32,21 +32,28 @@ package org.broad.igv.tdf;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
+import org.broad.igv.data.ScoreArray;
 import org.broad.igv.exceptions.DataLoadException;
 import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.util.CompressionUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.StringUtils;
 import org.broad.igv.util.collections.LRUCache;
+import org.broad.igv.util.collections.WeightedLRUCache;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+import org.broad.igv.util.stream.RemoteFileCache;
+import org.broad.igv.util.stream.SeekableMappedStream;
 
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * @author jrobinso
@@ -56,7 +63,14 @@ public class TDFReader {
     static final Logger log = Logger.getLogger(TDFReader.class);
     public static final int GZIP_FLAG = 0x1;
 
+    // Tiles separated by no more than MAX_TILE_GAP bytes are fetched in a single read of at most MAX_TILE_SPAN bytes
+    private static final int MAX_TILE_GAP = 64 * 1024;
+    private static final int MAX_TILE_SPAN = 16 * 1024 * 1024;
+    private static final int MIN_PARALLEL_TILES = 4;
+    private static ExecutorService tileExecutor;
+
     private SeekableStream seekableStream = null;
+    private SeekableStream indexStream = null;     // Header, index, dataset and group records
     private int version;
     private Map<String, IndexEntry> datasetIndex;
     private Map<String, IndexEntry> groupIndex;
@@ -68,6 +82,12 @@ public class TDFReader {
     LRUCache<String, TDFDataset> datasetCache = new LRUCache(20);
     TDFTile wgTile;
 
+    /**
+     * Decoded tiles and summary scores, shared by all datasets and all track indices (data sources) of this file.
+     * Bounded by an estimate of memory use rather than entry count.
+     */
+    private WeightedLRUCache<String, Object> cache;
+
     Map<WindowFunction, Double> valueCache = new HashMap();
     private List<WindowFunction> windowFunctions;
     ResourceLocator locator;
@@ -75,7 +95,6 @@ public class TDFReader {
     boolean compressed = false;
 
     Set<String> chrNames;
-    private final CompressionUtils compressionUtils;
 
     //private String path;
 
@@ -90,9 +109,12 @@ public class TDFReader {
     public TDFReader(ResourceLocator locator) {
         //this.path = path;
         this.locator = locator;
+        long cacheBytes = PreferencesManager.getPreferences().getAsInt(Constants.TDF_CACHE_SIZE) * 1024L * 1024L;
+        this.cache = new WeightedLRUCache<>(cacheBytes, value -> weigh(value));
         try {
             log.debug("Getting stream");
             seekableStream = IGVSeekableStreamFactory.getInstance().getStreamFor(locator.getPath());
+            indexStream = RemoteFileCache.getInstance().getIndexStream(locator.getPath(), seekableStream);
             log.debug("Reading header");
             readHeader();
             log.debug("Done reading header");
@@ -101,10 +123,13 @@ public class TDFReader {
             log.error("Error loading file: " + locator.getPath(), ex);
             throw new DataLoadException("Error loading file: " + ex.toString(), locator.getPath());
         }
-        compressionUtils = new CompressionUtils();
     }
 
     public void close() {
+        if (log.isDebugEnabled()) {
+            log.debug("Cache statistics for " + getPath() + ": " + cache);
+        }
+        cache.clear();
         try {
             seekableStream.close();
         } catch (IOException e) {
@@ -116,13 +141,37 @@ public class TDFReader {
         return locator.getPath();
     }
 
+    /**
+     * Return the cache of decoded tiles and summary scores for this file.  Exposed for statistics (hit, miss, and
+     * eviction counts) and for data sources that cache derived scores.
+     */
+    public WeightedLRUCache<String, Object> getCache() {
+        return cache;
+    }
+
+    private long weigh(Object value) {
+        if (value instanceof TDFTile) {
+            TDFTile tile = (TDFTile) value;
+            long n = tile.getSize();
+            long bytes = 64 + n * (8 + 4L * (trackNames == null ? 1 : trackNames.length));
+            if (tile.getNames() != null) {
+                bytes += n * 48;
+            }
+            return bytes;
+        } else if (value instanceof ScoreArray) {
+            return ((ScoreArray) value).getSizeInBytes();
+        } else {
+            return 64;
+        }
+    }
+
     private void readHeader() throws IOException {
 
         // Buffer for the magic number, version, index position, and index
         // byte count + header byte count  (4 + 4 + 8 + 4 + 4)
         //byte[] buffer = new byte[24];
         //readFully(buffer);
-        byte[] buffer = readBytes(0, 24);
+        byte[] buffer = readIndexBytes(0, 24);
         ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
         byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
 
@@ -142,7 +191,7 @@ public class TDFReader {
         int idxByteCount = byteBuffer.getInt();
         int nHeaderBytes = byteBuffer.getInt();
 
-        byte[] bytes = readBytes(24, nHeaderBytes);
+        byte[] bytes = readIndexBytes(24, nHeaderBytes);
         byteBuffer = ByteBuffer.wrap(bytes);
         byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
 
@@ -201,7 +250,7 @@ public class TDFReader {
 //fis.seek(idxPosition);
             //byte[] bytes = new byte[nBytes];
             //readFully(bytes);
-            byte[] bytes = readBytes(idxPosition, nBytes);
+            byte[] bytes = readIndexBytes(idxPosition, nBytes);
             ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
             byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
 
@@ -258,7 +307,7 @@ public class TDFReader {
                 //fis.seek(position);
                 //byte[] buffer = new byte[nBytes];
                 //readFully(buffer);
-                byte[] buffer = readBytes(position, nBytes);
+                byte[] buffer = readIndexBytes(position, nBytes);
                 ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
                 byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
 
@@ -297,7 +346,7 @@ public class TDFReader {
             //fis.seek(position);
             //byte[] buffer = new byte[nBytes];
             //readFully(buffer);
-            byte[] buffer = readBytes(position, nBytes);
+            byte[] buffer = readIndexBytes(position, nBytes);
             ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
             byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
 
@@ -336,19 +385,142 @@ public class TDFReader {
             //byte[] buffer = new byte[nBytes];
             //readFully(buffer);
             byte[] buffer = readBytes(position, nBytes);
-            if (compressed) {
-                buffer = compressionUtils.decompress(buffer);
+            ByteBuffer byteBuffer = compressed ?
+                    CompressionUtils.inflate(buffer, 0, buffer.length, 4 * buffer.length) :
+                    ByteBuffer.wrap(buffer);
+
+            return TileFactory.createTile(byteBuffer, trackNames.length);
+        } catch (IOException ex) {
+            String tileName = ds.getName() + "[" + tileNumber + "]";
+            log.error("Error reading data tile: " + tileName, ex);
+            throw new RuntimeException("System error occured while reading tile: " + tileName);
+        }
+    }
+
+    /**
+     * Read a set of tiles from a dataset.  Tiles that are adjacent, or nearly so, in the file are fetched with a single
+     * read,  and the fetched tiles are decompressed and parsed in parallel.  Entries in the returned array correspond to
+     * {@code tileNumbers};  empty tiles are null.
+     */
+    public TDFTile[] readTiles(TDFDataset ds, int[] tileNumbers) {
+
+        final TDFTile[] tiles = new TDFTile[tileNumbers.length];
+
+        // Indexes into tileNumbers of the non-empty tiles,  ordered by file position
+        List<Integer> order = new ArrayList<>(tileNumbers.length);
+        for (int i = 0; i < tileNumbers.length; i++) {
+            int t = tileNumbers[i];
+            if (t < ds.tilePositions.length && ds.tilePositions[t] >= 0) {
+                order.add(i);
+            }
+        }
+        if (order.isEmpty()) {
+            return tiles;
+        }
+        order.sort(Comparator.comparingLong(i -> ds.tilePositions[tileNumbers[i]]));
+
+        List<Callable<Void>> decodeTasks = new ArrayList<>(order.size());
+        int runStart = 0;
+        while (runStart < order.size()) {
+
+            // Extend the run while the gap to the next tile is small and the total span is bounded
+            long spanStart = ds.tilePositions[tileNumbers[order.get(runStart)]];
+            long spanEnd = spanStart + ds.tileSizes[tileNumbers[order.get(runStart)]];
+            int runEnd = runStart + 1;
+            while (runEnd < order.size()) {
+                int t = tileNumbers[order.get(runEnd)];
+                long end = ds.tilePositions[t] + ds.tileSizes[t];
+                if (ds.tilePositions[t] - spanEnd > MAX_TILE_GAP || Math.max(end, spanEnd) - spanStart > MAX_TILE_SPAN) {
+                    break;
+                }
+                spanEnd = Math.max(end, spanEnd);
+                runEnd++;
+            }
+
+            final ByteBuffer buffer;
+            try {
+                buffer = readByteBuffer(spanStart, (int) (spanEnd - spanStart));
+            } catch (IOException ex) {
+                log.error("Error reading data tiles: " + ds.getName(), ex);
+                throw new RuntimeException("System error occured while reading tiles: " + ds.getName());
+            }
+
+            for (int r = runStart; r < runEnd; r++) {
+                final int idx = order.get(r);
+                final int t = tileNumbers[idx];
+                final int offset = (int) (ds.tilePositions[t] - spanStart);
+                final int nBytes = ds.tileSizes[t];
+                decodeTasks.add(() -> {
+                    tiles[idx] = decodeTile(buffer, offset, nBytes, ds.getName() + "[" + t + "]");
+                    return null;
+                });
+            }
+            runStart = runEnd;
+        }
 
+        if (decodeTasks.size() < MIN_PARALLEL_TILES) {
+            for (Callable<Void> task : decodeTasks) {
+                try {
+                    task.call();
+                } catch (Exception e) {
+                    throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+                }
             }
+        } else {
+            try {
+                for (Future<Void> f : getTileExecutor().invokeAll(decodeTasks)) {
+                    f.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while reading tiles: " + ds.getName());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+            }
+        }
+        return tiles;
+    }
 
-            return TileFactory.createTile(buffer, trackNames.length);
+    private TDFTile decodeTile(ByteBuffer buffer, int offset, int nBytes, String tileName) {
+        try {
+            ByteBuffer byteBuffer;
+            if (compressed) {
+                if (buffer.hasArray()) {
+                    byteBuffer = CompressionUtils.inflate(buffer.array(), buffer.arrayOffset() + offset, nBytes, 4 * nBytes);
+                } else {
+                    // Memory mapped,  the inflater needs an array
+                    byte[] bytes = new byte[nBytes];
+                    ByteBuffer src = buffer.duplicate();
+                    src.position(offset);
+                    src.get(bytes);
+                    byteBuffer = CompressionUtils.inflate(bytes, 0, nBytes, 4 * nBytes);
+                }
+            } else {
+                byteBuffer = buffer.duplicate();
+                byteBuffer.position(offset);
+                byteBuffer.limit(offset + nBytes);
+                byteBuffer = byteBuffer.slice();
+            }
+            return TileFactory.createTile(byteBuffer, trackNames.length);
         } catch (IOException ex) {
-            String tileName = ds.getName() + "[" + tileNumber + "]";
             log.error("Error reading data tile: " + tileName, ex);
             throw new RuntimeException("System error occured while reading tile: " + tileName);
         }
     }
 
+    private static synchronized ExecutorService getTileExecutor() {
+        if (tileExecutor == null) {
+            int nThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+            tileExecutor = Executors.newFixedThreadPool(nThreads, r -> {
+                Thread t = new Thread(r, "TDFReader");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return tileExecutor;
+    }
+
     /**
      * @return the version
      */
@@ -432,10 +604,52 @@ public class TDFReader {
     }
 
 
-    public synchronized byte[] readBytes(long position, int nBytes) throws IOException {
-        seekableStream.seek(position);
+    public byte[] readBytes(long position, int nBytes) throws IOException {
+        byte[] buffer = new byte[nBytes];
+        if (seekableStream instanceof SeekableMappedStream) {
+            // Positional reads of a mapped file need no lock
+            ((SeekableMappedStream) seekableStream).read(position, buffer, 0, nBytes);
+            return buffer;
+        }
+        synchronized (this) {
+            seekableStream.seek(position);
+            int n = 0;
+            while (n < nBytes) {
+                int count = seekableStream.read(buffer, n, nBytes - n);
+                if (count < 0) {
+                    break;
+                }
+                n += count;
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Read bytes of the data section as a ByteBuffer.  For memory mapped files this is a view of the file,  no copy
+     * is made.
+     */
+    private ByteBuffer readByteBuffer(long position, int nBytes) throws IOException {
+        if (seekableStream instanceof SeekableMappedStream) {
+            return ((SeekableMappedStream) seekableStream).getByteBuffer(position, nBytes);
+        }
+        return ByteBuffer.wrap(readBytes(position, nBytes));
+    }
+
+    /**
+     * Read bytes of the header or index records.  These are served from the remote file cache for remote files.
+     */
+    private synchronized byte[] readIndexBytes(long position, int nBytes) throws IOException {
+        indexStream.seek(position);
         byte[] buffer = new byte[nBytes];
-        int read = seekableStream.read(buffer, 0, nBytes);
+        int n = 0;
+        while (n < nBytes) {
+            int count = indexStream.read(buffer, n, nBytes - n);
+            if (count < 0) {
+                break;
+            }
+            n += count;
+        }
         return buffer;
     }
 
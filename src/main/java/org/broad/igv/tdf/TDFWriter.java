@@ -36,10 +36,8 @@ import org.broad.igv.track.WindowFunction;
 import org.broad.igv.util.CompressionUtils;
 
 import java.io.*;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Assumptions
@@ -68,6 +66,18 @@ public class TDFWriter {
     boolean compressed;
     private final CompressionUtils compressionUtils;
 
+    /**
+     * Optional worker pool for building and compressing tiles.  If null tiles are processed synchronously.
+     */
+    private ExecutorService tileExecutor;
+    private ThreadLocal<CompressionUtils> threadCompressionUtils;
+
+    /**
+     * Tiles submitted to the worker pool,  in the order they are to be written.
+     */
+    private final Deque<PendingTile> pendingTiles = new ArrayDeque<>();
+    private int maxPendingTiles;
+
     public TDFWriter(File f,
                      String genomeId,
                      TrackType trackType,
@@ -105,6 +115,23 @@ public class TDFWriter {
         compressionUtils = new CompressionUtils();
     }
 
+    /**
+     * Set the number of threads used to build and compress tiles.  With more than 1 thread tiles are processed on a
+     * worker pool while the caller continues to accumulate data.  Tiles are still written sequentially,  in the order
+     * writeTile is called,  so the file contents are independent of the number of threads.
+     */
+    public void setThreads(int nThreads) {
+        if (nThreads > 1 && tileExecutor == null) {
+            tileExecutor = Executors.newFixedThreadPool(nThreads, r -> {
+                Thread t = new Thread(r, "TDFWriter");
+                t.setDaemon(true);
+                return t;
+            });
+            threadCompressionUtils = ThreadLocal.withInitial(CompressionUtils::new);
+            maxPendingTiles = 4 * nThreads;
+        }
+    }
+
     private void writeHeader(String genomeId,
                              TrackType trackType,
                              String trackLine, String[] trackNames,
@@ -170,6 +197,9 @@ public class TDFWriter {
     public void closeFile() {
 
         try {
+            writePendingTiles(0);
+            shutdownExecutor();
+
             writeDatasets();
             writeGroups();
 
@@ -183,6 +213,15 @@ public class TDFWriter {
 
         } catch (IOException ex) {
             log.error("Error closing file", ex);
+        } finally {
+            shutdownExecutor();
+        }
+    }
+
+    private void shutdownExecutor() {
+        if (tileExecutor != null) {
+            tileExecutor.shutdownNow();
+            tileExecutor = null;
         }
     }
 
@@ -238,32 +277,39 @@ public class TDFWriter {
     // Tile layout
 
     public void writeTile(String dsId, int tileNumber, TDFTile tile) throws IOException {
+        writeTile(dsId, tileNumber, () -> tile);
+    }
+
+    /**
+     * Write the tile created by tileBuilder.  If a worker pool is configured (see setThreads) the tile is built,
+     * serialized, and compressed on a worker thread,  and this method returns without waiting unless too many tiles
+     * are pending.  Tile builders can run concurrently and must not share mutable state.
+     */
+    public void writeTile(String dsId, int tileNumber, Callable<TDFTile> tileBuilder) throws IOException {
 
         TDFDataset dataset = datasetCache.get(dsId);
         if (dataset == null) {
             throw new java.lang.NoSuchFieldError("Dataset: " + dsId + " doese not exist.  " +
                     "Call createDataset first");
         }
-        long pos = bytesWritten;
 
         if (tileNumber < dataset.tilePositions.length) {
-            dataset.tilePositions[tileNumber] = pos;
-
-            // Write the tile contents to a byte buffer first,  so we can optionally gzip it
-
-
-            BufferedByteWriter buffer = new BufferedByteWriter();
-            tile.writeTo(buffer);
 
-            byte[] bytes = buffer.getBytes();
-            if (compressed) {
-                bytes = compressionUtils.compress(bytes);
+            if (tileExecutor == null) {
+                try {
+                    writeTileBytes(dataset, tileNumber, encodeTile(tileBuilder.call(), compressionUtils));
+                } catch (IOException | RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            } else {
+                Future<byte[]> future = tileExecutor.submit(() ->
+                        encodeTile(tileBuilder.call(), threadCompressionUtils.get()));
+                pendingTiles.add(new PendingTile(dataset, tileNumber, future));
+                writePendingTiles(maxPendingTiles);
             }
 
-            write(bytes);
-            int nBytes = bytes.length;
-
-            dataset.tileSizes[tileNumber] = nBytes;
         } else {
             // The occasional tile number == tile array size is expected, but tile
             // numbers larger than that are not
@@ -275,6 +321,47 @@ public class TDFWriter {
 
     }
 
+    /**
+     * Write the tile contents to a byte buffer,  and optionally gzip it
+     */
+    private byte[] encodeTile(TDFTile tile, CompressionUtils compressionUtils) throws IOException {
+        BufferedByteWriter buffer = new BufferedByteWriter();
+        tile.writeTo(buffer);
+
+        byte[] bytes = buffer.getBytes();
+        if (compressed) {
+            bytes = compressionUtils.compress(bytes);
+        }
+        return bytes;
+    }
+
+    private void writeTileBytes(TDFDataset dataset, int tileNumber, byte[] bytes) throws IOException {
+        dataset.tilePositions[tileNumber] = bytesWritten;
+        write(bytes);
+        dataset.tileSizes[tileNumber] = bytes.length;
+    }
+
+    /**
+     * Write completed tiles from the head of the pending queue.  If more than maxPending tiles remain wait for
+     * the head tile to complete.
+     */
+    private void writePendingTiles(int maxPending) throws IOException {
+        while (!pendingTiles.isEmpty() &&
+                (pendingTiles.size() > maxPending || pendingTiles.peek().future.isDone())) {
+            PendingTile pendingTile = pendingTiles.poll();
+            try {
+                writeTileBytes(pendingTile.dataset, pendingTile.tileNumber, pendingTile.future.get());
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new IOException(cause);
+            }
+        }
+    }
+
     private void writeGroups() throws IOException {
         for (TDFGroup group : groupCache.values()) {
             long position = bytesWritten;
@@ -355,6 +442,18 @@ public class TDFWriter {
         bytesWritten += bytes.length;
     }
 
+    static class PendingTile {
+        TDFDataset dataset;
+        int tileNumber;
+        Future<byte[]> future;
+
+        PendingTile(TDFDataset dataset, int tileNumber, Future<byte[]> future) {
+            this.dataset = dataset;
+            this.tileNumber = tileNumber;
+            this.future = future;
+        }
+    }
+
     class IndexEntry {
 
         long position;
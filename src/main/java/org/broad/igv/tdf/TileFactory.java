@@ -43,8 +43,11 @@ import java.nio.ByteOrder;
 public class TileFactory {
 
     public static TDFTile createTile(byte[] buffer, int nSamples) throws IOException {
+        return createTile(ByteBuffer.wrap(buffer), nSamples);
+    }
+
+    public static TDFTile createTile(ByteBuffer byteBuffer, int nSamples) throws IOException {
 
-        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
         byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
 
         String typeString = StringUtils.readString(byteBuffer);
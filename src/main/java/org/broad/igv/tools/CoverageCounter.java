@@ -35,13 +35,15 @@ import org.broad.igv.sam.*;
 import org.broad.igv.sam.reader.AlignmentReader;
 import org.broad.igv.sam.reader.AlignmentReaderFactory;
 import org.broad.igv.tools.parsers.DataConsumer;
+import org.broad.igv.track.TrackType;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Class to compute coverage on an alignment or feature file.  This class is designed to be instantiated and executed
- * from a single thread.
+ * from a single thread.  Indexed files can optionally be counted in parallel shards, see setNumberOfThreads().
  */
 public class CoverageCounter {
 
@@ -93,6 +95,21 @@ public class CoverageCounter {
 
     public static final int INCLUDE_DUPS = 0x20;
     public static final int PAIRED_COVERAGE = 0x40;
+
+    /**
+     * Pairs with an insert size larger than this are skipped when computing paired coverage.
+     */
+    static final int MAX_INSERT_SIZE = 10000;
+
+    /**
+     * Maximum size in bp of a shard when counting in parallel.  Chromosomes shorter than this are counted as a unit.
+     */
+    static final int SHARD_SIZE = 10000000;
+
+    /**
+     * Maximum number of finished windows buffered per shard when counting in parallel.
+     */
+    static final int SHARD_QUEUE_SIZE = 10000;
     private boolean outputSeparate;
     private boolean firstInPair;
     private boolean secondInPair;
@@ -157,14 +174,36 @@ public class CoverageCounter {
     public static final byte INS = 127;
     private final static byte[] nucleotides = new byte[]{'A', 'C', 'G', 'T', 'N', DEL, INS};
 
+    /**
+     * Lookup table of nucleotide byte -> count row for ArrayReadCounter.  Row 0 is the strand total, the
+     * nucleotides follow in the order above.  Bytes not in "nucleotides" map to 0 (not counted).
+     */
+    private final static int[] BASE_ROWS = new int[256];
+    private final static int DEL_ROW = 6;
+    private final static int INS_ROW = 7;
+
     /**
      * Whether to write wig data to standard out (stdout)
      */
     private boolean writeStdOut;
 
+    /**
+     * If true the original map-based counting engine (MapReadCounter) is used in place of ArrayReadCounter.  The
+     * output of the two is identical, the option exists for verification and benchmarking.
+     */
+    private boolean useMapCounter = false;
+
+    /**
+     * Number of worker threads.  If > 1 and the alignment file is indexed the file is counted in parallel shards.
+     */
+    private int nThreads = 1;
+
+    private int shardSize = SHARD_SIZE;
+
     static {
-        for (byte b : nucleotides) {
-            nucleotidesKeep.add(b);
+        for (int i = 0; i < nucleotides.length; i++) {
+            nucleotidesKeep.add(nucleotides[i]);
+            BASE_ROWS[nucleotides[i] & 0xff] = i + 1;
         }
     }
 
@@ -255,7 +294,7 @@ public class CoverageCounter {
             if (!alignment.isProperPair() || alignment.getMate() == null || alignment.getStart() > mate.getStart()) {
                 return false;
             }
-            if (Math.abs(alignment.getInferredInsertSize()) > 10000) {
+            if (Math.abs(alignment.getInferredInsertSize()) > MAX_INSERT_SIZE) {
                 log.warn("Very large insert size: " + Math.abs(alignment.getInferredInsertSize()) +
                         " for read " + alignment.getReadName() + ".  Skipped.");
                 return false;
@@ -272,7 +311,8 @@ public class CoverageCounter {
     /**
      * Parse and "count" the alignment file.  The main method.
      * <p/>
-     * This method is not thread safe due to the use of the member variable "buffer".
+     * This method is not thread safe due to the use of the member variable "buffer".  If the number of threads
+     * is > 1 and the file is indexed the genome is counted in shards on a worker pool, see parseShards().
      *
      * @throws IOException
      */
@@ -297,32 +337,35 @@ public class CoverageCounter {
         try {
 
             if (queryInterval == null) {
-                reader = AlignmentReaderFactory.getReader(alignmentFile, false);
-                iter = reader.iterator();
+                if (nThreads > 1) {
+                    reader = getIndexedReader();
+                }
+                if (reader != null) {
+                    parseShards(reader, tolerance, maxExtFactor, wigWriter);
+                } else {
+                    reader = AlignmentReaderFactory.getReader(alignmentFile, false);
+                    iter = reader.iterator();
+                }
             } else {
                 reader = AlignmentReaderFactory.getReader(alignmentFile, true);
-                iter = reader.query(queryInterval.getChr(), queryInterval.getStart() - 1, queryInterval.getEnd(), false);
+                if (nThreads > 1) {
+                    parseShards(reader, tolerance, maxExtFactor, wigWriter);
+                } else {
+                    iter = reader.query(queryInterval.getChr(), queryInterval.getStart() - 1, queryInterval.getEnd(), false);
+                }
             }
 
+            int clipStart = queryInterval == null ? Integer.MIN_VALUE : queryInterval.getStart() - 1;
+            int clipEnd = queryInterval == null ? Integer.MAX_VALUE : queryInterval.getEnd();
+
             while (iter != null && iter.hasNext()) {
                 Alignment alignment = iter.next();
                 if (passFilter(alignment)) {
-                    //Sort into the read strand or first-in-pair strand,
-                    //depending on input flag. Note that this can
-                    //be very unreliable depending on data
-                    Strand strand;
-                    if (firstInPair) {
-                        strand = alignment.getFirstOfPairStrand();
-                    } else if (secondInPair) {
-                        strand = alignment.getSecondOfPairStrand();
-                    } else {
-                        strand = alignment.getReadStrand();
-                    }
+                    Strand strand = getCountStrand(alignment);
                     if (strand.equals(Strand.NONE)) {
                         //TODO move this into passFilter, or move passFilter here
                         continue;
                     }
-                    boolean readNegStrand = alignment.isNegativeStrand();
 
                     totalCount++;
 
@@ -337,146 +380,295 @@ public class CoverageCounter {
                         if (counter != null) {
                             counter.closeBucketsBefore(Integer.MAX_VALUE, wigWriter);
                         }
-                        counter = new ReadCounter(alignmentChr);
+                        counter = createReadCounter(alignmentChr);
                         lastChr = alignmentChr;
                     }
 
-                    AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
+                    countAlignment(alignment, strand, counter, clipStart, clipEnd);
+                }
 
-                    if (blocks != null && !pairedCoverage) {
-                        for (AlignmentBlock block : blocks) {
+            }
+            consumer.setAttribute("totalCount", String.valueOf(totalCount));
+            consumer.parsingComplete();
 
-                            if (!block.isSoftClipped()) {
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
 
-                                int blockStart = block.getStart();
-                                int blockEnd = block.getEnd();
+            if (counter != null) {
+                counter.closeBucketsBefore(Integer.MAX_VALUE, wigWriter);
+            }
+            if (iter != null) {
+                iter.close();
+            }
+            if (reader != null) {
+                reader.close();
+            }
+            if (wigWriter != null) {
+                wigWriter.close();
+            }
 
+        }
+    }
 
-                                int adjustedStart = block.getStart();
-                                int adjustedEnd = block.getEnd();
+    /**
+     * Sort into the read strand or first-in-pair strand, depending on input flag. Note that this can
+     * be very unreliable depending on data
+     */
+    private Strand getCountStrand(Alignment alignment) {
+        if (firstInPair) {
+            return alignment.getFirstOfPairStrand();
+        } else if (secondInPair) {
+            return alignment.getSecondOfPairStrand();
+        } else {
+            return alignment.getReadStrand();
+        }
+    }
 
+    /**
+     * Add the coverage of a single alignment to the counter.  Counts are restricted to positions in the interval
+     * [clipStart, clipEnd), 0-based.
+     */
+    private void countAlignment(Alignment alignment, Strand strand, ReadCounter counter, int clipStart, int clipEnd) {
 
-                                if (preExtFactor > 0) {
-                                    if (readNegStrand) {
-                                        adjustedEnd = blockEnd + preExtFactor;
-                                    } else {
-                                        adjustedStart = Math.max(0, blockStart - preExtFactor);
-                                    }
-                                }
+        boolean readNegStrand = alignment.isNegativeStrand();
 
-                                // If both postExtFactor and extFactor are specified, postExtFactor takes precedence
-                                if (postExtFactor > 0) {
-                                    if (readNegStrand) {
-                                        adjustedStart = Math.max(0, blockEnd - postExtFactor);
-                                    } else {
-                                        adjustedEnd = blockStart + postExtFactor;
-                                    }
-
-                                } else if (extFactor > 0) {
-                                    // Standard extension option -- extend read on 3' end
-                                    if (readNegStrand) {
-                                        adjustedStart = Math.max(0, adjustedStart - extFactor);
-                                    } else {
-                                        adjustedEnd += extFactor;
-                                    }
-                                }
+        AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
 
+        if (blocks != null && !pairedCoverage) {
+            for (AlignmentBlock block : blocks) {
 
-                                if (queryInterval != null) {
-                                    adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
-                                    adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
-                                }
+                if (!block.isSoftClipped()) {
 
-                                byte[] bases = block.getBases();
-                                for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
-                                    byte base = 0;
-                                    int baseIdx = pos - blockStart;
-                                    if (bases != null && baseIdx >= 0 && baseIdx < bases.length) {
-                                        base = bases[baseIdx];
-                                    }
-                                    //int idx = pos - blockStart;
-                                    //byte quality = (idx >= 0 && idx < block.qualities.length) ?
-                                    //block.qualities[pos - blockStart] : (byte) 0;
-                                    counter.incrementCount(pos, base, strand);
-                                }
-                            }
-                        }
+                    int blockStart = block.getStart();
+                    int blockEnd = block.getEnd();
 
-                        final AlignmentBlock[] insertions = alignment.getInsertions();
-                        if (insertions != null) {
-                            for (AlignmentBlock insBlock : insertions) {
-                                int pos = insBlock.getStart();
-                                if (queryInterval == null || (pos >= queryInterval.getStart() && pos <= queryInterval.getEnd()))
-                                    counter.incrementInsertion(pos, strand);
-                            }
-                        }
 
-                        // Count deletions
-                        List<Gap> gaps = alignment.getGaps();
-                        if (gaps != null) {
-                            for (Gap gap : gaps) {
-                                if (gap.getType() == SAMAlignment.DELETION) {
-                                    int adjustedStart = gap.getStart();
-                                    int adjustedEnd = gap.getStart() + gap.getnBases();
-                                    if (queryInterval != null) {
-                                        adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
-                                        adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
-                                    }
-                                    for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
-                                        counter.incrementDeletion(pos, strand);
-                                    }
-                                }
-                            }
-                        }
+                    int adjustedStart = block.getStart();
+                    int adjustedEnd = block.getEnd();
 
 
-                    } else {
-                        int adjustedStart = alignment.getAlignmentStart();
-                        int adjustedEnd = pairedCoverage ?
-                                adjustedStart + Math.abs(alignment.getInferredInsertSize()) :
-                                alignment.getAlignmentEnd();
+                    if (preExtFactor > 0) {
+                        if (readNegStrand) {
+                            adjustedEnd = blockEnd + preExtFactor;
+                        } else {
+                            adjustedStart = Math.max(0, blockStart - preExtFactor);
+                        }
+                    }
 
+                    // If both postExtFactor and extFactor are specified, postExtFactor takes precedence
+                    if (postExtFactor > 0) {
+                        if (readNegStrand) {
+                            adjustedStart = Math.max(0, blockEnd - postExtFactor);
+                        } else {
+                            adjustedEnd = blockStart + postExtFactor;
+                        }
+
+                    } else if (extFactor > 0) {
+                        // Standard extension option -- extend read on 3' end
                         if (readNegStrand) {
                             adjustedStart = Math.max(0, adjustedStart - extFactor);
                         } else {
                             adjustedEnd += extFactor;
                         }
+                    }
+
 
-                        if (queryInterval != null) {
-                            adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
-                            adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
+                    adjustedStart = Math.max(clipStart, adjustedStart);
+                    adjustedEnd = Math.min(clipEnd, adjustedEnd);
+
+                    byte[] bases = block.getBases();
+                    for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
+                        byte base = 0;
+                        int baseIdx = pos - blockStart;
+                        if (bases != null && baseIdx >= 0 && baseIdx < bases.length) {
+                            base = bases[baseIdx];
                         }
+                        //int idx = pos - blockStart;
+                        //byte quality = (idx >= 0 && idx < block.qualities.length) ?
+                        //block.qualities[pos - blockStart] : (byte) 0;
+                        counter.incrementCount(pos, base, strand);
+                    }
+                }
+            }
 
+            // Insertions are counted at the preceding position, pos - 1
+            final AlignmentBlock[] insertions = alignment.getInsertions();
+            if (insertions != null) {
+                for (AlignmentBlock insBlock : insertions) {
+                    int pos = insBlock.getStart();
+                    if (pos > clipStart && pos <= clipEnd)
+                        counter.incrementInsertion(pos, strand);
+                }
+            }
 
+            // Count deletions
+            List<Gap> gaps = alignment.getGaps();
+            if (gaps != null) {
+                for (Gap gap : gaps) {
+                    if (gap.getType() == SAMAlignment.DELETION) {
+                        int adjustedStart = Math.max(clipStart, gap.getStart());
+                        int adjustedEnd = Math.min(clipEnd, gap.getStart() + gap.getnBases());
                         for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
-                            counter.incrementCount(pos, (byte) 'N', strand);
+                            counter.incrementDeletion(pos, strand);
                         }
                     }
-
                 }
+            }
+
 
+        } else {
+            int adjustedStart = alignment.getAlignmentStart();
+            int adjustedEnd = pairedCoverage ?
+                    adjustedStart + Math.abs(alignment.getInferredInsertSize()) :
+                    alignment.getAlignmentEnd();
+
+            if (readNegStrand) {
+                adjustedStart = Math.max(0, adjustedStart - extFactor);
+            } else {
+                adjustedEnd += extFactor;
             }
-            consumer.setAttribute("totalCount", String.valueOf(totalCount));
-            consumer.parsingComplete();
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
+            adjustedStart = Math.max(clipStart, adjustedStart);
+            adjustedEnd = Math.min(clipEnd, adjustedEnd);
 
-            if (counter != null) {
-                counter.closeBucketsBefore(Integer.MAX_VALUE, wigWriter);
+            for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
+                counter.incrementCount(pos, (byte) 'N', strand);
             }
-            if (iter != null) {
-                iter.close();
+        }
+    }
+
+    /**
+     * Count an indexed alignment file in parallel.  Each chromosome is divided into shards of at most shardSize bp,
+     * aligned to window boundaries, and each shard is counted independently on a worker pool with its own
+     * reader.  Shard counts are restricted to the shard interval,  so windows never straddle shards,  and an alignment
+     * contributes to "totalCount" only in the shard containing its start.  Finished windows are passed to the consumer
+     * and wig writer on the calling thread in shard order,  so the output is identical to a single-threaded count.
+     */
+    private void parseShards(AlignmentReader reader, int tolerance, int maxExtFactor, WigWriter wigWriter) throws Exception {
+
+        // Alignments starting this far outside a shard can contribute counts to it
+        int margin = maxExtFactor + (pairedCoverage ? MAX_INSERT_SIZE : 0);
+        int shardSize = Math.max(1, this.shardSize / windowSize) * windowSize;
+
+        List<CountShard> shards = new ArrayList<>();
+        if (queryInterval != null) {
+            addShards(shards, queryInterval.getChr(), queryInterval.getStart() - 1, queryInterval.getEnd(),
+                    shardSize, margin, tolerance);
+        } else {
+            Map<String, Long> sequenceDictionary = reader.getSequenceDictionary();
+            for (String seq : (List<String>) reader.getSequenceNames()) {
+                Long length = sequenceDictionary == null ? null : sequenceDictionary.get(seq);
+                int seqEnd = length == null || length > Integer.MAX_VALUE ? Integer.MAX_VALUE : length.intValue();
+                addShards(shards, seq, 0, seqEnd, shardSize, margin, tolerance);
             }
-            if (reader != null) {
-                reader.close();
+        }
+
+        log.info("Counting " + shards.size() + " shards using " + nThreads + " threads");
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        ConcurrentLinkedQueue<AlignmentReader> readers = new ConcurrentLinkedQueue<>();
+        try {
+            for (CountShard shard : shards) {
+                executor.execute(() -> {
+                    AlignmentReader shardReader = readers.poll();
+                    try {
+                        if (shardReader == null) {
+                            shardReader = AlignmentReaderFactory.getReader(alignmentFile, true);
+                        }
+                        shard.count(shardReader);
+                    } catch (Throwable e) {
+                        shard.error = e;
+                    } finally {
+                        if (shardReader != null) {
+                            readers.add(shardReader);
+                        }
+                        shard.finished();
+                    }
+                });
             }
-            if (wigWriter != null) {
-                wigWriter.close();
+
+            // Drain shards in order.  Shards are executed in submission order, so the shard being drained is
+            // always running or finished.
+            for (CountShard shard : shards) {
+                ShardRecord record;
+                while ((record = shard.take()) != END_OF_SHARD) {
+                    consumer.addData(record.chr, record.start, record.end, record.data, null);
+                    if (wigWriter != null) {
+                        wigWriter.addData(record.chr, record.start, record.end, record.data);
+                    }
+                }
+                if (shard.error != null) {
+                    throw new IOException("Error counting " + shard.seq + ":" + shard.start, shard.error);
+                }
+                totalCount += shard.totalCount;
             }
+        } finally {
+            // Unblock any workers still writing to their shard queues
+            for (CountShard shard : shards) {
+                shard.cancelled = true;
+                shard.records.clear();
+            }
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            for (AlignmentReader r : readers) {
+                r.close();
+            }
+        }
+    }
+
+    /**
+     * Divide the interval [regionStart, regionEnd) of a sequence into shards.  Shard boundaries are multiples of
+     * shardSize.  The first shard is unbounded on the left,  and the last on the right,  so every alignment
+     * belongs to exactly one shard.  If regionEnd is not known (Integer.MAX_VALUE) the sequence is a single shard.
+     */
+    private void addShards(List<CountShard> shards, String seq, int regionStart, int regionEnd,
+                           int shardSize, int margin, int tolerance) {
+
+        int queryStart = Math.max(0, regionStart - margin);
+        int queryEnd = regionEnd > Integer.MAX_VALUE - margin ? Integer.MAX_VALUE : regionEnd + margin;
+
+        if (regionEnd == Integer.MAX_VALUE) {
+            shards.add(new CountShard(seq, Integer.MIN_VALUE, Integer.MAX_VALUE, queryStart, queryEnd, tolerance));
+            return;
+        }
+
+        for (int start = (regionStart / shardSize) * shardSize; start < regionEnd; start += shardSize) {
+            boolean first = start <= regionStart;
+            boolean last = (long) start + shardSize >= regionEnd;
+            shards.add(new CountShard(seq,
+                    first ? Integer.MIN_VALUE : start,
+                    last ? Integer.MAX_VALUE : start + shardSize,
+                    first ? queryStart : Math.max(0, start - margin),
+                    last ? queryEnd : start + shardSize + margin,
+                    tolerance));
+        }
+    }
 
+    /**
+     * Return a reader for the alignment file if it is indexed,  otherwise null.
+     */
+    private AlignmentReader getIndexedReader() {
+        AlignmentReader reader = null;
+        try {
+            reader = AlignmentReaderFactory.getReader(alignmentFile, true);
+            List<String> sequenceNames = reader.getSequenceNames();
+            if (reader.hasIndex() && sequenceNames != null && sequenceNames.size() > 0) {
+                // Test the index with a trivial query
+                reader.query(sequenceNames.get(0), 0, 1, false).close();
+                return reader;
+            }
+        } catch (Exception e) {
+            log.info("Alignment file is not indexed, counting with a single thread: " + alignmentFile);
+        }
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.error("Error closing reader", e);
+            }
         }
+        return null;
     }
 
 
@@ -520,16 +712,60 @@ public class CoverageCounter {
         this.writeStdOut = writeStdOut;
     }
 
-    class ReadCounter {
+    /**
+     * Set the number of threads used to count indexed files.  The default is 1.
+     */
+    public void setNumberOfThreads(int nThreads) {
+        this.nThreads = Math.max(1, nThreads);
+    }
+
+    void setShardSize(int shardSize) {
+        this.shardSize = shardSize;
+    }
+
+    void setUseMapCounter(boolean useMapCounter) {
+        this.useMapCounter = useMapCounter;
+    }
+
+    private ReadCounter createReadCounter(String chr) {
+        return createReadCounter(chr, consumer, buffer);
+    }
+
+    private ReadCounter createReadCounter(String chr, DataConsumer consumer, float[] buffer) {
+        return useMapCounter ?
+                new MapReadCounter(chr, consumer, buffer) :
+                new ArrayReadCounter(chr, consumer, buffer);
+    }
+
+    /**
+     * Base class for the per-chromosome counting engines.  Subclasses accumulate counts into windows and emit
+     * finished windows, in window order, to the consumer and optional wig writer.
+     */
+    abstract class ReadCounter {
 
         String chr;
+
         /**
-         * Map of window index -> counter
+         * Receives finished windows, and the buffer used to pass their data.
          */
-        TreeMap<Integer, Counter> counts = new TreeMap<Integer, Counter>();
+        DataConsumer consumer;
+        float[] buffer;
+
+        /**
+         * Chromosome length,  used to clip the last window.  Integer.MAX_VALUE if unknown.
+         */
+        int chrLength = Integer.MAX_VALUE;
 
-        ReadCounter(String chr) {
+        ReadCounter(String chr, DataConsumer consumer, float[] buffer) {
             this.chr = chr;
+            this.consumer = consumer;
+            this.buffer = buffer;
+            if (genome != null) {
+                Chromosome chromosome = genome.getChromosome(chr);
+                if (chromosome != null) {
+                    chrLength = chromosome.getLength();
+                }
+            }
         }
 
         /**
@@ -537,6 +773,223 @@ public class CoverageCounter {
          * @param base     - nucleotide
          * @param strand   - which strand to increment count. Should be POSITIVE or NEGATIVE
          */
+        abstract void incrementCount(int position, byte base, Strand strand);
+
+        abstract void incrementDeletion(int position, Strand strand);
+
+        abstract void incrementInsertion(int position, Strand strand);
+
+        /**
+         * Close (finalize) all buckets before the given position.  Called when we are sure this position will not be
+         * visited again.
+         *
+         * @param position - genomic position
+         */
+        abstract void closeBucketsBefore(int position, WigWriter wigWriter);
+
+        /**
+         * Return the number of bases covered by the window,  which is less than the window size for the last
+         * window of a chromosome.
+         */
+        int getBucketSize(int bucketStartPosition) {
+            return Math.min(bucketStartPosition + windowSize, chrLength) - bucketStartPosition;
+        }
+
+        /**
+         * Pass the contents of "buffer" for the given window to the consumer and wig writer.
+         */
+        void emitBucket(int bucketStartPosition, int bucketSize, WigWriter wigWriter) {
+            int bucketEndPosition = bucketStartPosition + bucketSize;
+            consumer.addData(chr, bucketStartPosition, bucketEndPosition, buffer, null);
+            if (wigWriter != null) {
+                wigWriter.addData(chr, bucketStartPosition, bucketEndPosition, buffer);
+            }
+        }
+    }
+
+    /**
+     * Counting engine backed by a sliding ring buffer of primitive int arrays,  one row per strand and count type.
+     * Window index "idx" is stored in slot floorMod(idx, capacity).  The buffer grows (doubling) if the span of open
+     * windows exceeds its capacity, which can happen with very long reads or large extension factors.
+     */
+    class ArrayReadCounter extends ReadCounter {
+
+        /**
+         * Rows per strand:  the strand total followed by one row per entry in "nucleotides".
+         */
+        static final int ROWS_PER_STRAND = 8;
+
+        static final int INITIAL_CAPACITY = 1024;
+
+        int capacity;
+
+        /**
+         * counts[strand * ROWS_PER_STRAND + row][slot]
+         */
+        int[][] counts;
+
+        /**
+         * Flags windows that have been visited,  including visits that do not change a count (e.g. deletions when
+         * not counting bases).  Only visited windows are emitted.
+         */
+        boolean[] touched;
+
+        /**
+         * Index of the lowest and one past the highest open window.  Empty if lo == hi.
+         */
+        int lo;
+        int hi;
+
+        ArrayReadCounter(String chr, DataConsumer consumer, float[] buffer) {
+            super(chr, consumer, buffer);
+            allocate(INITIAL_CAPACITY);
+        }
+
+        private void allocate(int capacity) {
+            this.capacity = capacity;
+            this.counts = new int[NUM_STRANDS * ROWS_PER_STRAND][capacity];
+            this.touched = new boolean[capacity];
+        }
+
+        void incrementCount(int position, byte base, Strand strand) {
+            int slot = slotForPosition(position);
+            int rowOffset = strand == Strand.POSITIVE ? 0 : ROWS_PER_STRAND;
+            counts[rowOffset][slot]++;
+            if (outputBases) {
+                int baseRow = BASE_ROWS[base & 0xff];
+                if (baseRow > 0) {
+                    counts[rowOffset + baseRow][slot]++;
+                }
+            }
+        }
+
+        void incrementDeletion(int position, Strand strand) {
+            int slot = slotForPosition(position);
+            if (outputBases) {
+                counts[(strand == Strand.POSITIVE ? 0 : ROWS_PER_STRAND) + DEL_ROW][slot]++;
+            }
+        }
+
+        void incrementInsertion(int position, Strand strand) {
+            // Insertions are between 2 bases, we increment the counter for the position preceding the insertion
+            int slot = slotForPosition(position - 1);
+            if (outputBases) {
+                counts[(strand == Strand.POSITIVE ? 0 : ROWS_PER_STRAND) + INS_ROW][slot]++;
+            }
+        }
+
+        /**
+         * Return the ring buffer slot for the window containing position,  opening the window if needed.
+         */
+        private int slotForPosition(int position) {
+            int idx = position / windowSize;
+            if (lo == hi) {
+                lo = idx;
+                hi = idx + 1;
+            } else if (idx < lo) {
+                ensureCapacity(hi - idx);
+                lo = idx;
+            } else if (idx >= hi) {
+                ensureCapacity(idx + 1 - lo);
+                hi = idx + 1;
+            }
+            int slot = Math.floorMod(idx, capacity);
+            touched[slot] = true;
+            return slot;
+        }
+
+        private void ensureCapacity(int span) {
+            if (span <= capacity) return;
+
+            int newCapacity = capacity;
+            while (newCapacity < span) {
+                newCapacity *= 2;
+            }
+            int[][] oldCounts = counts;
+            boolean[] oldTouched = touched;
+            int oldCapacity = capacity;
+            allocate(newCapacity);
+            for (int idx = lo; idx < hi; idx++) {
+                int oldSlot = Math.floorMod(idx, oldCapacity);
+                if (oldTouched[oldSlot]) {
+                    int newSlot = Math.floorMod(idx, newCapacity);
+                    touched[newSlot] = true;
+                    for (int row = 0; row < counts.length; row++) {
+                        counts[row][newSlot] = oldCounts[row][oldSlot];
+                    }
+                }
+            }
+        }
+
+        void closeBucketsBefore(int position, WigWriter wigWriter) {
+
+            int bucket = position / windowSize;
+            int end = Math.min(bucket, hi);
+
+            for (int idx = lo; idx < end; idx++) {
+                int slot = Math.floorMod(idx, capacity);
+                if (!touched[slot]) continue;
+
+                // Divide total count by window size.  This is the average count per
+                // base over the window,  so for example 30x coverage remains 30x irrespective of window size.
+                int bucketStartPosition = idx * windowSize;
+                int bucketSize = getBucketSize(bucketStartPosition);
+
+                int col = 0;
+                if (!outputBases) {
+                    if (outputSeparate) {
+                        for (int strandNum : output_strands) {
+                            buffer[col++] = ((float) counts[strandNum * ROWS_PER_STRAND][slot]) / bucketSize;
+                        }
+                    } else {
+                        buffer[col++] = ((float) (counts[0][slot] + counts[ROWS_PER_STRAND][slot])) / bucketSize;
+                    }
+                } else {
+                    if (outputSeparate) {
+                        for (int strandNum : output_strands) {
+                            for (int row = 1; row < ROWS_PER_STRAND; row++) {
+                                buffer[col++] = ((float) counts[strandNum * ROWS_PER_STRAND + row][slot]) / bucketSize;
+                            }
+                        }
+                    } else {
+                        for (int row = 1; row < ROWS_PER_STRAND; row++) {
+                            buffer[col++] = ((float) (counts[row][slot] + counts[ROWS_PER_STRAND + row][slot])) / bucketSize;
+                        }
+                    }
+                }
+
+                emitBucket(bucketStartPosition, bucketSize, wigWriter);
+
+                touched[slot] = false;
+                for (int row = 0; row < counts.length; row++) {
+                    counts[row][slot] = 0;
+                }
+            }
+
+            if (end > lo) {
+                lo = end;
+                if (lo >= hi) {
+                    lo = hi = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * The original counting engine,  a map of window index -> Counter objects.  Retained for comparison with
+     * ArrayReadCounter.
+     */
+    class MapReadCounter extends ReadCounter {
+
+        /**
+         * Map of window index -> counter
+         */
+        TreeMap<Integer, Counter> counts = new TreeMap<Integer, Counter>();
+
+        MapReadCounter(String chr, DataConsumer consumer, float[] buffer) {
+            super(chr, consumer, buffer);
+        }
+
         void incrementCount(int position, byte base, Strand strand) {
             final Counter counter = getCounterForPosition(position);
             int strandNum = strand.equals(Strand.POSITIVE) ? 0 : 1;
@@ -575,12 +1028,6 @@ public class CoverageCounter {
         }
 
 
-        /**
-         * Close (finalize) all buckets before the given position.  Called when we are sure this position will not be
-         * visited again.
-         *
-         * @param position - genomic position
-         */
         void closeBucketsBefore(int position, WigWriter wigWriter) {
             List<Integer> bucketsToClose = new ArrayList<Integer>();
 
@@ -591,15 +1038,7 @@ public class CoverageCounter {
                     // Divide total count by window size.  This is the average count per
                     // base over the window,  so for example 30x coverage remains 30x irrespective of window size.
                     int bucketStartPosition = entry.getKey() * windowSize;
-                    int bucketEndPosition = bucketStartPosition + windowSize;
-
-                    if (genome != null) {
-                        Chromosome chromosome = genome.getChromosome(chr);
-                        if (chromosome != null) {
-                            bucketEndPosition = Math.min(bucketEndPosition, chromosome.getLength());
-                        }
-                    }
-                    int bucketSize = bucketEndPosition - bucketStartPosition;
+                    int bucketSize = getBucketSize(bucketStartPosition);
 
                     final Counter counter = entry.getValue();
 
@@ -636,25 +1075,173 @@ public class CoverageCounter {
                         }
                     }
 
+                    emitBucket(bucketStartPosition, bucketSize, wigWriter);
 
-                    consumer.addData(chr, bucketStartPosition, bucketEndPosition, buffer, null);
+                    bucketsToClose.add(entry.getKey());
+                }
+            }
 
-                    if (wigWriter != null) {
-                        wigWriter.addData(chr, bucketStartPosition, bucketEndPosition, buffer);
+            for (Integer key : bucketsToClose) {
+                counts.remove(key);
+            }
+
+
+        }
+
+    }
+
+
+    /**
+     * Marks the end of a shard's record queue.
+     */
+    private static final ShardRecord END_OF_SHARD = new ShardRecord(null, 0, 0, null);
+
+    /**
+     * A window of counts produced by a shard.
+     */
+    static class ShardRecord {
+        String chr;
+        int start;
+        int end;
+        float[] data;
+
+        ShardRecord(String chr, int start, int end, float[] data) {
+            this.chr = chr;
+            this.start = start;
+            this.end = end;
+            this.data = data;
+        }
+    }
+
+    /**
+     * An interval of a single sequence counted independently when counting in parallel.  Finished windows are
+     * queued for the thread draining the shard.  The queue is bounded, so workers running ahead of the drain
+     * thread block rather than accumulate the counts for a whole chromosome.
+     */
+    class CountShard implements DataConsumer {
+
+        String seq;
+        int start;
+        int end;
+        int queryStart;
+        int queryEnd;
+        int tolerance;
+
+        BlockingQueue<ShardRecord> records = new LinkedBlockingQueue<>(SHARD_QUEUE_SIZE);
+        int totalCount = 0;
+        volatile Throwable error;
+        volatile boolean cancelled;
+
+        /**
+         * @param seq        - sequence name as defined in the file header
+         * @param start      - shard start, 0-based, inclusive.  Integer.MIN_VALUE for the first shard of a region
+         * @param end        - shard end, exclusive.  Integer.MAX_VALUE for the last shard of a region
+         * @param queryStart - start of the interval queried, including alignments that can contribute counts
+         * @param queryEnd   - end of the interval queried
+         * @param tolerance  - sort tolerance, see parse()
+         */
+        CountShard(String seq, int start, int end, int queryStart, int queryEnd, int tolerance) {
+            this.seq = seq;
+            this.start = start;
+            this.end = end;
+            this.queryStart = queryStart;
+            this.queryEnd = queryEnd;
+            this.tolerance = tolerance;
+        }
+
+        void count(AlignmentReader reader) throws IOException {
+
+            // Counts are restricted to the shard, and the query interval if any
+            int clipStart = start;
+            int clipEnd = end;
+            if (queryInterval != null) {
+                clipStart = Math.max(clipStart, queryInterval.getStart() - 1);
+                clipEnd = Math.min(clipEnd, queryInterval.getEnd());
+            }
+
+            CloseableIterator<Alignment> iter = null;
+            ReadCounter counter = null;
+            float[] shardBuffer = new float[buffer.length];
+            try {
+                iter = reader.query(seq, queryStart, queryEnd, false);
+                while (iter != null && iter.hasNext() && !cancelled) {
+                    Alignment alignment = iter.next();
+
+                    // When counting a query interval, alignments outside it are ignored as in the single-threaded case
+                    if (queryInterval != null &&
+                            (alignment.getAlignmentStart() >= queryInterval.getEnd() ||
+                                    alignment.getAlignmentEnd() < queryInterval.getStart())) {
+                        continue;
                     }
 
+                    if (passFilter(alignment)) {
+                        Strand strand = getCountStrand(alignment);
+                        if (strand.equals(Strand.NONE)) {
+                            continue;
+                        }
 
-                    bucketsToClose.add(entry.getKey());
+                        int alignmentStart = alignment.getAlignmentStart();
+                        if (alignmentStart >= start && alignmentStart < end) {
+                            totalCount++;
+                        }
+
+                        if (counter == null) {
+                            counter = createReadCounter(alignment.getChr(), this, shardBuffer);
+                        } else {
+                            counter.closeBucketsBefore(alignmentStart - tolerance, null);
+                        }
+
+                        countAlignment(alignment, strand, counter, clipStart, clipEnd);
+                    }
+                }
+                if (counter != null) {
+                    counter.closeBucketsBefore(Integer.MAX_VALUE, null);
+                }
+            } finally {
+                if (iter != null) {
+                    iter.close();
                 }
             }
+        }
 
-            for (Integer key : bucketsToClose) {
-                counts.remove(key);
+        void finished() {
+            put(END_OF_SHARD);
+        }
+
+        ShardRecord take() throws InterruptedException {
+            return records.take();
+        }
+
+        private void put(ShardRecord record) {
+            try {
+                while (!cancelled && !records.offer(record, 100, TimeUnit.MILLISECONDS)) {
+                }
+            } catch (InterruptedException e) {
+                cancelled = true;
             }
+        }
 
+        public void addData(String chr, int start, int end, float[] data, String name) {
+            put(new ShardRecord(chr, start, end, data.clone()));
+        }
+
+        public void setType(String type) {
+        }
+
+        public void parsingComplete() {
+        }
 
+        public void setTrackParameters(TrackType trackType, String trackLine, String[] trackNames) {
         }
 
+        public void setTrackParameters(TrackType trackType, String trackLine, String[] trackNames, boolean b) {
+        }
+
+        public void setSortTolerance(int tolerance) {
+        }
+
+        public void setAttribute(String key, String value) {
+        }
     }
 
 
@@ -78,6 +78,7 @@ import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.converters.DensitiesToBedGraph;
+import org.broad.igv.util.stats.QuantileSketch;
 import org.broad.igv.variant.util.VCFtoBed;
 
 import java.io.*;
@@ -157,6 +158,8 @@ public class IgvTools {
     private static CmdLineParser.Option tmpDirOption = null;
     private static CmdLineParser.Option maxZoomOption = null;
     private static CmdLineParser.Option typeOption = null;
+    private static CmdLineParser.Option exactPercentilesOption = null;
+    private static CmdLineParser.Option sketchSizeOption = null;
 
     // options for sort
     private static CmdLineParser.Option maxRecordsOption = null;
@@ -177,6 +180,7 @@ public class IgvTools {
     private static CmdLineParser.Option minMapQualityOpt = null;
     private static CmdLineParser.Option includeDupsOpt = null;
     private static CmdLineParser.Option pairedCoverageOpt = null;
+    private static CmdLineParser.Option threadsOption = null;
 
     // options for index
     private static CmdLineParser.Option indexTypeOption = null;
@@ -350,7 +354,16 @@ public class IgvTools {
                 String wfsString = (String) parser.getOptionValue(windowFunctions);
                 Collection<WindowFunction> wfList = parseWFS(wfsString, isGCT);
 
+                boolean exactPercentiles = (Boolean) parser.getOptionValue(exactPercentilesOption, false);
+                Integer sketchSize = (Integer) parser.getOptionValue(sketchSizeOption);
+                if (exactPercentiles) {
+                    QuantileSketch.setAccumulatorK(0);
+                } else if (sketchSize != null) {
+                    QuantileSketch.setAccumulatorK(sketchSize);
+                }
+
 
+                int nThreads = (Integer) parser.getOptionValue(threadsOption, 1);
                 if (command.equals(CMD_COUNT)) {
 
                     String trackLine = null;
@@ -371,10 +384,11 @@ public class IgvTools {
                     int windowSizeValue = (Integer) parser.getOptionValue(windowSizeOption, WINDOW_SIZE);
                     doCount(ifile, ofile, genomeId, maxZoomValue, wfList, windowSizeValue, extFactorValue,
                             preFactorValue, posFactorValue,
-                            trackLine, queryString, minMapQuality, countFlags);
+                            trackLine, queryString, minMapQuality, countFlags, nThreads);
                 } else {
                     String probeFile = (String) parser.getOptionValue(probeFileOption, PROBE_FILE);
-                    toTDF(typeString, ifile, ofile, probeFile, genomeId, maxZoomValue, wfList, tmpDirName, maxRecords);
+                    toTDF(typeString, ifile, ofile, probeFile, genomeId, maxZoomValue, wfList, tmpDirName, maxRecords,
+                            nThreads);
                 }
 
             } else if (command.equals(CMD_SORT)) {
@@ -576,6 +590,9 @@ public class IgvTools {
             // general options
             windowFunctions = parser.addStringOption('f', "windowFunctions");
             maxZoomOption = parser.addIntegerOption('z', "maxZoom");
+            exactPercentilesOption = parser.addBooleanOption("exactPercentiles");
+            sketchSizeOption = parser.addIntegerOption("sketchSize");
+            threadsOption = parser.addIntegerOption("threads");
 
             // extended options for coverage
             if (command.equals(CMD_COUNT) || command.equals(CMD_BAMTOBED)) {
@@ -668,6 +685,15 @@ public class IgvTools {
     public void toTDF(String typeString, String ifile, String ofile, String probeFile, String genomeId, int maxZoomValue,
                       Collection<WindowFunction> windowFunctions, String tmpDirName, int maxRecords)
             throws IOException, PreprocessingException {
+        toTDF(typeString, ifile, ofile, probeFile, genomeId, maxZoomValue, windowFunctions, tmpDirName, maxRecords, 1);
+    }
+
+    /**
+     * Convert a file to TDF format.  If nThreads > 1 tiles are summarized and compressed in parallel.
+     */
+    public void toTDF(String typeString, String ifile, String ofile, String probeFile, String genomeId, int maxZoomValue,
+                      Collection<WindowFunction> windowFunctions, String tmpDirName, int maxRecords, int nThreads)
+            throws IOException, PreprocessingException {
 
         if (!ifile.endsWith(".affective.csv")) validateIsTilable(typeString);
 
@@ -723,6 +749,7 @@ public class IgvTools {
         File outputFile = new File(ofile);
         try {
             Preprocessor p = new Preprocessor(outputFile, genome, windowFunctions, nLines, null);
+            p.setNumberOfThreads(nThreads);
             if (inputFileOrDir.isDirectory() || inputFileOrDir.getName().endsWith(".list")) {
                 p.setSizeEstimate(0);
                 List<File> files = getFilesFromDirOrList(inputFileOrDir);
@@ -833,6 +860,18 @@ public class IgvTools {
                         Collection<WindowFunction> windowFunctions, int windowSizeValue,
                         int extFactorValue, int preExtFactorValue, int postExtFactorValue,
                         String trackLine, String queryString, int minMapQuality, int countFlags) throws IOException {
+        doCount(ifile, ofile, genomeId, maxZoomValue, windowFunctions, windowSizeValue, extFactorValue,
+                preExtFactorValue, postExtFactorValue, trackLine, queryString, minMapQuality, countFlags, 1);
+    }
+
+    /**
+     * Compute coverage.  If nThreads > 1 and the input file is indexed the file is counted in parallel.
+     */
+    public void doCount(String ifile, String ofile, String genomeId, int maxZoomValue,
+                        Collection<WindowFunction> windowFunctions, int windowSizeValue,
+                        int extFactorValue, int preExtFactorValue, int postExtFactorValue,
+                        String trackLine, String queryString, int minMapQuality, int countFlags,
+                        int nThreads) throws IOException {
 
 
         log.info("Computing coverage.  File = " + ifile);
@@ -844,6 +883,7 @@ public class IgvTools {
         }
         log.info(wfString);
         log.info("Ext factor = " + extFactorValue);
+        log.info("Threads = " + nThreads);
 
 
         Genome genome = loadGenome(genomeId);
@@ -876,12 +916,14 @@ public class IgvTools {
             Preprocessor p = new Preprocessor(tdfFile, genome, windowFunctions, -1, null);
 
             p.setSkipZeroes(true);
+            p.setNumberOfThreads(nThreads);
 
             CoverageCounter counter = new CoverageCounter(ifile, p, windowSizeValue, extFactorValue, wigFile,
                     genome, queryString, minMapQuality, countFlags);
             counter.setWriteStdOut(wigStdOut);
             counter.setPreExtFactor(preExtFactorValue);
             counter.setPosExtFactor(postExtFactorValue);
+            counter.setNumberOfThreads(nThreads);
 
             String prefix = FilenameUtils.getName(ifile);
             String[] tracknames = counter.getTrackNames(prefix + " ");
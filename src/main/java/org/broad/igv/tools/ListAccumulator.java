@@ -33,11 +33,14 @@ import org.broad.igv.util.collections.DoubleArrayList;
 import org.apache.commons.math.stat.StatUtils;
 import org.apache.log4j.Logger;
 import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.stats.QuantileSketch;
 
 import java.util.*;
 
 /**
- * Estimating percentiles -- weighted average of multiple estimates
+ * Estimating percentiles -- by default values are buffered, and for more than MAX_VALUE_COUNT values the result
+ * is a weighted average of multiple estimates.  If a sketch size is configured (QuantileSketch.getAccumulatorK() > 0)
+ * a bounded-memory QuantileSketch is used instead.
  *
  * @author jrobinso
  */
@@ -62,6 +65,7 @@ public class ListAccumulator {
     List<WindowFunction> quantileFunctions;
     Map<WindowFunction, List<PercentileValue>> percentiles = new HashMap();
     DoubleArrayList values = null;
+    QuantileSketch sketch = null;
     float sum = 0.0f;
     int basesCovered = 0;
     int nPts = 0;
@@ -79,10 +83,15 @@ public class ListAccumulator {
     public ListAccumulator(Collection<WindowFunction> windowFunctions) {
         this.windowFunctions = new ArrayList(windowFunctions);
         quantileFunctions = new ArrayList();
+        int k = QuantileSketch.getAccumulatorK();
         for (WindowFunction wf : windowFunctions) {
             if (PERCENTILE_WINDOW_FUNCTIONS.contains(wf)) {
                 quantileFunctions.add(wf);
-                if (values == null) {
+                if (k > 0) {
+                    if (sketch == null) {
+                        sketch = new QuantileSketch(k);
+                    }
+                } else if (values == null) {
                     values = new DoubleArrayList();
                 }
             }
@@ -96,7 +105,9 @@ public class ListAccumulator {
             sum += w*v;
             basesCovered +=w;
             nPts++;
-            if (values != null) {
+            if (sketch != null) {
+                sketch.add(v);
+            } else if (values != null) {
                 values.add(v);
                 if (values.size() > MAX_VALUE_COUNT) {
                     computePercentiles();
@@ -107,7 +118,7 @@ public class ListAccumulator {
     }
 
 
-    public void finish() {
+    public synchronized void finish() {
 
         if (isFinished) {
             return;
@@ -115,7 +126,16 @@ public class ListAccumulator {
 
         mean = Float.isNaN(sum) ? Float.NaN : sum / basesCovered;
 
-        if (values != null) {
+        if (sketch != null) {
+            for (WindowFunction wf : quantileFunctions) {
+                if (nPts == 1) {
+                    setValue(wf, mean);
+                } else {
+                    double p = getPercentile(wf);
+                    setValue(wf, (nPts == 0 || p <= 0) ? Float.NaN : (float) sketch.getPercentile(p));
+                }
+            }
+        } else if (values != null) {
             if (nPts == 1) {
                 for (WindowFunction wf : quantileFunctions) {
                     setValue(wf, mean);
@@ -145,6 +165,7 @@ public class ListAccumulator {
             }
         }
         values = null;
+        sketch = null;
         isFinished = true;
 
     }
@@ -53,7 +53,9 @@ public class Preprocessor implements DataConsumer {
 
     boolean compressed = true;
     private boolean skipZeroes = false;
+    private boolean skipRawData = false;
     private int nZoom = 7;
+    private int nThreads = 1;
     int maxExtFactor = 0;
     Zoom[] zoomLevels;
     int nTracks;
@@ -127,6 +129,7 @@ public class Preprocessor implements DataConsumer {
 
         if (outputFile != null && writer == null) {
             writer = new TDFWriter(outputFile, genome.getId(), trackType, trackLine, trackNames, windowFunctions, compressed);
+            writer.setThreads(nThreads);
             nTracks = trackNames.length;
 
             // Convert genome coordinates from bp to kbp
@@ -203,7 +206,9 @@ public class Preprocessor implements DataConsumer {
 
 
         // Add to raw data
-        rawData.addData(start, end, data, name);
+        if (!skipRawData) {
+            rawData.addData(start, end, data, name);
+        }
 
         // Zoom levels
         for (Zoom zl : zoomLevels) {
@@ -368,6 +373,13 @@ public class Preprocessor implements DataConsumer {
         this.skipZeroes = skipZeroes;
     }
 
+    /**
+     * If true only the zoom levels are written,  for a file that summarizes data available elsewhere
+     */
+    public void setSkipRawData(boolean skipRawData) {
+        this.skipRawData = skipRawData;
+    }
+
     public int getNZoom() {
         return nZoom;
     }
@@ -376,6 +388,13 @@ public class Preprocessor implements DataConsumer {
         this.nZoom = nZoom;
     }
 
+    /**
+     * Set the number of threads used to summarize and compress tiles.  Must be called before setTrackParameters.
+     */
+    public void setNumberOfThreads(int nThreads) {
+        this.nThreads = nThreads;
+    }
+
 
     /**
      * Class representing a tile of raw (as opposed to summarized) data.
@@ -656,65 +675,67 @@ public class Preprocessor implements DataConsumer {
 
 
         /**
-         *
+         * Write a tile for each window function.  Accumulators are finished and tiles built by the writer,  possibly
+         * on a worker thread,  so this tile must not be modified after close is called.
          */
         void close() {
 
             // Count non-empty bins.  All tracks should be the same
             nonEmptyBins = 0;
+            for (int i = 0; i < nBins; i++) {
+                if (accumulators[0][i] != null) {
+                    nonEmptyBins++;
+                }
+            }
+
+            for (WindowFunction wf : datasets.keySet()) {
+                String dsName = datasets.get(wf).getName();
+                try {
+                    writer.writeTile(dsName, tileNumber, () -> createTile(wf));
+                } catch (IOException exc) {
+                    log.error("Error writing tile: " + dsName + " [" + tileNumber + "]", exc);
+                    throw new PreprocessingException(exc.getMessage());
+                }
+            }
+        }
+
+        TDFTile createTile(WindowFunction wf) {
 
             for (int t = 0; t < nTracks; t++) {
                 for (int i = 0; i < nBins; i++) {
                     if (accumulators[t][i] != null) {
                         accumulators[t][i].finish();
-                        if (t == 0) {
-                            nonEmptyBins++;
-                        }
                     }
                 }
             }
 
-            TDFTile tile = null;
-
-            for (WindowFunction wf : datasets.keySet()) {
-
-
-                // If < 50% of bins are empty use vary step tile, otherwise use fixed step
-                if (nonEmptyBins < 0.5 * nBins) {
-                    int[] starts = new int[nonEmptyBins];
-                    float[][] data = new float[nTracks][nonEmptyBins];
-                    int n = 0;
-                    for (int i = 0; i < nBins; i++) {
-                        for (int t = 0; t < nTracks; t++) {
-                            ListAccumulator acc = accumulators[t][i];
-                            if (acc != null) {
-                                data[t][n] = acc.getValue(wf);
-                                if (t == nTracks - 1) {
-                                    starts[n] = (int) (tileStart + (i * binWidth));
-                                    n++;
-                                }
-                            }
-                        }
-                    }
-                    tile = new TDFVaryTile((int) tileStart, binWidth, starts, data);
-
-                } else {
-                    float[][] data = new float[nTracks][nBins];
+            // If < 50% of bins are empty use vary step tile, otherwise use fixed step
+            if (nonEmptyBins < 0.5 * nBins) {
+                int[] starts = new int[nonEmptyBins];
+                float[][] data = new float[nTracks][nonEmptyBins];
+                int n = 0;
+                for (int i = 0; i < nBins; i++) {
                     for (int t = 0; t < nTracks; t++) {
-                        for (int i = 0; i < nBins; i++) {
-                            data[t][i] = accumulators[t][i] == null ? Float.NaN : accumulators[t][i].getValue(wf);
+                        ListAccumulator acc = accumulators[t][i];
+                        if (acc != null) {
+                            data[t][n] = acc.getValue(wf);
+                            if (t == nTracks - 1) {
+                                starts[n] = (int) (tileStart + (i * binWidth));
+                                n++;
+                            }
                         }
                     }
-                    tile = new TDFFixedTile(tileStart, tileStart, binWidth, data);
                 }
+                return new TDFVaryTile((int) tileStart, binWidth, starts, data);
 
-                String dsName = datasets.get(wf).getName();
-                try {
-                    writer.writeTile(dsName, tileNumber, tile);
-                } catch (IOException exc) {
-                    log.error("Error writing tile: " + dsName + " [" + tileNumber + "]", exc);
-                    throw new PreprocessingException(exc.getMessage());
+            } else {
+                float[][] data = new float[nTracks][nBins];
+                for (int t = 0; t < nTracks; t++) {
+                    for (int i = 0; i < nBins; i++) {
+                        data[t][i] = accumulators[t][i] == null ? Float.NaN : accumulators[t][i].getValue(wf);
+                    }
                 }
+                return new TDFFixedTile(tileStart, tileStart, binWidth, data);
             }
         }
     }
@@ -34,6 +34,7 @@ import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.tools.sort.SortableRecord;
 import org.broad.igv.tools.sort.SortableRecordCodec;
 import org.broad.igv.track.TrackType;
+import org.broad.igv.util.FieldTokenizer;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.collections.SortingCollection;
@@ -67,12 +68,12 @@ public class GCTtoIGVConverter {
         GeneToLocusHelper locusHelper = new GeneToLocusHelper(probeResource);
 
 
-        BufferedReader reader = null;
+        FieldTokenizer reader = null;
         PrintWriter writer = null;
 
         SortingCollection cltn = getSortingCollection(maxRecords, tmpDir);
         try {
-            reader = new BufferedReader(new InputStreamReader(ParsingUtils.openInputStream(resourceLocator.getPath())));
+            reader = new FieldTokenizer(ParsingUtils.openInputStream(resourceLocator.getPath()));
             writer = new PrintWriter(new BufferedWriter(new FileWriter(outputFile)));
 
             ExpressionFileParser.FormatDescriptor formatDescriptor = ExpressionFileParser.parseHeader (reader, type, null);
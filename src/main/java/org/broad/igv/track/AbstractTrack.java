@@ -250,7 +250,7 @@ public abstract class AbstractTrack implements Track {
 
     private String getDisplayName() {
 
-        String sampleKey = IGV.getInstance().getSession().getTrackAttributeName();
+        String sampleKey = IGV.hasInstance() ? IGV.getInstance().getSession().getTrackAttributeName() : null;
         if (sampleKey != null && sampleKey.trim().length() > 0) {
             String name = getAttributeValue(sampleKey.trim());
             if (name != null) {
@@ -1061,6 +1061,15 @@ public abstract class AbstractTrack implements Track {
         return 0;
     }
 
+    /**
+     * Return the object region scores are computed from, used by {@link RegionScoreSorter} to memoize scores.
+     * Memoized scores are discarded when a different object is returned, e.g. after the data is reloaded.
+     * The default, null, disables memoization.
+     */
+    protected Object getRegionScoreSource() {
+        return null;
+    }
+
 
     public boolean isLogNormalized() {
         // Required method for track interface, ignore
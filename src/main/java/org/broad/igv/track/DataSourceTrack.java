@@ -100,6 +100,15 @@ public class DataSourceTrack extends DataTrack {
         }
     }
 
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    @Override
+    protected Object getRegionScoreSource() {
+        return dataSource;
+    }
+
     void initScale(DataSource dataSource, List<LocusScore> scores){
 
         float min = (float) dataSource.getDataMin();
@@ -35,6 +35,7 @@ package org.broad.igv.track;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
+import org.broad.igv.data.ScoreArray;
 import org.broad.igv.feature.Chromosome;
 import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.LocusScore;
@@ -62,6 +63,7 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a track of numeric data
@@ -75,12 +77,11 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
 
     private DataRenderer renderer;
 
-    private Map<String, LoadedDataInterval<List<LocusScore>>> loadedIntervalCache = new HashMap(200);
+    private final Map<String, LoadedDataInterval<ScoreArray>> loadedIntervalCache = new ConcurrentHashMap<>();
 
     public DataTrack(ResourceLocator locator, String id, String name) {
         super(locator, id, name);
         autoScale = PreferencesManager.getPreferences().getAsBoolean(Constants.CHART_AUTOSCALE);
-        loadedIntervalCache = Collections.synchronizedMap(new HashMap<>());
         IGVEventBus.getInstance().subscribe(FrameManager.ChangeEvent.class, this);
     }
 
@@ -90,11 +91,11 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
         if (event instanceof FrameManager.ChangeEvent) {
 
             Collection<ReferenceFrame> frames = ((FrameManager.ChangeEvent) event).getFrames();
-            Map<String, LoadedDataInterval<List<LocusScore>>> newCache = Collections.synchronizedMap(new HashMap<>());
+            Set<String> frameNames = new HashSet<>();
             for (ReferenceFrame f : frames) {
-                newCache.put(f.getName(), loadedIntervalCache.get(f.getName()));
+                frameNames.add(f.getName());
             }
-            loadedIntervalCache = newCache;
+            loadedIntervalCache.keySet().retainAll(frameNames);
 
 
         } else {
@@ -139,7 +140,7 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
         int expandedStart = Math.max(0, start - delta);
         int expandedEnd = Math.min(maxEnd, end + delta);
         LoadedDataInterval<List<LocusScore>> interval  = getSummaryScores(queryChr, expandedStart, expandedEnd, zoom);
-        loadedIntervalCache.put(referenceFrame.getName(), interval);
+        loadedIntervalCache.put(referenceFrame.getName(), toScoreArrayInterval(interval));
 
     }
 
@@ -174,30 +175,42 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
     }
 
 
+    /**
+     * Cache entries hold scores in columnar form.  Subclasses may return any list, it is converted once here.
+     */
+    private static LoadedDataInterval<ScoreArray> toScoreArrayInterval(LoadedDataInterval<List<LocusScore>> interval) {
+        List<LocusScore> scores = interval.getFeatures();
+        if (scores instanceof ScoreArray) {
+            return (LoadedDataInterval) interval;
+        }
+        return new LoadedDataInterval<>(interval.range.getChr(), interval.range.getStart(), interval.range.getEnd(),
+                interval.zoom, ScoreArray.of(scores));
+    }
+
     public List<LocusScore> getInViewScores(ReferenceFrame referenceFrame) {
 
-        LoadedDataInterval<List<LocusScore>> interval = loadedIntervalCache.get(referenceFrame.getName());
+        LoadedDataInterval<ScoreArray> interval = loadedIntervalCache.get(referenceFrame.getName());
         String chr = referenceFrame.getChrName();
         int start = (int) referenceFrame.getOrigin();
         int end = (int) referenceFrame.getEnd() + 1;
         int zoom = referenceFrame.getZoom();
-        if (interval == null ||  !(chr.equals(interval.range.chr))) { // Try the data we have, even if not perfect !interval.contains(chr, start, end, zoom)) {
+        if (interval == null || interval.getFeatures() == null || !(chr.equals(interval.range.chr))) { // Try the data we have, even if not perfect !interval.contains(chr, start, end, zoom)) {
             return Collections.EMPTY_LIST;
         }
 
-        List<LocusScore> inViewScores = interval.getFeatures();
+        ScoreArray inViewScores = interval.getFeatures();
 
         // Trim scores
-        int startIdx = Math.max(0, FeatureUtils.getIndexBefore(start, inViewScores));
+        int startIdx = Math.max(0, inViewScores.getIndexBefore(start));
         int endIdx = inViewScores.size();   // Starting guess
-        int tmp = FeatureUtils.getIndexBefore(end, inViewScores);
+        int tmp = inViewScores.getIndexBefore(end);
 
         if (tmp < 0)
             return Collections.EMPTY_LIST;
 
         else {
             for (int i = tmp; i < inViewScores.size(); i++) {
-                if (inViewScores.get(i).getStart() > end) {
+                if (inViewScores.getStart(i) > end) {
                     endIdx = i + 1;
                     break;
                 }
@@ -212,12 +225,12 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
 
     public Range getInViewRange(ReferenceFrame referenceFrame) {
 
-        List<LocusScore> scores = getInViewScores(referenceFrame);
+        ScoreArray scores = ScoreArray.of(getInViewScores(referenceFrame));
         if (scores.size() > 0) {
             float min = Float.MAX_VALUE;
             float max = -Float.MAX_VALUE;
-            for (LocusScore score : scores) {
-                float value = score.getScore();
+            for (int i = 0; i < scores.size(); i++) {
+                float value = scores.getValue(i);
                 if (!Float.isNaN(value)) {
                     min = Math.min(value, min);
                     max = Math.max(value, max);
@@ -234,6 +247,7 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
 
     public void clearCaches() {
         loadedIntervalCache.clear();
+        RegionScoreSorter.invalidate(this);
     }
 
     public void setRendererClass(Class rc) {
@@ -328,7 +342,7 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
         }
         if (isRegionScoreType(type)) {
 
-            List<LocusScore> scores = null;
+            ScoreArray scores = null;
             if (frameName == null) {
                 //Essentially covering headless case here
                 frameName = (chr + start) + end;
@@ -336,24 +350,27 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
                 frameName += type;
             }
 
-            LoadedDataInterval<List<LocusScore>> loadedInterval = loadedIntervalCache.get(frameName);
-            if (loadedInterval != null && loadedInterval.contains(chr, start, end, zoom)) {
-                scores = loadedInterval.getFeatures();
-            } else {
-                scores = this.getSummaryScores(chr, start, end, zoom).getFeatures();
-                loadedIntervalCache.put(frameName, new LoadedDataInterval<>(chr, start, end, zoom, scores));
+            // Frames may be scored in parallel, loads share the lock with load(frame)
+            synchronized (this) {
+                LoadedDataInterval<ScoreArray> loadedInterval = loadedIntervalCache.get(frameName);
+                if (loadedInterval != null && loadedInterval.contains(chr, start, end, zoom)) {
+                    scores = loadedInterval.getFeatures();
+                } else {
+                    scores = ScoreArray.of(this.getSummaryScores(chr, start, end, zoom).getFeatures());
+                    loadedIntervalCache.put(frameName, new LoadedDataInterval<>(chr, start, end, zoom, scores));
+                }
             }
 
 
             if (type == RegionScoreType.FLUX) {
                 float sumDiffs = 0;
                 float lastScore = Float.NaN;
-                for (LocusScore score : scores) {
-                    if ((score.getEnd() >= start) && (score.getStart() <= end)) {
+                for (int i = 0; i < scores.size(); i++) {
+                    if ((scores.getEnd(i) >= start) && (scores.getStart(i) <= end)) {
                         if (Float.isNaN(lastScore)) {
-                            lastScore = Math.min(2, Math.max(-2, logScaleData(score.getScore())));
+                            lastScore = Math.min(2, Math.max(-2, logScaleData(scores.getValue(i))));
                         } else {
-                            float s = Math.min(2, Math.max(-2, logScaleData(score.getScore())));
+                            float s = Math.min(2, Math.max(-2, logScaleData(scores.getValue(i))));
                             sumDiffs += Math.abs(s - lastScore);
                             lastScore = s;
                         }
@@ -380,10 +397,12 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
                 float regionScore = 0;
                 int intervalSum = 0;
                 boolean hasNan = false;
-                for (LocusScore score : scores) {
-                    if ((score.getEnd() >= start) && (score.getStart() <= end)) {
-                        int interval = Math.min(end, score.getEnd()) - Math.max(start, score.getStart());
-                        float value = score.getScore();
+                for (int i = 0; i < scores.size(); i++) {
+                    int scoreStart = scores.getStart(i);
+                    int scoreEnd = scores.getEnd(i);
+                    if ((scoreEnd >= start) && (scoreStart <= end)) {
+                        int interval = Math.min(end, scoreEnd) - Math.max(start, scoreStart);
+                        float value = scores.getValue(i);
                         //For sorting it makes sense to skip NaNs. Not sure about other contexts
                         if (Float.isNaN(value)) {
                             hasNan = true;
@@ -404,6 +404,11 @@ public class FeatureTrack extends AbstractTrack implements IGVEventObserver {
         return -Float.MAX_VALUE;
     }
 
+    @Override
+    protected Object getRegionScoreSource() {
+        return source;
+    }
+
 
     public Renderer getRenderer() {
         if (renderer == null) {
@@ -969,6 +974,7 @@ public class FeatureTrack extends AbstractTrack implements IGVEventObserver {
     public void setVisibilityWindow(int windowSize) {
         super.setVisibilityWindow(windowSize);
         packedFeaturesMap.clear();
+        RegionScoreSorter.invalidate(this);
         source.setFeatureWindowSize(visibilityWindow);
     }
 
@@ -1087,6 +1093,7 @@ public class FeatureTrack extends AbstractTrack implements IGVEventObserver {
      */
     public void clearPackedFeatures() {
         this.packedFeaturesMap.clear();
+        RegionScoreSorter.invalidate(this);
     }
 
     /**
@@ -0,0 +1,349 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.track;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.ui.util.ProgressMonitor;
+import org.broad.igv.util.collections.LRUCache;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Sorts tracks, track groups, and frames by region score.
+ * <p/>
+ * Sorting with a comparator that calls {@link Track#getRegionScore} evaluates each track ~log(N) times, on the
+ * calling thread, and can trigger data loads in the middle of the sort.  This class instead computes each score
+ * exactly once, in parallel on a small bounded pool, then sorts on the resulting primitive keys.  Scores are
+ * memoized per track and (region, type, frame), so re-sorting the same region is immediate.  Only tracks that
+ * report the source their scores come from ({@link AbstractTrack#getRegionScoreSource()}) are memoized, and the
+ * memo is discarded when that source changes or when {@link #invalidate(Track)} is called.
+ * <p/>
+ * Score computation reports progress to an optional {@link ProgressMonitor} and can be aborted with
+ * {@link #cancel()}, in which case a {@link CancellationException} is thrown and the list is left unsorted.
+ *
+ * @author jrobinso
+ */
+public class RegionScoreSorter {
+
+    private static Logger log = Logger.getLogger(RegionScoreSorter.class);
+
+    private static final int MAX_THREADS = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    private static final int MAX_MEMOIZED_REGIONS = 20;
+
+    private static ExecutorService executor;
+
+    private static final Map<Track, Memo> scoreCache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final ProgressMonitor monitor;
+
+    private volatile boolean cancelled = false;
+
+    public RegionScoreSorter() {
+        this(null);
+    }
+
+    public RegionScoreSorter(ProgressMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Forget memoized scores for the track.  Call when its data, or the way its data is summarized, changes.
+     */
+    public static void invalidate(Track track) {
+        scoreCache.remove(track);
+    }
+
+    /**
+     * Return true if scores of the track for the type are memoized,  so computing them ahead of a sort, e.g. off the
+     * event thread, makes the sort itself fast.  Mutation counts depend on other (overlaid) tracks,  which can come
+     * and go,  so they are never memoized.
+     */
+    public static boolean isMemoized(Track track, RegionScoreType type) {
+        return type != RegionScoreType.MUTATION_COUNT && getRegionScoreSource(track) != null;
+    }
+
+    private static Object getRegionScoreSource(Track track) {
+        return track instanceof AbstractTrack ? ((AbstractTrack) track).getRegionScoreSource() : null;
+    }
+
+    /**
+     * Sort tracks in descending order of score over the region.  Null tracks sort last, ties keep their order.
+     */
+    public void sortTracks(List<Track> tracks, String chr, int start, int end, int zoom,
+                           RegionScoreType type, String frameName) {
+        float[] scores = getScores(tracks, chr, start, end, zoom, type, frameName);
+        sortByScore(tracks, scores);
+    }
+
+    /**
+     * Sort groups in descending order of score.  A group's score is the maximum score of its visible tracks,
+     * as in {@link TrackGroup#getRegionScore}.
+     */
+    public void sortGroups(List<TrackGroup> groups, String chr, int start, int end, int zoom,
+                           RegionScoreType type, String frameName) {
+
+        List<Track> tracks = new ArrayList<>();
+        int[] offsets = new int[groups.size() + 1];
+        for (int g = 0; g < groups.size(); g++) {
+            offsets[g] = tracks.size();
+            TrackGroup group = groups.get(g);
+            if (group != null) {
+                tracks.addAll(group.getVisibleTracks());
+            }
+        }
+        offsets[groups.size()] = tracks.size();
+
+        float[] trackScores = getScores(tracks, chr, start, end, zoom, type, frameName);
+
+        float[] groupScores = new float[groups.size()];
+        for (int g = 0; g < groups.size(); g++) {
+            float score = -Float.MAX_VALUE;
+            for (int i = offsets[g]; i < offsets[g + 1]; i++) {
+                score = Math.max(score, trackScores[i]);
+            }
+            groupScores[g] = score;
+        }
+        sortByScore(groups, groupScores);
+    }
+
+    /**
+     * Sort frames in descending order of the track's score over each frame's current locus.  Only data tracks,
+     * which guard their per-frame loads, are scored for several frames concurrently.
+     */
+    public void sortFrames(List<ReferenceFrame> frames, final Track track) {
+
+        final List<ReferenceFrame> frameList = new ArrayList<>(frames);
+        float[] scores = computeScores(frameList.size(), track instanceof DataTrack, new ScoreFunction() {
+            public float score(int i) {
+                ReferenceFrame frame = frameList.get(i);
+                return getScore(track, frame.getChromosome().getName(), (int) frame.getOrigin(), (int) frame.getEnd(),
+                        frame.getZoom(), RegionScoreType.SCORE, frame.getName());
+            }
+        });
+        sortByScore(frames, scores);
+    }
+
+    /**
+     * Return the score of each track over the region, in list order.  Null tracks score -Float.MAX_VALUE.
+     */
+    public float[] getScores(final List<? extends Track> tracks, final String chr, final int start, final int end,
+                             final int zoom, final RegionScoreType type, final String frameName) {
+
+        final List<Track> trackList = new ArrayList<>(tracks);
+        return computeScores(trackList.size(), true, new ScoreFunction() {
+            public float score(int i) {
+                Track t = trackList.get(i);
+                return t == null ? -Float.MAX_VALUE : getScore(t, chr, start, end, zoom, type, frameName);
+            }
+        });
+    }
+
+    private static float getScore(Track track, String chr, int start, int end, int zoom,
+                                  RegionScoreType type, String frameName) {
+
+        Object source = getRegionScoreSource(track);
+        boolean memoize = source != null && type != RegionScoreType.MUTATION_COUNT;
+
+        String key = null;
+        LRUCache<String, Float> trackCache = null;
+        if (memoize) {
+            key = chr + ":" + start + "-" + end + ":" + zoom + ":" + type + ":" + frameName;
+            synchronized (scoreCache) {
+                Memo memo = scoreCache.get(track);
+                if (memo == null || memo.source.get() != source) {
+                    memo = new Memo(source);
+                    scoreCache.put(track, memo);
+                }
+                trackCache = memo.scores;
+            }
+            Float score = trackCache.get(key);
+            if (score != null) {
+                return score;
+            }
+        }
+
+        float score;
+        try {
+            score = track.getRegionScore(chr, start, end, zoom, type, frameName);
+        } catch (Exception e) {
+            log.error("Error computing region score for " + track.getName() + ". Sort might not be accurate.", e);
+            return -Float.MAX_VALUE;
+        }
+
+        if (memoize) {
+            trackCache.put(key, score);
+        }
+        return score;
+    }
+
+    private float[] computeScores(int n, boolean parallel, final ScoreFunction function) {
+
+        final float[] scores = new float[n];
+        Arrays.fill(scores, -Float.MAX_VALUE);
+        if (n == 0) {
+            return scores;
+        }
+
+        if (n == 1 || MAX_THREADS == 1 || !parallel) {
+            for (int i = 0; i < n; i++) {
+                checkCancelled();
+                scores[i] = function.score(i);
+                fireProgress(i + 1, n);
+            }
+            return scores;
+        }
+
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(getExecutor());
+        List<Future<Integer>> futures = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            final int idx = i;
+            futures.add(completionService.submit(new Callable<Integer>() {
+                public Integer call() {
+                    if (!cancelled) {
+                        scores[idx] = function.score(idx);
+                    }
+                    return idx;
+                }
+            }));
+        }
+
+        try {
+            for (int done = 1; done <= n; done++) {
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException e) {
+                    // getScore() logs and absorbs exceptions, so this is unexpected
+                    log.error("Error computing region scores", e.getCause());
+                }
+                checkCancelled();
+                fireProgress(done, n);
+            }
+        } catch (InterruptedException e) {
+            cancelled = true;
+            Thread.currentThread().interrupt();
+        } finally {
+            if (cancelled) {
+                for (Future<Integer> f : futures) {
+                    f.cancel(false);
+                }
+            }
+        }
+        checkCancelled();
+        return scores;
+    }
+
+    private void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Sort cancelled");
+        }
+    }
+
+    private void fireProgress(int done, int total) {
+        if (monitor != null) {
+            int percent = (int) ((100L * done) / total);
+            int previous = (int) ((100L * (done - 1)) / total);
+            if (percent != previous) {
+                monitor.fireProgress(percent);
+            }
+        }
+    }
+
+    /**
+     * Reorder items in descending order of score, using {@link Float#compare} semantics.  The sort is stable
+     * and null items are placed last.
+     */
+    static <T> void sortByScore(List<T> items, float[] scores) {
+
+        List<T> original = new ArrayList<>(items);
+        int n = original.size();
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int sortKey;
+            if (original.get(i) == null) {
+                // Not produced by any float,  -Infinity maps to 0x807fffff
+                sortKey = Integer.MIN_VALUE;
+            } else {
+                // Map the float onto an int with the same ordering as Float.compare
+                int bits = Float.floatToIntBits(scores[i]);
+                sortKey = bits ^ ((bits >> 31) & 0x7fffffff);
+            }
+            // Invert for descending order, the index in the low word keeps the sort stable
+            keys[i] = ((long) ~sortKey << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        ListIterator<T> iter = items.listIterator();
+        for (int i = 0; i < n; i++) {
+            iter.next();
+            iter.set(original.get((int) keys[i]));
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(MAX_THREADS, new ThreadFactory() {
+                int count = 0;
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "RegionScoreSorter-" + (count++));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private interface ScoreFunction {
+        float score(int i);
+    }
+
+    /**
+     * Scores for one track, valid while the track reports the same source.  The source is weakly referenced as
+     * it may in turn refer to the track, which would then never be released from the weak map.
+     */
+    private static class Memo {
+
+        final WeakReference<Object> source;
+        final LRUCache<String, Float> scores = new LRUCache<>(MAX_MEMOIZED_REGIONS);
+
+        Memo(Object source) {
+            this.source = new WeakReference<>(source);
+        }
+    }
+}
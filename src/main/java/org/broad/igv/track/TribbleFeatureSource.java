@@ -37,9 +37,11 @@ import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.ui.util.IndexCreatorDialog;
 import org.broad.igv.util.FileUtils;
+import org.broad.igv.util.ParallelLineParser;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.RuntimeUtils;
 import org.broad.igv.util.collections.CollUtils;
+import org.broad.igv.util.stream.RemoteFileCache;
 import org.broad.igv.variant.VariantTrack;
 import htsjdk.tribble.*;
 import htsjdk.tribble.index.Index;
@@ -74,7 +76,11 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
 
         FeatureCodec codec = CodecFactory.getCodec(locator, genome);
         String idxPath = ResourceLocator.indexFile(locator);
-        boolean indexExists = FileUtils.resourceExists(idxPath);
+
+        // A remote index that could be cached exists,  otherwise check for it as before
+        String cachedIdxPath = RemoteFileCache.getInstance().getLocalPath(idxPath);
+        boolean indexExists = !cachedIdxPath.equals(idxPath) || FileUtils.resourceExists(idxPath);
+        idxPath = cachedIdxPath;
 
         // Optionally let the user create an index.
         final int hundredMB = 100000000;
@@ -292,33 +298,28 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
             super(locator, basicReader, codec, genome, false);
 
             featureMap = new HashMap<String, List<Feature>>(25);
-            Iterator<Feature> iter = null;
-
-            try {
-                iter = reader.iterator();
-                while (iter.hasNext()) {
-                    Feature f = iter.next();
-                    if (f == null) continue;
-
-                    String seqName = f.getChr();
-                    String igvChr = genome == null ? seqName : genome.getCanonicalChrName(seqName);
 
-                    List<Feature> featureList = featureMap.get(igvChr);
-                    if (featureList == null) {
-                        featureList = new ArrayList();
-                        featureMap.put(igvChr, featureList);
+            if (codec instanceof AsciiFeatureCodec && CodecFactory.canDecodeConcurrently(codec) &&
+                    ParallelLineParser.isSplittable(locator.getPath())) {
+                loadFeaturesParallel(locator.getPath(), (AsciiFeatureCodec) codec);
+            } else {
+                Iterator<Feature> iter = null;
+                try {
+                    iter = reader.iterator();
+                    while (iter.hasNext()) {
+                        Feature f = iter.next();
+                        if (f == null) continue;
+                        addFeature(f);
+                    }
+                } finally {
+                    if (iter instanceof CloseableTribbleIterator) {
+                        ((CloseableTribbleIterator) iter).close();
                     }
-                    featureList.add(f);
-                    if (f instanceof NamedFeature) FeatureDB.addFeature((NamedFeature) f, genome);
-                }
-            } finally {
-                if (iter instanceof CloseableTribbleIterator) {
-                    ((CloseableTribbleIterator) iter).close();
                 }
             }
 
             for (List<Feature> featureList : featureMap.values()) {
-                FeatureUtils.sortFeatureList(featureList);
+                FeatureUtils.parallelSortFeatureList(featureList);
             }
 
             if (genome != null) {
@@ -328,6 +329,57 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
             }
         }
 
+        private void addFeature(Feature f) {
+            String seqName = f.getChr();
+            String igvChr = genome == null ? seqName : genome.getCanonicalChrName(seqName);
+
+            List<Feature> featureList = featureMap.get(igvChr);
+            if (featureList == null) {
+                featureList = new ArrayList();
+                featureMap.put(igvChr, featureList);
+            }
+            featureList.add(f);
+            if (f instanceof NamedFeature) FeatureDB.addFeature((NamedFeature) f, genome);
+        }
+
+        /**
+         * Decode the file in line-aligned chunks on the fork-join pool.  The header has already been read by the
+         * tribble reader.  Features are added in file order, as the sequential reader would, so feature lists
+         * and FeatureDB end up the same.
+         *
+         * @param path
+         * @param codec a codec for which {@link CodecFactory#canDecodeConcurrently} is true
+         * @throws IOException
+         */
+        private void loadFeaturesParallel(String path, AsciiFeatureCodec codec) throws IOException {
+
+            final boolean isGFF = codec instanceof GFFCodec;
+            final boolean[] endOfFeatures = {false};
+
+            ParallelLineParser.parse(path, 0, (lines, chunk) -> {
+                FeatureChunk result = new FeatureChunk();
+                while (lines.nextLine()) {
+                    if (lines.isBlank()) continue;
+                    if (lines.startsWith("#")) {
+                        // Header or comment line,  except for the start of an embedded GFF fasta section
+                        if (isGFF && lines.getLine().toUpperCase().startsWith("##FASTA")) {
+                            result.endOfFeatures = true;
+                            break;
+                        }
+                        continue;
+                    }
+                    Feature f = codec.decode(lines.getLine());
+                    if (f != null) result.features.add(f);
+                }
+                return result;
+            }, result -> {
+                if (!endOfFeatures[0]) {
+                    result.features.forEach(this::addFeature);
+                    endOfFeatures[0] = result.endOfFeatures;
+                }
+            });
+        }
+
         @Override
         public void dispose() {
             super.dispose();
@@ -408,6 +460,11 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
             featureMap.put(Globals.CHR_ALL, chrAllFeatures);
         }
 
+        static class FeatureChunk {
+            List<Feature> features = new ArrayList<>();
+            boolean endOfFeatures = false;
+        }
+
         class CoverageDataSource extends AbstractDataSource {
 
             int windowSize = 1000;
@@ -64,6 +64,7 @@ import org.broad.igv.ui.dnd.GhostGlassPane;
 import org.broad.igv.ui.panel.*;
 import org.broad.igv.ui.util.*;
 import org.broad.igv.util.*;
+import org.broad.igv.util.stream.SeekableMappedStream;
 import org.broad.igv.variant.VariantTrack;
 
 import javax.swing.*;
@@ -126,6 +127,11 @@ public class IGV implements IGVEventObserver {
     public static final String DATA_PANEL_NAME = "DataPanel";
     public static final String FEATURE_PANEL_NAME = "FeaturePanel";
 
+    /**
+     * Sorts by region score over at least this many tracks show a (cancellable) progress dialog
+     */
+    private static final int SORT_PROGRESS_THRESHOLD = 200;
+
 
     // Misc state
     private LinkedList<String> recentSessionList = new LinkedList<String>();
@@ -943,6 +949,7 @@ public class IGV implements IGVEventObserver {
 
         //TODO -- this is a very blunt and dangerous way to clean up -- change to close files associated with this session
         SeekableFileStream.closeAllInstances();
+        SeekableMappedStream.closeAllInstances();
 
         Set<Track> newTracks = new HashSet<>(getAllTracks());
         for (Track t : oldTracks) {
@@ -1954,13 +1961,77 @@ public class IGV implements IGVEventObserver {
         final RegionOfInterest r = region == null ? new RegionOfInterest(frame.getChrName(), (int) frame.getOrigin(),
                 (int) frame.getEnd() + 1, frame.getName()) : region;
 
-        // Create a rank order of samples.  This is done globally so sorting is consistent across groups and panels.
-        final List<String> sortedSamples = sortSamplesByRegionScore(r, type, frame);
+        final Runnable sort = new Runnable() {
+            public void run() {
+                // Create a rank order of samples.  This is done globally so sorting is consistent across groups and panels.
+                final List<String> sortedSamples = sortSamplesByRegionScore(r, type, frame);
 
-        for (TrackPanel trackPanel : getTrackPanels()) {
-            trackPanel.sortByRegionsScore(r, type, frame, sortedSamples);
+                for (TrackPanel trackPanel : getTrackPanels()) {
+                    trackPanel.sortByRegionsScore(r, type, frame, sortedSamples);
+                }
+                revalidateTrackPanels();
+            }
+        };
+
+        List<Track> memoizedTracks = new ArrayList<>();
+        for (Track t : getAllTracks()) {
+            if (RegionScoreSorter.isMemoized(t, type)) {
+                memoizedTracks.add(t);
+            }
         }
-        revalidateTrackPanels();
+
+        if (SwingUtilities.isEventDispatchThread() && !Globals.isBatch() && !Globals.isHeadless() &&
+                !memoizedTracks.isEmpty()) {
+            // Compute the scores off the event thread, the sort then runs against the memoized scores
+            precomputeRegionScores(memoizedTracks, r, type, frame, sort);
+        } else {
+            sort.run();
+        }
+    }
+
+    /**
+     * Compute region scores for the tracks in a background thread, then run {@code onComplete} on the
+     * event thread.  Only tracks whose scores are memoized are worth precomputing,  others would be scored again
+     * by the sort.  Large sorts show a progress dialog that can cancel the sort.
+     */
+    private void precomputeRegionScores(final List<Track> tracks,
+                                        final RegionOfInterest region,
+                                        final RegionScoreType type,
+                                        final ReferenceFrame frame,
+                                        final Runnable onComplete) {
+
+        final int zoom = Math.max(0, frame.getZoom());
+        final org.broad.igv.ui.util.ProgressMonitor monitor = new org.broad.igv.ui.util.ProgressMonitor();
+        final RegionScoreSorter sorter = new RegionScoreSorter(monitor);
+
+        final CancellableProgressDialog dialog = tracks.size() < SORT_PROGRESS_THRESHOLD ? null :
+                CancellableProgressDialog.showCancellableProgressDialog(mainFrame, "Sorting tracks...",
+                        new ActionListener() {
+                            public void actionPerformed(ActionEvent e) {
+                                sorter.cancel();
+                            }
+                        }, false, monitor);
+
+        LongRunningTask.submit(new Runnable() {
+            public void run() {
+                try {
+                    sorter.getScores(tracks, region.getChr(), region.getStart(), region.getEnd(), zoom, type,
+                            frame.getName());
+                    UIUtilities.invokeOnEventThread(onComplete);
+                } catch (java.util.concurrent.CancellationException e) {
+                    log.info("Sort by region score cancelled");
+                } finally {
+                    if (dialog != null) {
+                        UIUtilities.invokeOnEventThread(new Runnable() {
+                            public void run() {
+                                dialog.setVisible(false);
+                                dialog.dispose();
+                            }
+                        });
+                    }
+                }
+            }
+        });
     }
 
 
@@ -2012,29 +2083,7 @@ public class IGV implements IGVEventObserver {
             final int start = region.getStart();
             final int end = region.getEnd();
 
-            Comparator<Track> c = new Comparator<Track>() {
-
-                public int compare(Track t1, Track t2) {
-                    try {
-                        if (t1 == null && t2 == null) return 0;
-                        if (t1 == null) return 1;
-                        if (t2 == null) return -1;
-
-
-                        float s1 = t1.getRegionScore(chr, start, end, zoom, type, frameName);
-                        float s2 = t2.getRegionScore(chr, start, end, zoom, type, frameName);
-
-                        return Float.compare(s2, s1);
-
-
-                    } catch (Exception e) {
-                        log.error("Error sorting tracks. Sort might not be accurate.", e);
-                        return 0;
-                    }
-
-                }
-            };
-            Collections.sort(tracks, c);
+            new RegionScoreSorter().sortTracks(tracks, chr, start, end, zoom, type, frameName);
 
         }
     }
@@ -30,7 +30,7 @@ import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.lists.GeneList;
 import org.broad.igv.prefs.Constants;
 import org.broad.igv.prefs.PreferencesManager;
-import org.broad.igv.track.RegionScoreType;
+import org.broad.igv.track.RegionScoreSorter;
 import org.broad.igv.track.Track;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.action.SearchCommand;
@@ -40,9 +40,10 @@ import org.broad.igv.event.IGVEventObserver;
 import org.broad.igv.ui.util.MessageUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author jrobinso
@@ -53,6 +54,10 @@ public class FrameManager implements IGVEventObserver {
     private static List<ReferenceFrame> frames = new ArrayList();
     private static ReferenceFrame defaultFrame;
 
+    // Frames being rendered offscreen (e.g. batch snapshots).  These are not displayed,  but data loaded for them
+    // must survive cache trimming until they are released.
+    private static final List<ReferenceFrame> offscreenFrames = new CopyOnWriteArrayList<>();
+
     public static final String DEFAULT_FRAME_NAME = "genome";
 
     static {
@@ -70,6 +75,18 @@ public class FrameManager implements IGVEventObserver {
         return frames;
     }
 
+    public static Collection<ReferenceFrame> getOffscreenFrames() {
+        return Collections.unmodifiableList(offscreenFrames);
+    }
+
+    public static void addOffscreenFrame(ReferenceFrame frame) {
+        offscreenFrames.add(frame);
+    }
+
+    public static void removeOffscreenFrame(ReferenceFrame frame) {
+        offscreenFrames.remove(frame);
+    }
+
     public static ReferenceFrame getFrame(String frameName) {
         for (ReferenceFrame frame : frames) {
             if (frame.getName().equals(frameName)) {
@@ -228,16 +245,7 @@ public class FrameManager implements IGVEventObserver {
 
     public static void sortFrames(final Track t) {
 
-        Collections.sort(frames, new Comparator<ReferenceFrame>() {
-            @Override
-            public int compare(ReferenceFrame o1, ReferenceFrame o2) {
-                float s1 = t.getRegionScore(o1.getChromosome().getName(), (int) o1.getOrigin(), (int) o1.getEnd(),
-                        o1.getZoom(), RegionScoreType.SCORE, o1.getName());
-                float s2 = t.getRegionScore(o2.getChromosome().getName(), (int) o2.getOrigin(), (int) o2.getEnd(),
-                        o2.getZoom(), RegionScoreType.SCORE, o2.getName());
-                return (s1 == s2 ? 0 : (s1 > s2) ? -1 : 1);
-            }
-        });
+        new RegionScoreSorter().sortFrames(frames, t);
 
     }
 
@@ -271,7 +279,13 @@ public class FrameManager implements IGVEventObserver {
         List<ReferenceFrame> frames;
 
         public ChangeEvent(List<ReferenceFrame> frames) {
-            this.frames = frames;
+            if (offscreenFrames.isEmpty()) {
+                this.frames = frames;
+            } else {
+                // Listeners trim their per-frame caches to these frames,  keep those of offscreen frames too
+                this.frames = new ArrayList<>(frames);
+                this.frames.addAll(offscreenFrames);
+            }
         }
 
         public List<ReferenceFrame> getFrames() {
@@ -129,6 +129,18 @@ public class ReferenceFrame {
         this.eventBus = IGVEventBus.getInstance();
     }
 
+    /**
+     * Constructor with event bus override -- used by frames rendered offscreen,  whose view changes should not
+     * reach the UI
+     *
+     * @param name
+     * @param eventBus
+     */
+    public ReferenceFrame(String name, IGVEventBus eventBus) {
+        this(name);
+        this.eventBus = eventBus;
+    }
+
     public ReferenceFrame(ReferenceFrame otherFrame) {
         this(otherFrame, otherFrame.eventBus);
     }
@@ -0,0 +1,358 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.ui.panel;
+
+import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.svggen.SVGGraphics2D;
+import org.apache.log4j.Logger;
+import org.broad.igv.Globals;
+import org.broad.igv.event.IGVEventBus;
+import org.broad.igv.feature.Locus;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.track.Track;
+import org.broad.igv.track.TrackGroup;
+import org.broad.igv.ui.UIConstants;
+import org.broad.igv.util.ParsingUtils;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders snapshots of many regions concurrently,  without touching the displayed view.  Each worker owns an
+ * offscreen {@link ReferenceFrame},  painter,  and image,  while the tracks and their data sources are shared.
+ * Worker frames are registered with the {@link FrameManager} for the duration of a render so data loaded for
+ * them is not trimmed from the track caches.
+ * <p>
+ * Alignment tracks serialize loading per file,  so regions over the same alignment file load one at a time,
+ * painting still proceeds in parallel.
+ *
+ * @author jrobinso
+ */
+public class RegionSnapshotRenderer {
+
+    private static Logger log = Logger.getLogger(RegionSnapshotRenderer.class);
+
+    public enum Format {PNG, SVG}
+
+    private static final AtomicInteger frameCounter = new AtomicInteger();
+
+    private final List<TrackGroup> groups;
+    private final int nameWidth;
+    private final int dataWidth;
+    private final int maxHeight;
+
+    /**
+     * @param groups    Track groups to render,  from top to bottom
+     * @param nameWidth Width of the track name column,  0 for none
+     * @param dataWidth Width of the data panel,  this sets the resolution of each region
+     * @param maxHeight Maximum image height,  tracks below are cut off
+     */
+    public RegionSnapshotRenderer(Collection<TrackGroup> groups, int nameWidth, int dataWidth, int maxHeight) {
+        this.groups = new ArrayList<>(groups);
+        this.nameWidth = nameWidth;
+        this.dataWidth = dataWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * Render each region to a file in {@code directory}.  Returns error messages for regions that could not be
+     * rendered,  an empty list if all succeeded.
+     *
+     * @param regions
+     * @param directory
+     * @param format
+     * @param nWorkers  number of regions rendered concurrently
+     */
+    public List<String> render(List<Region> regions, File directory, Format format, int nWorkers) throws InterruptedException {
+
+        final BlockingQueue<Region> queue = new LinkedBlockingQueue<>(regions);
+        final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        nWorkers = Math.max(1, Math.min(nWorkers, regions.size()));
+
+        final AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(nWorkers, r -> {
+            Thread t = new Thread(r, "snapshot-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        List<Worker> workers = new ArrayList<>(nWorkers);
+        try {
+            List<Future<?>> futures = new ArrayList<>(nWorkers);
+            for (int i = 0; i < nWorkers; i++) {
+                Worker worker = new Worker();
+                workers.add(worker);
+                futures.add(executor.submit(() -> {
+                    Region region;
+                    while ((region = queue.poll()) != null) {
+                        try {
+                            worker.render(region, new File(directory, region.getFileName(format)), format);
+                        } catch (Exception e) {
+                            log.error("Error rendering " + region.getLocusString(), e);
+                            errors.add(region.getLocusString() + ": " + e.getMessage());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    log.error("Error rendering regions", e.getCause());
+                    errors.add(e.getCause().getMessage());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            for (Worker worker : workers) {
+                FrameManager.removeOffscreenFrame(worker.frame);
+            }
+            // Let per-frame caches drop the entries of the released frames
+            IGVEventBus.getInstance().post(new FrameManager.ChangeEvent(FrameManager.getFrames()));
+        }
+        return errors;
+    }
+
+    private class Worker {
+
+        final ReferenceFrame frame;
+        final DataPanelPainter painter = new DataPanelPainter();
+
+        Worker() {
+            // A private event bus keeps this frame's view changes from reaching the displayed panels
+            frame = new ReferenceFrame("offscreen-" + frameCounter.incrementAndGet(), new IGVEventBus());
+            frame.setBounds(0, dataWidth);
+            FrameManager.addOffscreenFrame(frame);
+        }
+
+        void render(Region region, File file, Format format) throws IOException {
+
+            Locus locus = region.getLocus();
+            if (locus == null) {
+                throw new IOException("Unknown region");
+            }
+            frame.jumpTo(locus);
+
+            List<Track> tracks = visibleTracks();
+            for (Track track : tracks) {
+                if (!track.isReadyToPaint(frame)) {
+                    track.load(frame);
+                }
+            }
+
+            int height = Math.max(1, Math.min(maxHeight, getContentHeight()));
+            int width = nameWidth + dataWidth;
+
+            if (format == Format.SVG) {
+                DOMImplementation domImpl = GenericDOMImplementation.getDOMImplementation();
+                Document document = domImpl.createDocument("http://www.w3.org/2000/svg", "svg", null);
+                SVGGraphics2D svgGenerator = new SVGGraphics2D(document);
+                svgGenerator.setSVGCanvasSize(new Dimension(width, height));
+                paint(svgGenerator, height);
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+                    svgGenerator.stream(out, true);
+                }
+            } else {
+                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = image.createGraphics();
+                try {
+                    paint(g, height);
+                } finally {
+                    g.dispose();
+                }
+                ImageIO.write(image, "png", file);
+            }
+        }
+
+        private void paint(Graphics2D g, int height) {
+
+            g.setColor(Color.white);
+            g.fillRect(0, 0, nameWidth + dataWidth, height);
+
+            if (nameWidth > 0) {
+                paintNames((Graphics2D) g.create(0, 0, nameWidth, height), height);
+            }
+
+            Graphics2D dataGraphics = (Graphics2D) g.create(nameWidth, 0, dataWidth, height);
+            RenderContext context = null;
+            try {
+                Rectangle rect = new Rectangle(0, 0, dataWidth, height);
+                context = new RenderContext(null, dataGraphics, frame, rect);
+                painter.paint(groups, context, dataWidth, Color.white, rect);
+            } finally {
+                if (context != null) {
+                    context.dispose();
+                }
+                dataGraphics.dispose();
+            }
+        }
+
+        private void paintNames(Graphics2D g, int height) {
+            try {
+                g.setColor(Color.black);
+                int trackY = 0;
+                for (TrackGroup group : groups) {
+                    if (!group.isVisible()) continue;
+                    if (groups.size() > 1) {
+                        trackY += UIConstants.groupGap;
+                    }
+                    for (Track track : group.getVisibleTracks()) {
+                        if (trackY > height) return;
+                        if (track == null || !track.isVisible()) continue;
+                        Rectangle rect = new Rectangle(0, trackY, nameWidth, track.getHeight());
+                        track.renderName(g, rect, rect);
+                        trackY += rect.height;
+                    }
+                }
+            } finally {
+                g.dispose();
+            }
+        }
+    }
+
+    private List<Track> visibleTracks() {
+        List<Track> tracks = new ArrayList<>();
+        for (TrackGroup group : groups) {
+            if (group.isVisible()) {
+                for (Track track : group.getVisibleTracks()) {
+                    if (track != null && track.isVisible()) {
+                        tracks.add(track);
+                    }
+                }
+            }
+        }
+        return tracks;
+    }
+
+    /**
+     * Height of all visible tracks,  laid out as {@link DataPanelPainter} does
+     */
+    private int getContentHeight() {
+        int height = 0;
+        for (TrackGroup group : groups) {
+            if (group.isVisible()) {
+                if (groups.size() > 1) {
+                    height += UIConstants.groupGap;
+                }
+                for (Track track : group.getVisibleTracks()) {
+                    if (track != null && track.isVisible()) {
+                        height += track.getHeight();
+                    }
+                }
+            }
+        }
+        return height;
+    }
+
+
+    /**
+     * Read regions from a file,  one per line.  Lines are either BED records (chr, 0-based start, end, optional
+     * name) or a locus string or feature name,  optionally followed by a name.  The name,  if any,  is used for the
+     * output file.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static List<Region> parseRegions(String path) throws IOException {
+
+        List<Region> regions = new ArrayList<>();
+        try (BufferedReader reader = ParsingUtils.openBufferedReader(path)) {
+            String nextLine;
+            while ((nextLine = reader.readLine()) != null) {
+                String line = nextLine.trim();
+                if (line.length() == 0 || line.startsWith("#") || line.startsWith("track") || line.startsWith("browser")) {
+                    continue;
+                }
+                String[] tokens = Globals.whitespacePattern.split(line);
+                Region region = null;
+                if (tokens.length >= 3) {
+                    try {
+                        int start = Integer.parseInt(tokens[1]);
+                        int end = Integer.parseInt(tokens[2]);
+                        region = new Region(new Locus(tokens[0], start, end), tokens.length > 3 ? tokens[3] : null);
+                    } catch (NumberFormatException e) {
+                        // Not a BED record
+                    }
+                }
+                if (region == null) {
+                    region = new Region(tokens[0], tokens.length > 1 ? tokens[1] : null);
+                }
+                regions.add(region);
+            }
+        }
+        return regions;
+    }
+
+
+    public static class Region {
+
+        private final String searchString;
+        private final String name;
+        private Locus locus;
+
+        public Region(Locus locus, String name) {
+            this.locus = locus;
+            this.searchString = null;
+            this.name = name;
+        }
+
+        /**
+         * @param searchString A locus string or feature name,  resolved when the region is rendered
+         * @param name
+         */
+        public Region(String searchString, String name) {
+            this.searchString = searchString;
+            this.name = name;
+        }
+
+        synchronized Locus getLocus() {
+            if (locus == null && searchString != null) {
+                locus = FrameManager.getLocus(searchString);
+            }
+            return locus;
+        }
+
+        String getLocusString() {
+            return searchString != null ? searchString : locus.toString();
+        }
+
+        String getFileName(Format format) {
+            String base = name != null ? name : getLocusString().replaceAll(":", "_").replace("-", "_");
+            return base.replaceAll("[\\\\/*?\"<>|\\s]", "_") + "." + format.name().toLowerCase();
+        }
+    }
+}
@@ -29,8 +29,12 @@ import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
+import java.util.zip.ZipException;
 
 /**
  * Created by IntelliJ IDEA.
@@ -43,11 +47,27 @@ public class CompressionUtils {
 
     private static Logger log = Logger.getLogger(CompressionUtils.class);
 
+    private static final int MIN_BUFFER_SIZE = 1024;
+
+    /**
+     * Output buffers larger than this are not kept for reuse,  so one large block does not pin memory for the life
+     * of the thread.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Inflaters are expensive to create and hold native memory,  reuse one per thread.
+     */
+    private static final ThreadLocal<Inflater> threadInflater = ThreadLocal.withInitial(Inflater::new);
+
+    /**
+     * Output buffer for {@link #inflate},  reused by each thread.
+     */
+    private static final ThreadLocal<byte[]> threadOutputBuffer = new ThreadLocal<>();
+
     private Deflater deflater;
-    private Inflater decompressor;
 
     public CompressionUtils() {
-        decompressor = new Inflater();
         deflater = new Deflater();
         deflater.setLevel(Deflater.DEFAULT_COMPRESSION);
     }
@@ -57,50 +77,98 @@ public class CompressionUtils {
     }
 
     /**
+     * Corrupt data is logged,  and the bytes decompressed before the error are returned.
+     *
      * @param data                  -- the data to decompress
      * @param uncompressedChunkSize -- an estimate of the uncompressed chunk size.  This need not be exact.
      * @return
      */
-    public synchronized byte[] decompress(byte[] data, int uncompressedChunkSize) {
-
-        // mpd: new code
-        int rem = data.length;
-
-        // Create an expandable byte array to hold the decompressed data
-        ByteArrayOutputStream bos = new ByteArrayOutputStream(uncompressedChunkSize);
-
-        // Decompress the data
-        byte[] outbuf = new byte[uncompressedChunkSize];
-
-        decompressor.reset();
-        decompressor.setInput(data);
-        while (rem > 0) {
+    public byte[] decompress(byte[] data, int uncompressedChunkSize) {
+        ByteBuffer buffer;
+        try {
+            buffer = inflate(data, 0, data.length, uncompressedChunkSize, false);
+        } catch (DataFormatException e) {
+            // Not thrown when lenient
+            throw new IllegalStateException(e);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.limit());
+    }
 
-            // If we are finished with the current chunk start a new one
-            if (decompressor.finished()) {
-                decompressor = new Inflater();
-                int offset = data.length - rem;
-                decompressor.setInput(data, offset, rem);
-            }
+    /**
+     * Decompress zlib data,  which can consist of several concatenated streams,  as in bigwig and tdf files.  This
+     * method is thread safe and does not block,  each thread reuses its own Inflater and output buffer.
+     * <p/>
+     * The returned buffer wraps the decompressed bytes from 0 to limit().  Its backing array belongs to the calling
+     * thread and is overwritten by that thread's next call,  callers that keep the data must copy it.
+     *
+     * @param data             -- the compressed data
+     * @param offset           -- offset of the compressed data in data
+     * @param length           -- length of the compressed data
+     * @param uncompressedSize -- the expected uncompressed size,  e.g. the bbfile "uncompressBuffSize".  If the data
+     *                         is larger the buffer is expanded.
+     * @return
+     * @throws IOException if the data is corrupt
+     */
+    public static ByteBuffer inflate(byte[] data, int offset, int length, int uncompressedSize) throws IOException {
+        try {
+            return inflate(data, offset, length, uncompressedSize, true);
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+    }
 
-            try {
-                int count = decompressor.inflate(outbuf, 0, outbuf.length);
-                rem = decompressor.getRemaining();
-                bos.write(outbuf, 0, count);
+    /**
+     * @param strict -- if true corrupt data throws,  otherwise the error is logged and the bytes decompressed before
+     *               it are returned
+     */
+    private static ByteBuffer inflate(byte[] data, int offset, int length, int uncompressedSize, boolean strict)
+            throws DataFormatException {
 
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        int size = Math.max(uncompressedSize, MIN_BUFFER_SIZE);
+        byte[] outbuf = threadOutputBuffer.get();
+        if (outbuf == null || outbuf.length < size) {
+            outbuf = new byte[size];
         }
+        int n = 0;
 
+        Inflater inflater = threadInflater.get();
+        inflater.reset();
+        inflater.setInput(data, offset, length);
         try {
-            bos.close();
-        } catch (IOException e) {
-            // Ignore -- no resources open
+            while (true) {
+                if (n == outbuf.length) {
+                    outbuf = Arrays.copyOf(outbuf, 2 * outbuf.length);
+                }
+                int count = inflater.inflate(outbuf, n, outbuf.length - n);
+                n += count;
+
+                if (inflater.finished()) {
+                    // If we are finished with the current chunk start the next one,  if any
+                    int rem = inflater.getRemaining();
+                    if (rem == 0) {
+                        break;
+                    }
+                    inflater.reset();
+                    inflater.setInput(data, offset + length - rem, rem);
+                } else if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    log.warn("Compressed data is truncated");
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            if (strict) {
+                throw e;
+            }
+            log.error("Error decompressing data", e);
+        } finally {
+            // Release the reference to the input
+            inflater.reset();
+            if (outbuf.length <= MAX_RETAINED_BUFFER_SIZE) {
+                threadOutputBuffer.set(outbuf);
+            }
         }
 
-        // Return the decompressed data
-        return bos.toByteArray();
+        return ByteBuffer.wrap(outbuf, 0, n);
     }
 
 
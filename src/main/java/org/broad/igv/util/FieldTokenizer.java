@@ -0,0 +1,752 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import htsjdk.tribble.readers.LineReader;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits lines of delimited text into fields without creating a String per field.  Lines are read from an
+ * input stream into a reusable byte buffer,  or set from an existing String,  and fields are recorded as offsets
+ * into the buffer.  Numeric fields are parsed directly from the bytes,  Strings are created only for fields
+ * that are asked for as Strings.
+ * <p>
+ * A tokenizer keeps state for the current line and is not thread safe.
+ * <p>
+ * Typical use
+ * <pre>
+ *     FieldTokenizer tokenizer = new FieldTokenizer(inputStream);
+ *     while (tokenizer.nextLine()) {
+ *         int nFields = tokenizer.splitTabs();
+ *         String chr = tokenizer.getInternedString(0);
+ *         int start = tokenizer.getInt(1);
+ *         float value = tokenizer.getFloat(3, Float.NaN);
+ *     }
+ * </pre>
+ */
+public class FieldTokenizer implements LineReader {
+
+    private static Logger log = Logger.getLogger(FieldTokenizer.class);
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int INTERN_CACHE_SIZE = 1024;
+
+    // Powers of 10 exactly representable as doubles
+    private static final double[] POWERS_OF_10 = new double[23];
+
+    static {
+        POWERS_OF_10[0] = 1;
+        for (int i = 1; i < POWERS_OF_10.length; i++) {
+            POWERS_OF_10[i] = POWERS_OF_10[i - 1] * 10;
+        }
+    }
+
+    private InputStream inputStream;
+    private boolean eof;
+    private long position;
+
+    private byte[] buffer;
+    private int dataEnd;       // End of valid data in the buffer
+    private int nextLineStart; // Start of the next unread line
+
+    private int lineStart;
+    private int lineEnd;
+
+    private int fieldCount;
+    private int[] fieldStarts = new int[32];
+    private int[] fieldEnds = new int[32];
+
+    // Fields set with setFields(String[]).  Each is copied into the buffer when accessed,  one at a time.
+    private String[] fieldStrings;
+    private int loadedField = -1;
+
+    private final String[] internCache = new String[INTERN_CACHE_SIZE];
+
+    /**
+     * Create a tokenizer for lines supplied with {@link #setLine(String)} or {@link #setFields(String[])}
+     */
+    public FieldTokenizer() {
+        this.buffer = new byte[256];
+        this.eof = true;
+    }
+
+    /**
+     * Create a tokenizer reading lines from {@code inputStream}.  The stream should not be buffered,  the tokenizer
+     * does its own buffering.
+     *
+     * @param inputStream
+     */
+    public FieldTokenizer(InputStream inputStream) {
+        this(inputStream, DEFAULT_BUFFER_SIZE);
+    }
+
+    FieldTokenizer(InputStream inputStream, int bufferSize) {
+        this.inputStream = inputStream;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Advance to the next line.  Line terminators (\n, \r\n, or \r) are not included in the line.
+     *
+     * @return false if there are no more lines
+     * @throws IOException
+     */
+    public boolean nextLine() throws IOException {
+
+        fieldCount = 0;
+        fieldStrings = null;
+        int start = nextLineStart;
+        int scan = start;
+
+        while (true) {
+            for (int i = scan; i < dataEnd; i++) {
+                byte b = buffer[i];
+                if (b == '\n' || b == '\r') {
+                    int next = i + 1;
+                    if (b == '\r') {
+                        if (next == dataEnd && !eof) {
+                            // Need one more byte to see if this is \r\n
+                            int shift = fill(start);
+                            start -= shift;
+                            i -= shift;
+                            next -= shift;
+                        }
+                        if (next < dataEnd && buffer[next] == '\n') {
+                            next++;
+                        }
+                    }
+                    lineStart = start;
+                    lineEnd = i;
+                    nextLineStart = next;
+                    position += next - start;
+                    return true;
+                }
+            }
+            if (eof) {
+                if (start == dataEnd) {
+                    lineStart = lineEnd = start;
+                    return false;
+                }
+                lineStart = start;
+                lineEnd = dataEnd;
+                nextLineStart = dataEnd;
+                position += dataEnd - start;
+                return true;
+            }
+            int scanned = dataEnd - start;
+            start -= fill(start);
+            scan = start + scanned;
+        }
+    }
+
+    /**
+     * Read more data,  keeping the bytes from {@code keepFrom} on.  Returns the distance the kept bytes moved
+     * towards the start of the buffer.
+     */
+    private int fill(int keepFrom) throws IOException {
+
+        int shift = keepFrom;
+        int kept = dataEnd - keepFrom;
+        if (kept == buffer.length) {
+            byte[] newBuffer = new byte[buffer.length * 2];
+            System.arraycopy(buffer, keepFrom, newBuffer, 0, kept);
+            buffer = newBuffer;
+        } else if (shift > 0) {
+            System.arraycopy(buffer, keepFrom, buffer, 0, kept);
+        }
+        dataEnd = kept;
+
+        int n = inputStream.read(buffer, dataEnd, buffer.length - dataEnd);
+        if (n < 0) {
+            eof = true;
+        } else {
+            dataEnd += n;
+        }
+        return shift;
+    }
+
+    /**
+     * Advance to the next line and return it as a String.  Provided for header lines and the like,  and for
+     * use as a {@link LineReader}.
+     *
+     * @return the line,  or null if there are no more lines
+     * @throws IOException
+     */
+    public String readLine() throws IOException {
+        return nextLine() ? getLine() : null;
+    }
+
+    /**
+     * @return Number of bytes consumed,  including the terminator of the current line
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public void close() {
+        if (inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                log.error("Error closing stream", e);
+            }
+        }
+    }
+
+    /**
+     * Set the current line
+     *
+     * @param line
+     */
+    public void setLine(String line) {
+
+        fieldCount = 0;
+        fieldStrings = null;
+        int length = line.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (c >= 0x80) {
+                byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, buffer, 0, bytes.length);
+                length = bytes.length;
+                break;
+            }
+            buffer[i] = (byte) c;
+        }
+        lineStart = 0;
+        lineEnd = length;
+    }
+
+    /**
+     * Set the current fields from Strings that have already been split.  The Strings are referenced,  not copied
+     * or joined:  {@link #getString(int)} returns them as is,  other accessors copy one field at a time into the
+     * buffer.  Line level methods other than {@link #getLine()} see an empty line.
+     *
+     * @param fields
+     */
+    public void setFields(String[] fields) {
+        fieldStrings = fields;
+        fieldCount = fields.length;
+        loadedField = -1;
+        lineStart = lineEnd = 0;
+        while (fieldStarts.length < fieldCount) {
+            fieldStarts = new int[2 * fieldStarts.length];
+            fieldEnds = new int[2 * fieldEnds.length];
+        }
+    }
+
+    /**
+     * Copy a field set with {@link #setFields(String[])} into the buffer
+     */
+    private void loadField(int field) {
+        if (field == loadedField) {
+            return;
+        }
+        String f = fieldStrings[field];
+        int length = f == null ? 0 : f.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = f.charAt(i);
+            if (c >= 0x80) {
+                byte[] bytes = f.getBytes(StandardCharsets.UTF_8);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, buffer, 0, bytes.length);
+                length = bytes.length;
+                break;
+            }
+            buffer[i] = (byte) c;
+        }
+        fieldStarts[field] = 0;
+        fieldEnds[field] = length;
+        loadedField = field;
+    }
+
+    private void ensureCapacity(int length) {
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, 2 * buffer.length)];
+        }
+    }
+
+    /**
+     * @return The current line as a String
+     */
+    public String getLine() {
+        if (fieldStrings != null) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < fieldStrings.length; i++) {
+                if (i > 0) line.append('\t');
+                if (fieldStrings[i] != null) line.append(fieldStrings[i]);
+            }
+            return line.toString();
+        }
+        return new String(buffer, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+    }
+
+    public int getLineLength() {
+        return lineEnd - lineStart;
+    }
+
+    /**
+     * @return true if the current line is empty or contains only whitespace
+     */
+    public boolean isBlank() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (!isWhitespace(buffer[i])) return false;
+        }
+        return true;
+    }
+
+    public boolean startsWith(String prefix) {
+        return regionMatches(lineStart, lineEnd, prefix);
+    }
+
+
+    /**
+     * Split the current line on tabs.  Every tab separates two fields,  so empty fields are kept,  equivalent to
+     * {@code Globals.tabPattern.split(line, -1)}.
+     *
+     * @return the number of fields
+     */
+    public int splitTabs() {
+        fieldCount = 0;
+        fieldStrings = null;
+        int start = lineStart;
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (buffer[i] == '\t') {
+                addField(start, i);
+                start = i + 1;
+            }
+        }
+        addField(start, lineEnd);
+        return fieldCount;
+    }
+
+    /**
+     * Split the current line on runs of whitespace,  ignoring leading and trailing whitespace.  Equivalent to
+     * {@code Globals.whitespacePattern.split(line.trim())}.
+     *
+     * @return the number of fields
+     */
+    public int splitWhitespace() {
+        fieldCount = 0;
+        fieldStrings = null;
+        int i = lineStart;
+        while (i < lineEnd) {
+            while (i < lineEnd && isWhitespace(buffer[i])) i++;
+            if (i == lineEnd) break;
+            int start = i;
+            while (i < lineEnd && !isWhitespace(buffer[i])) i++;
+            addField(start, i);
+        }
+        if (fieldCount == 0) {
+            addField(lineStart, lineStart);
+        }
+        return fieldCount;
+    }
+
+    /**
+     * Split the current line on single tabs or runs of spaces,  dropping trailing empty fields.  Equivalent to
+     * {@code Globals.singleTabMultiSpacePattern.split(line)}.
+     *
+     * @return the number of fields
+     */
+    public int splitTabsAndSpaces() {
+        fieldCount = 0;
+        fieldStrings = null;
+        int start = lineStart;
+        int i = lineStart;
+        while (i < lineEnd) {
+            byte b = buffer[i];
+            if (b == '\t') {
+                addField(start, i);
+                start = ++i;
+            } else if (b == ' ') {
+                addField(start, i);
+                while (i < lineEnd && buffer[i] == ' ') i++;
+                start = i;
+            } else {
+                i++;
+            }
+        }
+        addField(start, lineEnd);
+        if (lineStart < lineEnd) {
+            // As String.split,  an empty line yields a single empty field,  otherwise trailing empty fields are dropped
+            while (fieldCount > 0 && fieldStarts[fieldCount - 1] == fieldEnds[fieldCount - 1]) {
+                fieldCount--;
+            }
+        }
+        return fieldCount;
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            int[] newStarts = new int[2 * fieldCount];
+            int[] newEnds = new int[2 * fieldCount];
+            System.arraycopy(fieldStarts, 0, newStarts, 0, fieldCount);
+            System.arraycopy(fieldEnds, 0, newEnds, 0, fieldCount);
+            fieldStarts = newStarts;
+            fieldEnds = newEnds;
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    public int getFieldLength(int field) {
+        checkField(field);
+        return fieldEnds[field] - fieldStarts[field];
+    }
+
+    /**
+     * @return true if the field is empty or contains only whitespace
+     */
+    public boolean isBlank(int field) {
+        checkField(field);
+        for (int i = fieldStarts[field]; i < fieldEnds[field]; i++) {
+            if (!isWhitespace(buffer[i])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The first non-whitespace character of the field,  or 0 if the field is blank
+     */
+    public char getFirstChar(int field) {
+        checkField(field);
+        for (int i = fieldStarts[field]; i < fieldEnds[field]; i++) {
+            if (!isWhitespace(buffer[i])) return (char) (buffer[i] & 0xFF);
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if the field,  ignoring surrounding whitespace,  equals {@code s}
+     */
+    public boolean fieldEquals(int field, String s) {
+        checkField(field);
+        int start = trimStart(fieldStarts[field], fieldEnds[field]);
+        int end = trimEnd(start, fieldEnds[field]);
+        return end - start == s.length() && regionMatches(start, end, s);
+    }
+
+    public String getString(int field) {
+        if (fieldStrings != null && field < fieldCount) {
+            return fieldStrings[field] == null ? "" : fieldStrings[field];
+        }
+        checkField(field);
+        return new String(buffer, fieldStarts[field], fieldEnds[field] - fieldStarts[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return the field with surrounding whitespace removed,  interned.  Intended for values that repeat from line to
+     * line,  such as chromosome and sample names.  Repeated values are looked up without creating a String.
+     *
+     * @param field
+     * @return
+     */
+    public String getInternedString(int field) {
+        checkField(field);
+        int start = trimStart(fieldStarts[field], fieldEnds[field]);
+        int end = trimEnd(start, fieldEnds[field]);
+
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+            if (b < 0) {
+                // Not ASCII,  don't cache
+                return StringUtils.intern(new String(buffer, start, end - start, StandardCharsets.UTF_8));
+            }
+            hash = 31 * hash + b;
+        }
+        int slot = (hash ^ (hash >>> 16)) & (INTERN_CACHE_SIZE - 1);
+        String cached = internCache[slot];
+        if (cached != null && cached.length() == end - start && regionMatches(start, end, cached)) {
+            return cached;
+        }
+        String s = StringUtils.intern(new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+        internCache[slot] = s;
+        return s;
+    }
+
+    /**
+     * Parse the field as an integer.  Surrounding whitespace is ignored,  otherwise the field must be a decimal
+     * integer as for {@link Integer#parseInt(String)}.
+     *
+     * @throws NumberFormatException if the field is not an integer
+     */
+    public int getInt(int field) {
+        checkField(field);
+        return parseInt(fieldStarts[field], fieldEnds[field]);
+    }
+
+    /**
+     * Parse the field as an integer,  accepting scientific notation as {@link ParsingUtils#parseInt(String)} does.
+     *
+     * @throws NumberFormatException if the field is not a number
+     */
+    public int getLenientInt(int field) {
+        checkField(field);
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        long value = fastParseInt(start, end);
+        return value == Long.MIN_VALUE ? ParsingUtils.parseInt(new String(buffer, start, end - start, StandardCharsets.UTF_8).trim()) : (int) value;
+    }
+
+    /**
+     * Parse a list of integers separated by {@code delimiter},  for example the comma separated exon sizes of a
+     * BED record.  A trailing delimiter is ignored.
+     *
+     * @throws NumberFormatException if an element is not an integer
+     */
+    public int[] getIntList(int field, char delimiter) {
+        checkField(field);
+        int start = fieldStarts[field];
+        int end = trimEnd(start, fieldEnds[field]);
+        if (end > start && buffer[end - 1] == delimiter) end--;
+
+        int n = 1;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == delimiter) n++;
+        }
+        int[] values = new int[n];
+        int k = 0;
+        int s = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || buffer[i] == delimiter) {
+                values[k++] = parseInt(s, i);
+                s = i + 1;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Parse the field as a float.  The result is identical to {@link Float#parseFloat(String)}.
+     *
+     * @throws NumberFormatException if the field is not a number
+     */
+    public float getFloat(int field) {
+        checkField(field);
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        double value = fastParseFloat(start, end);
+        return Double.isNaN(value) ?
+                Float.parseFloat(new String(buffer, start, end - start, StandardCharsets.UTF_8)) :
+                (float) value;
+    }
+
+    /**
+     * Parse the field as a float,  returning {@code defaultValue} if it is empty or not a number.  Missing value
+     * markers like "NA" are common in data files,  this avoids the cost of an exception for each.
+     */
+    public float getFloat(int field, float defaultValue) {
+        checkField(field);
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        double value = fastParseFloat(start, end);
+        if (!Double.isNaN(value)) {
+            return (float) value;
+        }
+        start = trimStart(start, end);
+        end = trimEnd(start, end);
+        if (end - start == 3 && regionMatches(start, end, "NaN")) {
+            return Float.NaN;
+        }
+        if (start == end || !couldBeNumber(buffer[start])) {
+            return defaultValue;
+        }
+        try {
+            return Float.parseFloat(new String(buffer, start, end - start, StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private int parseInt(int start, int end) {
+        long value = fastParseInt(start, end);
+        return value == Long.MIN_VALUE ? Integer.parseInt(new String(buffer, start, end - start, StandardCharsets.UTF_8).trim()) : (int) value;
+    }
+
+    /**
+     * Parse a decimal integer,  returning Long.MIN_VALUE if the text is anything else or out of range
+     */
+    private long fastParseInt(int start, int end) {
+        start = trimStart(start, end);
+        end = trimEnd(start, end);
+        int p = start;
+        boolean negative = false;
+        if (p < end && (buffer[p] == '-' || buffer[p] == '+')) {
+            negative = buffer[p] == '-';
+            p++;
+        }
+        if (p == end || end - p > 10) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; p < end; p++) {
+            int d = buffer[p] - '0';
+            if (d < 0 || d > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + d;
+        }
+        if (negative) value = -value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+    }
+
+    /**
+     * Parse a decimal number in the common forms (sign,  digits,  fraction,  exponent) where the result can be
+     * computed exactly as Float.parseFloat would.  Returns NaN for anything else,  which the caller passes to
+     * Float.parseFloat.
+     * <p>
+     * With at most 15 significant digits and a power of ten within 10^22 the decimal value converts to the
+     * correctly rounded double with a single multiply or divide.  Rounding that double to a float agrees with
+     * direct rounding unless the double lies exactly halfway between two floats,  that case is also passed on.
+     */
+    private double fastParseFloat(int start, int end) {
+        start = trimStart(start, end);
+        end = trimEnd(start, end);
+        int p = start;
+        boolean negative = false;
+        if (p < end && (buffer[p] == '-' || buffer[p] == '+')) {
+            negative = buffer[p] == '-';
+            p++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        for (; p < end; p++) {
+            int d = buffer[p] - '0';
+            if (d < 0 || d > 9) break;
+            any = true;
+            if (mantissa != 0 || d != 0) {
+                if (++digits > 15) return Double.NaN;
+                mantissa = mantissa * 10 + d;
+            }
+        }
+        if (p < end && buffer[p] == '.') {
+            p++;
+            for (; p < end; p++) {
+                int d = buffer[p] - '0';
+                if (d < 0 || d > 9) break;
+                any = true;
+                if (mantissa != 0 || d != 0) {
+                    if (++digits > 15) return Double.NaN;
+                    mantissa = mantissa * 10 + d;
+                }
+                exponent--;
+            }
+        }
+        if (!any) {
+            return Double.NaN;
+        }
+        if (p < end && (buffer[p] == 'e' || buffer[p] == 'E')) {
+            p++;
+            boolean negativeExponent = false;
+            if (p < end && (buffer[p] == '-' || buffer[p] == '+')) {
+                negativeExponent = buffer[p] == '-';
+                p++;
+            }
+            if (p == end || end - p > 3) {
+                return Double.NaN;
+            }
+            int e = 0;
+            for (; p < end; p++) {
+                int d = buffer[p] - '0';
+                if (d < 0 || d > 9) return Double.NaN;
+                e = e * 10 + d;
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (p != end) {
+            return Double.NaN;
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (exponent < -22 || exponent > 22) {
+            return Double.NaN;
+        }
+        double value = exponent >= 0 ? mantissa * POWERS_OF_10[exponent] : mantissa / POWERS_OF_10[-exponent];
+        if (value < Float.MIN_NORMAL || value > Float.MAX_VALUE) {
+            return Double.NaN;
+        }
+        // Low 29 bits of the double mantissa are those dropped when rounding to a float
+        if ((Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) == 0x10000000L) {
+            return Double.NaN;
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean couldBeNumber(byte b) {
+        return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'I';
+    }
+
+    private boolean regionMatches(int start, int end, String s) {
+        int n = s.length();
+        if (end - start < n) return false;
+        for (int i = 0; i < n; i++) {
+            if (buffer[start + i] != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private int trimStart(int start, int end) {
+        while (start < end && isWhitespace(buffer[start])) start++;
+        return start;
+    }
+
+    private int trimEnd(int start, int end) {
+        while (end > start && isWhitespace(buffer[end - 1])) end--;
+        return end;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f' || b == 0x0B;
+    }
+
+    private void checkField(int field) {
+        if (field >= fieldCount) {
+            throw new ArrayIndexOutOfBoundsException(field);
+        }
+        if (fieldStrings != null) {
+            loadField(field);
+        }
+    }
+}
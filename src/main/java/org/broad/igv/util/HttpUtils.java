@@ -367,6 +367,46 @@ public class HttpUtils {
         return conn.getHeaderField(key);
     }
 
+    /**
+     * Return the "ETag" header,  or if not present the "Last-Modified" header,  identifying the version of a resource.
+     * Returns null if neither header is present.
+     */
+    public String getVersionTag(URL url) throws IOException {
+
+        HttpURLConnection conn = null;
+        boolean tryHead = headURLCache.containsKey(url) ? headURLCache.get(url) : true;
+        if (tryHead) {
+            try {
+                conn = openConnection(url, null, "HEAD");
+                headURLCache.put(url, true);
+            } catch (IOException e) {
+                if (e instanceof FileNotFoundException) {
+                    throw e;
+                }
+                log.info("HEAD request failed for url: " + url.toExternalForm() + ".  Trying GET");
+                headURLCache.put(url, false);
+            }
+        }
+        if (conn == null) {
+            // Request a single byte,  the headers are all that is needed
+            Map<String, String> requestProperties = new HashMap<>();
+            requestProperties.put("Range", "bytes=0-0");
+            conn = openConnection(url, requestProperties, "GET");
+        }
+        if (conn == null) return null;
+
+        try {
+            String etag = conn.getHeaderField("ETag");
+            if (etag != null) {
+                return etag;
+            }
+            long lastModified = conn.getLastModified();
+            return lastModified > 0 ? String.valueOf(lastModified) : null;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
     public long getLastModified(URL url) throws IOException {
         HttpURLConnection conn = openConnectionHeadOrGet(url);
         if (conn == null) return 0;
@@ -0,0 +1,219 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import com.google.common.io.ByteStreams;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.apache.log4j.Logger;
+import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Parses a large, uncompressed, local text file in parallel.  The file is split at line boundaries into byte ranges
+ * ("chunks"),  which are parsed concurrently on the common fork-join pool.  Chunk results are handed back to the
+ * caller in file order, so order dependent merging (e.g. concatenating per-chromosome lists) can be done
+ * sequentially as results become available.
+ * <p/>
+ * Each chunk is read through its own {@link FieldTokenizer},  limited to the chunk's byte range.  The chunk parser
+ * must therefore not share mutable state with other chunks.
+ *
+ * @author jrobinso
+ */
+public class ParallelLineParser {
+
+    private static Logger log = Logger.getLogger(ParallelLineParser.class);
+
+    /**
+     * Files smaller than this are parsed faster on a single thread
+     */
+    public static final long MIN_FILE_SIZE = 32 * 1024 * 1024;
+
+    static final long MIN_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Parses the lines of one chunk.
+     */
+    public interface ChunkParser<T> {
+
+        /**
+         * @param reader tokenizer positioned at the first line of the chunk,  returns no lines past the chunk end
+         * @param chunk  the byte range being parsed
+         */
+        T parse(FieldTokenizer reader, Chunk chunk) throws IOException;
+    }
+
+    /**
+     * A byte range [start, end) of the file,  starting at the beginning of a line and ending after a line terminator
+     * (or at the end of the file).
+     */
+    public static class Chunk {
+
+        public final int index;
+        public final long start;
+        public final long end;
+
+        Chunk(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getLength() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Return true if the file at {@code path} is local, uncompressed, and large enough to be worth splitting.
+     *
+     * @param path
+     * @return
+     */
+    public static boolean isSplittable(String path) {
+        if (path == null || FileUtils.isRemote(path)) {
+            return false;
+        }
+        String lcPath = path.toLowerCase();
+        if (lcPath.endsWith(".gz") || lcPath.endsWith(".bgz") || lcPath.endsWith(".zip") || lcPath.endsWith(".list")) {
+            return false;
+        }
+        File file = new File(path);
+        return file.isFile() && file.length() >= MIN_FILE_SIZE && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * Split the file into chunks,  beginning at byte offset {@code start}, which must be the start of a line.
+     *
+     * @param path
+     * @param start
+     * @return the chunks, in file order
+     * @throws IOException
+     */
+    public static List<Chunk> split(String path, long start) throws IOException {
+        return split(path, start, MIN_CHUNK_SIZE);
+    }
+
+    static List<Chunk> split(String path, long start, long minChunkSize) throws IOException {
+
+        long fileLength = new File(path).length();
+        int parallelism = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        long nChunks = Math.max(1, Math.min(4 * parallelism, (fileLength - start) / minChunkSize));
+        long nominalSize = (fileLength - start) / nChunks;
+
+        List<Chunk> chunks = new ArrayList<>((int) nChunks);
+        try (SeekableStream is = IGVSeekableStreamFactory.getInstance().getStreamFor(path)) {
+            byte[] buffer = new byte[8192];
+            long chunkStart = start;
+            while (chunkStart < fileLength) {
+                long chunkEnd = chunks.size() == nChunks - 1 ? fileLength :
+                        nextLineStart(is, chunkStart + nominalSize, fileLength, buffer);
+                chunks.add(new Chunk(chunks.size(), chunkStart, chunkEnd));
+                chunkStart = chunkEnd;
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Return the offset of the first line starting after {@code position - 1},  or the file length if there is none.
+     */
+    private static long nextLineStart(SeekableStream is, long position, long fileLength, byte[] buffer) throws IOException {
+        if (position >= fileLength) {
+            return fileLength;
+        }
+        long pos = position - 1;
+        is.seek(pos);
+        int n;
+        while ((n = is.read(buffer, 0, buffer.length)) > 0) {
+            for (int i = 0; i < n; i++) {
+                if (buffer[i] == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return fileLength;
+    }
+
+    /**
+     * Parse the file from byte offset {@code start} to the end in parallel.  Results are passed to {@code consumer} in
+     * file order on the calling thread.  If a chunk fails its exception is rethrown,  after the results of all
+     * preceding chunks have been consumed,  and unstarted chunks are cancelled.
+     *
+     * @param path
+     * @param start    offset of the first line to parse
+     * @param parser
+     * @param consumer
+     * @throws IOException
+     */
+    public static <T> void parse(String path, long start, ChunkParser<T> parser, Consumer<T> consumer) throws IOException {
+        parse(path, start, MIN_CHUNK_SIZE, parser, consumer);
+    }
+
+    static <T> void parse(String path, long start, long minChunkSize, ChunkParser<T> parser, Consumer<T> consumer)
+            throws IOException {
+
+        List<Chunk> chunks = split(path, start, minChunkSize);
+        log.debug("Parsing " + path + " in " + chunks.size() + " chunks");
+
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            tasks.add(ForkJoinPool.commonPool().submit(() -> parseChunk(path, chunk, parser)));
+        }
+
+        int next = 0;
+        try {
+            for (; next < tasks.size(); next++) {
+                consumer.accept(tasks.get(next).join());
+                tasks.set(next, null);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (int i = next; i < tasks.size(); i++) {
+                if (tasks.get(i) != null) tasks.get(i).cancel(false);
+            }
+        }
+    }
+
+    private static <T> T parseChunk(String path, Chunk chunk, ChunkParser<T> parser) {
+        try (SeekableStream is = IGVSeekableStreamFactory.getInstance().getStreamFor(path)) {
+            is.seek(chunk.start);
+            FieldTokenizer reader = new FieldTokenizer(ByteStreams.limit(is, chunk.getLength()));
+            return parser.parse(reader, chunk);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.collections;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A least-recently-used cache bounded by the total weight (typically an estimate of the size in bytes) of its
+ * values rather than by the number of entries.  Hit, miss, and eviction counts are kept for diagnostics.
+ * <p/>
+ * Null values are not cached.  A single value heavier than the budget is not cached either.
+ *
+ * @author jrobinso
+ */
+public class WeightedLRUCache<K, V> {
+
+    public interface Weigher<V> {
+        long weigh(V value);
+    }
+
+    private final Weigher<? super V> weigher;
+    private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxWeight;
+    private long totalWeight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public WeightedLRUCache(long maxWeight, Weigher<? super V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        } else {
+            hits++;
+            return entry.value;
+        }
+    }
+
+    /**
+     * Return true if the key is cached.  Unlike get(),  this does not count as a use of the entry.
+     */
+    public synchronized boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        if (value == null) {
+            return;
+        }
+        long weight = weigher.weigh(value);
+        Entry<V> previous = map.remove(key);
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        }
+        if (weight > maxWeight) {
+            return;
+        }
+        map.put(key, new Entry<>(value, weight));
+        totalWeight += weight;
+        evict();
+    }
+
+    public synchronized V remove(K key) {
+        Entry<V> entry = map.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        totalWeight -= entry.weight;
+        return entry.value;
+    }
+
+    /**
+     * Remove all entries whose key matches the filter.
+     */
+    public synchronized void removeIf(Predicate<? super K> filter) {
+        Iterator<Map.Entry<K, Entry<V>>> iter = map.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<K, Entry<V>> e = iter.next();
+            if (filter.test(e.getKey())) {
+                totalWeight -= e.getValue().weight;
+                iter.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        totalWeight = 0;
+    }
+
+    public synchronized void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        evict();
+    }
+
+    public synchronized long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public synchronized long getTotalWeight() {
+        return totalWeight;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "entries=" + map.size() + " weight=" + totalWeight + "/" + maxWeight +
+                " hits=" + hits + " misses=" + misses + " evictions=" + evictions;
+    }
+
+    private void evict() {
+        Iterator<Entry<V>> iter = map.values().iterator();
+        while (totalWeight > maxWeight && iter.hasNext()) {
+            totalWeight -= iter.next().weight;
+            iter.remove();
+            evictions++;
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long weight;
+
+        Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
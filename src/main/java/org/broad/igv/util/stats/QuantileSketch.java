@@ -0,0 +1,325 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stats;
+
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
+
+import java.util.Arrays;
+
+/**
+ * Bounded-memory, mergeable quantile sketch (KLL, Karnin, Lang & Liberty 2016).
+ * <p/>
+ * Values are held in a hierarchy of "compactors".  Level h holds values of weight 2^h.  When the sketch is full the
+ * lowest over-capacity level is sorted and every other value, starting at a random offset, is promoted to the next
+ * level.  Level capacities decrease geometrically from the top level (capacity k) down, so memory is O(k) values
+ * regardless of the number of values added.  The normalized rank error of a quantile estimate is approximately
+ * 1.7 / k with high probability,  e.g. ~1% for the default k = 200.  Until the first compaction the sketch holds
+ * every value and quantiles are exact, interpolated as by {@link org.apache.commons.math.stat.StatUtils#percentile}.
+ * <p/>
+ * The sketch is not thread safe.
+ */
+public class QuantileSketch {
+
+    public static final int DEFAULT_K = 200;
+
+    private static final int MIN_CAPACITY = 8;
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+
+    /**
+     * Sketch size used by the percentile window function accumulators.  A value <= 0 disables sketching,  in which
+     * case accumulators buffer values and compute exact percentiles.  Unless set explicitly, e.g. by the igvtools
+     * -sketchSize option, the size is taken from the preferences,  where the default is exact mode.
+     */
+    private static Integer accumulatorK = null;
+
+    public static int getAccumulatorK() {
+        return accumulatorK != null ? accumulatorK :
+                PreferencesManager.getPreferences().getAsInt(Constants.PERCENTILE_SKETCH_SIZE);
+    }
+
+    public static void setAccumulatorK(int k) {
+        accumulatorK = k;
+    }
+
+    private final int k;
+
+    private double[][] levels;
+    private int[] sizes;
+    private int numLevels;
+    private int totalCapacity;
+
+    private long n = 0;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    // State of the xorshift generator used to pick compaction offsets.  A fixed seed keeps results reproducible.
+    private long randomState = 0x2545F4914F6CDD1DL;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k Accuracy parameter.  Larger values give more accurate estimates at the cost of memory.
+     */
+    public QuantileSketch(int k) {
+        if (k < MIN_CAPACITY) {
+            throw new IllegalArgumentException("k must be >= " + MIN_CAPACITY + ": " + k);
+        }
+        this.k = k;
+        this.levels = new double[4][];
+        this.sizes = new int[4];
+        addLevel();
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return the number of values added to the sketch,  including values added to merged sketches
+     */
+    public long size() {
+        return n;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void add(double v) {
+        if (Double.isNaN(v)) {
+            return;
+        }
+        if (n == 0) {
+            min = max = v;
+        } else {
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
+        n++;
+        append(0, v);
+        if (retainedCount() >= totalCapacity) {
+            compress();
+        }
+    }
+
+    /**
+     * Merge the contents of another sketch into this one.  The other sketch is not modified.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.n == 0) {
+            return;
+        }
+        while (numLevels < other.numLevels) {
+            addLevel();
+        }
+        for (int h = 0; h < other.numLevels; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        if (n == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        n += other.n;
+        while (retainedCount() >= totalCapacity) {
+            compress();
+        }
+    }
+
+    /**
+     * Return an estimate of the q-quantile.
+     *
+     * @param q quantile, 0 <= q <= 1.  For example 0.5 for the median.
+     * @return the estimate,  or NaN if the sketch is empty
+     */
+    public double getQuantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be in the range [0, 1]: " + q);
+        }
+        return getPercentile(q * 100);
+    }
+
+    /**
+     * Return an estimate of the given percentile.
+     *
+     * @param p percentile, 0 <= p <= 100
+     * @return the estimate,  or NaN if the sketch is empty
+     */
+    public double getPercentile(double p) {
+        if (p < 0 || p > 100) {
+            throw new IllegalArgumentException("Percentile must be in the range [0, 100]: " + p);
+        }
+        if (n == 0) {
+            return Double.NaN;
+        }
+        if (p == 0) {
+            return min;
+        }
+        if (p == 100) {
+            return max;
+        }
+
+        // Merge the sorted levels into a single weighted, sorted list
+        int retained = retainedCount();
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        double[] mergedValues = new double[retained];
+        long[] mergedWeights = new long[retained];
+        int count = 0;
+        for (int h = 0; h < numLevels; h++) {
+            int size = sizes[h];
+            if (size == 0) continue;
+            double[] level = Arrays.copyOf(levels[h], size);
+            Arrays.sort(level);
+            long weight = 1L << h;
+
+            int i = 0, j = 0, m = 0;
+            while (i < count || j < size) {
+                if (j >= size || (i < count && values[i] <= level[j])) {
+                    mergedValues[m] = values[i];
+                    mergedWeights[m++] = weights[i++];
+                } else {
+                    mergedValues[m] = level[j++];
+                    mergedWeights[m++] = weight;
+                }
+            }
+            count = m;
+
+            double[] tmpValues = values;
+            values = mergedValues;
+            mergedValues = tmpValues;
+            long[] tmpWeights = weights;
+            weights = mergedWeights;
+            mergedWeights = tmpWeights;
+        }
+
+        // All values retained,  interpolate between the closest ranks as StatUtils.percentile does
+        if (count == n) {
+            double pos = p * (n + 1) / 100;
+            if (pos < 1) {
+                return values[0];
+            }
+            if (pos >= n) {
+                return values[count - 1];
+            }
+            int lower = (int) pos;
+            double d = pos - lower;
+            return values[lower - 1] + d * (values[lower] - values[lower - 1]);
+        }
+
+        // The retained weights sum to n
+        double rank = p * n / 100;
+        long cumulative = 0;
+        for (int i = 0; i < count; i++) {
+            cumulative += weights[i];
+            if (cumulative >= rank) {
+                return values[i];
+            }
+        }
+        return max;
+    }
+
+    private int retainedCount() {
+        int count = 0;
+        for (int h = 0; h < numLevels; h++) {
+            count += sizes[h];
+        }
+        return count;
+    }
+
+    private int capacity(int level) {
+        int depth = numLevels - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, depth)));
+    }
+
+    private void addLevel() {
+        if (numLevels == levels.length) {
+            levels = Arrays.copyOf(levels, numLevels * 2);
+            sizes = Arrays.copyOf(sizes, numLevels * 2);
+        }
+        levels[numLevels] = new double[MIN_CAPACITY];
+        sizes[numLevels] = 0;
+        numLevels++;
+
+        totalCapacity = 0;
+        for (int h = 0; h < numLevels; h++) {
+            totalCapacity += capacity(h);
+        }
+    }
+
+    private void append(int level, double v) {
+        double[] values = levels[level];
+        int size = sizes[level];
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            levels[level] = values;
+        }
+        values[size] = v;
+        sizes[level] = size + 1;
+    }
+
+    /**
+     * Compact the lowest level that is at or over capacity.  Half of its values, rounded down, are promoted to the
+     * level above.  If the number of values is odd the smallest is retained.
+     */
+    private void compress() {
+        for (int h = 0; h < numLevels; h++) {
+            if (sizes[h] >= capacity(h)) {
+                if (h == numLevels - 1) {
+                    addLevel();
+                }
+                double[] values = levels[h];
+                int size = sizes[h];
+                Arrays.sort(values, 0, size);
+
+                int start = size % 2;
+                for (int i = start + nextBit(); i < size; i += 2) {
+                    append(h + 1, values[i]);
+                }
+                sizes[h] = start;
+                return;
+            }
+        }
+    }
+
+    private int nextBit() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return (int) (randomState & 1);
+    }
+}
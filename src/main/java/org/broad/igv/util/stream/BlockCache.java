@@ -0,0 +1,262 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A process wide cache of fixed size blocks read from remote streams,  keyed by source (url) and block number.  The
+ * cache is bounded by a byte budget,  least recently used blocks are evicted first.
+ * <p/>
+ * Blocks being read ahead are tracked as in-flight so that a stream needing the same block waits for the
+ * outstanding read rather than issuing a second request.
+ */
+public class BlockCache {
+
+    private static Logger log = Logger.getLogger(BlockCache.class);
+
+    public static final int BLOCK_SIZE = 64 * 1024;
+
+    public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+    private static BlockCache instance = new BlockCache(DEFAULT_MAX_BYTES);
+
+    public static BlockCache getInstance() {
+        return instance;
+    }
+
+    private long maxBytes;
+    private long currentBytes;
+    private boolean readAhead = true;
+    private final LinkedHashMap<BlockKey, byte[]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<BlockKey, Future<?>> inFlight = new ConcurrentHashMap<>();
+    private ExecutorService readAheadExecutor;
+
+    BlockCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Set the byte budget of the cache.  A value of 0 disables caching of remote streams.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    public boolean isEnabled() {
+        return getMaxBytes() > 0;
+    }
+
+    public synchronized boolean isReadAhead() {
+        return readAhead;
+    }
+
+    public synchronized void setReadAhead(boolean readAhead) {
+        this.readAhead = readAhead;
+    }
+
+    public synchronized byte[] get(String source, long blockNumber) {
+        return blocks.get(new BlockKey(source, blockNumber));
+    }
+
+    public synchronized void put(String source, long blockNumber, byte[] block) {
+        byte[] previous = blocks.put(new BlockKey(source, blockNumber), block);
+        if (previous != null) {
+            currentBytes -= previous.length;
+        }
+        currentBytes += block.length;
+        evict();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized void clear() {
+        blocks.clear();
+        currentBytes = 0;
+    }
+
+    private void evict() {
+        Iterator<byte[]> iter = blocks.values().iterator();
+        while (currentBytes > maxBytes && iter.hasNext()) {
+            currentBytes -= iter.next().length;
+            iter.remove();
+        }
+    }
+
+    /**
+     * Wait for an outstanding read ahead of the block,  if any.
+     */
+    void awaitInFlight(String source, long blockNumber) {
+        Future<?> future = inFlight.get(new BlockKey(source, blockNumber));
+        if (future != null) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // The caller will read the block itself
+                log.debug("Read ahead failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Read nBlocks consecutive blocks from the stream with a single request and cache them.  Blocks past the end of
+     * the stream are returned as empty arrays;  the last block of the stream may be partial.  A short block is
+     * only cached if the read ended at the stream's known content length,  otherwise it may be the result of a
+     * truncated response and is returned uncached so the next read retries it.
+     */
+    byte[][] fetch(SeekableStream stream, String source, long firstBlock, int nBlocks) throws IOException {
+
+        byte[] buffer = new byte[nBlocks * BLOCK_SIZE];
+        stream.seek(firstBlock * BLOCK_SIZE);
+        int n = 0;
+        while (n < buffer.length) {
+            int count = stream.read(buffer, n, buffer.length - n);
+            if (count < 0) {
+                break;  // EOF
+            }
+            n += count;
+        }
+
+        long contentLength = stream.length();
+        byte[][] result = new byte[nBlocks][];
+        for (int i = 0; i < nBlocks; i++) {
+            int start = Math.min(n, i * BLOCK_SIZE);
+            int end = Math.min(n, start + BLOCK_SIZE);
+            result[i] = Arrays.copyOfRange(buffer, start, end);
+            if (isComplete(result[i], firstBlock + i, contentLength)) {
+                put(source, firstBlock + i, result[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return true if the block is full,  or ends at the content length of the stream.  A negative content length
+     * means the length is unknown.
+     */
+    static boolean isComplete(byte[] block, long blockNumber, long contentLength) {
+        return isComplete(block, blockNumber, BLOCK_SIZE, contentLength);
+    }
+
+    static boolean isComplete(byte[] block, long blockNumber, int blockSize, long contentLength) {
+        return block.length == blockSize ||
+                (contentLength >= 0 && blockNumber * blockSize + block.length >= contentLength);
+    }
+
+    /**
+     * Read blocks asynchronously.  Blocks already cached or in flight are skipped.
+     *
+     * @param source       the stream source
+     * @param firstBlock   first block to read
+     * @param nBlocks      maximum number of blocks to read
+     * @param streamOpener opens a new stream for the source,  streams are not shared between threads
+     */
+    void readAhead(String source, long firstBlock, int nBlocks, Callable<SeekableStream> streamOpener) {
+
+        // Read the first run of uncached blocks
+        List<BlockKey> keys = new ArrayList<>();
+        for (long b = firstBlock; b < firstBlock + nBlocks; b++) {
+            if (get(source, b) == null) {
+                keys.add(new BlockKey(source, b));
+            } else if (!keys.isEmpty()) {
+                break;
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try (SeekableStream stream = streamOpener.call()) {
+                fetch(stream, source, keys.get(0).blockNumber, keys.size());
+            } finally {
+                for (BlockKey key : keys) {
+                    inFlight.remove(key);
+                }
+            }
+            return null;
+        });
+
+        // Only one task reads a block.  If any block is already in flight skip this read ahead
+        for (int i = 0; i < keys.size(); i++) {
+            if (inFlight.putIfAbsent(keys.get(i), task) != null) {
+                for (int j = 0; j < i; j++) {
+                    inFlight.remove(keys.get(j), task);
+                }
+                return;
+            }
+        }
+        getReadAheadExecutor().execute(task);
+    }
+
+    private synchronized ExecutorService getReadAheadExecutor() {
+        if (readAheadExecutor == null) {
+            readAheadExecutor = Executors.newFixedThreadPool(2, r -> {
+                Thread t = new Thread(r, "BlockCache read ahead");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return readAheadExecutor;
+    }
+
+    static final class BlockKey {
+        final String source;
+        final long blockNumber;
+
+        BlockKey(String source, long blockNumber) {
+            this.source = source;
+            this.blockNumber = blockNumber;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BlockKey)) return false;
+            BlockKey blockKey = (BlockKey) o;
+            return blockNumber == blockKey.blockNumber && source.equals(blockKey.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * source.hashCode() + (int) (blockNumber ^ (blockNumber >>> 32));
+        }
+    }
+}
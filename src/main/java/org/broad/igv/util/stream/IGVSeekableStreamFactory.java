@@ -28,7 +28,9 @@ package org.broad.igv.util.stream;
 import htsjdk.samtools.seekablestream.ISeekableStreamFactory;
 import htsjdk.samtools.seekablestream.SeekableFileStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
+import org.broad.igv.Globals;
 import org.broad.igv.ga4gh.GoogleUtils;
+import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.HttpUtils;
 
 import java.io.File;
@@ -45,12 +47,27 @@ public class IGVSeekableStreamFactory implements ISeekableStreamFactory {
         instance = new IGVSeekableStreamFactory();
     }
 
+    // Local files are memory mapped by default.  Not on Windows,  where mapped files cannot be replaced or deleted
+    // until the mapping is garbage collected.
+    private boolean memoryMapping = !Globals.IS_WINDOWS;
+
     private IGVSeekableStreamFactory(){}
 
     public static IGVSeekableStreamFactory getInstance(){
         return instance;
     }
 
+    public boolean isMemoryMapping() {
+        return memoryMapping;
+    }
+
+    /**
+     * Set whether streams for local files are memory mapped
+     */
+    public void setMemoryMapping(boolean memoryMapping) {
+        this.memoryMapping = memoryMapping;
+    }
+
     public SeekableStream getStreamFor(URL url) throws IOException{
         return getStreamFor(url.toExternalForm());
     }
@@ -73,13 +90,20 @@ public class IGVSeekableStreamFactory implements ISeekableStreamFactory {
                 final URL url = HttpUtils.createURL(path);
                 boolean useByteRange = HttpUtils.getInstance().useByteRange(url);
                 if (useByteRange) {
-                    is = new IGVSeekableHTTPStream(url);
+                    if (BlockCache.getInstance().isEnabled()) {
+                        // Streams for remote files share a block cache
+                        is = new SeekableCachedStream(() -> new IGVSeekableHTTPStream(url));
+                    } else {
+                        is = new IGVSeekableHTTPStream(url);
+                    }
                 } else {
                     is = new SeekableServiceStream(url);
                 }
             } else if (path.toLowerCase().startsWith("ftp:")) {
                 final URL url = HttpUtils.createURL(path);
                 is = new IGVSeekableFTPStream(url);
+            } else if (memoryMapping) {
+                is = new SeekableMappedStream(new File(path));
             } else {
                 is = new SeekableFileStream(new File(path));
             }
@@ -87,11 +111,30 @@ public class IGVSeekableStreamFactory implements ISeekableStreamFactory {
         }
     }
 
+    /**
+     * Return a stream for the path that is not closed by SeekableFileStream.closeAllInstances() or
+     * SeekableMappedStream.closeAllInstances(),  which are called when a session is reset.  For streams owned by
+     * objects that outlive a session,  such as the genome sequence.  The caller is responsible for closing it.
+     */
+    public SeekableStream getUnregisteredStreamFor(String path) throws IOException {
+        if (FileUtils.isRemote(path) || path.endsWith(".list")) {
+            return getStreamFor(path);
+        }
+        File file = new File(path);
+        return memoryMapping ?
+                new SeekableMappedStream(file, SeekableMappedStream.DEFAULT_CHUNK_SIZE, false) :
+                new SeekableLocalFileStream(file);
+    }
+
     public SeekableStream getBufferedStream(SeekableStream stream){
         return getBufferedStream(stream, IGVSeekableBufferedStream.DEFAULT_BUFFER_SIZE);
     }
 
     public SeekableStream getBufferedStream(SeekableStream stream, int bufferSize){
+        // Reads from a mapped stream are already memory copies,  a buffer would only add a second one
+        if (stream instanceof SeekableMappedStream) {
+            return stream;
+        }
         return new IGVSeekableBufferedStream(stream, bufferSize);
     }
 
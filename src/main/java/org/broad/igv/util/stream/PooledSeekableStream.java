@@ -0,0 +1,196 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * A SeekableStream that can be shared by multiple threads.  Each thread has its own position,  and each read is served
+ * by a stream borrowed from a pool of underlying streams,  so concurrent readers do not disturb each other's
+ * positions and do not wait on a single handle.  At most {@code maxStreams} underlying streams are opened,  readers
+ * wait for a free stream beyond that.
+ * <p/>
+ * Underlying streams are buffered,  unless memory mapped,  so a thread reading sequentially will generally be served
+ * by a stream whose buffer already covers its position.
+ */
+public class PooledSeekableStream extends SeekableStream {
+
+    private static Logger log = Logger.getLogger(PooledSeekableStream.class);
+
+    private final Callable<SeekableStream> streamOpener;
+    private final int maxStreams;
+    private final int bufferSize;
+    private final String source;
+    private final LinkedBlockingDeque<SeekableStream> idleStreams = new LinkedBlockingDeque<>();
+    private final List<SeekableStream> allStreams = new ArrayList<>();
+    private final ThreadLocal<long[]> position = ThreadLocal.withInitial(() -> new long[1]);
+    private volatile boolean closed = false;
+
+    /**
+     * @param streamOpener creates underlying streams for the source,  called lazily as concurrent readers need them
+     * @param maxStreams   maximum number of underlying streams
+     * @param bufferSize   buffer size for each underlying stream
+     */
+    public PooledSeekableStream(Callable<SeekableStream> streamOpener, int maxStreams, int bufferSize) throws IOException {
+        this.streamOpener = streamOpener;
+        this.maxStreams = Math.max(1, maxStreams);
+        this.bufferSize = bufferSize;
+        SeekableStream first = open();
+        this.source = first.getSource();
+        idleStreams.add(first);
+    }
+
+    private SeekableStream open() throws IOException {
+        try {
+            SeekableStream stream = IGVSeekableStreamFactory.getInstance().getBufferedStream(streamOpener.call(), bufferSize);
+            synchronized (allStreams) {
+                allStreams.add(stream);
+            }
+            return stream;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private SeekableStream borrow() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed: " + source);
+        }
+        SeekableStream stream = idleStreams.pollFirst();
+        if (stream != null) {
+            return stream;
+        }
+        synchronized (allStreams) {
+            if (allStreams.size() < maxStreams) {
+                return open();
+            }
+        }
+        try {
+            return idleStreams.takeFirst();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for stream: " + source);
+        }
+    }
+
+    private void release(SeekableStream stream) {
+        // Most recently used first,  so a single reader tends to reuse the same buffer
+        idleStreams.addFirst(stream);
+    }
+
+    @Override
+    public long length() {
+        try {
+            SeekableStream stream = borrow();
+            try {
+                return stream.length();
+            } finally {
+                release(stream);
+            }
+        } catch (IOException e) {
+            log.error("Error getting length of " + source, e);
+            return -1;
+        }
+    }
+
+    @Override
+    public long position() throws IOException {
+        return position.get()[0];
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        this.position.get()[0] = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        long[] pos = position.get();
+        SeekableStream stream = borrow();
+        try {
+            stream.seek(pos[0]);
+            int b = stream.read();
+            if (b >= 0) {
+                pos[0]++;
+            }
+            return b;
+        } finally {
+            release(stream);
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        long[] pos = position.get();
+        SeekableStream stream = borrow();
+        try {
+            stream.seek(pos[0]);
+            int n = stream.read(buffer, offset, length);
+            if (n > 0) {
+                pos[0] += n;
+            }
+            return n;
+        } finally {
+            release(stream);
+        }
+    }
+
+    @Override
+    public boolean eof() throws IOException {
+        long length = length();
+        return length >= 0 && position() >= length;
+    }
+
+    @Override
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        synchronized (allStreams) {
+            for (SeekableStream stream : allStreams) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    log.error("Error closing stream: " + source, e);
+                }
+            }
+            allStreams.clear();
+        }
+        idleStreams.clear();
+    }
+}
@@ -0,0 +1,580 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.util.HttpUtils;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent disk cache for small,  frequently read parts of remote files:  index files (.bai, .crai, .tbi, .idx,
+ * .fai) and the header and index sections of TDF and bigwig/bigbed files.
+ * <p/>
+ * Each url has an entry directory holding its version tag (ETag or Last-Modified),  the time the version was last
+ * checked against the server,  and either a copy of the whole file or the blocks of the file that have been read.
+ * The version is checked at most once per session,  and not at all if it was checked within
+ * {@link #VALIDATION_INTERVAL} by an earlier session,  so a url opened again needs no network requests.  The total
+ * size of the cache is bounded,  least recently used entries are deleted first.
+ */
+public class RemoteFileCache {
+
+    private static Logger log = Logger.getLogger(RemoteFileCache.class);
+
+    public static final long DEFAULT_MAX_BYTES = 256 * 1024 * 1024;
+
+    static final int BLOCK_SIZE = 16 * 1024;
+
+    static final long VALIDATION_INTERVAL = 24 * 60 * 60 * 1000L;
+
+    private static final String VERSION_FILE = "version";
+    private static final String VALIDATED_FILE = "validated";
+    private static final String DATA_FILE = "data";
+    private static final String BLOCK_PREFIX = "block_";
+
+    private static RemoteFileCache instance;
+
+    public static synchronized RemoteFileCache getInstance() {
+        if (instance == null) {
+            instance = new RemoteFileCache(DirectoryManager.getRemoteCacheDirectory(), DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    private final File directory;
+    private long maxBytes;
+
+    // Total size of the cache directory,  -1 until it is first measured.  Kept up to date as files are written
+    // and deleted,  so the directory is only scanned again when it grows past maxBytes.
+    private long totalBytes = -1;
+
+    /**
+     * Version tags of urls checked this session.  An empty string indicates the url cannot be cached.
+     */
+    private final Map<String, String> sessionVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Times of version checks made this session,  written to the url's entry when it is next opened.
+     */
+    private final Map<String, Long> validationTimes = new ConcurrentHashMap<>();
+    private final Map<String, Object> entryLocks = new ConcurrentHashMap<>();
+
+    RemoteFileCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Set the size limit of the cache.  A value of 0 disables the cache.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evict(null);
+    }
+
+    /**
+     * Return the path of a local copy of the file at path,  downloading it if needed.  If path is local,  or the file
+     * cannot be cached,  path is returned unchanged.  Intended for small files such as indexes.
+     */
+    public String getLocalPath(String path) {
+        String version = getVersion(path);
+        if (version == null) {
+            return path;
+        }
+        try {
+            final URL url = HttpUtils.createURL(path);
+            File file = getFile(path, version, () -> HttpUtils.getInstance().openConnectionStream(url));
+            return file == null ? path : file.getAbsolutePath();
+        } catch (IOException e) {
+            log.error("Error caching " + path, e);
+            return path;
+        }
+    }
+
+    /**
+     * Return a stream for reading the header and index sections of the remote file at path.  Blocks read through
+     * the stream are stored in the cache.  If path is local,  or the file cannot be cached,  stream is returned.
+     *
+     * @param stream the stream used to read blocks that are not cached
+     */
+    public SeekableStream getIndexStream(String path, SeekableStream stream) {
+        String version = getVersion(path);
+        return version == null ? stream : getIndexStream(path, version, stream);
+    }
+
+    SeekableStream getIndexStream(String path, String version, SeekableStream stream) {
+        File entry = getEntry(path, version);
+        return entry == null ? stream : new CachedIndexStream(entry, stream);
+    }
+
+    File getFile(String path, String version, Callable<InputStream> streamOpener) throws IOException {
+
+        File entry = getEntry(path, version);
+        if (entry == null) {
+            return null;
+        }
+
+        File dataFile = new File(entry, DATA_FILE);
+        long written = 0;
+        synchronized (getLock(entry)) {
+            if (!dataFile.exists()) {
+                File tmpFile = new File(entry, DATA_FILE + ".tmp");
+                try (InputStream is = streamOpener.call()) {
+                    Files.copy(is, tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException | RuntimeException e) {
+                    tmpFile.delete();
+                    throw e;
+                } catch (Exception e) {
+                    tmpFile.delete();
+                    throw new IOException(e);
+                }
+                Files.move(tmpFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                written = dataFile.length();
+            }
+        }
+        entry.setLastModified(System.currentTimeMillis());
+        if (written > 0) {
+            added(entry, written);
+        }
+        return dataFile;
+    }
+
+    /**
+     * Return the version of the remote file,  checking with the server the first time a url is seen this session
+     * unless the cached version was checked recently.  Returns null if the file is not remote,  the cache is
+     * disabled,  or the server provides no version.
+     */
+    private String getVersion(String path) {
+        if (getMaxBytes() <= 0 || !HttpUtils.isRemoteURL(path)) {
+            return null;
+        }
+        return getVersion(path, () -> HttpUtils.getInstance().getVersionTag(HttpUtils.createURL(path)));
+    }
+
+    String getVersion(String path, Callable<String> versionChecker) {
+        String version = sessionVersions.get(path);
+        if (version == null) {
+            version = getValidatedVersion(path);
+            if (version == null) {
+                try {
+                    version = versionChecker.call();
+                } catch (Exception e) {
+                    log.info("Could not get version of " + path + ": " + e.getMessage());
+                }
+                if (version == null) {
+                    version = "";
+                } else {
+                    validationTimes.put(path, System.currentTimeMillis());
+                }
+            }
+            sessionVersions.put(path, version);
+        }
+        return version.isEmpty() ? null : version;
+    }
+
+    /**
+     * Return the cached version of path if it was checked against the server within the validation interval,
+     * otherwise null.
+     */
+    private String getValidatedVersion(String path) {
+        File entry = new File(directory, getKey(path));
+        synchronized (getLock(entry)) {
+            File versionFile = new File(entry, VERSION_FILE);
+            File validatedFile = new File(entry, VALIDATED_FILE);
+            if (!versionFile.exists() || !validatedFile.exists()) {
+                return null;
+            }
+            try {
+                long validated = Long.parseLong(new String(Files.readAllBytes(validatedFile.toPath()), "UTF-8"));
+                long age = System.currentTimeMillis() - validated;
+                if (age < 0 || age >= VALIDATION_INTERVAL) {
+                    return null;
+                }
+                String version = new String(Files.readAllBytes(versionFile.toPath()), "UTF-8");
+                return version.isEmpty() ? null : version;
+            } catch (IOException | NumberFormatException e) {
+                log.debug("Error reading validation time of " + path, e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Return the entry directory for path,  clearing it if the cached copy is not the current version.  A version
+     * check made this session is recorded in the entry.
+     */
+    private File getEntry(String path, String version) {
+
+        File entry = new File(directory, getKey(path));
+        long deleted = 0;
+        long written = 0;
+        try {
+            synchronized (getLock(entry)) {
+                File versionFile = new File(entry, VERSION_FILE);
+                boolean current = false;
+                if (entry.exists()) {
+                    String cachedVersion = versionFile.exists() ?
+                            new String(Files.readAllBytes(versionFile.toPath()), "UTF-8") : null;
+                    current = version.equals(cachedVersion);
+                    if (!current) {
+                        deleted = deleteEntry(entry);
+                    }
+                }
+                if (!current) {
+                    if (!entry.mkdirs()) {
+                        return null;
+                    }
+                    byte[] versionBytes = version.getBytes("UTF-8");
+                    Files.write(versionFile.toPath(), versionBytes);
+                    written += versionBytes.length;
+                }
+                Long validated = validationTimes.remove(path);
+                if (validated != null) {
+                    byte[] validatedBytes = String.valueOf(validated).getBytes("UTF-8");
+                    Files.write(new File(entry, VALIDATED_FILE).toPath(), validatedBytes);
+                    written += validatedBytes.length;
+                }
+                return entry;
+            }
+        } catch (IOException e) {
+            log.error("Error accessing cache entry for " + path, e);
+            return null;
+        } finally {
+            // Size accounting takes the cache lock,  which must not be requested while holding an entry lock
+            if (deleted > 0) {
+                removed(deleted);
+            }
+            if (written > 0) {
+                added(entry, written);
+            }
+        }
+    }
+
+    private Object getLock(File entry) {
+        return entryLocks.computeIfAbsent(entry.getName(), k -> new Object());
+    }
+
+    private static String getKey(String path) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(path.getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest) {
+                key.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+            }
+            return key.toString();
+        } catch (Exception e) {
+            // SHA-1 and UTF-8 are always available
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Delete an entry directory and its files.
+     *
+     * @return the number of bytes deleted
+     */
+    private static long deleteEntry(File entry) {
+        long size = 0;
+        File[] files = entry.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                long length = f.length();
+                if (f.delete()) {
+                    size += length;
+                }
+            }
+        }
+        entry.delete();
+        return size;
+    }
+
+    private static long entrySize(File entry) {
+        long size = 0;
+        File[] files = entry.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                size += f.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Record bytes written to the cache,  evicting entries if the cache has grown past its size limit.  Must not be
+     * called while holding an entry lock.
+     *
+     * @param current entry written to,  which is not deleted
+     */
+    private synchronized void added(File current, long nBytes) {
+        if (totalBytes < 0) {
+            evict(current);
+        } else {
+            totalBytes += nBytes;
+            if (totalBytes > maxBytes) {
+                evict(current);
+            }
+        }
+    }
+
+    private synchronized void removed(long nBytes) {
+        if (totalBytes >= 0) {
+            totalBytes = Math.max(0, totalBytes - nBytes);
+        }
+    }
+
+    /**
+     * Measure the cache directory,  and delete least recently used entries until the cache is within its size limit.
+     *
+     * @param current entry being written,  which is not deleted
+     */
+    private synchronized void evict(File current) {
+
+        File[] entries = directory.listFiles(File::isDirectory);
+        if (entries == null) {
+            totalBytes = 0;
+            return;
+        }
+
+        long totalSize = 0;
+        Map<File, Long> sizes = new HashMap<>();
+        for (File entry : entries) {
+            long size = entrySize(entry);
+            sizes.put(entry, size);
+            totalSize += size;
+        }
+        totalBytes = totalSize;
+        if (totalSize <= maxBytes) {
+            return;
+        }
+
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (File entry : entries) {
+            if (totalSize <= maxBytes) {
+                break;
+            }
+            if (entry.equals(current)) {
+                continue;
+            }
+            synchronized (getLock(entry)) {
+                deleteEntry(entry);
+            }
+            totalSize -= sizes.get(entry);
+        }
+        totalBytes = totalSize;
+    }
+
+    /**
+     * A stream which reads blocks from a cache entry,  fetching and storing blocks that are not cached.
+     */
+    class CachedIndexStream extends SeekableStream {
+
+        private final File entry;
+        private final SeekableStream wrappedStream;
+        private long position = 0;
+        private long contentLength = -1;
+
+        CachedIndexStream(File entry, SeekableStream wrappedStream) {
+            this.entry = entry;
+            this.wrappedStream = wrappedStream;
+        }
+
+        @Override
+        public long length() {
+            return contentLength >= 0 ? contentLength : wrappedStream.length();
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public void seek(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public long skip(long n) {
+            position += n;
+            return n;
+        }
+
+        @Override
+        public boolean eof() {
+            long length = length();
+            return length >= 0 && position >= length;
+        }
+
+        @Override
+        public String getSource() {
+            return wrappedStream.getSource();
+        }
+
+        @Override
+        public void close() throws IOException {
+            wrappedStream.close();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] tmp = new byte[1];
+            int n = read(tmp, 0, 1);
+            return n < 0 ? -1 : tmp[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int len) throws IOException {
+
+            if (len == 0) {
+                return 0;
+            }
+            if (eof()) {
+                return -1;
+            }
+
+            long firstBlock = position / BLOCK_SIZE;
+            long lastBlock = (position + len - 1) / BLOCK_SIZE;
+            int nBlocks = (int) (lastBlock - firstBlock + 1);
+
+            byte[][] blocks = new byte[nBlocks][];
+            long stored = 0;
+            synchronized (getLock(entry)) {
+                for (int i = 0; i < nBlocks; i++) {
+                    File blockFile = new File(entry, BLOCK_PREFIX + (firstBlock + i));
+                    if (blockFile.exists()) {
+                        blocks[i] = Files.readAllBytes(blockFile.toPath());
+                    }
+                }
+                for (int i = 0; i < nBlocks; ) {
+                    if (blocks[i] != null) {
+                        i++;
+                        continue;
+                    }
+                    int j = i;
+                    while (j < nBlocks && blocks[j] == null) j++;
+                    stored += fetchBlocks(firstBlock + i, blocks, i, j - i);
+                    i = j;
+                }
+            }
+            if (stored > 0) {
+                // Account outside the entry lock,  eviction locks entries
+                entry.setLastModified(System.currentTimeMillis());
+                added(entry, stored);
+            }
+
+            int n = 0;
+            for (int i = 0; i < nBlocks && n < len; i++) {
+                byte[] block = blocks[i];
+                long blockStart = (firstBlock + i) * BLOCK_SIZE;
+                int blockOffset = (int) (position + n - blockStart);
+                int count = Math.min(block.length - blockOffset, len - n);
+                if (count > 0) {
+                    System.arraycopy(block, blockOffset, buffer, offset + n, count);
+                    n += count;
+                }
+                if (block.length < BLOCK_SIZE) {
+                    // Last block of the file,  or a truncated read which was not stored
+                    if (BlockCache.isComplete(block, firstBlock + i, BLOCK_SIZE, wrappedLength())) {
+                        contentLength = blockStart + block.length;
+                    }
+                    break;
+                }
+            }
+
+            if (n == 0) {
+                return -1;
+            }
+            position += n;
+            return n;
+        }
+
+        /**
+         * Read blocks from the wrapped stream and store them in the entry.  As in {@link BlockCache#fetch},  a short
+         * block is only stored if it ends at the known length of the stream,  otherwise it might be the result of a
+         * truncated response.
+         *
+         * @return the number of bytes stored
+         */
+        private long fetchBlocks(long firstBlock, byte[][] blocks, int offset, int nBlocks) throws IOException {
+
+            byte[] buffer = new byte[nBlocks * BLOCK_SIZE];
+            wrappedStream.seek(firstBlock * BLOCK_SIZE);
+            int n = 0;
+            while (n < buffer.length) {
+                int count = wrappedStream.read(buffer, n, buffer.length - n);
+                if (count < 0) {
+                    break;  // EOF
+                }
+                n += count;
+            }
+
+            long length = wrappedLength();
+            long stored = 0;
+            for (int i = 0; i < nBlocks; i++) {
+                int start = Math.min(n, i * BLOCK_SIZE);
+                int end = Math.min(n, start + BLOCK_SIZE);
+                byte[] block = Arrays.copyOfRange(buffer, start, end);
+                blocks[offset + i] = block;
+                if (!BlockCache.isComplete(block, firstBlock + i, BLOCK_SIZE, length)) {
+                    continue;
+                }
+
+                // The entry might have been evicted,  failure to store a block is not an error for the reader
+                try {
+                    File tmpFile = new File(entry, BLOCK_PREFIX + (firstBlock + i) + ".tmp");
+                    Files.write(tmpFile.toPath(), block);
+                    Files.move(tmpFile.toPath(), new File(entry, BLOCK_PREFIX + (firstBlock + i)).toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                    stored += block.length;
+                } catch (IOException e) {
+                    log.debug("Error storing block " + (firstBlock + i) + " of " + getSource(), e);
+                }
+            }
+            return stored;
+        }
+
+        /**
+         * Length of the wrapped stream,  or -1 if it is unknown.
+         */
+        private long wrappedLength() {
+            long length = wrappedStream.length();
+            return length > 0 ? length : -1;
+        }
+    }
+}
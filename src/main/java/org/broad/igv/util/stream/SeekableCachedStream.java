@@ -0,0 +1,205 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import static java.lang.System.arraycopy;
+
+/**
+ * A SeekableStream backed by the shared {@link BlockCache}.  Reads are served from cached blocks when possible,
+ * runs of adjacent missing blocks are fetched with a single request.  When reads are sequential the next blocks are
+ * read ahead asynchronously.
+ * <p/>
+ * Like other streams instances are not thread safe,  but any number of streams for the same source share the cache.
+ */
+public class SeekableCachedStream extends SeekableStream {
+
+    static final int READ_AHEAD_BLOCKS = 4;
+
+    private final BlockCache cache;
+    private final Callable<SeekableStream> streamOpener;
+    private final SeekableStream wrappedStream;
+    private final String source;
+    private long position = 0;
+    private long contentLength = -1;
+    private long nextSequentialBlock = -1;
+
+    /**
+     * @param streamOpener creates streams for the source,  called once here and again for each read ahead
+     */
+    public SeekableCachedStream(Callable<SeekableStream> streamOpener) throws IOException {
+        this(BlockCache.getInstance(), streamOpener);
+    }
+
+    SeekableCachedStream(BlockCache cache, Callable<SeekableStream> streamOpener) throws IOException {
+        this.cache = cache;
+        this.streamOpener = streamOpener;
+        try {
+            this.wrappedStream = streamOpener.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        this.source = wrappedStream.getSource();
+    }
+
+    @Override
+    public long length() {
+        return contentLength >= 0 ? contentLength : wrappedStream.length();
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public void seek(long position) {
+        this.position = position;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long length = length();
+        long bytesToSkip = length < 0 ? n : Math.max(0, Math.min(n, length - position));
+        position += bytesToSkip;
+        return bytesToSkip;
+    }
+
+    @Override
+    public boolean eof() throws IOException {
+        long length = length();
+        return length >= 0 && position >= length;
+    }
+
+    @Override
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public void close() throws IOException {
+        wrappedStream.close();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] tmp = new byte[1];
+        int n = read(tmp, 0, 1);
+        return n < 0 ? -1 : tmp[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int len) throws IOException {
+
+        if (offset < 0 || len < 0 || (offset + len) > buffer.length) {
+            throw new IndexOutOfBoundsException("Offset=" + offset + ",len=" + len + ",buflen=" + buffer.length);
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (eof()) {
+            return -1;
+        }
+
+        // Large reads would just flush the cache, read them directly
+        if (len > cache.getMaxBytes() / 4) {
+            wrappedStream.seek(position);
+            int n = wrappedStream.read(buffer, offset, len);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        final int blockSize = BlockCache.BLOCK_SIZE;
+        long firstBlock = position / blockSize;
+        long lastBlock = (position + len - 1) / blockSize;
+        int nBlocks = (int) (lastBlock - firstBlock + 1);
+
+        byte[][] blocks = new byte[nBlocks][];
+        boolean[] fetched = new boolean[nBlocks];
+        for (int i = 0; i < nBlocks; i++) {
+            blocks[i] = cache.get(source, firstBlock + i);
+            if (blocks[i] == null) {
+                cache.awaitInFlight(source, firstBlock + i);
+                blocks[i] = cache.get(source, firstBlock + i);
+            }
+        }
+
+        // Fetch runs of missing blocks,  one request per run
+        for (int i = 0; i < nBlocks; ) {
+            if (blocks[i] != null) {
+                i++;
+                continue;
+            }
+            int j = i;
+            while (j < nBlocks && blocks[j] == null) j++;
+            byte[][] run = cache.fetch(wrappedStream, source, firstBlock + i, j - i);
+            arraycopy(run, 0, blocks, i, run.length);
+            Arrays.fill(fetched, i, j, true);
+            i = j;
+        }
+
+        int n = 0;
+        for (int i = 0; i < nBlocks && n < len; i++) {
+            byte[] block = blocks[i];
+            long blockStart = (firstBlock + i) * blockSize;
+            int blockOffset = (int) (position + n - blockStart);
+            int count = Math.min(block.length - blockOffset, len - n);
+            if (count > 0) {
+                arraycopy(block, blockOffset, buffer, offset + n, count);
+                n += count;
+            }
+            if (block.length < blockSize) {
+                // Last block of the stream,  or a truncated read which was not cached and is retried on the next call
+                if (!fetched[i] || BlockCache.isComplete(block, firstBlock + i, wrappedStream.length())) {
+                    contentLength = blockStart + block.length;
+                }
+                break;
+            }
+        }
+
+        if (n == 0) {
+            return -1;
+        }
+
+        if (firstBlock == nextSequentialBlock) {
+            if (cache.isReadAhead() && (contentLength < 0 || (lastBlock + 1) * blockSize < contentLength)) {
+                cache.readAhead(source, lastBlock + 1, READ_AHEAD_BLOCKS, streamOpener);
+            }
+        }
+        position += n;
+        nextSequentialBlock = position / blockSize;
+        return n;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * A SeekableStream for a local file.  Equivalent to htsjdk's SeekableFileStream,  but not registered with
+ * SeekableFileStream.closeAllInstances(),  so it is only closed by its owner.  Used for streams that outlive a
+ * session,  such as the genome sequence.
+ */
+public class SeekableLocalFileStream extends SeekableStream {
+
+    private final File file;
+    private final RandomAccessFile raf;
+
+    public SeekableLocalFileStream(File file) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "r");
+    }
+
+    @Override
+    public long length() {
+        return file.length();
+    }
+
+    @Override
+    public long position() throws IOException {
+        return raf.getFilePointer();
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        raf.seek(position);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return raf.read();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        int n = 0;
+        while (n < length) {
+            int count = raf.read(buffer, offset + n, length - n);
+            if (count < 0) {
+                return n == 0 ? -1 : n;
+            }
+            n += count;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, raf.length() - raf.getFilePointer()));
+        raf.seek(raf.getFilePointer() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean eof() throws IOException {
+        return raf.getFilePointer() >= raf.length();
+    }
+
+    @Override
+    public String getSource() {
+        return file.getAbsolutePath();
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * A SeekableStream for local files backed by memory mapped regions of the file.  Files larger than 2GB are mapped
+ * in chunks,  each chunk is mapped on first access.
+ * <p/>
+ * Like other streams the stream position is not thread safe,  but the positional {@link #read(long, byte[], int, int)}
+ * and {@link #getByteBuffer(long, int)} methods can be used by any number of threads concurrently.
+ * {@link #getByteBuffer(long, int)} returns a view of the mapped file without copying.
+ */
+public class SeekableMappedStream extends SeekableStream {
+
+    private static Logger log = Logger.getLogger(SeekableMappedStream.class);
+
+    static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+    private static final Set<SeekableMappedStream> allInstances = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long length;
+    private final int chunkSize;
+    private final MappedByteBuffer[] chunks;
+    private long position = 0;
+
+    public SeekableMappedStream(File file) throws IOException {
+        this(file, DEFAULT_CHUNK_SIZE);
+    }
+
+    SeekableMappedStream(File file, int chunkSize) throws IOException {
+        this(file, chunkSize, true);
+    }
+
+    /**
+     * @param register if false the stream is not closed by {@link #closeAllInstances()},  only by its owner
+     */
+    SeekableMappedStream(File file, int chunkSize, boolean register) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "r");
+        this.channel = raf.getChannel();
+        this.length = channel.size();
+        this.chunkSize = chunkSize;
+        this.chunks = new MappedByteBuffer[(int) ((length + chunkSize - 1) / chunkSize)];
+        if (register) {
+            allInstances.add(this);
+        }
+    }
+
+    /**
+     * Close all open mapped streams.  Companion to SeekableFileStream.closeAllInstances().
+     */
+    public static void closeAllInstances() {
+        SeekableMappedStream[] streams;
+        synchronized (allInstances) {
+            streams = allInstances.toArray(new SeekableMappedStream[0]);
+        }
+        for (SeekableMappedStream stream : streams) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                log.error("Error closing " + stream.getSource(), e);
+            }
+        }
+    }
+
+    private ByteBuffer getChunk(int index) throws IOException {
+        MappedByteBuffer chunk = chunks[index];
+        if (chunk == null) {
+            synchronized (chunks) {
+                chunk = chunks[index];
+                if (chunk == null) {
+                    long start = (long) index * chunkSize;
+                    chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, length - start));
+                    chunks[index] = chunk;
+                }
+            }
+        }
+        // Each caller gets its own position and limit
+        return chunk.duplicate();
+    }
+
+    /**
+     * Read up to len bytes starting at the given file position,  without changing the stream position.  Safe for
+     * concurrent use.
+     *
+     * @return the number of bytes read,  or -1 if position is at or beyond the end of file
+     */
+    public int read(long position, byte[] buffer, int offset, int len) throws IOException {
+        if (position >= length) {
+            return -1;
+        }
+        int n = (int) Math.min(len, length - position);
+        int copied = 0;
+        while (copied < n) {
+            long p = position + copied;
+            ByteBuffer chunk = getChunk((int) (p / chunkSize));
+            chunk.position((int) (p % chunkSize));
+            int count = Math.min(n - copied, chunk.remaining());
+            chunk.get(buffer, offset + copied, count);
+            copied += count;
+        }
+        return n;
+    }
+
+    /**
+     * Return the given range of the file as a ByteBuffer,  without changing the stream position.  The buffer is a
+     * view of the mapped file unless the range crosses a chunk boundary,  in which case it is copied.  The buffer
+     * has big endian byte order,  and is truncated at the end of file.  Safe for concurrent use.
+     */
+    public ByteBuffer getByteBuffer(long position, int len) throws IOException {
+        int n = (int) Math.max(0, Math.min(len, length - position));
+        int index = (int) (position / chunkSize);
+        int chunkOffset = (int) (position % chunkSize);
+        if (n == 0) {
+            return ByteBuffer.allocate(0);
+        } else if (chunkOffset + n <= chunkSize) {
+            ByteBuffer chunk = getChunk(index);
+            chunk.position(chunkOffset);
+            chunk.limit(chunkOffset + n);
+            return chunk.slice();
+        } else {
+            byte[] bytes = new byte[n];
+            read(position, bytes, 0, n);
+            return ByteBuffer.wrap(bytes);
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long position() throws IOException {
+        return position;
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= length) {
+            return -1;
+        }
+        ByteBuffer chunk = getChunk((int) (position / chunkSize));
+        int b = chunk.get((int) (position % chunkSize)) & 0xff;
+        position++;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = read(position, buffer, offset, len);
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, length - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean eof() throws IOException {
+        return position >= length;
+    }
+
+    @Override
+    public String getSource() {
+        return file.getAbsolutePath();
+    }
+
+    @Override
+    public void close() throws IOException {
+        allInstances.remove(this);
+        // Mapped regions are released when the buffers are garbage collected
+        raf.close();
+    }
+}
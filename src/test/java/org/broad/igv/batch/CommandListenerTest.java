@@ -47,6 +47,7 @@ import java.net.Socket;
 import java.net.URL;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author jacob
@@ -192,6 +193,48 @@ public class CommandListenerTest extends AbstractHeadedTest {
         return conn;
     }
 
+    /**
+     * Two port sessions open at once.  The second must be served while the first is still connected,  and
+     * preference overrides of one session must not be in effect while the other executes.
+     */
+    @Test
+    public void testConcurrentSessions() throws Exception {
+
+        String key = Constants.SAM_SAMPLING_COUNT;
+        String baseValue = PreferencesManager.getPreferences().get(key);
+
+        Socket socket1 = new Socket("localhost", port);
+        PrintWriter out1 = new PrintWriter(socket1.getOutputStream(), true);
+        BufferedReader in1 = new BufferedReader(new InputStreamReader(socket1.getInputStream()));
+
+        Socket socket2 = new Socket("localhost", port);
+        socket2.setSoTimeout(10000);
+        PrintWriter out2 = new PrintWriter(socket2.getOutputStream(), true);
+        BufferedReader in2 = new BufferedReader(new InputStreamReader(socket2.getInputStream()));
+
+        out1.println("setSleepInterval 0");
+        assertEquals("OK", in1.readLine());
+        out1.println("maxdepth 17");
+        assertEquals("OK", in1.readLine());
+        assertEquals("17", PreferencesManager.getPreferences().get(key));
+
+        out2.println("setSleepInterval 0");
+        assertEquals("OK", in2.readLine());
+        out2.println("goto chr1:1-100");
+        assertEquals("OK", in2.readLine());
+        assertEquals(baseValue, PreferencesManager.getPreferences().get(key));
+
+        out1.println("goto chr1:1-200");
+        assertEquals("OK", in1.readLine());
+        assertEquals("17", PreferencesManager.getPreferences().get(key));
+
+        out2.println("stats");
+        assertTrue(in2.readLine().startsWith("connections: active=2"));
+
+        socket1.close();
+        socket2.close();
+    }
+
     @Test
     public void testSHA1() throws Exception {
 
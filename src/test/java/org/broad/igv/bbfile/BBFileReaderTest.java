@@ -25,10 +25,16 @@
 
 package org.broad.igv.bbfile;
 
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
 import org.broad.igv.util.TestUtils;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -73,4 +79,82 @@ public class BBFileReaderTest {
     }
 
 
+    /**
+     * Queries against a lazily expanded R+ tree must return the same leaf hits as a fully read tree,  including
+     * repeated queries served from nodes already loaded.
+     */
+    @Test
+    public void testLazyRPTree() throws IOException {
+
+        String path = TestUtils.DATA_DIR + "bb/chr21.refseq.bb";
+        BBFileHeader header = new BBFileReader(path).getBBFileHeader();
+
+        SeekableStream fis = new SeekableFileStream(new File(path));
+        RPTree fullTree = new RPTree(fis, header.getFullIndexOffset(), header.isLowToHigh(),
+                header.getUncompressBuffSize(), true);
+        RPTree lazyTree = new RPTree(fis, header.getFullIndexOffset(), header.isLowToHigh(),
+                header.getUncompressBuffSize(), false);
+
+        RPChromosomeRegion bounds = fullTree.getChromosomeBounds();
+        int chrId = bounds.getStartChromID();
+        int nHits = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int start = 0; start < 48000000; start += 1000000) {
+                RPChromosomeRegion region = new RPChromosomeRegion(chrId, start, chrId, start + 50000);
+                List<RPTreeLeafNodeItem> expected = fullTree.getChromosomeDataHits(region, false);
+                List<RPTreeLeafNodeItem> hits = lazyTree.getChromosomeDataHits(region, false);
+                assertEquals(expected.size(), hits.size());
+                nHits += hits.size();
+                for (int i = 0; i < hits.size(); i++) {
+                    assertEquals(expected.get(i).getDataOffset(), hits.get(i).getDataOffset());
+                }
+            }
+        }
+        assertTrue(nHits > 0);
+        fis.close();
+    }
+
+    /**
+     * Bulk extraction into arrays must match the WigItem iterator,  for fixedStep and variableStep files
+     */
+    @Test
+    public void testGetBigWigData() throws IOException {
+
+        for (String file : new String[]{"wig/test_fixedStep.bigwig", "wig/dummy_var_sample.bigwig"}) {
+            BBFileReader bbReader = new BBFileReader(TestUtils.DATA_DIR + file);
+            assertTrue(bbReader.isBigWigFile());
+
+            int total = 0;
+            for (String chr : bbReader.getChromosomeNames()) {
+                int start = 0;
+                int end = Integer.MAX_VALUE;
+                for (int pass = 0; pass < 2; pass++) {
+                    IntArrayList starts = new IntArrayList();
+                    IntArrayList ends = new IntArrayList();
+                    FloatArrayList values = new FloatArrayList();
+                    assertTrue(bbReader.getBigWigData(chr, start, end, false, starts, ends, values));
+
+                    BigWigIterator iter = bbReader.getBigWigIterator(chr, start, chr, end, false);
+                    int n = 0;
+                    while (iter.hasNext()) {
+                        WigItem item = iter.next();
+                        assertEquals(item.getStartBase(), starts.get(n));
+                        assertEquals(item.getEndBase(), ends.get(n));
+                        assertEquals(item.getWigValue(), values.get(n), 0);
+                        n++;
+                    }
+                    assertEquals(n, starts.size());
+                    total += n;
+
+                    // Second pass, a window in the middle of the data.  Edge sections are filtered item by item
+                    if (n < 3) break;
+                    start = starts.get(n / 3) + 1;
+                    end = starts.get(2 * n / 3);
+                }
+            }
+            assertTrue(total > 0);
+            bbReader.close();
+        }
+    }
+
 }
@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.bigwig;
+
+import org.broad.igv.bbfile.BBFileReader;
+import org.broad.igv.feature.Chromosome;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.tdf.TDFDataSource;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.TestUtils;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ZoomPyramidTest {
+
+    @Test
+    public void testBuild() throws Exception {
+
+        BBFileReader reader = new BBFileReader(TestUtils.DATA_DIR + "wig/dummy_var_sample.bigwig");
+
+        // chr8 spans several read windows
+        List<Chromosome> chromosomes = Arrays.asList(
+                new Chromosome(0, "chr8", 30000000),
+                new Chromosome(1, "chr9", 25000000),
+                new Chromosome(2, "chr22", 200000));
+        Genome genome = new Genome("ZoomPyramidTest", chromosomes);
+
+        ZoomPyramid pyramid = new ZoomPyramid(reader, genome, new HashMap<>(), null);
+        File file = ZoomPyramid.getFile(reader.getBBFileHeader().getPath(), genome);
+        assertNotNull(file);
+        file.delete();
+
+        try {
+            assertTrue(pyramid.build());
+            assertTrue(file.exists());
+            assertFalse(new File(file.getParentFile(), file.getName().replace(".tdf", ".tmp.tdf")).exists());
+
+            TDFDataSource source = new TDFDataSource(TDFReader.getReader(file.getAbsolutePath()), 0, "test", genome);
+            assertEquals(ZoomPyramid.N_ZOOM, source.getMaxPrecomputedZoom());
+
+            for (Chromosome c : chromosomes) {
+                IntArrayList starts = new IntArrayList();
+                IntArrayList ends = new IntArrayList();
+                FloatArrayList values = new FloatArrayList();
+                reader.getBigWigData(c.getName(), 0, c.getLength(), false, starts, ends, values);
+                float min = Float.MAX_VALUE;
+                float max = -Float.MAX_VALUE;
+                for (int i = 0; i < values.size(); i++) {
+                    min = Math.min(min, values.get(i));
+                    max = Math.max(max, values.get(i));
+                }
+
+                // The window function is passed per query,  the shared source is not modified
+                assertEquals(max, extreme(source.getSummaryScoresForRange(c.getName(), 0, c.getLength(), 0, WindowFunction.max), true), 1.0e-6);
+                assertEquals(min, extreme(source.getSummaryScoresForRange(c.getName(), 0, c.getLength(), 0, WindowFunction.min), false), 1.0e-6);
+                assertEquals(WindowFunction.mean, source.getWindowFunction());
+            }
+            TDFReader.getReader(file.getAbsolutePath()).close();
+        } finally {
+            file.delete();
+            reader.close();
+        }
+    }
+
+    private static float extreme(List<LocusScore> scores, boolean max) {
+        assertFalse(scores.isEmpty());
+        float v = max ? -Float.MAX_VALUE : Float.MAX_VALUE;
+        for (LocusScore s : scores) {
+            v = max ? Math.max(v, s.getScore()) : Math.min(v, s.getScore());
+        }
+        return v;
+    }
+}
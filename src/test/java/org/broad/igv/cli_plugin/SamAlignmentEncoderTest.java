@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.cli_plugin;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.sam.Alignment;
+import org.broad.igv.sam.AlignmentInterval;
+import org.broad.igv.sam.CompactAlignmentStore;
+import org.broad.igv.sam.PicardAlignment;
+import org.broad.igv.sam.reader.BAMReader;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SamAlignmentEncoderTest extends AbstractHeadlessTest {
+
+    /**
+     * Alignments held in a compact store must be written out as SAM records
+     */
+    @Test
+    public void testEncodeStoreBackedInterval() throws Exception {
+        CompactAlignmentStore store = new CompactAlignmentStore();
+        List<Alignment> alignments = new ArrayList<>();
+        List<String> expectedNames = new ArrayList<>();
+
+        BAMReader reader = new BAMReader(new ResourceLocator(TestUtils.DATA_DIR + "bam/gstt1_sample.bam"), false);
+        try (CloseableIterator<PicardAlignment> iter = reader.iterator()) {
+            while (iter.hasNext()) {
+                PicardAlignment al = iter.next();
+                if (!al.isMapped()) continue;
+                alignments.add(store.add(al));
+                expectedNames.add(al.getReadName());
+            }
+        }
+        reader.close();
+        assertTrue(alignments.get(0) instanceof CompactAlignmentStore.CompactAlignment);
+
+        Alignment first = alignments.get(0);
+        Alignment last = alignments.get(alignments.size() - 1);
+        AlignmentInterval interval = new AlignmentInterval(first.getChr(), first.getStart(), last.getEnd(),
+                alignments, null, null, null);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Iterator iter = interval.getAlignmentIterator();
+        new SamAlignmentEncoder().encodeAll(stream, iter);
+
+        List<String> names = new ArrayList<>();
+        for (String line : stream.toString().split("\n")) {
+            if (line.isEmpty() || line.startsWith("@")) continue;
+            names.add(line.split("\t")[0]);
+        }
+        assertEquals(expectedNames, names);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.feature.FeatureUtils;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.track.WindowFunction;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScoreArrayTest {
+
+    @Test
+    public void testPrimitiveAndLegacyAccess() {
+        ScoreArray scores = new ScoreArray(2);
+        for (int i = 0; i < 10; i++) {
+            scores.add(i * 10, i * 10 + 5, i);
+        }
+        assertEquals(10, scores.size());
+        assertEquals(30, scores.getStart(3));
+        assertEquals(35, scores.getEnd(3));
+        assertEquals(3f, scores.getValue(3), 0);
+
+        LocusScore ls = scores.get(3);
+        assertEquals(BasicScore.class, ls.getClass());
+        assertEquals(30, ls.getStart());
+        assertEquals(35, ls.getEnd());
+        assertEquals(3f, ls.getScore(), 0);
+
+        List<LocusScore> view = scores.subList(2, 5);
+        assertTrue(view instanceof ScoreArray);
+        assertEquals(3, view.size());
+        assertEquals(20, ((ScoreArray) view).getStart(0));
+        try {
+            view.add(new BasicScore(0, 1, 0));
+            fail("Expected views to be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testObjectsRetained() {
+        CompositeScore composite = new CompositeScore(10, 20, 2f, new float[]{1, 3}, new String[]{"a", "b"},
+                WindowFunction.mean);
+        NamedScore named = new NamedScore(20, 30, 4f, "probe");
+
+        ScoreArray scores = ScoreArray.of(Arrays.asList(new BasicScore(0, 10, 1f), composite, named));
+        assertSame(composite, scores.get(1));
+        assertSame(named, scores.get(2));
+        assertEquals(2f, scores.getValue(1), 0);
+
+        ScoreArray namedArray = new ScoreArray(4, true);
+        namedArray.add(named);
+        namedArray.add(0, 1, 1f);
+        assertEquals(NamedScore.class, namedArray.get(0).getClass());
+        assertEquals("probe", ((NamedScore) namedArray.get(0)).getProbe());
+        assertNull(((NamedScore) namedArray.get(1)).getProbe());
+
+        ScoreArray copy = new ScoreArray(1, true);
+        copy.addAll(namedArray);
+        assertEquals("probe", ((NamedScore) copy.get(0)).getProbe());
+        assertEquals(0, copy.getStart(1));
+    }
+
+    @Test
+    public void testIndexBefore() {
+        List<LocusScore> list = new ArrayList<>();
+        ScoreArray scores = new ScoreArray();
+        for (int i = 0; i < 100; i++) {
+            list.add(new BasicScore(i * 10, i * 10 + 5, i));
+            scores.add(i * 10, i * 10 + 5, i);
+        }
+        for (int pos = -5; pos < 1010; pos += 3) {
+            assertEquals(FeatureUtils.getIndexBefore(pos, list), scores.getIndexBefore(pos));
+        }
+    }
+
+    @Test
+    public void testSortByStart() {
+        ScoreArray scores = new ScoreArray();
+        scores.add(30, 40, 3f);
+        scores.add(new NamedScore(10, 20, 1f, "x"));
+        scores.add(20, 30, 2f);
+        scores.add(10, 15, 0f);
+        scores.sortByStart();
+
+        assertEquals(10, scores.getStart(0));
+        assertEquals("x", ((NamedScore) scores.get(0)).getProbe());
+        assertEquals(0f, scores.getValue(1), 0);
+        assertEquals(20, scores.getStart(2));
+        assertEquals(30, scores.getStart(3));
+    }
+}
@@ -25,18 +25,28 @@
 
 package org.broad.igv.feature.genome.fasta;
 
+import htsjdk.samtools.seekablestream.SeekableFileStream;
 import org.broad.igv.feature.genome.IGVSequence;
 import org.broad.igv.feature.genome.Sequence;
 import org.broad.igv.feature.genome.SequenceWrapper;
 import org.broad.igv.feature.genome.fasta.FastaIndexedSequence;
 import org.broad.igv.feature.genome.fasta.FastaUtils;
 import org.broad.igv.util.TestUtils;
+import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+import org.broad.igv.util.stream.SeekableMappedStream;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by IntelliJ IDEA.
@@ -143,4 +153,70 @@ public class FastaIndexedSequenceTest {
         }
 
     }
+
+    /**
+     * Concurrent reads of random intervals through the shared file handle must match a single read of the
+     * whole sequence.
+     */
+    @Test
+    public void testConcurrentReads() throws Exception {
+
+        String fasta = TestUtils.DATA_DIR + "fasta/ecoli_out.padded.fasta";
+        FastaUtils.createIndexFile(fasta, fasta + ".fai");
+        String chr = "NC_000913_bb";
+        final FastaIndexedSequence sequence = new FastaIndexedSequence(fasta);
+        final int chrLength = sequence.getChromosomeLength(chr);
+        final String expected = new String(sequence.getSequence(chr, 0, chrLength, true));
+        assertEquals(chrLength, expected.length());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final Random random = new Random(t);
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    int start = random.nextInt(chrLength);
+                    int end = Math.min(chrLength, start + 1 + random.nextInt(500));
+                    String seq = new String(sequence.getSequence(chr, start, end, true));
+                    if (!expected.substring(start, end).equals(seq)) return false;
+                }
+                return true;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Session resets close all registered file streams,  the genome sequence must survive them
+     */
+    @Test
+    public void testReadAfterSessionReset() throws Exception {
+
+        String fasta = TestUtils.DATA_DIR + "fasta/ecoli_out.padded.fasta";
+        FastaUtils.createIndexFile(fasta, fasta + ".fai");
+        String chr = "NC_000913_bb";
+        String expectedSequence = "atcaccattaccac******AAcggtgcgggctgacgcgtacaggaaacacagaaaaaag";
+        for (boolean memoryMapping : new boolean[]{true, false}) {
+            boolean mapping = IGVSeekableStreamFactory.getInstance().isMemoryMapping();
+            IGVSeekableStreamFactory.getInstance().setMemoryMapping(memoryMapping);
+            try {
+                FastaIndexedSequence sequence = new FastaIndexedSequence(fasta);
+                assertEquals(expectedSequence, new String(sequence.getSequence(chr, 240, 300, true)));
+
+                SeekableFileStream.closeAllInstances();
+                SeekableMappedStream.closeAllInstances();
+                assertEquals(expectedSequence, new String(sequence.getSequence(chr, 240, 300, true)));
+
+                // Closed when the genome is replaced,  reopened on next use
+                sequence.close();
+                assertEquals(expectedSequence, new String(sequence.getSequence(chr, 240, 300, true)));
+                sequence.close();
+            } finally {
+                IGVSeekableStreamFactory.getInstance().setMemoryMapping(mapping);
+            }
+        }
+    }
 }
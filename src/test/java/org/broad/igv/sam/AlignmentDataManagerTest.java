@@ -28,10 +28,12 @@ package org.broad.igv.sam;
 import htsjdk.samtools.util.CloseableIterator;
 import org.broad.igv.AbstractHeadlessTest;
 import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.sam.reader.AlignmentReader;
 import org.broad.igv.sam.reader.AlignmentReaderFactory;
 import org.broad.igv.sam.reader.ReadGroupFilter;
+import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.TestUtils;
@@ -216,6 +218,134 @@ public class AlignmentDataManagerTest extends AbstractHeadlessTest {
         }
     }
 
+    @Test
+    public void testPrefetchOnPan() throws Exception {
+        ResourceLocator loc = new ResourceLocator(TestUtils.DATA_DIR + "bam/gstt1_sample.bam");
+        AlignmentDataManager manager = new AlignmentDataManager(loc, genome);
+        AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+
+        ReferenceFrame frame = FrameManager.getDefaultFrame();
+        frame.setBounds(0, 1000);
+        int start = 24378000;   // Just to the right of the reads in this file
+        frame.jumpTo("chr22", start, start + 1000);
+        manager.load(frame, renderOptions, true);
+        AlignmentInterval loaded = manager.getLoadedInterval(frame);
+        assertNotNull(loaded);
+
+        // Pan left towards the start of the loaded interval.  View changes are received through the event bus.
+        for (int shift = 200; frame.getCurrentRange().getStart() > loaded.getStart() + 200; shift += 200) {
+            frame.jumpTo("chr22", start - shift, start - shift + 1000);
+        }
+        assertTrue(manager.waitForPrefetch(60000));
+
+        // The view just past the loaded interval is available without a load
+        frame.jumpTo("chr22", loaded.getStart() - 500, loaded.getStart() + 500);
+        AlignmentInterval prefetched = manager.getLoadedInterval(frame);
+        assertNotNull(prefetched);
+        assertTrue(prefetched != loaded);
+        assertTrue(prefetched.getAlignmentIterator().hasNext());
+
+        // Jumping elsewhere cancels rather than extends the prefetch
+        frame.jumpTo("chr22", 1000000, 1001000);
+        assertTrue(manager.waitForPrefetch(60000));
+        assertTrue(manager.getLoadedInterval(frame) == null);
+    }
+
+    @Test
+    public void testIncrementalLoadOnPan() throws Exception {
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        boolean downsample = prefs.getAsBoolean(Constants.SAM_DOWNSAMPLE_READS);
+        boolean prefetch = prefs.getAsBoolean(Constants.SAM_PREFETCH);
+        prefs.put(Constants.SAM_DOWNSAMPLE_READS, "false");
+        prefs.put(Constants.SAM_PREFETCH, "false");
+        try {
+            ResourceLocator loc = new ResourceLocator(TestUtils.DATA_DIR + "bam/gstt1_sample.bam");
+            AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+            ReferenceFrame frame = FrameManager.getDefaultFrame();
+            frame.setBounds(0, 1000);
+
+            // Reads in this file span 24376180 - 24376387.  Load an interval ending within them, then pan right.
+            AlignmentDataManager manager = new AlignmentDataManager(loc, genome);
+            frame.jumpTo("chr22", 24373780, 24374780);
+            manager.load(frame, renderOptions, true);
+            AlignmentInterval base = manager.getLoadedInterval(frame);
+            assertTrue(base.getEnd() > 24376180 && base.getEnd() < 24376387);
+
+            frame.jumpTo("chr22", 24376000, 24377000);
+            manager.load(frame, renderOptions, true);
+            AlignmentInterval extended = manager.getLoadedInterval(frame);
+            assertExtended(base, extended, loc, renderOptions);
+            assertTrue(extended.getStart() > base.getStart());     // Trimmed on the left
+
+            // Now an interval starting within the reads, then pan left
+            manager = new AlignmentDataManager(loc, genome);
+            frame.jumpTo("chr22", 24377800, 24378800);
+            manager.load(frame, renderOptions, true);
+            base = manager.getLoadedInterval(frame);
+            assertTrue(base.getStart() > 24376180 && base.getStart() < 24376387);
+
+            frame.jumpTo("chr22", 24375500, 24376500);
+            manager.load(frame, renderOptions, true);
+            extended = manager.getLoadedInterval(frame);
+            assertExtended(base, extended, loc, renderOptions);
+            assertTrue(extended.getEnd() < base.getEnd());         // Trimmed on the right
+        } finally {
+            prefs.put(Constants.SAM_DOWNSAMPLE_READS, String.valueOf(downsample));
+            prefs.put(Constants.SAM_PREFETCH, String.valueOf(prefetch));
+        }
+    }
+
+    /**
+     * Check that {@code extended} reuses alignments of {@code base}, and otherwise matches a fresh load
+     */
+    private void assertExtended(AlignmentInterval base, AlignmentInterval extended, ResourceLocator loc,
+                                AlignmentTrack.RenderOptions renderOptions) throws IOException {
+
+        assertTrue(extended != base);
+        Set<Alignment> baseAlignments = Collections.newSetFromMap(new IdentityHashMap<>());
+        baseAlignments.addAll(base.getAlignments());
+        assertTrue(extended.getAlignments().stream().anyMatch(baseAlignments::contains));
+
+        AlignmentInterval expected = new AlignmentDataManager(loc, genome).loadInterval(extended.getChr(),
+                extended.getStart(), extended.getEnd(), renderOptions);
+        Assert.assertEquals(keys(expected.getAlignments()), keys(extended.getAlignments()));
+
+        AlignmentCounts expCounts = expected.getCounts();
+        AlignmentCounts counts = extended.getCounts();
+        for (int pos = extended.getStart(); pos < extended.getEnd(); pos++) {
+            Assert.assertEquals("Total count at " + pos, expCounts.getTotalCount(pos), counts.getTotalCount(pos));
+            Assert.assertEquals("Deletions at " + pos, expCounts.getDelCount(pos), counts.getDelCount(pos));
+            Assert.assertEquals("Insertions at " + pos, expCounts.getInsCount(pos), counts.getInsCount(pos));
+            for (byte b : new byte[]{'a', 'c', 'g', 't', 'n'}) {
+                Assert.assertEquals(expCounts.getPosCount(pos, b), counts.getPosCount(pos, b));
+                Assert.assertEquals(expCounts.getQuality(pos, b), counts.getQuality(pos, b));
+            }
+        }
+        Assert.assertEquals(expCounts.getMaxCount(extended.getStart(), extended.getEnd()),
+                counts.getMaxCount(extended.getStart(), extended.getEnd()));
+
+        // Every alignment is packed once, with no overlap within a row
+        List<Alignment> packed = new ArrayList<>();
+        for (List<Row> rows : extended.getPackedAlignments().values()) {
+            for (Row row : rows) {
+                for (int i = 1; i < row.alignments.size(); i++) {
+                    assertTrue(row.alignments.get(i - 1).getEnd() < row.alignments.get(i).getStart());
+                }
+                packed.addAll(row.alignments);
+            }
+        }
+        Assert.assertEquals(keys(extended.getAlignments()), keys(packed));
+    }
+
+    private static List<String> keys(List<Alignment> alignments) {
+        List<String> keys = new ArrayList<>();
+        for (Alignment al : alignments) {
+            keys.add(al.getReadName() + ":" + al.getAlignmentStart() + ":" + al.isFirstOfPair() + ":" + al.isPrimary());
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
     @Ignore
     @Test
     public void testQueryLargeFile() throws Exception {
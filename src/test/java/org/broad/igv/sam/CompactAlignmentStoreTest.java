@@ -0,0 +1,234 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.sam.reader.BAMReader;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompactAlignmentStoreTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testMatchesPicardAlignments() throws Exception {
+        for (String file : new String[]{"gstt1_sample.bam", "sam_spec_example.bam", "yc_tags.bam"}) {
+            CompactAlignmentStore store = new CompactAlignmentStore(16);
+            List<PicardAlignment> expected = new ArrayList<>();
+            List<Alignment> actual = new ArrayList<>();
+
+            BAMReader reader = new BAMReader(new ResourceLocator(TestUtils.DATA_DIR + "bam/" + file), false);
+            try (CloseableIterator<PicardAlignment> iter = reader.iterator()) {
+                while (iter.hasNext()) {
+                    PicardAlignment al = iter.next();
+                    if (!al.isMapped()) continue;
+                    expected.add(al);
+                    actual.add(store.add(al));
+                }
+            }
+            reader.close();
+
+            assertEquals(file, expected.size(), store.size());
+            assertEquivalent(expected, actual);
+
+            store.trim();
+            assertEquivalent(expected, actual);
+        }
+    }
+
+    @Test
+    public void testPixelRangesAreStored() throws Exception {
+        CompactAlignmentStore store = new CompactAlignmentStore();
+        BAMReader reader = new BAMReader(new ResourceLocator(TestUtils.DATA_DIR + "bam/gstt1_sample.bam"), false);
+        Alignment al;
+        try (CloseableIterator<PicardAlignment> iter = reader.iterator()) {
+            al = store.add(iter.next());
+        }
+        reader.close();
+
+        assertTrue(al instanceof CompactAlignmentStore.CompactAlignment);
+        al.getAlignmentBlocks()[0].setPixelRange(10, 20);
+        assertTrue(al.getAlignmentBlocks()[0].containsPixel(15));
+        assertFalse(al.getAlignmentBlocks()[0].containsPixel(21));
+
+        PicardAlignment expanded = ((CompactAlignmentStore.CompactAlignment) al).toPicardAlignment();
+        assertTrue(expanded.getAlignmentBlocks()[0].containsPixel(15));
+    }
+
+    /**
+     * Objects the renderer asks for on every repaint are built once per row
+     */
+    @Test
+    public void testRenderAccessorsAreCached() throws Exception {
+        CompactAlignmentStore store = new CompactAlignmentStore();
+        List<Alignment> alignments = new ArrayList<>();
+        BAMReader reader = new BAMReader(new ResourceLocator(TestUtils.DATA_DIR + "bam/sam_spec_example.bam"), false);
+        try (CloseableIterator<PicardAlignment> iter = reader.iterator()) {
+            while (iter.hasNext()) {
+                PicardAlignment al = iter.next();
+                if (al.isMapped()) alignments.add(store.add(al));
+            }
+        }
+        reader.close();
+
+        for (Alignment a : alignments) {
+            assertSame(a.getAlignmentBlocks(), a.getAlignmentBlocks());
+            assertSame(a.getInsertions(), a.getInsertions());
+            assertSame(a.getGaps(), a.getGaps());
+            assertSame(a.getMate(), a.getMate());
+            assertSame(a.getReadName(), a.getReadName());
+            assertSame(a.getCigarString(), a.getCigarString());
+            assertSame(a.getAttribute("NM"), a.getAttribute("NM"));
+            assertSame(a.getReadSequence(), a.getReadSequence());
+            for (AlignmentBlock block : a.getAlignmentBlocks()) {
+                assertSame(block.getBases(), block.getBases());
+                assertSame(block.getQualities(), block.getQualities());
+            }
+        }
+    }
+
+    /**
+     * Views are only kept for a bounded number of rows, evicted rows are rebuilt on demand
+     */
+    @Test
+    public void testViewCacheIsBounded() throws Exception {
+        CompactAlignmentStore store = new CompactAlignmentStore(16, 4);
+        List<PicardAlignment> expected = new ArrayList<>();
+        List<Alignment> actual = new ArrayList<>();
+        BAMReader reader = new BAMReader(new ResourceLocator(TestUtils.DATA_DIR + "bam/gstt1_sample.bam"), false);
+        try (CloseableIterator<PicardAlignment> iter = reader.iterator()) {
+            while (iter.hasNext()) {
+                PicardAlignment al = iter.next();
+                if (!al.isMapped()) continue;
+                expected.add(al);
+                actual.add(store.add(al));
+            }
+        }
+        reader.close();
+        assertTrue(actual.size() > 4);
+
+        AlignmentBlock[] blocks = actual.get(0).getAlignmentBlocks();
+        assertSame(blocks, actual.get(0).getAlignmentBlocks());
+        actual.get(4).getAlignmentBlocks();
+        assertNotSame(blocks, actual.get(0).getAlignmentBlocks());
+
+        assertEquivalent(expected, actual);
+    }
+
+    private static void assertEquivalent(List<PicardAlignment> expected, List<Alignment> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            PicardAlignment e = expected.get(i);
+            Alignment a = actual.get(i);
+            String name = e.getReadName();
+
+            assertEquals(name, e.getReadName(), a.getReadName());
+            assertEquals(name, e.getReadSequence(), a.getReadSequence());
+            assertEquals(name, e.getChr(), a.getChr());
+            assertEquals(name, e.getStart(), a.getStart());
+            assertEquals(name, e.getEnd(), a.getEnd());
+            assertEquals(name, e.getAlignmentStart(), a.getAlignmentStart());
+            assertEquals(name, e.getAlignmentEnd(), a.getAlignmentEnd());
+            assertEquals(name, e.getCigarString(), a.getCigarString());
+            assertEquals(name, e.getMappingQuality(), a.getMappingQuality());
+            assertEquals(name, e.getInferredInsertSize(), a.getInferredInsertSize());
+            assertEquals(name, e.getReadStrand(), a.getReadStrand());
+            assertEquals(name, e.isPaired(), a.isPaired());
+            assertEquals(name, e.isProperPair(), a.isProperPair());
+            assertEquals(name, e.isFirstOfPair(), a.isFirstOfPair());
+            assertEquals(name, e.isSecondOfPair(), a.isSecondOfPair());
+            assertEquals(name, e.isDuplicate(), a.isDuplicate());
+            assertEquals(name, e.isPrimary(), a.isPrimary());
+            assertEquals(name, e.isSupplementary(), a.isSupplementary());
+            assertEquals(name, e.isVendorFailedRead(), a.isVendorFailedRead());
+            assertEquals(name, e.getPairOrientation(), a.getPairOrientation());
+            assertEquals(name, e.getFirstOfPairStrand(), a.getFirstOfPairStrand());
+            assertEquals(name, e.getSecondOfPairStrand(), a.getSecondOfPairStrand());
+            assertEquals(name, e.getYcColor(), a.getYcColor());
+            assertEquals(name, e.getSample(), a.getSample());
+            assertEquals(name, e.getReadGroup(), a.getReadGroup());
+            assertEquals(name, e.getLibrary(), a.getLibrary());
+            assertEquals(name, e.getAttribute("NM"), a.getAttribute("NM"));
+            assertEquals(name, e.getAttribute("RG"), a.getAttribute("RG"));
+            assertEquals(name, e.getAttribute("YC"), a.getAttribute("YC"));
+            assertEquals(name, e.getAttribute("TEMPLATE_ORIENTATION"), a.getAttribute("TEMPLATE_ORIENTATION"));
+            assertEquals(name, e.getValueString(e.getStart(), 0, null), a.getValueString(a.getStart(), 0, null));
+
+            ReadMate em = e.getMate();
+            ReadMate am = a.getMate();
+            assertEquals(name, em == null, am == null);
+            if (em != null) {
+                assertEquals(name, em.getChr(), am.getChr());
+                assertEquals(name, em.getStart(), am.getStart());
+                assertEquals(name, em.isNegativeStrand(), am.isNegativeStrand());
+                assertEquals(name, em.isMapped(), am.isMapped());
+            }
+
+            assertBlocksEqual(name, e.getAlignmentBlocks(), a.getAlignmentBlocks());
+            assertBlocksEqual(name, e.getInsertions(), a.getInsertions());
+
+            List<Gap> eg = e.getGaps();
+            List<Gap> ag = a.getGaps();
+            assertEquals(name, eg == null, ag == null);
+            if (eg != null) {
+                assertEquals(name, eg.size(), ag.size());
+                for (int g = 0; g < eg.size(); g++) {
+                    assertEquals(name, eg.get(g).getStart(), ag.get(g).getStart());
+                    assertEquals(name, eg.get(g).getnBases(), ag.get(g).getnBases());
+                    assertEquals(name, eg.get(g).getType(), ag.get(g).getType());
+                    assertEquals(name, eg.get(g) instanceof SpliceGap, ag.get(g) instanceof SpliceGap);
+                }
+            }
+
+            for (int pos = e.getStart() - 1; pos <= e.getEnd(); pos++) {
+                assertEquals(name, e.getBase(pos), a.getBase(pos));
+                assertEquals(name, e.getPhred(pos), a.getPhred(pos));
+            }
+        }
+    }
+
+    private static void assertBlocksEqual(String name, AlignmentBlock[] expected, AlignmentBlock[] actual) {
+        assertEquals(name, expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            AlignmentBlock e = expected[i];
+            AlignmentBlock a = actual[i];
+            assertEquals(name, e.getStart(), a.getStart());
+            assertEquals(name, e.getEnd(), a.getEnd());
+            assertEquals(name, e.getLength(), a.getLength());
+            assertEquals(name, e.getPadding(), a.getPadding());
+            assertEquals(name, e.isSoftClipped(), a.isSoftClipped());
+            assertEquals(name, e.hasBases(), a.hasBases());
+            assertArrayEquals(name, e.getBases(), a.getBases());
+            assertArrayEquals(name, e.getQualities(), a.getQualities());
+        }
+    }
+}
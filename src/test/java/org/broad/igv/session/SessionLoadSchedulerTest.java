@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.session;
+
+import org.broad.igv.util.ResourceLocator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SessionLoadSchedulerTest {
+
+    @Test
+    public void testPriorityOrder() throws Exception {
+
+        SessionLoadScheduler scheduler = new SessionLoadScheduler(1, 4);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        // Occupy the only thread so the remaining tasks queue up
+        scheduler.submit("blocker", SessionLoadScheduler.Priority.DATA, () -> {
+            latch.await();
+            return null;
+        });
+
+        List<Future<String>> futures = new ArrayList<>();
+        String[] paths = {"data1.bed", "data2.bed", "header.bam", "index.bai"};
+        SessionLoadScheduler.Priority[] priorities = {SessionLoadScheduler.Priority.DATA,
+                SessionLoadScheduler.Priority.DATA, SessionLoadScheduler.Priority.HEADER,
+                SessionLoadScheduler.Priority.INDEX};
+        for (int i = 0; i < paths.length; i++) {
+            final String path = paths[i];
+            futures.add(scheduler.submit(path, priorities[i], () -> {
+                order.add(path);
+                return path;
+            }));
+        }
+        latch.countDown();
+        for (int i = 0; i < paths.length; i++) {
+            assertEquals(paths[i], futures.get(i).get());
+        }
+        scheduler.shutdown();
+
+        assertEquals("index.bai", order.get(0));
+        assertEquals("header.bam", order.get(1));
+        assertEquals("data1.bed", order.get(2));
+        assertEquals("data2.bed", order.get(3));
+
+        String report = scheduler.getTimelineReport();
+        for (String path : paths) {
+            assertTrue(report.contains(path));
+        }
+    }
+
+    @Test
+    public void testHostLimit() throws Exception {
+
+        final int maxPerHost = 2;
+        SessionLoadScheduler scheduler = new SessionLoadScheduler(8, maxPerHost);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(scheduler.submit("http://host.example.org/file" + i + ".bed",
+                    SessionLoadScheduler.Priority.DATA, () -> {
+                        int n = running.incrementAndGet();
+                        maxRunning.accumulateAndGet(n, Math::max);
+                        Thread.sleep(20);
+                        running.decrementAndGet();
+                        return n;
+                    }));
+        }
+        for (Future<Integer> f : futures) {
+            f.get();
+        }
+        scheduler.shutdown();
+
+        assertTrue(maxRunning.get() <= maxPerHost);
+    }
+
+    @Test
+    public void testResourceTypes() throws Exception {
+
+        assertEquals(SessionLoadScheduler.Priority.HEADER,
+                SessionLoadScheduler.getPriority(new ResourceLocator("http://host.org/a.bam")));
+        assertEquals(SessionLoadScheduler.Priority.HEADER,
+                SessionLoadScheduler.getPriority(new ResourceLocator("/data/a.bigwig")));
+        assertEquals(SessionLoadScheduler.Priority.DATA,
+                SessionLoadScheduler.getPriority(new ResourceLocator("/data/a.seg")));
+
+        assertEquals("http://host.org/a.bam.bai",
+                SessionLoadScheduler.getIndexPath(new ResourceLocator("http://host.org/a.bam")));
+        assertNull(SessionLoadScheduler.getIndexPath(new ResourceLocator("http://host.org/a.bam?sig=123")));
+        assertNull(SessionLoadScheduler.getIndexPath(new ResourceLocator("http://host.org/a.bed")));
+
+        // Compressed files are only assumed to be tabix indexed if their format is a feature format
+        assertEquals("http://host.org/a.vcf.gz.tbi",
+                SessionLoadScheduler.getIndexPath(new ResourceLocator("http://host.org/a.vcf.gz")));
+        assertEquals(SessionLoadScheduler.Priority.HEADER,
+                SessionLoadScheduler.getPriority(new ResourceLocator("http://host.org/a.bed.gz")));
+        assertNull(SessionLoadScheduler.getIndexPath(new ResourceLocator("http://host.org/a.seg.gz")));
+        assertEquals(SessionLoadScheduler.Priority.DATA,
+                SessionLoadScheduler.getPriority(new ResourceLocator("http://host.org/a.seg.gz")));
+        assertNull(SessionLoadScheduler.getIndexPath(new ResourceLocator("http://host.org/a.wig.gz")));
+
+        assertEquals("host.org", SessionLoadScheduler.getHost("https://HOST.org/a.bam"));
+        assertNull(SessionLoadScheduler.getHost("/data/a.bam"));
+    }
+}
@@ -41,6 +41,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * File file, TrackType trackType, String trackLine, String[] trackNames
@@ -137,6 +138,54 @@ public class TDFReadWriteTest {
     }
 
 
+    /**
+     * Test of getTiles,  which reads uncached tiles together.  Tile 3 is left empty.
+     */
+    @Test
+    public void testGetTiles() throws IOException {
+
+        File testFile = new File("test5.tdf");
+        testFile.deleteOnExit();
+
+        String dsName = "/chr1/z0/mean";
+        int tileWidth = 1000;
+        int nTiles = 10;
+
+        TDFWriter writer = new TDFWriter(testFile, "hg18", type, trackLine, trackNames, wfs, true);
+        writer.createDataset(dsName, TDFDataset.DataType.FLOAT, tileWidth, nTiles);
+        for (int t = 0; t < nTiles; t++) {
+            if (t == 3) continue;
+            float[][] data = new float[trackNames.length][10];
+            for (int i = 0; i < trackNames.length; i++) {
+                for (int j = 0; j < 10; j++) {
+                    data[i][j] = t * 100 + i * 10 + j;
+                }
+            }
+            writer.writeTile(dsName, t, new TDFFixedTile(t * tileWidth, t * tileWidth, 1, data));
+        }
+        writer.closeFile();
+
+        TDFReader reader = TDFReader.getReader(testFile.getAbsolutePath());
+        TDFDataset ds = reader.getDataset(dsName);
+
+        // Prime the cache with one tile so the read is split around it
+        ds.getTile(5);
+
+        List<TDFTile> tiles = ds.getTiles(0, nTiles * tileWidth);
+        assertEquals(nTiles - 1, tiles.size());
+        for (TDFTile tile : tiles) {
+            int t = (int) tile.getStartPosition(0) / tileWidth;
+            assertTrue(t != 3);
+            for (int i = 0; i < trackNames.length; i++) {
+                for (int j = 0; j < 10; j++) {
+                    assertEquals(t * 100 + i * 10 + j, tile.getValue(i, j), 1.0e-6);
+                }
+            }
+        }
+        reader.close();
+    }
+
+
     public void writeTile(String file, boolean gzipped) throws IOException {
 
         File testFile = new File(file);
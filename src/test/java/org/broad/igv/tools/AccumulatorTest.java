@@ -30,6 +30,7 @@
 package org.broad.igv.tools;
 
 import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.stats.QuantileSketch;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -37,6 +38,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
@@ -100,6 +102,56 @@ public class AccumulatorTest {
     }
 
 
+    /**
+     * Percentiles estimated with a quantile sketch of the default size must be within the sketch error bound of
+     * the exact (buffered) computation.
+     */
+    @Test
+    public void testSketchVersusExact() {
+
+        Random random = new Random(1);
+        float[] data = new float[numberOfPoints];
+        for (int i = 0; i < numberOfPoints; i++) {
+            data[i] = (float) Math.exp(random.nextGaussian());    // Skewed distribution
+        }
+
+        int k = QuantileSketch.getAccumulatorK();
+        ListAccumulator exact;
+        ListAccumulator sketched;
+        try {
+            QuantileSketch.setAccumulatorK(0);
+            exact = new ListAccumulator(wfs);
+            QuantileSketch.setAccumulatorK(QuantileSketch.DEFAULT_K);
+            sketched = new ListAccumulator(wfs);
+        } finally {
+            QuantileSketch.setAccumulatorK(k);
+        }
+        for (float v : data) {
+            exact.add(1, v);
+            sketched.add(1, v);
+        }
+        exact.finish();
+        sketched.finish();
+
+        float[] sorted = data.clone();
+        Arrays.sort(sorted);
+        for (WindowFunction wf : wfs) {
+            if (exact.getPercentile(wf) > 0) {
+                // Compare ranks of the two estimates,  the rank error of the sketch is ~ 1.7 / k
+                double exactRank = (double) rank(sorted, exact.getValue(wf)) / numberOfPoints;
+                double sketchRank = (double) rank(sorted, sketched.getValue(wf)) / numberOfPoints;
+                assertEquals(wf.getValue(), exactRank, sketchRank, 2.0 / k);
+            } else {
+                assertEquals(wf.getValue(), exact.getValue(wf), sketched.getValue(wf), 0);
+            }
+        }
+    }
+
+    private static int rank(float[] sorted, float v) {
+        int idx = Arrays.binarySearch(sorted, v);
+        return idx < 0 ? -idx - 1 : idx;
+    }
+
     /**
      * Pathological case,  all zeroes
      */
@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.tools;
+
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.tools.parsers.DataConsumer;
+import org.broad.igv.track.TrackType;
+import org.junit.Ignore;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Compares the run time of the map based and array based counting engines of CoverageCounter, and verifies that
+ * the wig output of the two is identical.  Not a unit test, run from the command line:
+ * <p/>
+ * CoverageCounterBenchmark alignmentFile genomeId [windowSize] [countFlags] [query]
+ */
+@Ignore
+public class CoverageCounterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 2) {
+            System.out.println("Usage: CoverageCounterBenchmark alignmentFile genomeId [windowSize] [countFlags] [query]");
+            return;
+        }
+
+        String file = args[0];
+        Genome genome = IgvTools.loadGenome(args[1]);
+        int windowSize = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int countFlags = args.length > 3 ? Integer.parseInt(args[3]) : CoverageCounter.BASES;
+        String query = args.length > 4 ? args[4] : null;
+
+        File mapWig = File.createTempFile("map", ".wig");
+        File arrayWig = File.createTempFile("array", ".wig");
+        mapWig.deleteOnExit();
+        arrayWig.deleteOnExit();
+
+        // Warm up, then time each engine
+        for (int pass = 0; pass < 2; pass++) {
+            long mapTime = run(file, genome, windowSize, countFlags, query, mapWig, true);
+            long arrayTime = run(file, genome, windowSize, countFlags, query, arrayWig, false);
+            System.out.println("Pass " + pass + "   map: " + mapTime + " ms   array: " + arrayTime + " ms");
+        }
+
+        boolean identical = Arrays.equals(Files.readAllBytes(mapWig.toPath()), Files.readAllBytes(arrayWig.toPath()));
+        System.out.println("Wig output identical: " + identical);
+    }
+
+    private static long run(String file, Genome genome, int windowSize, int countFlags, String query,
+                            File wigFile, boolean useMapCounter) throws Exception {
+
+        System.gc();
+        long t0 = System.currentTimeMillis();
+        CoverageCounter cc = new CoverageCounter(file, new NullConsumer(), windowSize, 0, wigFile, genome, query, 0, countFlags);
+        cc.setUseMapCounter(useMapCounter);
+        cc.parse();
+        return System.currentTimeMillis() - t0;
+    }
+
+    static class NullConsumer implements DataConsumer {
+
+        public void setType(String type) {
+        }
+
+        public void addData(String chr, int start, int end, float[] data, String name) {
+        }
+
+        public void parsingComplete() {
+        }
+
+        public void setTrackParameters(TrackType trackType, String trackLine, String[] trackNames) {
+        }
+
+        public void setTrackParameters(TrackType trackType, String trackLine, String[] trackNames, boolean b) {
+        }
+
+        public void setSortTolerance(int tolerance) {
+        }
+
+        public void setAttribute(String key, String value) {
+        }
+    }
+}
@@ -39,10 +39,12 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 
 
 public class CoverageCounterTest extends AbstractHeadlessTest {
@@ -249,6 +251,101 @@ public class CoverageCounterTest extends AbstractHeadlessTest {
     }
 
 
+    /**
+     * The array based counting engine must produce output identical to the original map based engine.
+     */
+    @Test
+    public void testArrayCounterMatchesMapCounter() throws Exception {
+
+        String[] files = {TestUtils.DATA_DIR + "sam/NA12878.muc1.test.sam",
+                TestUtils.DATA_DIR + "bed/Unigene.sample.sorted.bed"};
+        int[] windowSizes = {1, 25, 1000};
+        int[] countFlags = {0, CoverageCounter.STRANDS_BY_READ, CoverageCounter.BASES,
+                CoverageCounter.BASES + CoverageCounter.STRANDS_BY_READ,
+                CoverageCounter.BASES + CoverageCounter.STRANDS_BY_FIRST_IN_PAIR};
+
+        for (String file : files) {
+            for (int windowSize : windowSizes) {
+                for (int flags : countFlags) {
+                    for (int extFactor : new int[]{0, 100}) {
+                        TestDataConsumer expected = new TestDataConsumer();
+                        CoverageCounter cc = new CoverageCounter(file, expected, windowSize, extFactor, null, genome, null, 0, flags);
+                        cc.setUseMapCounter(true);
+                        cc.parse();
+
+                        TestDataConsumer actual = new TestDataConsumer();
+                        cc = new CoverageCounter(file, actual, windowSize, extFactor, null, genome, null, 0, flags);
+                        cc.parse();
+
+                        assertEquals(expected.attributes.get("totalCount"), actual.attributes.get("totalCount"));
+                        assertEquals(expected.testDatas.size(), actual.testDatas.size());
+                        for (int i = 0; i < expected.testDatas.size(); i++) {
+                            TestData e = expected.testDatas.get(i);
+                            TestData a = actual.testDatas.get(i);
+                            assertEquals(e.chr, a.chr);
+                            assertEquals(e.start, a.start);
+                            assertEquals(e.end, a.end);
+                            assertTrue(Arrays.equals(e.data, a.data));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Counting an indexed file in parallel shards must produce output identical to a single-threaded count.
+     */
+    @Test
+    public void testParallelCountMatchesSequential() throws Exception {
+
+        String file = TestUtils.DATA_DIR + "bam/gstt1_sample.bam";
+        int[] countFlags = {0, CoverageCounter.STRANDS_BY_READ, CoverageCounter.BASES + CoverageCounter.STRANDS_BY_READ};
+
+        // Whole genome, default shard size
+        for (int flags : countFlags) {
+            assertParallelCountMatches(file, null, 25, 0, flags, CoverageCounter.SHARD_SIZE);
+        }
+
+        // Query interval divided into many small shards
+        String queryString = "chr22:24370000-24390000";
+        for (int windowSize : new int[]{1, 25}) {
+            for (int flags : countFlags) {
+                for (int extFactor : new int[]{0, 200}) {
+                    assertParallelCountMatches(file, queryString, windowSize, extFactor, flags, 1000);
+                }
+            }
+        }
+    }
+
+    private void assertParallelCountMatches(String file, String queryString, int windowSize, int extFactor,
+                                            int flags, int shardSize) throws IOException {
+
+        TestDataConsumer expected = new TestDataConsumer();
+        CoverageCounter cc = new CoverageCounter(file, expected, windowSize, extFactor, null, genome, queryString, 0, flags);
+        cc.parse();
+
+        TestDataConsumer actual = new TestDataConsumer();
+        cc = new CoverageCounter(file, actual, windowSize, extFactor, null, genome, queryString, 0, flags);
+        cc.setNumberOfThreads(4);
+        cc.setShardSize(shardSize);
+        cc.parse();
+
+        assertTrue(expected.testDatas.size() > 0);
+        assertEquals(expected.attributes.get("totalCount"), actual.attributes.get("totalCount"));
+        assertEquals(expected.testDatas.size(), actual.testDatas.size());
+        for (int i = 0; i < expected.testDatas.size(); i++) {
+            TestData e = expected.testDatas.get(i);
+            TestData a = actual.testDatas.get(i);
+            assertEquals(e.chr, a.chr);
+            assertEquals(e.start, a.start);
+            assertEquals(e.end, a.end);
+            assertTrue(Arrays.equals(e.data, a.data));
+        }
+    }
+
+
     static class TestDataConsumer implements DataConsumer {
 
         Map<String, String> attributes = new HashMap<String, String>();
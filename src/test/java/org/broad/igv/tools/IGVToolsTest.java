@@ -227,6 +227,24 @@ public class IGVToolsTest extends AbstractHeadlessTest {
     }
 
 
+    @Test
+    public void testTileThreadsIdentical() throws IOException {
+        String inputFile = TestUtils.DATA_DIR + "wig/phastCons_chr1_small.wig";
+        String file1 = TestUtils.DATA_DIR + "out/file1.tdf";
+        String file2 = TestUtils.DATA_DIR + "out/file2.tdf";
+
+        String[] args = {"toTDF", "-z", "5", "--windowFunctions", "mean,median,max", inputFile, file1, hg18id};
+        igvTools.run(args);
+
+        args = new String[]{"toTDF", "-z", "5", "--windowFunctions", "mean,median,max", "--threads", "4",
+                inputFile, file2, hg18id};
+        igvTools.run(args);
+
+        byte[] bytes1 = java.nio.file.Files.readAllBytes(new File(file1).toPath());
+        byte[] bytes2 = java.nio.file.Files.readAllBytes(new File(file2).toPath());
+        assertTrue(Arrays.equals(bytes1, bytes2));
+    }
+
     private void testTile(String inputFile, int start, int end) throws IOException {
         String file1 = TestUtils.DATA_DIR + "out/file1.tdf";
         String file2 = TestUtils.DATA_DIR + "out/file2.tdf";
@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RegionScoreSorterTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testSortTracksComputesEachScoreOnce() {
+
+        List<Track> tracks = new ArrayList<>();
+        List<ScoredTrack> scored = new ArrayList<>();
+        float[] values = {3, Float.NaN, -1, 7, 3, -Float.MAX_VALUE, 0};
+        for (int i = 0; i < values.length; i++) {
+            ScoredTrack t = new ScoredTrack("t" + i, values[i]);
+            scored.add(t);
+            tracks.add(t);
+        }
+        tracks.add(2, null);
+
+        List<Track> expected = new ArrayList<>(tracks);
+        expected.sort((t1, t2) -> {
+            if (t1 == null && t2 == null) return 0;
+            if (t1 == null) return 1;
+            if (t2 == null) return -1;
+            return Float.compare(((ScoredTrack) t2).value, ((ScoredTrack) t1).value);
+        });
+
+        new RegionScoreSorter().sortTracks(tracks, "chr1", 0, 1000, 0, RegionScoreType.SCORE, "testSortTracks");
+        assertEquals(expected, tracks);
+        for (ScoredTrack t : scored) {
+            assertEquals(1, t.count.get());
+        }
+
+        // Re-sorting the same region uses the memoized scores
+        new RegionScoreSorter().sortTracks(tracks, "chr1", 0, 1000, 0, RegionScoreType.SCORE, "testSortTracks");
+        assertEquals(expected, tracks);
+        for (ScoredTrack t : scored) {
+            assertEquals(1, t.count.get());
+        }
+
+        RegionScoreSorter.invalidate(scored.get(0));
+        new RegionScoreSorter().sortTracks(tracks, "chr1", 0, 1000, 0, RegionScoreType.SCORE, "testSortTracks");
+        assertEquals(2, scored.get(0).count.get());
+
+        // A reloaded track, i.e. one with a new source, is scored again without an explicit invalidate
+        scored.get(1).source = new Object();
+        new RegionScoreSorter().sortTracks(tracks, "chr1", 0, 1000, 0, RegionScoreType.SCORE, "testSortTracks");
+        assertEquals(2, scored.get(1).count.get());
+        assertEquals(1, scored.get(2).count.get());
+
+        // Tracks that do not report a source are never memoized
+        scored.get(3).source = null;
+        new RegionScoreSorter().sortTracks(tracks, "chr1", 0, 1000, 0, RegionScoreType.SCORE, "testSortTracks");
+        new RegionScoreSorter().sortTracks(tracks, "chr1", 0, 1000, 0, RegionScoreType.SCORE, "testSortTracks");
+        assertEquals(3, scored.get(3).count.get());
+
+        assertTrue(RegionScoreSorter.isMemoized(scored.get(1), RegionScoreType.SCORE));
+        assertFalse(RegionScoreSorter.isMemoized(scored.get(1), RegionScoreType.MUTATION_COUNT));
+        assertFalse(RegionScoreSorter.isMemoized(scored.get(3), RegionScoreType.SCORE));
+    }
+
+    @Test
+    public void testSortGroups() {
+        TrackGroup g1 = new TrackGroup("g1");
+        g1.add(new ScoredTrack("a", 1));
+        g1.add(new ScoredTrack("b", 5));
+        TrackGroup g2 = new TrackGroup("g2");
+        g2.add(new ScoredTrack("c", 4));
+        ScoredTrack hidden = new ScoredTrack("d", 10);
+        hidden.setVisible(false);
+        g2.add(hidden);
+        TrackGroup g3 = new TrackGroup("g3");
+        g3.add(new ScoredTrack("e", 6));
+
+        List<TrackGroup> groups = new ArrayList<>(Arrays.asList(g1, g2, g3));
+        new RegionScoreSorter().sortGroups(groups, "chr1", 0, 1000, 0, RegionScoreType.SCORE, "testSortGroups");
+        assertEquals(Arrays.asList(g3, g1, g2), groups);
+    }
+
+    @Test
+    public void testCancel() {
+        List<Track> tracks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tracks.add(new ScoredTrack("t" + i, i));
+        }
+        List<Track> original = new ArrayList<>(tracks);
+
+        RegionScoreSorter sorter = new RegionScoreSorter();
+        sorter.cancel();
+        try {
+            sorter.sortTracks(tracks, "chr1", 0, 1000, 0, RegionScoreType.SCORE, "testCancel");
+            fail("Expected CancellationException");
+        } catch (CancellationException e) {
+            // expected
+        }
+        assertEquals(original, tracks);
+    }
+
+    static class ScoredTrack extends AbstractTrack {
+
+        final float value;
+        final AtomicInteger count = new AtomicInteger();
+        Object source = new Object();
+
+        ScoredTrack(String name, float value) {
+            super(name);
+            this.value = value;
+        }
+
+        @Override
+        protected Object getRegionScoreSource() {
+            return source;
+        }
+
+        @Override
+        public float getRegionScore(String chr, int start, int end, int zoom, RegionScoreType type, String frameName) {
+            count.incrementAndGet();
+            return value;
+        }
+
+        @Override
+        public boolean isReadyToPaint(ReferenceFrame frame) {
+            return true;
+        }
+
+        @Override
+        public void load(ReferenceFrame frame) {
+        }
+
+        @Override
+        public void render(RenderContext context, Rectangle rect) {
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.ui.panel;
+
+import htsjdk.tribble.Feature;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.BasicFeature;
+import org.broad.igv.track.FeatureCollectionSource;
+import org.broad.igv.track.FeatureTrack;
+import org.broad.igv.track.TrackGroup;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RegionSnapshotRendererTest extends AbstractHeadlessTest {
+
+    private static final int NAME_WIDTH = 100;
+    private static final int DATA_WIDTH = 400;
+
+    private List<TrackGroup> createGroups() {
+        List<Feature> features = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            features.add(new BasicFeature("chr1", i * 100000, i * 100000 + 50000));
+        }
+        FeatureTrack track = new FeatureTrack("test", "test", new FeatureCollectionSource(features, genome));
+        TrackGroup group = new TrackGroup();
+        group.add(track);
+        return Arrays.asList(group);
+    }
+
+    @Test
+    public void testRenderConcurrently() throws Exception {
+
+        File bedFile = new File(TestUtils.TMP_OUTPUT_DIR, "regions.bed");
+        try (PrintWriter pw = new PrintWriter(bedFile)) {
+            for (int i = 0; i < 8; i++) {
+                pw.println("chr1\t" + (i * 100000 + 10000) + "\t" + (i * 100000 + 40000) + "\tregion" + i);
+            }
+        }
+        List<RegionSnapshotRenderer.Region> regions = RegionSnapshotRenderer.parseRegions(bedFile.getAbsolutePath());
+        assertEquals(8, regions.size());
+
+        RegionSnapshotRenderer renderer = new RegionSnapshotRenderer(createGroups(), NAME_WIDTH, DATA_WIDTH, 1000);
+        List<String> errors = renderer.render(regions, new File(TestUtils.TMP_OUTPUT_DIR), RegionSnapshotRenderer.Format.PNG, 3);
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        for (int i = 0; i < 8; i++) {
+            File file = new File(TestUtils.TMP_OUTPUT_DIR, "region" + i + ".png");
+            assertTrue(file.exists());
+            BufferedImage image = ImageIO.read(file);
+            assertEquals(NAME_WIDTH + DATA_WIDTH, image.getWidth());
+
+            // Each region lies within a feature,  which should be painted across the middle of the data panel
+            boolean painted = false;
+            for (int y = 0; y < image.getHeight() && !painted; y++) {
+                painted = (image.getRGB(NAME_WIDTH + DATA_WIDTH / 2, y) & 0xFFFFFF) != 0xFFFFFF;
+            }
+            assertTrue("Feature not painted in region" + i, painted);
+        }
+
+        assertTrue(FrameManager.getOffscreenFrames().isEmpty());
+    }
+
+    @Test
+    public void testRenderSVG() throws Exception {
+
+        List<RegionSnapshotRenderer.Region> regions = Arrays.asList(new RegionSnapshotRenderer.Region("chr1:10000-40000", null));
+
+        RegionSnapshotRenderer renderer = new RegionSnapshotRenderer(createGroups(), NAME_WIDTH, DATA_WIDTH, 1000);
+        List<String> errors = renderer.render(regions, new File(TestUtils.TMP_OUTPUT_DIR), RegionSnapshotRenderer.Format.SVG, 2);
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        File file = new File(TestUtils.TMP_OUTPUT_DIR, "chr1_10000_40000.svg");
+        assertTrue(file.exists());
+        assertTrue(file.length() > 0);
+    }
+}
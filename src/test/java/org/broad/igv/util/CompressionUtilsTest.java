@@ -28,6 +28,14 @@ package org.broad.igv.util;
 import org.junit.Test;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipException;
 
 import static org.junit.Assert.*;
 
@@ -83,6 +91,75 @@ public class CompressionUtilsTest {
         }
     }
 
+    @Test
+    public void testInflateConcurrent() throws Exception {
+        int sz = 1000000;
+        byte[] uncompressedBytes = new byte[sz];
+        for (int i = 0; i < sz; i++) {
+            uncompressedBytes[i] = (byte) (Math.sin(i) * 100);
+        }
+        final byte[] compressedBytes = compressionUtils.compress(uncompressedBytes, 32000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    // The buffer is reused by the thread's next call,  copy before returning it
+                    ByteBuffer result = CompressionUtils.inflate(compressedBytes, 0, compressedBytes.length, 32000);
+                    assertEquals(0, result.position());
+                    return Arrays.copyOf(result.array(), result.limit());
+                }));
+            }
+            for (Future<byte[]> future : futures) {
+                assertArrayEquals(uncompressedBytes, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testInflateReusesBuffer() throws Exception {
+        byte[] compressedBytes = compressionUtils.compress(new byte[50000]);
+        ByteBuffer first = CompressionUtils.inflate(compressedBytes, 0, compressedBytes.length, 50000);
+        ByteBuffer second = CompressionUtils.inflate(compressedBytes, 0, compressedBytes.length, 50000);
+        assertSame(first.array(), second.array());
+        assertEquals(50000, second.limit());
+
+        // decompress returns a copy the caller owns
+        byte[] result = compressionUtils.decompress(compressedBytes);
+        assertNotSame(second.array(), result);
+        assertEquals(50000, result.length);
+    }
+
+    @Test
+    public void testDecompressCorruptData() throws Exception {
+        byte[] uncompressedBytes = new byte[100000];
+        for (int i = 0; i < uncompressedBytes.length; i++) {
+            uncompressedBytes[i] = (byte) i;
+        }
+        byte[] compressedBytes = compressionUtils.compress(uncompressedBytes, 32000);
+
+        // Corrupt the header of the second chunk
+        byte[] corrupt = compressedBytes.clone();
+        int secondChunk = compressionUtils.compress(Arrays.copyOf(uncompressedBytes, 32000)).length;
+        corrupt[secondChunk] = 0;
+        corrupt[secondChunk + 1] = 0;
+
+        // decompress logs the error and returns what was decompressed
+        byte[] result = compressionUtils.decompress(corrupt, 32000);
+        assertArrayEquals(Arrays.copyOf(uncompressedBytes, 32000), result);
+
+        // inflate throws
+        try {
+            CompressionUtils.inflate(corrupt, 0, corrupt.length, 32000);
+            fail("Expected ZipException");
+        } catch (ZipException e) {
+            // expected
+        }
+    }
+
     @Test
     public void testUngzipFile_01() throws Exception {
         String inPath = TestUtils.DATA_DIR + "largegzdata.gz";
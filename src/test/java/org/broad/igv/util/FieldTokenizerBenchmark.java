@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import htsjdk.tribble.readers.AsciiLineReader;
+import org.broad.igv.Globals;
+import org.junit.Ignore;
+
+import java.io.*;
+import java.util.Random;
+
+/**
+ * Compares the run time of regex splitting with Integer/Float parsing, as used by the ASCII track parsers before
+ * FieldTokenizer, against FieldTokenizer on a generated segment file, and verifies that both yield the same values.
+ * Not a unit test, run from the command line:
+ * <p/>
+ * FieldTokenizerBenchmark [nRows] [nValueColumns]
+ */
+@Ignore
+public class FieldTokenizerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        int nRows = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int nValues = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        File file = File.createTempFile("benchmark", ".seg");
+        file.deleteOnExit();
+        writeFile(file, nRows, nValues);
+        System.out.println("Rows: " + nRows + "   size: " + (file.length() / (1024 * 1024)) + " mb");
+
+        // Warm up, then time each parser
+        for (int pass = 0; pass < 3; pass++) {
+            System.gc();
+            long t0 = System.currentTimeMillis();
+            double regexSum = parseRegex(file);
+            long regexTime = System.currentTimeMillis() - t0;
+
+            System.gc();
+            t0 = System.currentTimeMillis();
+            double tokenizerSum = parseTokenizer(file);
+            long tokenizerTime = System.currentTimeMillis() - t0;
+
+            System.out.println("Pass " + pass + "   regex: " + regexTime + " ms   tokenizer: " + tokenizerTime +
+                    " ms   checksums equal: " + (regexSum == tokenizerSum));
+        }
+    }
+
+    private static void writeFile(File file, int nRows, int nValues) throws IOException {
+        Random random = new Random(1);
+        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            pw.print("ID\tchrom\tloc.start\tloc.end\tnum.mark");
+            for (int v = 0; v < nValues; v++) pw.print("\tseg.mean");
+            pw.println();
+            int start = 0;
+            for (int i = 0; i < nRows; i++) {
+                int end = start + random.nextInt(100000);
+                pw.print("sample" + (i % 50) + "\tchr" + (1 + (i % 22)) + "\t" + start + "\t" + end + "\t" + random.nextInt(1000));
+                for (int v = 0; v < nValues; v++) {
+                    pw.print("\t" + (float) (random.nextGaussian() * 2));
+                }
+                pw.println();
+                start = end;
+            }
+        }
+    }
+
+    private static double parseRegex(File file) throws IOException {
+        double sum = 0;
+        try (AsciiLineReader reader = new AsciiLineReader(new FileInputStream(file))) {
+            reader.readLine();
+            String nextLine;
+            while ((nextLine = reader.readLine()) != null) {
+                String[] tokens = Globals.tabPattern.split(nextLine, -1);
+                String chr = tokens[1].trim();
+                int start = Integer.parseInt(tokens[2].trim());
+                int end = Integer.parseInt(tokens[3].trim());
+                sum += chr.length() + start + end;
+                for (int i = 5; i < tokens.length; i++) {
+                    sum += Float.parseFloat(tokens[i]);
+                }
+            }
+        }
+        return sum;
+    }
+
+    private static double parseTokenizer(File file) throws IOException {
+        double sum = 0;
+        try (FieldTokenizer reader = new FieldTokenizer(new FileInputStream(file))) {
+            reader.nextLine();
+            while (reader.nextLine()) {
+                int nTokens = reader.splitTabs();
+                String chr = reader.getInternedString(1);
+                int start = reader.getInt(2);
+                int end = reader.getInt(3);
+                sum += chr.length() + start + end;
+                for (int i = 5; i < nTokens; i++) {
+                    sum += reader.getFloat(i);
+                }
+            }
+        }
+        return sum;
+    }
+}
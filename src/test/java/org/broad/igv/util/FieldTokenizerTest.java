@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import org.broad.igv.Globals;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FieldTokenizerTest {
+
+    @Test
+    public void testReadLines() throws Exception {
+
+        String text = "line one\nline\ttwo\r\n\nlast line with no terminator";
+        String[] expected = {"line one", "line\ttwo", "", "last line with no terminator"};
+
+        // A small buffer forces lines to span buffer fills
+        for (int bufferSize : new int[]{4, 5, 7, 1024}) {
+            FieldTokenizer tokenizer = new FieldTokenizer(new ByteArrayInputStream(text.getBytes()), bufferSize);
+            long position = 0;
+            for (String e : expected) {
+                assertEquals(e, tokenizer.readLine());
+                position = tokenizer.getPosition();
+            }
+            assertNull(tokenizer.readLine());
+            assertEquals(text.length(), position);
+        }
+    }
+
+    @Test
+    public void testSplit() throws Exception {
+
+        String[] lines = {"a\tb\t\tc\t", "\tleading", "", "one", "a  b\t c   d  ", " x y"};
+
+        FieldTokenizer tokenizer = new FieldTokenizer();
+        for (String line : lines) {
+            tokenizer.setLine(line);
+            assertArrayEquals(line, Globals.tabPattern.split(line, -1), fields(tokenizer, tokenizer.splitTabs()));
+            assertArrayEquals(line, Globals.whitespacePattern.split(line.trim()), fields(tokenizer, tokenizer.splitWhitespace()));
+            assertArrayEquals(line, Globals.singleTabMultiSpacePattern.split(line), fields(tokenizer, tokenizer.splitTabsAndSpaces()));
+        }
+    }
+
+    private static String[] fields(FieldTokenizer tokenizer, int n) {
+        String[] fields = new String[n];
+        for (int i = 0; i < n; i++) fields[i] = tokenizer.getString(i);
+        return fields;
+    }
+
+    @Test
+    public void testNumbers() throws Exception {
+
+        FieldTokenizer tokenizer = new FieldTokenizer();
+        tokenizer.setLine(" 42 \t-17\t2147483647\t1e3\t1,2,3,\t0.5\tNA\t\tNaN\t-0");
+        assertEquals(10, tokenizer.splitTabs());
+        assertEquals(42, tokenizer.getInt(0));
+        assertEquals(-17, tokenizer.getInt(1));
+        assertEquals(Integer.MAX_VALUE, tokenizer.getInt(2));
+        assertEquals(1000, tokenizer.getLenientInt(3));
+        assertArrayEquals(new int[]{1, 2, 3}, tokenizer.getIntList(4, ','));
+        assertEquals(0.5f, tokenizer.getFloat(5), 0);
+        assertTrue(Float.isNaN(tokenizer.getFloat(6, Float.NaN)));
+        assertEquals(-1f, tokenizer.getFloat(7, -1f), 0);
+        assertTrue(Float.isNaN(tokenizer.getFloat(8)));
+        assertEquals(Float.floatToIntBits(-0.0f), Float.floatToIntBits(tokenizer.getFloat(9)));
+
+        try {
+            tokenizer.getInt(3);
+            fail("Expected NumberFormatException");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+        try {
+            tokenizer.getFloat(6);
+            fail("Expected NumberFormatException");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFloatsMatchParseFloat() throws Exception {
+
+        Random random = new Random(1);
+        FieldTokenizer tokenizer = new FieldTokenizer();
+        for (int i = 0; i < 100000; i++) {
+            String s;
+            switch (i % 4) {
+                case 0:
+                    s = Float.toString(Float.intBitsToFloat(random.nextInt()));
+                    break;
+                case 1:
+                    s = String.format("%.6f", random.nextGaussian() * 1000);
+                    break;
+                case 2:
+                    s = Double.toString(random.nextDouble());
+                    break;
+                default:
+                    s = random.nextInt(100000) + "e" + (random.nextInt(60) - 30);
+            }
+            tokenizer.setLine(s);
+            tokenizer.splitTabs();
+            float expected;
+            try {
+                expected = Float.parseFloat(s);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            assertEquals(s, Float.floatToIntBits(expected), Float.floatToIntBits(tokenizer.getFloat(0)));
+        }
+    }
+
+    @Test
+    public void testStrings() throws Exception {
+
+        FieldTokenizer tokenizer = new FieldTokenizer();
+        tokenizer.setFields(new String[]{"chr1", " chr1 ", "café", "x"});
+        assertEquals(4, tokenizer.getFieldCount());
+        assertEquals("café", tokenizer.getString(2));
+        assertEquals("x", tokenizer.getString(3));
+        assertSame(tokenizer.getInternedString(0), tokenizer.getInternedString(1));
+        assertTrue(tokenizer.fieldEquals(1, "chr1"));
+        assertEquals('c', tokenizer.getFirstChar(1));
+
+        // Split fields are referenced,  not joined and copied
+        String[] fields = {"chr1", "100", "200", "name", "0.5", "+", "10,20,"};
+        tokenizer.setFields(fields);
+        assertSame(fields[3], tokenizer.getString(3));
+        assertEquals(200, tokenizer.getInt(2));
+        assertEquals(0.5f, tokenizer.getFloat(4), 0);
+        assertEquals(100, tokenizer.getInt(1));
+        assertEquals('+', tokenizer.getFirstChar(5));
+        assertArrayEquals(new int[]{10, 20}, tokenizer.getIntList(6, ','));
+        assertEquals("chr1\t100\t200\tname\t0.5\t+\t10,20,", tokenizer.getLine());
+
+        tokenizer = new FieldTokenizer(new ByteArrayInputStream("café\tchr2".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(tokenizer.nextLine());
+        assertEquals(2, tokenizer.splitTabs());
+        assertEquals("café", tokenizer.getString(0));
+        assertEquals("chr2", tokenizer.getInternedString(1));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util;
+
+import org.broad.igv.exceptions.ParserException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ParallelLineParserTest {
+
+    @Test
+    public void testSplitAtLineBoundaries() throws Exception {
+
+        File file = File.createTempFile("chunks", ".txt");
+        file.deleteOnExit();
+        List<String> expected = new ArrayList<>();
+        try (PrintWriter pw = new PrintWriter(file)) {
+            pw.print("header\n");
+            for (int i = 0; i < 5000; i++) {
+                String line = "line " + i + "\t" + (i * 31);
+                expected.add(line);
+                // Mix line terminators
+                pw.print(line + (i % 3 == 0 ? "\r\n" : "\n"));
+            }
+        }
+
+        long start = "header\n".length();
+        List<ParallelLineParser.Chunk> chunks = ParallelLineParser.split(file.getAbsolutePath(), start, 1000);
+        assertTrue(chunks.size() > 1);
+        assertEquals(start, chunks.get(0).start);
+        assertEquals(file.length(), chunks.get(chunks.size() - 1).end);
+        for (int i = 1; i < chunks.size(); i++) {
+            assertEquals(chunks.get(i - 1).end, chunks.get(i).start);
+        }
+
+        // Every line is parsed exactly once, and results arrive in file order
+        List<String> lines = new ArrayList<>();
+        ParallelLineParser.parse(file.getAbsolutePath(), start, 1000,
+                (reader, chunk) -> {
+                    List<String> chunkLines = new ArrayList<>();
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        chunkLines.add(line);
+                    }
+                    return chunkLines;
+                },
+                lines::addAll);
+        assertEquals(expected, lines);
+    }
+
+    @Test
+    public void testChunkException() throws Exception {
+
+        File file = File.createTempFile("chunks", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter pw = new PrintWriter(file)) {
+            for (int i = 0; i < 5000; i++) {
+                pw.println(i == 3000 ? "bad" : String.valueOf(i));
+            }
+        }
+
+        List<Integer> consumed = new ArrayList<>();
+        try {
+            ParallelLineParser.parse(file.getAbsolutePath(), 0, 1000,
+                    (reader, chunk) -> {
+                        int n = 0;
+                        while (reader.nextLine()) {
+                            reader.splitTabs();
+                            try {
+                                reader.getInt(0);
+                            } catch (NumberFormatException e) {
+                                throw new ParserException("bad line", n, reader.getLine());
+                            }
+                            n++;
+                        }
+                        return n;
+                    },
+                    consumed::add);
+            fail("Expected a ParserException");
+        } catch (ParserException e) {
+            // All chunks before the failing one were consumed
+            int linesBefore = consumed.stream().mapToInt(Integer::intValue).sum();
+            assertEquals(3000, linesBefore + e.getLineNumber());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WeightedLRUCacheTest {
+
+    @Test
+    public void testEvictionByWeight() {
+        WeightedLRUCache<String, byte[]> cache = new WeightedLRUCache<>(100, value -> value.length);
+
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        assertEquals(80, cache.getTotalWeight());
+
+        // Touch "a" so that "b" is the least recently used
+        assertNotNull(cache.get("a"));
+        cache.put("c", new byte[40]);
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(80, cache.getTotalWeight());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // Too heavy to cache at all
+        cache.put("d", new byte[101]);
+        assertNull(cache.get("d"));
+        assertEquals(2, cache.size());
+
+        // Replacing an entry replaces its weight
+        cache.put("a", new byte[10]);
+        assertEquals(50, cache.getTotalWeight());
+
+        cache.removeIf(key -> key.equals("c"));
+        assertEquals(10, cache.getTotalWeight());
+
+        cache.setMaxWeight(5);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getTotalWeight());
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stats;
+
+import org.apache.commons.math.stat.StatUtils;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0.02, 0.1, 0.25, 0.5, 0.75, 0.9, 0.98};
+
+    @Test
+    public void testEmpty() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+        sketch.add(Double.NaN);
+        assertEquals(0, sketch.size());
+    }
+
+    @Test
+    public void testSmall() {
+        // Fewer values than the sketch capacity,  percentiles match StatUtils.percentile
+        Random random = new Random(3);
+        double[] values = new double[100];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian();
+            sketch.add(values[i]);
+        }
+        assertEquals(100, sketch.size());
+        for (double p : new double[]{0.5, 2, 10, 25, 50, 75, 90, 98, 99.5, 100}) {
+            assertEquals("p=" + p, StatUtils.percentile(values, p), sketch.getPercentile(p), 0);
+        }
+        assertEquals(StatUtils.min(values), sketch.getQuantile(0), 0);
+
+        QuantileSketch pair = new QuantileSketch();
+        pair.add(3);
+        pair.add(1);
+        assertEquals(2, pair.getQuantile(0.5), 0);
+        assertEquals(StatUtils.percentile(new double[]{1, 3}, 10), pair.getPercentile(10), 0);
+    }
+
+    /**
+     * The rank error must be within the nominal bound for random, sorted, and reverse sorted input.
+     */
+    @Test
+    public void testRankError() {
+        int n = 1000000;
+        Random random = new Random(1);
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextGaussian();
+        }
+        assertRankError(values, QuantileSketch.DEFAULT_K);
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        assertRankError(sorted, QuantileSketch.DEFAULT_K);
+
+        double[] reversed = new double[n];
+        for (int i = 0; i < n; i++) {
+            reversed[i] = sorted[n - 1 - i];
+        }
+        assertRankError(reversed, QuantileSketch.DEFAULT_K);
+
+        // Accuracy improves with k
+        assertRankError(values, 1000);
+    }
+
+    @Test
+    public void testMerge() {
+        int n = 200000;
+        Random random = new Random(2);
+        double[] values = new double[4 * n];
+        QuantileSketch merged = new QuantileSketch();
+        for (int s = 0; s < 4; s++) {
+            QuantileSketch sketch = new QuantileSketch();
+            for (int i = 0; i < n; i++) {
+                double v = s + random.nextDouble();   // Disjoint ranges
+                values[s * n + i] = v;
+                sketch.add(v);
+            }
+            merged.merge(sketch);
+        }
+        assertEquals(values.length, merged.size());
+        assertRankError(values, merged);
+    }
+
+    /**
+     * The sketch must remain bounded in size and accurate when all values are identical.
+     */
+    @Test
+    public void testConstant() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < 1000000; i++) {
+            sketch.add(3.0);
+        }
+        for (double q : QUANTILES) {
+            assertEquals(3.0, sketch.getQuantile(q), 0);
+        }
+    }
+
+    private static void assertRankError(double[] values, int k) {
+        QuantileSketch sketch = new QuantileSketch(k);
+        for (double v : values) {
+            sketch.add(v);
+        }
+        assertRankError(values, sketch);
+    }
+
+    private static void assertRankError(double[] values, QuantileSketch sketch) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double bound = 2.0 / sketch.getK();
+        for (double q : QUANTILES) {
+            double estimate = sketch.getQuantile(q);
+            double exact = StatUtils.percentile(sorted, q * 100);
+
+            // Rank of the estimate in the exact distribution
+            int lo = lowerBound(sorted, estimate);
+            double rank = (double) lo / sorted.length;
+            assertEquals("q=" + q + " exact=" + exact + " estimate=" + estimate, q, rank, bound);
+        }
+    }
+
+    private static int lowerBound(double[] sorted, double v) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < v) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
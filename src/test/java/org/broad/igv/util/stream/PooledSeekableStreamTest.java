@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PooledSeekableStreamTest {
+
+    private final File BAM_FILE = new File(TestUtils.DATA_DIR + "/samtools/index_test.bam");
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+
+        final AtomicInteger nOpened = new AtomicInteger(0);
+        final PooledSeekableStream stream = new PooledSeekableStream(() -> {
+            nOpened.incrementAndGet();
+            return new SeekableFileStream(BAM_FILE);
+        }, 3, 10000);
+        final long length = BAM_FILE.length();
+        final byte[] expectedBytes = new byte[(int) length];
+        SeekableStream expected = new SeekableFileStream(BAM_FILE);
+        expected.readFully(expectedBytes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            final int seed = t;
+            results.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 200; i++) {
+                    int position = (int) (random.nextDouble() * (length - 5000));
+                    byte[] bytes = new byte[1 + random.nextInt(5000)];
+                    stream.seek(position);
+                    stream.readFully(bytes);
+                    assertEquals(position + bytes.length, stream.position());
+                    for (int j = 0; j < bytes.length; j++) {
+                        if (bytes[j] != expectedBytes[position + j]) return false;
+                    }
+                }
+                return true;
+            }));
+        }
+        for (Future<Boolean> f : results) {
+            assertTrue(f.get());
+        }
+        executor.shutdown();
+
+        assertTrue(nOpened.get() <= 3);
+        assertEquals(length, stream.length());
+        stream.close();
+    }
+
+    @Test
+    public void testThreadPositions() throws Exception {
+        final PooledSeekableStream stream = new PooledSeekableStream(() -> new SeekableFileStream(BAM_FILE), 2, 10000);
+        stream.seek(1000);
+        Thread other = new Thread(() -> {
+            try {
+                stream.seek(50000);
+                stream.read(new byte[10], 0, 10);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        other.start();
+        other.join();
+        assertEquals(1000, stream.position());
+        stream.close();
+    }
+}
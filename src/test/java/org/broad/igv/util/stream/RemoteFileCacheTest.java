@@ -0,0 +1,261 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.broad.igv.util.TestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RemoteFileCacheTest {
+
+    private static final String URL = "http://www.example.com/data/index_test.bam";
+    private final File BAM_FILE = new File(TestUtils.DATA_DIR + "/samtools/index_test.bam");
+
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = new File(TestUtils.TMP_OUTPUT_DIR, "remote_cache");
+        deleteDirectory(cacheDir);
+        cacheDir.mkdirs();
+    }
+
+    @Test
+    public void testFileCachedUntilVersionChanges() throws Exception {
+
+        RemoteFileCache cache = new RemoteFileCache(cacheDir, RemoteFileCache.DEFAULT_MAX_BYTES);
+        AtomicInteger nDownloads = new AtomicInteger(0);
+
+        File file1 = cache.getFile(URL, "v1", () -> {
+            nDownloads.incrementAndGet();
+            return new FileInputStream(BAM_FILE);
+        });
+        File file2 = cache.getFile(URL, "v1", () -> {
+            nDownloads.incrementAndGet();
+            return new FileInputStream(BAM_FILE);
+        });
+        assertEquals(1, nDownloads.get());
+        assertEquals(file1, file2);
+        assertArrayEquals(Files.readAllBytes(BAM_FILE.toPath()), Files.readAllBytes(file2.toPath()));
+
+        // A new version replaces the cached copy
+        cache.getFile(URL, "v2", () -> {
+            nDownloads.incrementAndGet();
+            return new FileInputStream(BAM_FILE);
+        });
+        assertEquals(2, nDownloads.get());
+    }
+
+    @Test
+    public void testIndexStream() throws Exception {
+
+        RemoteFileCache cache = new RemoteFileCache(cacheDir, RemoteFileCache.DEFAULT_MAX_BYTES);
+        byte[] expected = Files.readAllBytes(BAM_FILE.toPath());
+
+        CountingStream stream = new CountingStream(BAM_FILE);
+        SeekableStream indexStream = cache.getIndexStream(URL, "v1", stream);
+        Random random = new Random(1);
+        long[] positions = new long[20];
+        int[] lengths = new int[20];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = random.nextInt(expected.length);
+            lengths[i] = 1 + random.nextInt(3 * RemoteFileCache.BLOCK_SIZE);
+            checkRead(indexStream, expected, positions[i], lengths[i]);
+        }
+        assertTrue(stream.nReads > 0);
+
+        // A second stream for the same version is served from disk
+        CountingStream stream2 = new CountingStream(BAM_FILE);
+        SeekableStream indexStream2 = cache.getIndexStream(URL, "v1", stream2);
+        for (int i = 0; i < positions.length; i++) {
+            checkRead(indexStream2, expected, positions[i], lengths[i]);
+        }
+        assertEquals(0, stream2.nReads);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        long maxBytes = 3 * BAM_FILE.length() / 2;
+        RemoteFileCache cache = new RemoteFileCache(cacheDir, maxBytes);
+        for (int i = 0; i < 3; i++) {
+            File file = cache.getFile(URL + i, "v1", () -> new FileInputStream(BAM_FILE));
+            assertTrue(file.exists());
+            assertTrue(directorySize(cacheDir) <= maxBytes);
+        }
+    }
+
+    @Test
+    public void testIndexStreamEviction() throws Exception {
+        long maxBytes = 8 * RemoteFileCache.BLOCK_SIZE;
+        RemoteFileCache cache = new RemoteFileCache(cacheDir, maxBytes);
+        byte[] expected = Files.readAllBytes(BAM_FILE.toPath());
+        for (int i = 0; i < 3; i++) {
+            SeekableStream indexStream = cache.getIndexStream(URL + i, "v1", new SeekableFileStream(BAM_FILE));
+            for (long position = 0; position < 6 * RemoteFileCache.BLOCK_SIZE; position += RemoteFileCache.BLOCK_SIZE) {
+                checkRead(indexStream, expected, position, RemoteFileCache.BLOCK_SIZE);
+                assertTrue(directorySize(cacheDir) <= maxBytes);
+            }
+        }
+    }
+
+    /**
+     * A block cut short by a truncated response is returned to the reader but not stored
+     */
+    @Test
+    public void testTruncatedBlockNotStored() throws Exception {
+
+        RemoteFileCache cache = new RemoteFileCache(cacheDir, RemoteFileCache.DEFAULT_MAX_BYTES);
+        byte[] expected = Files.readAllBytes(BAM_FILE.toPath());
+        int truncateAt = RemoteFileCache.BLOCK_SIZE + 100;
+
+        CountingStream truncated = new CountingStream(BAM_FILE) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws java.io.IOException {
+                long remaining = truncateAt - position();
+                if (remaining <= 0) {
+                    return -1;
+                }
+                return super.read(buffer, offset, (int) Math.min(length, remaining));
+            }
+        };
+        SeekableStream indexStream = cache.getIndexStream(URL, "v1", truncated);
+        byte[] buffer = new byte[2 * RemoteFileCache.BLOCK_SIZE];
+        int n = 0;
+        while (n < buffer.length) {
+            int count = indexStream.read(buffer, n, buffer.length - n);
+            if (count < 0) break;
+            n += count;
+        }
+        assertEquals(truncateAt, n);
+
+        // The full first block was stored,  the truncated second block is read again
+        CountingStream stream2 = new CountingStream(BAM_FILE);
+        SeekableStream indexStream2 = cache.getIndexStream(URL, "v1", stream2);
+        checkRead(indexStream2, expected, 0, RemoteFileCache.BLOCK_SIZE);
+        assertEquals(0, stream2.nReads);
+        checkRead(indexStream2, expected, RemoteFileCache.BLOCK_SIZE, RemoteFileCache.BLOCK_SIZE);
+        assertTrue(stream2.nReads > 0);
+    }
+
+    /**
+     * A version checked by an earlier session is used without checking again,  until the validation interval
+     * has passed
+     */
+    @Test
+    public void testValidationPersisted() throws Exception {
+
+        AtomicInteger nChecks = new AtomicInteger(0);
+        RemoteFileCache cache = new RemoteFileCache(cacheDir, RemoteFileCache.DEFAULT_MAX_BYTES);
+        assertEquals("v1", cache.getVersion(URL, () -> {
+            nChecks.incrementAndGet();
+            return "v1";
+        }));
+        cache.getFile(URL, "v1", () -> new FileInputStream(BAM_FILE));
+        assertEquals(1, nChecks.get());
+
+        // New session
+        RemoteFileCache cache2 = new RemoteFileCache(cacheDir, RemoteFileCache.DEFAULT_MAX_BYTES);
+        assertEquals("v1", cache2.getVersion(URL, () -> {
+            nChecks.incrementAndGet();
+            return "v2";
+        }));
+        assertEquals(1, nChecks.get());
+
+        // Expire the validation time
+        File[] entries = cacheDir.listFiles(File::isDirectory);
+        assertEquals(1, entries.length);
+        long expired = System.currentTimeMillis() - RemoteFileCache.VALIDATION_INTERVAL - 1;
+        Files.write(new File(entries[0], "validated").toPath(), String.valueOf(expired).getBytes("UTF-8"));
+
+        RemoteFileCache cache3 = new RemoteFileCache(cacheDir, RemoteFileCache.DEFAULT_MAX_BYTES);
+        assertEquals("v2", cache3.getVersion(URL, () -> {
+            nChecks.incrementAndGet();
+            return "v2";
+        }));
+        assertEquals(2, nChecks.get());
+    }
+
+    private static void checkRead(SeekableStream stream, byte[] expected, long position, int len) throws Exception {
+        byte[] buffer = new byte[len];
+        stream.seek(position);
+        int n = 0;
+        while (n < len) {
+            int count = stream.read(buffer, n, len - n);
+            if (count < 0) break;
+            n += count;
+        }
+        assertEquals(Math.min(len, expected.length - position), n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(expected[(int) position + i], buffer[i]);
+        }
+    }
+
+    private static long directorySize(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                size += f.isDirectory() ? directorySize(f) : f.length();
+            }
+        }
+        return size;
+    }
+
+    private static void deleteDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.isDirectory()) deleteDirectory(f);
+                else f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    static class CountingStream extends SeekableFileStream {
+        int nReads = 0;
+
+        CountingStream(File file) throws java.io.IOException {
+            super(file);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws java.io.IOException {
+            nReads++;
+            return super.read(buffer, offset, length);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SeekableCachedStreamTest {
+
+    private final File BAM_FILE = new File(TestUtils.DATA_DIR + "/samtools/index_test.bam");
+
+    @Test
+    public void testRandomReads() throws Exception {
+
+        BlockCache cache = new BlockCache(BlockCache.DEFAULT_MAX_BYTES);
+        cache.setReadAhead(false);
+        SeekableStream expected = new SeekableFileStream(BAM_FILE);
+        SeekableCachedStream stream = new SeekableCachedStream(cache, () -> new SeekableFileStream(BAM_FILE));
+        long length = BAM_FILE.length();
+
+        Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            long position = (long) (random.nextDouble() * length);
+            int len = 1 + random.nextInt(3 * BlockCache.BLOCK_SIZE);
+            byte[] expectedBytes = new byte[len];
+            byte[] bytes = new byte[len];
+
+            expected.seek(position);
+            int expectedCount = readFully(expected, expectedBytes);
+            stream.seek(position);
+            int count = readFully(stream, bytes);
+
+            assertEquals(expectedCount, count);
+            assertArrayEquals(expectedBytes, bytes);
+        }
+
+        assertEquals(-1, stream.read(new byte[10], 0, 10));
+        assertEquals(length, stream.length());
+        assertTrue(stream.eof());
+        assertTrue(cache.getCurrentBytes() <= length);
+    }
+
+    @Test
+    public void testSharedCache() throws Exception {
+
+        BlockCache cache = new BlockCache(BlockCache.DEFAULT_MAX_BYTES);
+        cache.setReadAhead(false);
+        final AtomicInteger nReads = new AtomicInteger(0);
+
+        byte[] bytes1 = new byte[1000];
+        SeekableCachedStream stream1 = new SeekableCachedStream(cache, () -> new CountingStream(BAM_FILE, nReads));
+        stream1.seek(100000);
+        readFully(stream1, bytes1);
+        int readsAfterFirst = nReads.get();
+
+        byte[] bytes2 = new byte[1000];
+        SeekableCachedStream stream2 = new SeekableCachedStream(cache, () -> new CountingStream(BAM_FILE, nReads));
+        stream2.seek(100000);
+        readFully(stream2, bytes2);
+
+        assertTrue(readsAfterFirst > 0);
+        assertEquals(readsAfterFirst, nReads.get());
+        assertArrayEquals(bytes1, bytes2);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        BlockCache cache = new BlockCache(2 * BlockCache.BLOCK_SIZE);
+        cache.setReadAhead(false);
+        SeekableCachedStream stream = new SeekableCachedStream(cache, () -> new SeekableFileStream(BAM_FILE));
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < 5; i++) {
+            stream.seek(i * BlockCache.BLOCK_SIZE);
+            readFully(stream, bytes);
+            assertTrue(cache.getCurrentBytes() <= 2 * BlockCache.BLOCK_SIZE);
+        }
+        assertNull(cache.get(stream.getSource(), 0));
+        assertNotNull(cache.get(stream.getSource(), 4));
+    }
+
+    @Test
+    public void testReadAhead() throws Exception {
+        BlockCache cache = new BlockCache(BlockCache.DEFAULT_MAX_BYTES);
+        SeekableCachedStream stream = new SeekableCachedStream(cache, () -> new SeekableFileStream(BAM_FILE));
+        byte[] expectedBytes = new byte[(int) BAM_FILE.length()];
+        readFully(new SeekableFileStream(BAM_FILE), expectedBytes);
+
+        // Sequential scan in small reads
+        byte[] bytes = new byte[expectedBytes.length];
+        int n = 0;
+        while (n < bytes.length) {
+            int count = stream.read(bytes, n, Math.min(1000, bytes.length - n));
+            assertTrue(count > 0);
+            n += count;
+        }
+        assertArrayEquals(expectedBytes, bytes);
+    }
+
+    @Test
+    public void testTruncatedReadIsNotCached() throws Exception {
+        BlockCache cache = new BlockCache(BlockCache.DEFAULT_MAX_BYTES);
+        cache.setReadAhead(false);
+        SeekableCachedStream stream = new SeekableCachedStream(cache, () -> new TruncatingStream(BAM_FILE));
+
+        byte[] expectedBytes = new byte[1000];
+        SeekableStream expected = new SeekableFileStream(BAM_FILE);
+        expected.seek(100000);
+        readFully(expected, expectedBytes);
+
+        // The first response ends early and the length is unknown,  so the short block must not be cached
+        byte[] bytes = new byte[1000];
+        stream.seek(100000);
+        stream.read(bytes, 0, bytes.length);
+        assertNull(cache.get(stream.getSource(), 100000 / BlockCache.BLOCK_SIZE));
+        assertFalse(stream.eof());
+
+        stream.seek(100000);
+        assertEquals(bytes.length, readFully(stream, bytes));
+        assertArrayEquals(expectedBytes, bytes);
+        assertNotNull(cache.get(stream.getSource(), 100000 / BlockCache.BLOCK_SIZE));
+    }
+
+    private static int readFully(SeekableStream stream, byte[] buffer) throws IOException {
+        int n = 0;
+        while (n < buffer.length) {
+            int count = stream.read(buffer, n, buffer.length - n);
+            if (count < 0) break;
+            n += count;
+        }
+        return n;
+    }
+
+    static class CountingStream extends SeekableFileStream {
+        AtomicInteger nReads;
+
+        CountingStream(File file, AtomicInteger nReads) throws IOException {
+            super(file);
+            this.nReads = nReads;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            nReads.incrementAndGet();
+            return super.read(buffer, offset, length);
+        }
+    }
+
+    /**
+     * Like a remote stream of unknown length whose first response is cut short
+     */
+    static class TruncatingStream extends SeekableFileStream {
+        int nReads = 0;
+
+        TruncatingStream(File file) throws IOException {
+            super(file);
+        }
+
+        @Override
+        public long length() {
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            nReads++;
+            if (nReads == 1) {
+                return super.read(buffer, offset, Math.min(length, 100));
+            } else if (nReads == 2) {
+                return -1;
+            }
+            return super.read(buffer, offset, length);
+        }
+    }
+}
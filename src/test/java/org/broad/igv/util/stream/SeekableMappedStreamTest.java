@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SeekableMappedStreamTest {
+
+    private final File BAM_FILE = new File(TestUtils.DATA_DIR + "/samtools/index_test.bam");
+
+    @Test
+    public void testRandomReads() throws Exception {
+
+        // A small chunk size so that reads cross chunk boundaries
+        SeekableMappedStream stream = new SeekableMappedStream(BAM_FILE, 4096);
+        byte[] expectedBytes = readAll();
+        long length = BAM_FILE.length();
+        assertEquals(length, stream.length());
+
+        Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            int position = (int) (random.nextDouble() * length);
+            int len = 1 + random.nextInt(10000);
+            byte[] bytes = new byte[len];
+
+            stream.seek(position);
+            int n = stream.read(bytes, 0, len);
+            assertEquals(Math.min(len, length - position), n);
+            assertEquals(position + n, stream.position());
+            for (int j = 0; j < n; j++) {
+                assertEquals(expectedBytes[position + j], bytes[j]);
+            }
+
+            ByteBuffer bb = stream.getByteBuffer(position, len);
+            assertEquals(n, bb.remaining());
+            for (int j = 0; j < n; j++) {
+                assertEquals(expectedBytes[position + j], bb.get());
+            }
+        }
+
+        stream.seek(length);
+        assertTrue(stream.eof());
+        assertEquals(-1, stream.read());
+        assertEquals(-1, stream.read(new byte[10], 0, 10));
+        stream.close();
+    }
+
+    @Test
+    public void testConcurrentPositionalReads() throws Exception {
+
+        final SeekableMappedStream stream = new SeekableMappedStream(BAM_FILE, 4096);
+        final byte[] expectedBytes = readAll();
+        final long length = BAM_FILE.length();
+        final boolean[] ok = new boolean[4];
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    for (int i = 0; i < 200; i++) {
+                        int position = (int) (random.nextDouble() * (length - 5000));
+                        byte[] bytes = new byte[1 + random.nextInt(5000)];
+                        stream.read(position, bytes, 0, bytes.length);
+                        for (int j = 0; j < bytes.length; j++) {
+                            if (bytes[j] != expectedBytes[position + j]) return;
+                        }
+                    }
+                    ok[seed] = true;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (boolean b : ok) {
+            assertTrue(b);
+        }
+        stream.close();
+    }
+
+    private byte[] readAll() throws Exception {
+        byte[] bytes = new byte[(int) BAM_FILE.length()];
+        SeekableStream expected = new SeekableFileStream(BAM_FILE);
+        expected.readFully(bytes);
+        expected.close();
+        return bytes;
+    }
+}